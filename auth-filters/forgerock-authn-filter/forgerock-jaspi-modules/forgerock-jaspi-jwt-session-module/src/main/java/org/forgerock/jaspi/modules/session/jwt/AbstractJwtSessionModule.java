@@ -22,7 +22,7 @@ import static org.forgerock.caf.authentication.framework.AuthenticationFramework
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.security.Key;
-import java.security.KeyStore;
+import java.security.KeyPair;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
@@ -31,6 +31,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -42,6 +44,8 @@ import javax.security.auth.message.callback.CallerPrincipalCallback;
 import org.forgerock.caf.authentication.api.AuthenticationException;
 import org.forgerock.caf.authentication.framework.AuthenticationFramework;
 import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.builders.SignedEncryptedJwtBuilder;
+import org.forgerock.json.jose.common.VerifiedJwtCache;
 import org.forgerock.json.jose.exceptions.JweDecryptionException;
 import org.forgerock.json.jose.jwe.EncryptionMethod;
 import org.forgerock.json.jose.jwe.JweAlgorithm;
@@ -51,11 +55,12 @@ import org.forgerock.json.jose.jws.handlers.HmacSigningHandler;
 import org.forgerock.json.jose.jws.handlers.SigningHandler;
 import org.forgerock.json.jose.jwt.Jwt;
 import org.forgerock.json.jose.jwt.JwtClaimsSet;
-import org.forgerock.security.keystore.KeyStoreBuilder;
-import org.forgerock.security.keystore.KeyStoreManager;
+import org.forgerock.security.keystore.KeyStoreRegistry;
 import org.forgerock.security.keystore.KeyStoreType;
+import org.forgerock.security.keystore.ManagedKeyStore;
 import org.forgerock.util.Utils;
 import org.forgerock.util.encode.Base64;
+import org.forgerock.util.time.Duration;
 
 /**
  * A JASPI Session Module which creates a JWT when securing the response from a successful authentication and sets it
@@ -105,6 +110,18 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
     public static final String COOKIE_DOMAINS_KEY = "cookieDomains";
     /** HMAC signing key. */
     public static final String HMAC_SIGNING_KEY = "hmacKey";
+    /**
+     * Base64 encoded 128, 192 or 256-bit AES key property key. When set, session JWTs are encrypted directly with this
+     * key using AES-GCM, instead of with a new content encryption key wrapped with the RSA key of the keystore, and
+     * the keystore properties are not needed.
+     */
+    public static final String ENCRYPTION_KEY = "encryptionKey";
+    /**
+     * The maximum number of validated session JWTs cached by a digest of their cookie property key, so that a session
+     * cookie presented again within its idle timeout is not verified and decrypted again. Defaults to 0, which
+     * disables the cache.
+     */
+    public static final String SESSION_CACHE_SIZE_KEY = "sessionCacheSize";
     private static final JwsAlgorithm SIGNING_ALGORITHM = JwsAlgorithm.HS256;
 
     private final JwtBuilderFactory jwtBuilderFactory;
@@ -126,7 +143,31 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
     boolean isSecure;
     Collection<String> cookieDomains;
     private SigningHandler signingHandler;
-
+    private JweAlgorithm jweAlgorithm;
+    private EncryptionMethod encryptionMethod;
+    /** The AES key used to encrypt and decrypt session JWTs, or {@code null} if the keystore is used. */
+    private Key secretKey;
+    /** The registry of the keystore, which belongs to this module, or {@code null} if the keystore is not used. */
+    private KeyStoreRegistry keyStoreRegistry;
+    /** The keystore holding the RSA key pair used to encrypt and decrypt session JWTs, which is loaded on first use. */
+    private ManagedKeyStore keyStore;
+    /** The RSA key pair read from the keystore, which is read again each time the keystore is reloaded. */
+    private volatile KeyPair keyPair;
+    /** The cache of validated session JWTs, or {@code null} if disabled. */
+    private VerifiedJwtCache sessionCache;
+
+    /** Reads the key pair again once the keystore has been reloaded, and forgets the sessions validated with it. */
+    private final ManagedKeyStore.Listener keyStoreListener = new ManagedKeyStore.Listener() {
+        @Override
+        public void keyStoreReloaded(ManagedKeyStore reloadedKeyStore) {
+            keyPair = null;
+            final VerifiedJwtCache cache = sessionCache;
+            if (cache != null) {
+                cache.clear();
+            }
+            keyPair = readKeyPair(reloadedKeyStore);
+        }
+    };
 
     /**
      * Constructs an instance of the AbstractJwtSessionModule.
@@ -201,6 +242,58 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
         }
         this.signingHandler = new HmacSigningHandler(signingKey);
         Arrays.fill(signingKey, (byte) 0);
+        final String encryptionKey = (String) options.get(ENCRYPTION_KEY);
+        if (isEmpty(encryptionKey)) {
+            this.jweAlgorithm = JweAlgorithm.RSAES_PKCS1_V1_5;
+            this.encryptionMethod = EncryptionMethod.A128CBC_HS256;
+            this.secretKey = null;
+            setKeyStoreRegistry(new KeyStoreRegistry());
+        } else {
+            final byte[] aesKey = Base64.decode(encryptionKey);
+            if (aesKey == null || (aesKey.length != 16 && aesKey.length != 24 && aesKey.length != 32)) {
+                throw new AuthenticationException(
+                        "Encryption key must be a 128, 192 or 256-bit base64 encoded AES key");
+            }
+            this.secretKey = new SecretKeySpec(aesKey, "AES");
+            Arrays.fill(aesKey, (byte) 0);
+            this.jweAlgorithm = JweAlgorithm.DIRECT;
+            this.encryptionMethod = aesKey.length == 16 ? EncryptionMethod.A128GCM
+                    : aesKey.length == 24 ? EncryptionMethod.A192GCM : EncryptionMethod.A256GCM;
+            setKeyStoreRegistry(null);
+        }
+        final int cacheSize = parseSessionCacheSize((String) options.get(SESSION_CACHE_SIZE_KEY));
+        if (cacheSize > 0) {
+            // Sessions are never cached past their idle timeout, which is also checked each time they are used.
+            this.sessionCache = new VerifiedJwtCache(cacheSize,
+                    tokenIdleTime > 0 ? Duration.duration(tokenIdleTime, TimeUnit.SECONDS) : Duration.UNLIMITED);
+        } else {
+            this.sessionCache = null;
+        }
+    }
+
+    /**
+     * Parses the {@link #SESSION_CACHE_SIZE_KEY} setting.
+     *
+     * @param sessionCacheSize The setting, which may be {@code null}.
+     * @return The maximum number of cached session JWTs, or 0 if the setting is not set.
+     * @throws AuthenticationException If the setting is not a number or is negative.
+     */
+    private int parseSessionCacheSize(String sessionCacheSize) throws AuthenticationException {
+        if (isEmpty(sessionCacheSize)) {
+            return 0;
+        }
+        final int cacheSize;
+        try {
+            cacheSize = Integer.parseInt(sessionCacheSize.trim());
+        } catch (NumberFormatException e) {
+            throw new AuthenticationException(SESSION_CACHE_SIZE_KEY + " setting must be a number, but was '"
+                    + sessionCacheSize + "'", e);
+        }
+        if (cacheSize < 0) {
+            throw new AuthenticationException(SESSION_CACHE_SIZE_KEY + " setting must not be negative, but was "
+                    + cacheSize);
+        }
+        return cacheSize;
     }
 
     /**
@@ -335,32 +428,110 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
      * @return The validated decrypted JWT.
      */
     private Jwt verifySessionJwt(String sessionJwt) throws FileNotFoundException {
-        final KeyStore keyStore = new KeyStoreBuilder()
-                .withKeyStoreFile(keystoreFile)
-                .withPassword(keystorePassword)
-                .withKeyStoreType(keystoreType)
-                .build();
-        final KeyStoreManager keyStoreManager = new KeyStoreManager(keyStore);
+        final Key decryptionKey = getDecryptionKey();
 
-        Key privateKey = keyStoreManager.getPrivateKey(keyAlias, privateKeyPassword);
+        if (sessionCache != null) {
+            final CachedSessionJwt cachedJwt = sessionCache.get(sessionJwt, decryptionKey, CachedSessionJwt.class);
+            if (cachedJwt != null) {
+                return isSessionJwtValid(cachedJwt) ? newSessionJwt(cachedJwt.copyClaimsSet(), getEncryptionKey())
+                        : null;
+            }
+        }
 
         SignedEncryptedJwt jwt = jwtBuilderFactory.reconstruct(sessionJwt, SignedEncryptedJwt.class);
         if (!jwt.verify(signingHandler)) {
             return null;
         }
-        jwt.decrypt(privateKey);
+        jwt.decrypt(decryptionKey);
+
+        if (!isSessionJwtValid(jwt)) {
+            return null;
+        }
+        if (sessionCache != null) {
+            sessionCache.put(sessionJwt, decryptionKey, CachedSessionJwt.of(sessionJwt, jwt));
+        }
+        return jwt;
+    }
 
+    /**
+     * Checks that neither the expiration time nor the idle timeout of the decrypted session JWT have passed.
+     *
+     * @param jwt The decrypted session JWT.
+     * @return {@code true} if the session JWT is still valid.
+     */
+    private boolean isSessionJwtValid(Jwt jwt) {
         Date expirationTime = jwt.getClaimsSet().getExpirationTime();
         Date tokenIdleTime = new Date(jwt.getClaimsSet().getClaim(TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY, Integer.class)
                 .longValue() * 1000L);
 
         Date now = new Date(System.currentTimeMillis());
 
-        if ((now.getTime() < expirationTime.getTime()) && (now.getTime() < tokenIdleTime.getTime())) {
-            return jwt;
+        return (now.getTime() < expirationTime.getTime()) && (now.getTime() < tokenIdleTime.getTime());
+    }
+
+    /**
+     * Returns the key used to encrypt session JWTs.
+     *
+     * @return The AES key, or the public key of the keystore.
+     * @throws FileNotFoundException If unable to load keystore.
+     */
+    private Key getEncryptionKey() throws FileNotFoundException {
+        return secretKey != null ? secretKey : getKeyPair().getPublic();
+    }
+
+    /**
+     * Returns the key used to decrypt session JWTs.
+     *
+     * @return The AES key, or the private key of the keystore.
+     * @throws FileNotFoundException If unable to load keystore.
+     */
+    private Key getDecryptionKey() throws FileNotFoundException {
+        return secretKey != null ? secretKey : getKeyPair().getPrivate();
+    }
+
+    /**
+     * Returns the RSA key pair read from the keystore, loading the keystore on first use. The keystore is loaded by
+     * the {@link KeyStoreRegistry} of this module, which reloads it when its file changes: the key pair is then read
+     * again, and the session JWTs validated with the old private key are no longer cached.
+     *
+     * @return The RSA key pair.
+     * @throws FileNotFoundException If unable to load keystore.
+     */
+    private KeyPair getKeyPair() throws FileNotFoundException {
+        KeyPair keys = keyPair;
+        if (keys == null) {
+            final KeyStoreRegistry registry = keyStoreRegistry;
+            synchronized (registry) {
+                if (keyStore == null) {
+                    keyStore = registry.getKeyStore(keystoreFile, keystoreType, keystorePassword);
+                    keyStore.addListener(keyStoreListener);
+                }
+                keys = keyPair;
+                if (keys == null) {
+                    keys = readKeyPair(keyStore);
+                    keyPair = keys;
+                }
+            }
         }
+        return keys;
+    }
 
-        return null;
+    private KeyPair readKeyPair(ManagedKeyStore store) {
+        return new KeyPair(store.getPublicKey(keyAlias), store.getPrivateKey(keyAlias, privateKeyPassword));
+    }
+
+    /**
+     * Replaces the keystore registry of this module, closing the previous one, when the module is initialised again.
+     *
+     * @param registry The new registry, or {@code null} if the keystore is not used.
+     */
+    private void setKeyStoreRegistry(KeyStoreRegistry registry) {
+        if (keyStoreRegistry != null) {
+            keyStoreRegistry.close();
+        }
+        keyStoreRegistry = registry;
+        keyStore = null;
+        keyPair = null;
     }
 
     /**
@@ -404,16 +575,7 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
         jwt.getClaimsSet().setNotBeforeTime(nbf);
         jwt.getClaimsSet().setClaim(TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY, tokenIdleTime.getTime() / 1000L);
 
-        final KeyStore keyStore = new KeyStoreBuilder()
-                .withKeyStoreFile(keystoreFile)
-                .withPassword(keystorePassword)
-                .withKeyStoreType(keystoreType)
-                .build();
-        final KeyStoreManager keyStoreManager = new KeyStoreManager(keyStore);
-
-        Key publicKey = keyStoreManager.getPublicKey(keyAlias);
-
-        String jwtString = rebuildEncryptedJwt(jwt, publicKey);
+        String jwtString = rebuildEncryptedJwt(jwt, getEncryptionKey());
 
         addCookiesToResponse(createCookies(jwtString, getCookieMaxAge(now, exp), "/"), messageInfo);
     }
@@ -503,14 +665,7 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
     private Collection<C> createSessionJwtCookies(Map<String, Object> jwtParameters)
             throws AuthenticationException, FileNotFoundException {
 
-        final KeyStore keyStore = new KeyStoreBuilder()
-                .withKeyStoreFile(keystoreFile)
-                .withPassword(keystorePassword)
-                .withKeyStoreType(keystoreType)
-                .build();
-        final KeyStoreManager keyStoreManager = new KeyStoreManager(keyStore);
-
-        Key publicKey = keyStoreManager.getPublicKey(keyAlias);
+        Key publicKey = getEncryptionKey();
 
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(new Date());
@@ -540,15 +695,29 @@ abstract class AbstractJwtSessionModule<C extends JwtSessionCookie> {
     }
 
     private String buildJwtString(JwtClaimsSet claimsSet, Key publicKey) {
+        return sessionJwtBuilder(claimsSet, publicKey).build();
+    }
+
+    /**
+     * Creates a session JWT which is encrypted and signed when it is built.
+     *
+     * @param claimsSet The claims of the session JWT.
+     * @param publicKey The key used to encrypt the session JWT.
+     * @return The session JWT.
+     */
+    private Jwt newSessionJwt(JwtClaimsSet claimsSet, Key publicKey) {
+        return sessionJwtBuilder(claimsSet, publicKey).asJwt();
+    }
+
+    private SignedEncryptedJwtBuilder sessionJwtBuilder(JwtClaimsSet claimsSet, Key publicKey) {
         return jwtBuilderFactory
                 .jwe(publicKey)
                 .headers()
-                .alg(JweAlgorithm.RSAES_PKCS1_V1_5)
-                .enc(EncryptionMethod.A128CBC_HS256)
+                .alg(jweAlgorithm)
+                .enc(encryptionMethod)
                 .done()
                 .claims(claimsSet)
-                .sign(signingHandler, SIGNING_ALGORITHM)
-                .build();
+                .sign(signingHandler, SIGNING_ALGORITHM);
     }
 
     /**
@@ -0,0 +1,87 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.jwt;
+
+import java.nio.charset.StandardCharsets;
+
+import org.forgerock.json.jose.jwt.Jwt;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.json.jose.jwt.JwtHeader;
+
+/**
+ * A session JWT which has already been verified and decrypted, as held in the session cache.
+ * <p>
+ * The cached instance is shared between requests and never leaves the module: each request is given a new session
+ * JWT built from its own {@link #copyClaimsSet() copy} of the claims, which it may modify, for example when the
+ * idle timeout is reset. The cached instance {@link #build() builds} to the session JWT it was taken from, which is
+ * still signed and encrypted.
+ */
+final class CachedSessionJwt implements Jwt {
+
+    private final String sessionJwt;
+    private final JwtHeader header;
+    private final byte[] claimsJson;
+    private final JwtClaimsSet claimsSet;
+
+    private CachedSessionJwt(String sessionJwt, JwtHeader header, byte[] claimsJson) {
+        this.sessionJwt = sessionJwt;
+        this.header = header;
+        this.claimsJson = claimsJson;
+        this.claimsSet = JwtClaimsSet.parse(claimsJson);
+    }
+
+    /**
+     * Takes a snapshot of the header and claims of a verified and decrypted session JWT.
+     *
+     * @param sessionJwt The signed and encrypted session JWT, as found in the session cookie.
+     * @param jwt The session JWT, once verified and decrypted.
+     * @return The cacheable snapshot of the session JWT.
+     */
+    static CachedSessionJwt of(String sessionJwt, Jwt jwt) {
+        return new CachedSessionJwt(sessionJwt, jwt.getHeader(),
+                jwt.getClaimsSet().build().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a copy of the claims of this session JWT, which can be modified without affecting the cached instance.
+     *
+     * @return A copy of the claims.
+     */
+    JwtClaimsSet copyClaimsSet() {
+        return JwtClaimsSet.parse(claimsJson);
+    }
+
+    @Override
+    public JwtHeader getHeader() {
+        return header;
+    }
+
+    @Override
+    public JwtClaimsSet getClaimsSet() {
+        return claimsSet;
+    }
+
+    /**
+     * Returns the signed and encrypted session JWT this snapshot was taken from.
+     *
+     * @return The session JWT, as found in the session cookie.
+     */
+    @Override
+    public String build() {
+        return sessionJwt;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.JwsHeader;
+import org.forgerock.json.jose.jwt.Jwt;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.json.jose.jwt.JwtHeader;
+import org.testng.annotations.Test;
+
+public class CachedSessionJwtTest {
+
+    @Test
+    public void shouldBuildToTheSessionJwtItWasTakenFrom() {
+        //Given
+        CachedSessionJwt cachedJwt = CachedSessionJwt.of("SESSION_JWT", jwt("PRINCIPAL"));
+
+        //When
+        String sessionJwt = cachedJwt.build();
+
+        //Then
+        assertThat(sessionJwt).isEqualTo("SESSION_JWT");
+    }
+
+    @Test
+    public void shouldNotShareCopiesOfTheClaims() {
+        //Given
+        CachedSessionJwt cachedJwt = CachedSessionJwt.of("SESSION_JWT", jwt("PRINCIPAL"));
+
+        //When
+        cachedJwt.copyClaimsSet().setClaim("prn", "OTHER");
+
+        //Then
+        assertThat(cachedJwt.copyClaimsSet().getClaim("prn", String.class)).isEqualTo("PRINCIPAL");
+        assertThat(cachedJwt.getClaimsSet().getClaim("prn", String.class)).isEqualTo("PRINCIPAL");
+    }
+
+    private static Jwt jwt(String principal) {
+        final JwtHeader header = new JwsHeader();
+        header.setAlgorithm(JwsAlgorithm.HS256);
+        final JwtClaimsSet claimsSet = new JwtClaimsSet(Collections.<String, Object>singletonMap("prn", principal));
+        return new Jwt() {
+            @Override
+            public JwtHeader getHeader() {
+                return header;
+            }
+
+            @Override
+            public JwtClaimsSet getClaimsSet() {
+                return claimsSet;
+            }
+
+            @Override
+            public String build() {
+                return "SESSION_JWT";
+            }
+        };
+    }
+}
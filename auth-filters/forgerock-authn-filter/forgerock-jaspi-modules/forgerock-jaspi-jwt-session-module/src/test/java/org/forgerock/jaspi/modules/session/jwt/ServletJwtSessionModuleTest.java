@@ -26,6 +26,7 @@ import static org.testng.Assert.*;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -33,6 +34,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -53,8 +55,10 @@ import org.forgerock.json.jose.builders.JwtBuilderFactory;
 import org.forgerock.json.jose.builders.JwtClaimsSetBuilder;
 import org.forgerock.json.jose.builders.SignedEncryptedJwtBuilder;
 import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.jwe.EncryptedJwt;
 import org.forgerock.json.jose.jwe.EncryptionMethod;
 import org.forgerock.json.jose.jwe.JweAlgorithm;
+import org.forgerock.json.jose.jwe.JweHeader;
 import org.forgerock.json.jose.jws.JwsAlgorithm;
 import org.forgerock.json.jose.jws.SignedEncryptedJwt;
 import org.forgerock.json.jose.jws.handlers.HmacSigningHandler;
@@ -62,9 +66,11 @@ import org.forgerock.json.jose.jwt.Algorithm;
 import org.forgerock.json.jose.jwt.Jwt;
 import org.forgerock.json.jose.jwt.JwtClaimsSet;
 import org.forgerock.util.encode.Base64;
+import org.forgerock.util.encode.Base64url;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class ServletJwtSessionModuleTest {
@@ -1229,6 +1235,29 @@ public class ServletJwtSessionModuleTest {
         //should never get here
     }
 
+    @DataProvider
+    public Object[][] invalidSessionCacheSizes() {
+        return new Object[][] {
+            { "-1" },
+            { "ten" },
+        };
+    }
+
+    @Test(dataProvider = "invalidSessionCacheSizes", expectedExceptions = AuthException.class,
+            expectedExceptionsMessageRegExp = "sessionCacheSize setting must .*")
+    public void shouldThrowAuthExceptionWhenSessionCacheSizeIsInvalid(String sessionCacheSize) throws Exception {
+        //given
+        Map<String, Object> options = getOptionsMap(1, 1, Calendar.MINUTE);
+        options.put(JwtSessionModule.SESSION_CACHE_SIZE_KEY, sessionCacheSize);
+        ServletJwtSessionModule module = new ServletJwtSessionModule();
+
+        //when
+        module.initialize(null, null, null, options);
+
+        //then
+        //should never get here
+    }
+
     @Test(groups = "sessionCookieName")
     public void shouldLogoutSession() throws Exception {
 
@@ -1256,4 +1285,49 @@ public class ServletJwtSessionModuleTest {
         assertThat(cookieCaptor.getValue().getMaxAge()).isEqualTo(0);
         assertThat(cookieCaptor.getValue().getPath()).isEqualTo("/");
     }
+
+    @Test
+    public void shouldValidateSessionJwtEncryptedWithAesKeyOnceWhenCached() throws Exception {
+
+        //Given
+        JwtBuilderFactory realJwtBuilderFactory = spy(new JwtBuilderFactory());
+        ServletJwtSessionModule module = new ServletJwtSessionModule(realJwtBuilderFactory);
+        Map<String, Object> options = getOptionsMap(1, 2, Calendar.MINUTE);
+        options.put(JwtSessionModule.ENCRYPTION_KEY, Base64.encode(new byte[16]));
+        options.put(JwtSessionModule.SESSION_CACHE_SIZE_KEY, "10");
+        module.initialize(null, null, null, options);
+
+        MessageInfo messageInfo = mock(MessageInfo.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        given(messageInfo.getRequestMessage()).willReturn(request);
+        given(messageInfo.getResponseMessage()).willReturn(response);
+        given(messageInfo.getMap()).willReturn(new HashMap<String, Object>());
+        given(request.getAttribute(AuthenticationFramework.ATTRIBUTE_AUTH_PRINCIPAL)).willReturn("PRINCIPAL");
+
+        module.secureResponse(messageInfo, null);
+        ArgumentCaptor<Cookie> cookieCaptor = ArgumentCaptor.forClass(Cookie.class);
+        verify(response).addCookie(cookieCaptor.capture());
+        given(request.getCookies()).willReturn(new Cookie[]{cookieCaptor.getValue()});
+
+        //When
+        Jwt first = module.validateJwtSessionCookie(messageInfo);
+        first.getClaimsSet().setClaim("prn", "OTHER");
+        Jwt second = module.validateJwtSessionCookie(messageInfo);
+        SignedEncryptedJwt rebuilt = new JwtBuilderFactory().reconstruct(second.build(), SignedEncryptedJwt.class);
+        rebuilt.decrypt(new SecretKeySpec(new byte[16], "AES"));
+
+        //Then
+        String nestedJwe = new String(Base64url.decode(cookieCaptor.getValue().getValue().split("\\.")[1]),
+                StandardCharsets.UTF_8);
+        JweHeader jweHeader = (JweHeader) new JwtBuilderFactory().reconstruct(nestedJwe, EncryptedJwt.class)
+                .getHeader();
+        assertThat(jweHeader.getAlgorithm()).isEqualTo(JweAlgorithm.DIRECT);
+        assertThat(jweHeader.getEncryptionMethod()).isEqualTo(EncryptionMethod.A128GCM);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getClaimsSet().getClaim("prn", String.class)).isEqualTo("PRINCIPAL");
+        assertThat(rebuilt.verify(new HmacSigningHandler(Base64.decode(HMAC_KEY)))).isTrue();
+        assertThat(rebuilt.getClaimsSet().getClaim("prn", String.class)).isEqualTo("PRINCIPAL");
+        verify(realJwtBuilderFactory, times(1)).reconstruct(anyString(), eq(SignedEncryptedJwt.class));
+    }
 }
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.security.auth.Subject;
@@ -46,6 +47,7 @@ import javax.security.auth.message.callback.CallerPrincipalCallback;
 import org.forgerock.caf.authentication.api.AsyncServerAuthModule;
 import org.forgerock.caf.authentication.api.AuthenticationException;
 import org.forgerock.caf.authentication.api.MessageInfoContext;
+import org.forgerock.jaspi.modules.session.openam.SessionValidationCache.Outcome;
 import org.forgerock.http.Client;
 import org.forgerock.http.HttpApplicationException;
 import org.forgerock.http.handler.HttpClientHandler;
@@ -65,6 +67,7 @@ import org.forgerock.util.Utils;
 import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.TimeService;
 
 /**
  * A JASPI Session Module which uses OpenAM to validate SSO Tokens issued by an OpenAM instance.
@@ -75,6 +78,25 @@ import org.forgerock.util.promise.Promise;
  */
 public class OpenAMSessionModule implements AsyncServerAuthModule {
 
+    /**
+     * The maximum number of SSO token validation outcomes cached by a digest of the token, so that a token presented
+     * again within the maximum staleness is not validated with OpenAM again. Defaults to 0, which disables the cache.
+     * Concurrent validations of the same token are always shared, whether or not the cache is enabled.
+     */
+    public static final String SESSION_CACHE_SIZE_KEY = "sessionCacheSize";
+    /**
+     * The time, in seconds, for which a cached validation outcome is used without validating the token with OpenAM
+     * again, which bounds how long a session logged out in OpenAM remains usable. Defaults to 30 seconds.
+     */
+    public static final String SESSION_CACHE_MAX_STALENESS_KEY = "sessionCacheMaxStaleness";
+    /**
+     * The time, in seconds, after the maximum staleness during which a stale validation outcome is still used while
+     * the token is validated with OpenAM again in the background. Defaults to 0, which always waits for the new
+     * validation.
+     */
+    public static final String SESSION_CACHE_STALE_WHILE_REVALIDATE_KEY = "sessionCacheStaleWhileRevalidate";
+    private static final long DEFAULT_SESSION_CACHE_MAX_STALENESS = 30L;
+
     private static final String JSON_REST_ROOT_ENDPOINT = "json";
     private static final String JSON_SESSIONS_RELATIVE_URI = JSON_REST_ROOT_ENDPOINT + "/sessions/";
     private static final String JSON_USERS_ENDPOINT = "users/";
@@ -90,6 +112,24 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
     private String openamDeploymentUrl;
     private String openamSSOTokenCookieName;
     private String openamUserAttribute;
+    private SessionValidationCache validationCache;
+
+    /** Validates SSO tokens with OpenAM, when they are not in the validation cache. */
+    private final SessionValidationCache.Validator validator = new SessionValidationCache.Validator() {
+        @Override
+        public Promise<Outcome, AuthenticationException> validate(String tokenId) {
+            Request validateRequest = new Request()
+                    .setMethod("POST")
+                    .setUri(URI.create(openamDeploymentUrl + JSON_SESSIONS_RELATIVE_URI + tokenId
+                            + "?_action=validate"));
+
+            // set empty body and Content-Type header for AM 12.
+            validateRequest.getEntity().setJson(Collections.emptyMap());
+
+            return httpClient.send(validateRequest)
+                    .thenAsync(onValidateSuccess(tokenId), onValidateFailure());
+        }
+    };
 
     /**
      * Construct OpenAMSessionModule - use default options.
@@ -134,6 +174,13 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
      * Store</td><td>JKS</td></tr>
      * <tr><td>truststorePassword</td><td>String</td><td>When useSSL is true</td><td>N/A</td><td>The password for the
      * SSL Trust Store</td><td>cangetin</td></tr>
+     * <tr><td>sessionCacheSize</td><td>String</td><td>No</td><td>0</td><td>The maximum number of SSO token
+     * validation outcomes to cache, 0 disabling the cache</td><td>10000</td></tr>
+     * <tr><td>sessionCacheMaxStaleness</td><td>String</td><td>No</td><td>30</td><td>The number of seconds for
+     * which a cached validation outcome is used</td><td>10</td></tr>
+     * <tr><td>sessionCacheStaleWhileRevalidate</td><td>String</td><td>No</td><td>0</td><td>The number of seconds
+     * after the maximum staleness during which a stale outcome is used while the token is validated again in the
+     * background</td><td>20</td></tr>
      * </tbody>
      * </table>
      *
@@ -162,6 +209,16 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
         LOG.debug("OpenAM configuration: Deployment URL = {}, SSO Token Cookie Name = {}", openamDeploymentUrl,
                 openamSSOTokenCookieName);
 
+        final String sessionCacheSize = (String) options.get(SESSION_CACHE_SIZE_KEY);
+        final String maxStaleness = (String) options.get(SESSION_CACHE_MAX_STALENESS_KEY);
+        final String staleWhileRevalidate = (String) options.get(SESSION_CACHE_STALE_WHILE_REVALIDATE_KEY);
+        validationCache = new SessionValidationCache(
+                isEmpty(sessionCacheSize) ? 0 : Integer.parseInt(sessionCacheSize),
+                TimeUnit.SECONDS.toMillis(isEmpty(maxStaleness)
+                        ? DEFAULT_SESSION_CACHE_MAX_STALENESS : Long.parseLong(maxStaleness)),
+                TimeUnit.SECONDS.toMillis(isEmpty(staleWhileRevalidate) ? 0L : Long.parseLong(staleWhileRevalidate)),
+                getTimeService());
+
         final boolean useSSL;
         try {
             useSSL = !"http".equals(URI.create(openamDeploymentUrl).toURL().getProtocol());
@@ -189,6 +246,11 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
         return new Client(new HttpClientHandler(options));
     }
 
+    @VisibleForTesting
+    TimeService getTimeService() {
+        return TimeService.SYSTEM;
+    }
+
     /**
      * Configures the REST connections to use SSL.
      *
@@ -268,7 +330,8 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
      * <br/>
      * Attempts to get the SSO Token Id from the request, if no SSO Token Id exists on the request then SEND_FAILURE is
      * returned. If a SSO Token Id is found a REST call is made to the configured OpenAM URL to validate that the
-     * SSO Token Id is valid and has not expired.
+     * SSO Token Id is valid and has not expired. Concurrent requests presenting the same SSO Token Id share the same
+     * REST call, and if the session cache is enabled the outcome of the call is reused until it goes stale.
      * <br/>
      * If the SSO Token Id is valid then SUCCESS is returned. For all other cases (i.e. invalid SSO Token Id,
      * any exceptions) SEND_FAILURE is returned.
@@ -293,28 +356,35 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
             return newResultPromise(SEND_FAILURE);
         }
 
-        Request validateRequest = new Request()
-                .setMethod("POST")
-                .setUri(URI.create(openamDeploymentUrl + JSON_SESSIONS_RELATIVE_URI + tokenId
-                        + "?_action=validate"));
-
-        // set empty body and Content-Type header for AM 12.
-        validateRequest.getEntity().setJson(Collections.emptyMap());
-
-        return httpClient.send(validateRequest)
-                .thenAsync(onValidateSuccess(tokenId, clientSubject), onValidateFailure());
+        return validationCache.get(tokenId, validator)
+                .then(new Function<Outcome, AuthStatus, AuthenticationException>() {
+                    @Override
+                    public AuthStatus apply(Outcome outcome) throws AuthenticationException {
+                        if (!outcome.isValid()) {
+                            return SEND_FAILURE;
+                        }
+                        try {
+                            handler.handle(new Callback[]{
+                                new CallerPrincipalCallback(clientSubject, outcome.getPrincipal())
+                            });
+                            return SUCCESS;
+                        } catch (IOException | UnsupportedCallbackException e) {
+                            throw new AuthenticationException(
+                                    new InternalServerErrorException(e.getMessage(), e));
+                        }
+                    }
+                });
     }
 
-    private AsyncFunction<Response, AuthStatus, AuthenticationException> onValidateSuccess(final String tokenId,
-            final Subject clientSubject) {
-        return new AsyncFunction<Response, AuthStatus, AuthenticationException>() {
+    private AsyncFunction<Response, Outcome, AuthenticationException> onValidateSuccess(final String tokenId) {
+        return new AsyncFunction<Response, Outcome, AuthenticationException>() {
             @Override
-            public Promise<AuthStatus, AuthenticationException> apply(Response response) {
+            public Promise<Outcome, AuthenticationException> apply(Response response) {
                 try {
                     if (!response.getStatus().isSuccessful()) {
                         LOG.error("REST validation call returned non HTTP 200 response",
                                 response.getEntity().getString());
-                        return newResultPromise(SEND_FAILURE);
+                        return newResultPromise(Outcome.UNAVAILABLE);
                     }
                     JsonValue validationResponse = json(response.getEntity().getJson());
                     if (validationResponse.isDefined("valid") && validationResponse.get("valid").asBoolean()) {
@@ -330,11 +400,11 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
                                         + openamUserAttribute));
                         usersRequest.getHeaders().put(openamSSOTokenCookieName, tokenId);
                         return httpClient.send(usersRequest)
-                                .then(onUserResponse(clientSubject), onUserRequestFailure());
+                                .then(onUserResponse(), onUserRequestFailure());
                     }
 
                     LOG.debug("REST validation call returned false.");
-                    return newResultPromise(SEND_FAILURE);
+                    return newResultPromise(Outcome.INVALID);
                 } catch (IOException e) {
                     return newExceptionPromise(new AuthenticationException(
                             new InternalServerErrorException(e.getMessage(), e)));
@@ -345,10 +415,10 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
         };
     }
 
-    private AsyncFunction<NeverThrowsException, AuthStatus, AuthenticationException> onValidateFailure() {
-        return new AsyncFunction<NeverThrowsException, AuthStatus, AuthenticationException>() {
+    private AsyncFunction<NeverThrowsException, Outcome, AuthenticationException> onValidateFailure() {
+        return new AsyncFunction<NeverThrowsException, Outcome, AuthenticationException>() {
             @Override
-            public Promise<AuthStatus, AuthenticationException> apply(NeverThrowsException e) {
+            public Promise<Outcome, AuthenticationException> apply(NeverThrowsException e) {
                 //This can never happen but the exception handler is needed
                 // to change the types of the returned Promise.
                 throw new IllegalStateException(
@@ -357,27 +427,23 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
         };
     }
 
-    private Function<Response, AuthStatus, AuthenticationException> onUserResponse(final Subject clientSubject) {
-        return closeSilently(new Function<Response, AuthStatus, AuthenticationException>() {
+    private Function<Response, Outcome, AuthenticationException> onUserResponse() {
+        return closeSilently(new Function<Response, Outcome, AuthenticationException>() {
             @Override
-            public AuthStatus apply(Response response) throws AuthenticationException {
+            public Outcome apply(Response response) throws AuthenticationException {
                 if (!response.getStatus().isSuccessful()) {
                     try {
                         LOG.error("REST validation call returned non HTTP 200 response",
                                 response.getEntity().getString());
-                        return SEND_FAILURE;
+                        return Outcome.UNAVAILABLE;
                     } catch (IOException e) {
                         throw new AuthenticationException(e);
                     }
                 }
                 try {
                     JsonValue usersResponse = json(response.getEntity().getJson());
-                    handler.handle(new Callback[]{
-                        new CallerPrincipalCallback(clientSubject, usersResponse.get(openamUserAttribute)
-                                .get(0).asString())
-                    });
-                    return SUCCESS;
-                } catch (IOException | UnsupportedCallbackException e) {
+                    return Outcome.valid(usersResponse.get(openamUserAttribute).get(0).asString());
+                } catch (IOException e) {
                     throw new AuthenticationException(
                             new InternalServerErrorException(e.getMessage(), e));
                 }
@@ -385,7 +451,7 @@ public class OpenAMSessionModule implements AsyncServerAuthModule {
         });
     }
 
-    private Function<NeverThrowsException, AuthStatus, AuthenticationException> onUserRequestFailure() {
+    private Function<NeverThrowsException, Outcome, AuthenticationException> onUserRequestFailure() {
         //This can never happen but the exception handler is needed
         // to change the types of the returned Promise.
         return noopExceptionFunction();
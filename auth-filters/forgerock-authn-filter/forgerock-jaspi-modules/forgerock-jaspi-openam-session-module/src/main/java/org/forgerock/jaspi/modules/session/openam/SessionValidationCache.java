@@ -0,0 +1,236 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.openam;
+
+import static org.forgerock.caf.authentication.framework.AuthenticationFramework.LOG;
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forgerock.caf.authentication.api.AuthenticationException;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Function;
+import org.forgerock.util.Reject;
+import org.forgerock.util.crypto.Digests;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseCoalescer;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Validates SSO tokens on behalf of the {@link OpenAMSessionModule}, coalescing concurrent validations of the same
+ * token and optionally caching their outcome.
+ * <p>
+ * Requests presenting a token which is already being validated share the pending validation, rather than each
+ * making their own calls to OpenAM. This is always done, as it does not change which outcome a request sees.
+ * <p>
+ * When the cache is enabled, the definite outcomes of validations, valid or invalid, are kept for up to the maximum
+ * staleness, after which the token is validated again. If a stale-while-revalidate period is configured, an outcome
+ * older than the maximum staleness but still within that period is returned straight away while the token is
+ * validated again in the background. Outcomes which are not definite, such as OpenAM being unavailable, are never
+ * cached. Entries are keyed by a SHA-256 digest of the token, so the cache does not retain the tokens themselves,
+ * and the least recently used entry is evicted when the cache is full.
+ * <p>
+ * A cached outcome is used until it goes stale, so a session which is logged out or which expires in OpenAM is only
+ * noticed once its cached outcome is older than the maximum staleness, plus the stale-while-revalidate period.
+ */
+final class SessionValidationCache {
+
+    /** Validates an SSO token with OpenAM. */
+    interface Validator {
+        /**
+         * Validates the given SSO token.
+         *
+         * @param tokenId The SSO token id.
+         * @return A promise of the outcome of the validation.
+         */
+        Promise<Outcome, AuthenticationException> validate(String tokenId);
+    }
+
+    /** The outcome of the validation of an SSO token. */
+    static final class Outcome {
+        /** The token is not valid. */
+        static final Outcome INVALID = new Outcome(false, null, true);
+        /** The token could not be validated, for example because OpenAM returned an error. */
+        static final Outcome UNAVAILABLE = new Outcome(false, null, false);
+
+        private final boolean valid;
+        private final String principal;
+        private final boolean cacheable;
+
+        private Outcome(final boolean valid, final String principal, final boolean cacheable) {
+            this.valid = valid;
+            this.principal = principal;
+            this.cacheable = cacheable;
+        }
+
+        /**
+         * Returns the outcome of the validation of a valid token.
+         *
+         * @param principal The name of the principal the token belongs to.
+         * @return The outcome.
+         */
+        static Outcome valid(final String principal) {
+            return new Outcome(true, principal, true);
+        }
+
+        boolean isValid() {
+            return valid;
+        }
+
+        String getPrincipal() {
+            return principal;
+        }
+    }
+
+    private static final class CacheEntry {
+        private final Outcome outcome;
+        private final long validatedAt;
+
+        private CacheEntry(final Outcome outcome, final long validatedAt) {
+            this.outcome = outcome;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long maxStalenessMillis;
+    private final long staleWhileRevalidateMillis;
+    private final TimeService timeService;
+    private final Map<String, CacheEntry> cache;
+    private final PromiseCoalescer<String, Outcome, AuthenticationException> validations = new PromiseCoalescer<>();
+
+    /**
+     * Creates a new validation cache.
+     *
+     * @param maxSize The maximum number of outcomes to cache, or 0 to only coalesce concurrent validations.
+     * @param maxStalenessMillis The time for which an outcome is used without validating the token again.
+     * @param staleWhileRevalidateMillis The time after the maximum staleness during which a stale outcome is still
+     *                                   used while the token is validated again in the background, or 0.
+     * @param timeService The time service.
+     */
+    SessionValidationCache(final int maxSize, final long maxStalenessMillis, final long staleWhileRevalidateMillis,
+            final TimeService timeService) {
+        Reject.ifTrue(maxSize < 0, "The maximum cache size must not be negative");
+        Reject.ifTrue(maxStalenessMillis < 0, "The maximum staleness must not be negative");
+        Reject.ifTrue(staleWhileRevalidateMillis < 0, "The stale-while-revalidate period must not be negative");
+        this.maxSize = maxSize;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+        this.timeService = checkNotNull(timeService);
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+                return size() > SessionValidationCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the outcome of the validation of the given token, from the cache or from a pending validation of the
+     * same token if possible, and otherwise from a new validation made with the given validator.
+     *
+     * @param tokenId The SSO token id.
+     * @param validator The validator to use if the token has to be validated.
+     * @return A promise of the outcome of the validation.
+     */
+    Promise<Outcome, AuthenticationException> get(final String tokenId, final Validator validator) {
+        final String key = digest(tokenId);
+        if (isCacheEnabled()) {
+            final CacheEntry entry;
+            synchronized (cache) {
+                entry = cache.get(key);
+            }
+            if (entry != null) {
+                final long age = timeService.since(entry.validatedAt);
+                if (age <= maxStalenessMillis) {
+                    return newResultPromise(entry.outcome);
+                } else if (age <= maxStalenessMillis + staleWhileRevalidateMillis) {
+                    validate(key, tokenId, validator).thenOnException(new ExceptionHandler<AuthenticationException>() {
+                        @Override
+                        public void handleException(AuthenticationException e) {
+                            LOG.debug("Background revalidation of SSO Token failed", e);
+                        }
+                    });
+                    return newResultPromise(entry.outcome);
+                }
+            }
+        }
+        return validate(key, tokenId, validator);
+    }
+
+    /**
+     * Returns the number of outcomes in the cache, including any which are stale but have not been replaced yet.
+     *
+     * @return The number of cached outcomes.
+     */
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private boolean isCacheEnabled() {
+        return maxSize > 0 && (maxStalenessMillis > 0 || staleWhileRevalidateMillis > 0);
+    }
+
+    private Promise<Outcome, AuthenticationException> validate(final String key, final String tokenId,
+            final Validator validator) {
+        return validations.apply(key, new AsyncFunction<String, Outcome, AuthenticationException>() {
+            @Override
+            public Promise<Outcome, AuthenticationException> apply(final String digest) {
+                final long startedAt = timeService.now();
+                final Promise<Outcome, AuthenticationException> validation;
+                try {
+                    validation = validator.validate(tokenId);
+                } catch (RuntimeException e) {
+                    // For example, a token which cannot be part of a URI.
+                    return newExceptionPromise(new AuthenticationException(e));
+                }
+                // The outcome is cached before the validation stops being pending, so that it is never missed.
+                return validation
+                        .thenOnResult(new ResultHandler<Outcome>() {
+                            @Override
+                            public void handleResult(Outcome outcome) {
+                                if (isCacheEnabled() && outcome.cacheable) {
+                                    synchronized (cache) {
+                                        cache.put(digest, new CacheEntry(outcome, startedAt));
+                                    }
+                                }
+                            }
+                        })
+                        .thenCatchRuntimeException(new Function<RuntimeException, Outcome, AuthenticationException>() {
+                            @Override
+                            public Outcome apply(RuntimeException e) throws AuthenticationException {
+                                throw new AuthenticationException(e);
+                            }
+                        });
+            }
+        });
+    }
+
+    private static String digest(final String tokenId) {
+        return new String(Digests.sha256(tokenId), StandardCharsets.ISO_8859_1);
+    }
+}
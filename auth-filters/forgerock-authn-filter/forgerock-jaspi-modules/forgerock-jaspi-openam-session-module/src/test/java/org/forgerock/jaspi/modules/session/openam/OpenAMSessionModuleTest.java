@@ -25,9 +25,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.testng.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.TrustManager;
 import javax.security.auth.Subject;
@@ -50,6 +53,7 @@ import org.forgerock.util.Options;
 import org.forgerock.util.Pair;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
@@ -454,6 +458,10 @@ public class OpenAMSessionModuleTest {
     }
 
     private void initialise(final String openamDeploymentUrl) {
+        initialise(openamDeploymentUrl, new HashMap<String, Object>());
+    }
+
+    private void initialise(final String openamDeploymentUrl, final Map<String, Object> cacheOptions) {
         final MessagePolicy requestMessagePolicy = mock(MessagePolicy.class);
         final MessagePolicy responseMessagePolicy = mock(MessagePolicy.class);
         final CallbackHandler callbackHandler = mock(CallbackHandler.class);
@@ -467,6 +475,7 @@ public class OpenAMSessionModuleTest {
         options.put("truststorePassword", "TRUST_STORE_PASSWORD");
 
         options.put("trustManagerAlgorithm", "TRUST_MANAGER_ALGORITHM");
+        options.putAll(cacheOptions);
 
         sessionModule.initialize(requestMessagePolicy, responseMessagePolicy, callbackHandler, options);
     }
@@ -731,6 +740,132 @@ public class OpenAMSessionModuleTest {
         verifyZeroInteractions(messageInfo, httpHandler);
     }
 
+    @Test
+    public void validateRequestShouldShareConcurrentValidationsOfTheSameSsoToken() throws Exception {
+
+        //Given
+        final StubOpenAM openam = new StubOpenAM();
+        httpHandler = openam;
+        initialise();
+        final List<Promise<AuthStatus, AuthenticationException>> authStatuses = new ArrayList<>();
+
+        //When
+        for (int i = 0; i < 40; i++) {
+            authStatuses.add(sessionModule.validateRequest(messageInfoWithSsoToken(), new Subject(), new Subject()));
+        }
+        openam.release();
+
+        //Then
+        for (Promise<AuthStatus, AuthenticationException> authStatus : authStatuses) {
+            assertEquals(authStatus.getOrThrowUninterruptibly(), AuthStatus.SUCCESS);
+        }
+        assertEquals(openam.validateCalls.get(), 1);
+        assertEquals(openam.usersCalls.get(), 1);
+    }
+
+    @Test
+    public void validateRequestShouldUseCachedValidationWhenSessionCacheEnabled() throws Exception {
+
+        //Given
+        final StubOpenAM openam = new StubOpenAM();
+        openam.release();
+        httpHandler = openam;
+        final Map<String, Object> cacheOptions = new HashMap<>();
+        cacheOptions.put(OpenAMSessionModule.SESSION_CACHE_SIZE_KEY, "100");
+        initialise("https://OPENAM_DEPLOYMENT_URI/", cacheOptions);
+
+        //When
+        for (int i = 0; i < 40; i++) {
+            final AuthStatus authStatus = sessionModule.validateRequest(messageInfoWithSsoToken(), new Subject(),
+                    new Subject()).getOrThrowUninterruptibly();
+            assertEquals(authStatus, AuthStatus.SUCCESS);
+        }
+
+        //Then
+        assertEquals(openam.validateCalls.get(), 1);
+        assertEquals(openam.usersCalls.get(), 1);
+    }
+
+    @Test
+    public void validateRequestShouldNotCacheFailedRestCalls() throws Exception {
+
+        //Given
+        final Map<String, Object> cacheOptions = new HashMap<>();
+        cacheOptions.put(OpenAMSessionModule.SESSION_CACHE_SIZE_KEY, "100");
+        initialise("https://OPENAM_DEPLOYMENT_URI/", cacheOptions);
+        given(httpHandler.handle(any(Context.class), any(Request.class)))
+                .willReturn(newResultPromise(new Response(Status.BAD_REQUEST)));
+
+        //When
+        sessionModule.validateRequest(messageInfoWithSsoToken(), new Subject(), new Subject())
+                .getOrThrowUninterruptibly();
+        final AuthStatus authStatus = sessionModule.validateRequest(messageInfoWithSsoToken(), new Subject(),
+                new Subject()).getOrThrowUninterruptibly();
+
+        //Then
+        assertEquals(authStatus, AuthStatus.SEND_FAILURE);
+        verify(httpHandler, times(2)).handle(any(Context.class), any(Request.class));
+    }
+
+    private MessageInfoContext messageInfoWithSsoToken() {
+        final MessageInfoContext messageInfo = mock(MessageInfoContext.class);
+        final Request request = new Request();
+        request.getHeaders().put("OPENAM_SSO_TOKEN_COOKIE_NAME", "SSO_TOKEN_ID");
+        given(messageInfo.getRequest()).willReturn(request);
+        return messageInfo;
+    }
+
+    /** Answers like OpenAM for a valid session, holding its responses back until it is released. */
+    private static final class StubOpenAM implements Handler {
+        private final AtomicInteger validateCalls = new AtomicInteger();
+        private final AtomicInteger usersCalls = new AtomicInteger();
+        private final List<PromiseImpl<Response, NeverThrowsException>> held = new ArrayList<>();
+        private final List<Request> heldRequests = new ArrayList<>();
+        private boolean released;
+
+        @Override
+        public Promise<Response, NeverThrowsException> handle(Context context, Request request) {
+            final PromiseImpl<Response, NeverThrowsException> response = PromiseImpl.create();
+            synchronized (this) {
+                if (!released) {
+                    held.add(response);
+                    heldRequests.add(request);
+                    return response;
+                }
+            }
+            respond(request, response);
+            return response;
+        }
+
+        private void release() {
+            final List<PromiseImpl<Response, NeverThrowsException>> responses;
+            final List<Request> requests;
+            synchronized (this) {
+                released = true;
+                responses = new ArrayList<>(held);
+                requests = new ArrayList<>(heldRequests);
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                respond(requests.get(i), responses.get(i));
+            }
+        }
+
+        private void respond(Request request, PromiseImpl<Response, NeverThrowsException> response) {
+            final String uri = request.getUri().toString();
+            if (uri.equals("https://OPENAM_DEPLOYMENT_URI/json/sessions/SSO_TOKEN_ID?_action=validate")) {
+                validateCalls.incrementAndGet();
+                response.handleResult(new Response(Status.OK).setEntity(object(field("valid", true),
+                        field("uid", "UID"), field("realm", "/REALM"))));
+            } else if (uri.equals("https://OPENAM_DEPLOYMENT_URI/json/REALM/users/UID?_fields=OPENAM_USER_ATTRIBUTE")) {
+                usersCalls.incrementAndGet();
+                response.handleResult(new Response(Status.OK).setEntity(
+                        object(field("OPENAM_USER_ATTRIBUTE", array("VALUE")))));
+            } else {
+                response.handleResult(new Response(Status.NOT_FOUND));
+            }
+        }
+    }
+
     private void mockHttpRequests(final Pair<String, JsonValue>... requests) {
         given(httpHandler.handle(any(Context.class), any(Request.class)))
                 .willAnswer(new Answer<Promise<Response, NeverThrowsException>>() {
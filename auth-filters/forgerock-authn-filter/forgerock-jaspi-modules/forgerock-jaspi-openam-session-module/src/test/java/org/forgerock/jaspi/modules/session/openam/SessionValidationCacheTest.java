@@ -0,0 +1,277 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.openam;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.caf.authentication.api.AuthenticationException;
+import org.forgerock.jaspi.modules.session.openam.SessionValidationCache.Outcome;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SessionValidationCacheTest {
+
+    private static final long MAX_STALENESS = 10000L;
+    private static final long STALE_WHILE_REVALIDATE = 20000L;
+
+    private StubTimeService time;
+    private StubValidator validator;
+
+    @BeforeMethod
+    public void setup() {
+        time = new StubTimeService();
+        validator = new StubValidator();
+    }
+
+    @Test
+    public void shouldSharePendingValidationOfTheSameToken() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(0, MAX_STALENESS, 0L, time);
+        validator.hold = true;
+
+        // when
+        final Promise<Outcome, AuthenticationException> first = cache.get("TOKEN", validator);
+        final Promise<Outcome, AuthenticationException> second = cache.get("TOKEN", validator);
+        final Promise<Outcome, AuthenticationException> other = cache.get("OTHER_TOKEN", validator);
+        validator.release(Outcome.valid("demo"));
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+        assertThat(first.get().getPrincipal()).isEqualTo("demo");
+        assertThat(validator.calls).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldValidateAgainOncePendingValidationHasCompletedWhenCacheIsDisabled() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(0, MAX_STALENESS, 0L, time);
+
+        // when
+        cache.get("TOKEN", validator).get();
+        cache.get("TOKEN", validator).get();
+
+        // then
+        assertThat(validator.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldUseCachedOutcomeUntilItIsStale() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(10, MAX_STALENESS, 0L, time);
+        cache.get("TOKEN", validator).get();
+
+        // when
+        time.now += MAX_STALENESS;
+        final Outcome cached = cache.get("TOKEN", validator).get();
+        time.now += 1;
+        final Outcome validated = cache.get("TOKEN", validator).get();
+
+        // then
+        assertThat(cached.isValid()).isTrue();
+        assertThat(validated.isValid()).isTrue();
+        assertThat(validator.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCacheInvalidOutcomes() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(10, MAX_STALENESS, 0L, time);
+        validator.outcome = Outcome.INVALID;
+
+        // when
+        cache.get("TOKEN", validator).get();
+        final Outcome outcome = cache.get("TOKEN", validator).get();
+
+        // then
+        assertThat(outcome.isValid()).isFalse();
+        assertThat(validator.calls).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCacheUnavailableOutcomes() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(10, MAX_STALENESS, 0L, time);
+        validator.outcome = Outcome.UNAVAILABLE;
+
+        // when
+        cache.get("TOKEN", validator).get();
+        cache.get("TOKEN", validator).get();
+
+        // then
+        assertThat(validator.calls).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotCacheFailures() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(10, MAX_STALENESS, 0L, time);
+        validator.outcome = null;
+        AuthenticationException failure = null;
+        try {
+            cache.get("TOKEN", validator).getOrThrow();
+        } catch (AuthenticationException e) {
+            failure = e;
+        }
+        validator.outcome = Outcome.valid("demo");
+
+        // when
+        final Outcome outcome = cache.get("TOKEN", validator).getOrThrow();
+
+        // then
+        assertThat(failure).isNotNull();
+        assertThat(outcome.isValid()).isTrue();
+        assertThat(validator.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldServeStaleOutcomeWhileRevalidatingInBackground() throws Exception {
+        // given
+        final SessionValidationCache cache =
+                new SessionValidationCache(10, MAX_STALENESS, STALE_WHILE_REVALIDATE, time);
+        cache.get("TOKEN", validator).get();
+        time.now += MAX_STALENESS + 1;
+        validator.hold = true;
+
+        // when
+        final Outcome stale = cache.get("TOKEN", validator).get();
+        final Outcome staleAgain = cache.get("TOKEN", validator).get();
+        validator.release(Outcome.INVALID);
+        final Outcome revalidated = cache.get("TOKEN", validator).get();
+
+        // then
+        assertThat(stale.isValid()).isTrue();
+        assertThat(staleAgain.isValid()).isTrue();
+        assertThat(revalidated.isValid()).isFalse();
+        assertThat(validator.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldWaitForValidationOnceStaleWhileRevalidatePeriodHasElapsed() throws Exception {
+        // given
+        final SessionValidationCache cache =
+                new SessionValidationCache(10, MAX_STALENESS, STALE_WHILE_REVALIDATE, time);
+        cache.get("TOKEN", validator).get();
+        time.now += MAX_STALENESS + STALE_WHILE_REVALIDATE + 1;
+        validator.hold = true;
+
+        // when
+        final Promise<Outcome, AuthenticationException> outcome = cache.get("TOKEN", validator);
+
+        // then
+        assertThat(outcome.isDone()).isFalse();
+        validator.release(Outcome.INVALID);
+        assertThat(outcome.get().isValid()).isFalse();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedOutcome() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(2, MAX_STALENESS, 0L, time);
+        cache.get("TOKEN1", validator).get();
+        cache.get("TOKEN2", validator).get();
+        cache.get("TOKEN1", validator).get();
+
+        // when
+        cache.get("TOKEN3", validator).get();
+        cache.get("TOKEN1", validator).get();
+        cache.get("TOKEN2", validator).get();
+
+        // then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(validator.calls).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldFailAndNotKeepPendingValidationOfMalformedToken() throws Exception {
+        // given
+        final SessionValidationCache cache = new SessionValidationCache(10, MAX_STALENESS, 0L, time);
+
+        // when
+        final Promise<Outcome, AuthenticationException> first = cache.get("MALFORMED TOKEN", validator);
+        final Promise<Outcome, AuthenticationException> second = cache.get("MALFORMED TOKEN", validator);
+
+        // then
+        assertThat(first.isDone()).isTrue();
+        assertThat(second).isNotSameAs(first);
+        assertThat(validator.calls).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(0);
+        try {
+            first.getOrThrow();
+            failBecauseExceptionWasNotThrown(AuthenticationException.class);
+        } catch (AuthenticationException e) {
+            assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static final class StubTimeService implements TimeService {
+        private long now = 1000000L;
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public long since(long past) {
+            return now - past;
+        }
+    }
+
+    /** Counts the validations, and holds them back until released if asked to. */
+    private static final class StubValidator implements SessionValidationCache.Validator {
+        private final List<PromiseImpl<Outcome, AuthenticationException>> held = new ArrayList<>();
+        private Outcome outcome = Outcome.valid("demo");
+        private boolean hold;
+        private int calls;
+
+        @Override
+        public Promise<Outcome, AuthenticationException> validate(String tokenId) {
+            calls++;
+            // Like building the OpenAM request URI would.
+            URI.create("http://openam.example.com/json/sessions/" + tokenId);
+            if (hold) {
+                final PromiseImpl<Outcome, AuthenticationException> promise = PromiseImpl.create();
+                held.add(promise);
+                return promise;
+            } else if (outcome == null) {
+                return newExceptionPromise(new AuthenticationException("OpenAM is unavailable"));
+            }
+            return newResultPromise(outcome);
+        }
+
+        private void release(Outcome outcome) {
+            hold = false;
+            for (PromiseImpl<Outcome, AuthenticationException> promise : held) {
+                promise.handleResult(outcome);
+            }
+            held.clear();
+        }
+    }
+}
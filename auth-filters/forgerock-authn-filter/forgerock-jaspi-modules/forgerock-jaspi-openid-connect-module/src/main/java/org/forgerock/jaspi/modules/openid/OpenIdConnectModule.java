@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014-2015 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 
 package org.forgerock.jaspi.modules.openid;
@@ -48,11 +48,13 @@ import org.forgerock.jaspi.modules.openid.resolvers.service.OpenIdResolverServic
 import org.forgerock.jaspi.modules.openid.resolvers.service.OpenIdResolverServiceConfiguratorImpl;
 import org.forgerock.jaspi.modules.openid.resolvers.service.OpenIdResolverServiceImpl;
 import org.forgerock.json.jose.common.JwtReconstruction;
+import org.forgerock.json.jose.common.VerifiedJwtCache;
 import org.forgerock.json.jose.exceptions.InvalidJwtException;
 import org.forgerock.json.jose.exceptions.JwtReconstructionException;
 import org.forgerock.json.jose.jws.SignedJwt;
 import org.forgerock.json.jose.jwt.JwtClaimsSet;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
 
 /**
  * OpenID Connect module that allows access when a valid OpenID Connect JWT which
@@ -70,6 +72,16 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
      */
     private static final int DEFAULT_CONN_TIMEOUT = 5_000;
 
+    /**
+     * Default maximum number of verified JWTs to cache, which disables the cache.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 0;
+
+    /**
+     * Default maximum time for which a verified JWT is cached.
+     */
+    private static final String DEFAULT_CACHE_MAX_AGE = "5 minutes";
+
     /**
      * Lookup key for the configured HTTP connection's read timeout for this module.
      */
@@ -90,6 +102,19 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
      */
     public static final String RESOLVERS_KEY = "resolvers";
 
+    /**
+     * Lookup key for the configured maximum number of verified JWTs which this module caches, so that a JWT
+     * presented again is not verified again. The cache is disabled by default. Only enable it when the verification
+     * keys of the issuers are not expected to be revoked within the configured maximum age.
+     */
+    public static final String CACHE_SIZE_KEY = "verifiedJwtCacheSize";
+
+    /**
+     * Lookup key for the configured maximum time for which a verified JWT is cached, such as "5 minutes". JWTs are
+     * never cached past their expiration time.
+     */
+    public static final String CACHE_MAX_AGE_KEY = "verifiedJwtCacheMaxAge";
+
     private final JwtReconstruction constructor;
     private final OpenIdResolverServiceConfigurator serviceConfigurator;
 
@@ -99,6 +124,8 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
 
     private CallbackHandler callbackHandler;
 
+    private VerifiedJwtCache verifiedJwts;
+
     /**
      * Default constructor.
      */
@@ -125,6 +152,23 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
         this.openIdConnectHeader = openIdConnectHeader;
     }
 
+    /**
+     * Used for tests.
+     *
+     * @param serviceConfigurator Configurator device for setting up our resolver service
+     * @param constructor Builder for creating our JWTs out of their representation
+     * @param verifiedJwts Cache of the JWTs which have already been verified
+     */
+    OpenIdConnectModule(final OpenIdResolverServiceConfigurator serviceConfigurator,
+                        final JwtReconstruction constructor,
+                        final OpenIdResolverService service,
+                        final CallbackHandler callback,
+                        final String openIdConnectHeader,
+                        final VerifiedJwtCache verifiedJwts) {
+        this(serviceConfigurator, constructor, service, callback, openIdConnectHeader);
+        this.verifiedJwts = verifiedJwts;
+    }
+
     @Override
     public String getModuleId() {
         return "OpenIdConnect";
@@ -142,6 +186,8 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
 
         Integer readTimeout = (Integer) config.get(OpenIdConnectModule.READ_TIMEOUT_KEY);
         Integer connTimeout = (Integer) config.get(OpenIdConnectModule.CONNECTION_TIMEOUT_KEY);
+        Integer cacheSize = (Integer) config.get(OpenIdConnectModule.CACHE_SIZE_KEY);
+        String cacheMaxAge = (String) config.get(OpenIdConnectModule.CACHE_MAX_AGE_KEY);
 
         if (openIdConnectHeader == null || openIdConnectHeader.isEmpty()) {
             LOG.debug("OpenIdConnectModule config is invalid. You must include the header key parameter");
@@ -158,6 +204,22 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
             connTimeout = DEFAULT_CONN_TIMEOUT;
         }
 
+        if (cacheSize == null || cacheSize < 0) {
+            LOG.debug("Verified JWT cache size setting invalid, set to default: {}", DEFAULT_CACHE_SIZE);
+            cacheSize = DEFAULT_CACHE_SIZE;
+        }
+
+        if (cacheMaxAge == null) {
+            cacheMaxAge = DEFAULT_CACHE_MAX_AGE;
+        }
+
+        try {
+            verifiedJwts = cacheSize > 0 ? new VerifiedJwtCache(cacheSize, Duration.duration(cacheMaxAge)) : null;
+        } catch (IllegalArgumentException e) {
+            LOG.debug("OpenIdConnectModule config is invalid. Invalid verified JWT cache max age: {}", cacheMaxAge);
+            return newExceptionPromise(new AuthenticationException("OpenIdConnectModule configuration is invalid."));
+        }
+
         final List<Map<String, String>> resolvers =
                 (List<Map<String, String>>) config.get(OpenIdConnectModule.RESOLVERS_KEY);
 
@@ -221,16 +283,39 @@ public class OpenIdConnectModule implements AsyncServerAuthModule {
             return newResultPromise(SEND_FAILURE);
         }
 
+        final List<Object> keyIdentity = verifiedJwts != null ? verificationKeyIdentity(resolver, retrievedJwt) : null;
+        if (keyIdentity != null && verifiedJwts.get(jwtValue, keyIdentity, SignedJwt.class) != null) {
+            return setCallerPrincipal(clientSubject, jwtClaimSet.getSubject());
+        }
+
         try {
             resolver.validateIdentity(retrievedJwt);
-
-            callbackHandler.handle(new Callback[]{
-                new CallerPrincipalCallback(clientSubject, jwtClaimSet.getSubject())
-            });
-
         } catch (OpenIdConnectVerificationException oice) {
             LOG.debug("Unable to validate authenticated identity from JWT.", oice);
             return newResultPromise(SEND_FAILURE);
+        }
+
+        if (keyIdentity != null) {
+            verifiedJwts.put(jwtValue, keyIdentity, retrievedJwt);
+        }
+
+        return setCallerPrincipal(clientSubject, jwtClaimSet.getSubject());
+    }
+
+    /**
+     * Identifies the key which verifies the given JWT: the resolver of its issuer, which holds the public key or
+     * shared secret of the issuer, or its JWK set, and the ID of the key in that set. The resolvers are created
+     * again when the module is re-initialised, which discards the JWTs verified with the previous configuration.
+     */
+    private static List<Object> verificationKeyIdentity(OpenIdResolver resolver, SignedJwt jwt) {
+        return Arrays.<Object>asList(resolver, jwt.getHeader().getKeyId());
+    }
+
+    private Promise<AuthStatus, AuthenticationException> setCallerPrincipal(Subject clientSubject, String subject) {
+        try {
+            callbackHandler.handle(new Callback[]{
+                new CallerPrincipalCallback(clientSubject, subject)
+            });
         } catch (IOException | UnsupportedCallbackException e) {
             LOG.debug("Error setting user principal", e);
             return newExceptionPromise(new AuthenticationException(e.getMessage()));
@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014-2015 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 
 package org.forgerock.jaspi.modules.openid.helpers;
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.security.Key;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.forgerock.jaspi.modules.openid.exceptions.FailedToLoadJWKException;
 import org.forgerock.json.jose.jwk.JWK;
@@ -75,8 +76,22 @@ public class JWKSetParser {
      * @throws FailedToLoadJWKException If there are problems connecting to or parsing the response
      */
     public Map<String, Key> generateMapFromJWK(URL url) throws FailedToLoadJWKException {
+        return generateMapFromJWK(url, null);
+    }
+
+    /**
+     * Provides a Map of KeyId:Keys as indicated by the JWKSet's URL, along with the headers of the HTTP response so
+     * that the caller can work out for how long the keys may be cached.
+     *
+     * @param url The URL from which to gather the JWKSet
+     * @param responseHeaders map to which the HTTP response headers are added, or {@code null}
+     * @return a map of currently valid KeyId:Keys for the provider associated with this URL
+     * @throws FailedToLoadJWKException If there are problems connecting to or parsing the response
+     */
+    public Map<String, Key> generateMapFromJWK(URL url, Map<String, List<String>> responseHeaders)
+            throws FailedToLoadJWKException {
         //gather
-        final String jwksContents = gatherHttpContents(url);
+        final String jwksContents = gatherHttpContents(url, responseHeaders);
 
         //unmarshall
         final JWKSet jwkSet = JWKSet.parse(jwksContents);
@@ -89,14 +104,18 @@ public class JWKSetParser {
      * Uses the SimpleHTTPClient to gather HTTP information.
      *
      * @param url The URL from which to read the information
+     * @param responseHeaders map to which the HTTP response headers are added, or {@code null}
      * @return a String containing the returned JSON
      * @throws FailedToLoadJWKException If there are problems connecting to the URL
      */
-    private String gatherHttpContents(URL url) throws FailedToLoadJWKException {
+    private String gatherHttpContents(URL url, Map<String, List<String>> responseHeaders)
+            throws FailedToLoadJWKException {
         final String jwksContents;
 
         try {
-            jwksContents = simpleHTTPClient.get(url);
+            jwksContents = responseHeaders == null
+                    ? simpleHTTPClient.get(url)
+                    : simpleHTTPClient.get(url, responseHeaders);
         } catch (IOException e) {
             throw new FailedToLoadJWKException("Unable to load the JWK location over HTTP", e);
         }
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Simple helper client for connecting to URLs over HTTP
@@ -72,6 +74,18 @@ public class SimpleHTTPClient {
      * @throws java.io.IOException If there are any problems connecting to or gathering the contents of the page
      */
     public String get(final URL url) throws IOException {
+        return get(url, null);
+    }
+
+    /**
+     * Utility method for gathering the contents of an HTTP page, along with the headers of the response.
+     *
+     * @param url from which to attempt to retrieve the contents
+     * @param responseHeaders map to which the response headers are added, or {@code null}
+     * @return The contents of the provided url
+     * @throws java.io.IOException If there are any problems connecting to or gathering the contents of the page
+     */
+    public String get(final URL url, final Map<String, List<String>> responseHeaders) throws IOException {
         final URLConnection conn = url.openConnection();
 
         if (readTimeout >= 0) {
@@ -95,6 +109,10 @@ public class SimpleHTTPClient {
             }
         }
 
+        if (responseHeaders != null) {
+            responseHeaders.putAll(conn.getHeaderFields());
+        }
+
         return sb.toString();
     }
 
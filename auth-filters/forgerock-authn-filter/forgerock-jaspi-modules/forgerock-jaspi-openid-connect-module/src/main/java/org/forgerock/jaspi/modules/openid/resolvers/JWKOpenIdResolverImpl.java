@@ -17,42 +17,61 @@
 package org.forgerock.jaspi.modules.openid.resolvers;
 
 import static org.forgerock.caf.authentication.framework.AuthenticationFramework.LOG;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
 
+import java.io.IOException;
 import java.net.URL;
-import java.security.Key;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.jaspi.modules.openid.exceptions.FailedToLoadJWKException;
 import org.forgerock.jaspi.modules.openid.exceptions.InvalidSignatureException;
 import org.forgerock.jaspi.modules.openid.exceptions.OpenIdConnectVerificationException;
 import org.forgerock.jaspi.modules.openid.helpers.JWKSetParser;
 import org.forgerock.jaspi.modules.openid.helpers.SimpleHTTPClient;
+import org.forgerock.json.jose.jwk.JWKSetStore;
 import org.forgerock.json.jose.jws.SignedJwt;
-import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
 
 /**
  * This class exists to allow Open Id Providers to supply or promote a JWK exposure point for
  * their public keys. We convert the exposed keys they provide according to the algorithm
- * defined by their JWK and offer their keys in a map key'd on their keyId.
+ * defined by their JWK and offer their keys in a {@link JWKSetStore} key'd on their keyId.
  *
- * The map of keys is loaded on construction, and reloaded each time an Open Id token is
- * passed in to this resolver whose keyId does not exist within the list that we currently have.
- *
- * This means that we will cache the keys for as long as they are valid, and as soon as we
- * receive a request to verify using a key which we don't have we discard our current keys and
- * re-fill our map.
+ * The keys are loaded on construction, and reloaded in the background before the Cache-Control or
+ * Expires headers of the JWK set say they expire, or before {@link #DEFAULT_MAX_AGE} if the headers
+ * do not say, so that rotated keys are picked up before tokens are signed with them. They are also
+ * reloaded when an Open Id token is passed in to this resolver whose keyId does not exist within the
+ * keys that we currently have. Reloads caused by unknown keyIds happen at most once every
+ * {@link #MIN_REFRESH_INTERVAL}, so that tokens with bogus keyIds cannot cause a reload for each token.
  */
 public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
 
-    private final SigningManager signingManager;
+    /**
+     * The minimum time between two reloads of the JWK set caused by unknown keyIds.
+     */
+    static final Duration MIN_REFRESH_INTERVAL = Duration.duration(30L, TimeUnit.SECONDS);
 
-    private final URL jwkUrl;
+    /**
+     * The time for which the keys are used when the JWK set response has no caching headers.
+     */
+    static final Duration DEFAULT_MAX_AGE = Duration.duration(1L, TimeUnit.HOURS);
+
+    private static final String CACHE_CONTROL = "Cache-Control";
 
-    private final Map<String, Key> keyMap = new HashMap<>();
+    private static final String EXPIRES = "Expires";
+
+    private final URL jwkUrl;
 
     private final JWKSetParser jwkParser;
 
+    private final JWKSetStore keyStore;
+
     /**
      * Constructor using provided timeout values to generate the
      * {@link SimpleHTTPClient} used for communicating over HTTP.
@@ -67,9 +86,9 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
                                  final int connTimeout) throws FailedToLoadJWKException {
         super(issuer);
 
-        this.signingManager = new SigningManager();
         jwkParser = new JWKSetParser(readTimeout, connTimeout);
         this.jwkUrl = jwkUrl;
+        this.keyStore = newKeyStore();
 
         try {
             reloadKeys();
@@ -91,9 +110,9 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
             throws FailedToLoadJWKException {
         super(issuer);
 
-        this.signingManager = new SigningManager();
         jwkParser = new JWKSetParser(httpClient);
         this.jwkUrl = jwkUrl;
+        this.keyStore = newKeyStore();
 
         try {
             reloadKeys();
@@ -114,9 +133,9 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
             throws FailedToLoadJWKException {
         super(issuer);
 
-        this.signingManager = new SigningManager();
         this.jwkParser = jwkParser;
         this.jwkUrl = jwkUrl;
+        this.keyStore = newKeyStore();
 
         try {
             reloadKeys();
@@ -145,16 +164,15 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
     public void verifySignature(final SignedJwt idClaim) throws InvalidSignatureException,
             FailedToLoadJWKException {
 
-        final Key key;
+        final SigningHandler signingHandler;
 
-        synchronized (keyMap) {
-            if (!keyMap.containsKey(idClaim.getHeader().getKeyId())) {
-                reloadKeys();
-            }
+        try {
+            signingHandler = keyStore.getSigningHandler(idClaim.getHeader().getKeyId());
+        } catch (IOException e) {
+            throw new FailedToLoadJWKException("Unable to load the JWK set", e);
         }
 
-        key = keyMap.get(idClaim.getHeader().getKeyId());
-        if (key == null || !idClaim.verify(createSigningHandlerForKey(signingManager, key))) {
+        if (signingHandler == null || !idClaim.verify(signingHandler)) {
             LOG.debug("JWS unable to be verified");
             throw new InvalidSignatureException("JWS unable to be verified");
         }
@@ -167,10 +185,37 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
      * @throws FailedToLoadJWKException if there were issues parsing the supplied URL
      */
     private void reloadKeys() throws FailedToLoadJWKException {
-        synchronized (keyMap) {
-            keyMap.clear();
-            keyMap.putAll(jwkParser.generateMapFromJWK(jwkUrl));
+        try {
+            keyStore.refresh();
+        } catch (IOException e) {
+            throw new FailedToLoadJWKException("Unable to load the JWK set", e);
+        }
+    }
+
+    private JWKSetStore newKeyStore() {
+        return new JWKSetStore(new JWKSetStore.Loader() {
+            @Override
+            public Promise<JWKSetStore.LoadedKeys, IOException> load() {
+                // The ID tokens are verified synchronously, so the JWK set is read by the verifying thread.
+                final Map<String, List<String>> headers = new HashMap<>();
+                try {
+                    return newResultPromise(new JWKSetStore.LoadedKeys(jwkParser.generateMapFromJWK(jwkUrl, headers),
+                            JWKSetStore.parseMaxAge(getHeader(headers, CACHE_CONTROL), getHeader(headers, EXPIRES),
+                                    System.currentTimeMillis())));
+                } catch (FailedToLoadJWKException e) {
+                    return newExceptionPromise(new IOException(e.getMessage(), e));
+                }
+            }
+        }, DEFAULT_MAX_AGE, MIN_REFRESH_INTERVAL);
+    }
+
+    private static String getHeader(final Map<String, List<String>> headers, final String name) {
+        for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
         }
+        return null;
     }
 
 }
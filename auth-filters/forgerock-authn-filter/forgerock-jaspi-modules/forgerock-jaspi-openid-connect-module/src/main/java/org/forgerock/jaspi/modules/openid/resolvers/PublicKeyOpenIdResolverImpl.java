@@ -24,6 +24,7 @@ import org.forgerock.jaspi.modules.openid.exceptions.InvalidSignatureException;
 import org.forgerock.jaspi.modules.openid.exceptions.OpenIdConnectVerificationException;
 import org.forgerock.json.jose.jws.SignedJwt;
 import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
 
 /**
  * This class exists to allow functionality for those Open ID Connect providers which
@@ -33,9 +34,8 @@ import org.forgerock.json.jose.jws.SigningManager;
  */
 public class PublicKeyOpenIdResolverImpl extends BaseOpenIdResolver {
 
-    private final SigningManager signingManager;
-
-    private final PublicKey key;
+    /** Built once, as the handler keeps signatures initialised with the key across verifications. */
+    private final SigningHandler signingHandler;
 
     /**
      * Constructor for PublicKeyOpenIdResolverImpl.
@@ -46,8 +46,7 @@ public class PublicKeyOpenIdResolverImpl extends BaseOpenIdResolver {
     public PublicKeyOpenIdResolverImpl(String issuer, PublicKey key) {
         super(issuer);
 
-        signingManager = new SigningManager();
-        this.key = key;
+        signingHandler = createSigningHandlerForKey(new SigningManager(), key);
     }
 
     /**
@@ -67,7 +66,7 @@ public class PublicKeyOpenIdResolverImpl extends BaseOpenIdResolver {
      * @throws InvalidSignatureException If the JWS supplied does not match the key for this resolver
      */
     public void verifySignature(final SignedJwt idClaim) throws InvalidSignatureException {
-        if (!idClaim.verify(createSigningHandlerForKey(signingManager, key))) {
+        if (!idClaim.verify(signingHandler)) {
             LOG.debug("JWS signature not signed with supplied key");
             throw new InvalidSignatureException("JWS signature not signed with supplied key");
         }
@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014-2015 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 
 package org.forgerock.jaspi.modules.openid.resolvers;
@@ -24,19 +24,19 @@ import org.forgerock.jaspi.modules.openid.exceptions.InvalidSignatureException;
 import org.forgerock.jaspi.modules.openid.exceptions.OpenIdConnectVerificationException;
 import org.forgerock.json.jose.jws.SignedJwt;
 import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
 
 /**
  * This class exists to allow functionality for those Open ID Connect providers which
  * supply their signatures through symmetric key algorithms (e.g. HMAC). In these cases
  * we want to use the shared secret (known to both the provider and client) such that we can
  * generate a "private key". We do this using the SecretKeySpec call in
- * {@link SharedSecretOpenIdResolverImpl#verifySignature}.
+ * {@link SharedSecretOpenIdResolverImpl#SharedSecretOpenIdResolverImpl(String, String)}.
  */
 public class SharedSecretOpenIdResolverImpl extends BaseOpenIdResolver {
 
-    private final SigningManager signingManager;
-
-    private final String sharedSecret;
+    /** Built once, as the handler keeps MACs initialised with the secret across verifications. */
+    private final SigningHandler signingHandler;
 
     /**
      * Constructor for SharedSecretOpenIdResolverImpl.
@@ -48,12 +48,11 @@ public class SharedSecretOpenIdResolverImpl extends BaseOpenIdResolver {
     public SharedSecretOpenIdResolverImpl(String issuer, String sharedSecret) {
         super(issuer);
 
-        signingManager = new SigningManager();
         if (sharedSecret == null) {
             throw new IllegalArgumentException("sharedSecret must not be null.");
         }
 
-        this.sharedSecret = sharedSecret;
+        signingHandler = new SigningManager().newHmacSigningHandler(sharedSecret.getBytes(Charset.forName("UTF-8")));
     }
 
     /**
@@ -72,7 +71,7 @@ public class SharedSecretOpenIdResolverImpl extends BaseOpenIdResolver {
      * @throws InvalidSignatureException If the JWS supplied does not match the key for this resolver
      */
     public void verifySignature(final SignedJwt idClaim) throws InvalidSignatureException {
-        if (!idClaim.verify(signingManager.newHmacSigningHandler(sharedSecret.getBytes(Charset.forName("UTF-8"))))) {
+        if (!idClaim.verify(signingHandler)) {
             LOG.debug("JWS signature not signed with supplied key");
             throw new InvalidSignatureException("JWS signature not signed with supplied key");
         }
@@ -20,7 +20,6 @@ import static org.forgerock.caf.authentication.framework.AuthenticationFramework
 
 import java.io.FileNotFoundException;
 import java.net.URL;
-import java.security.KeyStore;
 import java.security.PublicKey;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -28,10 +27,10 @@ import java.util.concurrent.ConcurrentMap;
 import org.forgerock.jaspi.modules.openid.exceptions.FailedToLoadJWKException;
 import org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolver;
 import org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolverFactory;
-import org.forgerock.security.keystore.KeyStoreBuilder;
-import org.forgerock.security.keystore.KeyStoreManager;
+import org.forgerock.security.keystore.KeyStoreRegistry;
 import org.forgerock.security.keystore.KeyStoreType;
 import org.forgerock.security.keystore.KeystoreManagerException;
+import org.forgerock.security.keystore.ManagedKeyStore;
 import org.forgerock.util.Utils;
 
 /**
@@ -42,6 +41,10 @@ import org.forgerock.util.Utils;
  *
  * This service stores {@link org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolver}s against their issuer key,
  * so the appropriate {@link org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolver} can be looked up.
+ *
+ * The keystores holding the public keys of the issuers are loaded through a {@link KeyStoreRegistry} owned by this
+ * service, which reloads them when their files change. The resolvers of the issuers are then created again with the
+ * new public keys, and an issuer whose key is no longer in the keystore no longer has a resolver.
  */
 public class OpenIdResolverServiceImpl implements OpenIdResolverService {
 
@@ -51,6 +54,7 @@ public class OpenIdResolverServiceImpl implements OpenIdResolverService {
     private final int connTimeout;
 
     private final OpenIdResolverFactory openIdResolverFactory;
+    private final KeyStoreRegistry keyStoreRegistry;
 
     /**
      * Constructor for the OpenIdResolverServiceImpl which will use the supplied
@@ -60,9 +64,7 @@ public class OpenIdResolverServiceImpl implements OpenIdResolverService {
      * @param connTimeout HTTP connection timeout for resolvers
      */
     public OpenIdResolverServiceImpl(final int readTimeout, final int connTimeout) {
-        this.readTimeout = readTimeout;
-        this.connTimeout = connTimeout;
-        this.openIdResolverFactory = new OpenIdResolverFactory(readTimeout, connTimeout);
+        this(new OpenIdResolverFactory(readTimeout, connTimeout), new KeyStoreRegistry(), readTimeout, connTimeout);
     }
 
     /**
@@ -74,9 +76,23 @@ public class OpenIdResolverServiceImpl implements OpenIdResolverService {
      */
     OpenIdResolverServiceImpl(OpenIdResolverFactory openIdResolverFactory, final int readTimeout,
                               final int connTimeout) {
+        this(openIdResolverFactory, new KeyStoreRegistry(), readTimeout, connTimeout);
+    }
+
+    /**
+     * For tests.
+     *
+     * @param openIdResolverFactory Factory to provide resolvers
+     * @param keyStoreRegistry Registry from which to load the keystores
+     * @param readTimeout HTTP read timeout for resolvers
+     * @param connTimeout HTTP connection timeout for resolvers
+     */
+    OpenIdResolverServiceImpl(OpenIdResolverFactory openIdResolverFactory, KeyStoreRegistry keyStoreRegistry,
+                              final int readTimeout, final int connTimeout) {
         this.readTimeout = readTimeout;
         this.connTimeout = connTimeout;
         this.openIdResolverFactory = openIdResolverFactory;
+        this.keyStoreRegistry = keyStoreRegistry;
     }
 
     /**
@@ -91,7 +107,8 @@ public class OpenIdResolverServiceImpl implements OpenIdResolverService {
 
     /**
      * Configures a new Resolver by finding the appropriate public key in the supplied keystore,
-     * and adds it to the Map of current resolvers.
+     * and adds it to the Map of current resolvers. The resolver is replaced each time the keystore
+     * is reloaded, for as long as it is the resolver of the issuer.
      *
      * @param issuer The issuer which provides the Open ID Connect auth token
      * @param keyAlias The alias under which the public key is stored
@@ -106,16 +123,13 @@ public class OpenIdResolverServiceImpl implements OpenIdResolverService {
 
         try {
             // Do not need the private key password as we are only ever getting the public key
-            final KeyStore keyStore = new KeyStoreBuilder()
-                    .withKeyStoreFile(keystoreLocation)
-                    .withKeyStoreType(Utils.asEnum(keystoreType, KeyStoreType.class))
-                    .withPassword(keystorePassword)
-                    .build();
-            final KeyStoreManager keyStoreManager = new KeyStoreManager(keyStore);
-            final PublicKey key = keyStoreManager.getPublicKey(keyAlias);
+            final ManagedKeyStore keyStore = keyStoreRegistry.getKeyStore(keystoreLocation,
+                    Utils.asEnum(keystoreType, KeyStoreType.class), keystorePassword);
+            final PublicKey key = keyStore.getPublicKey(keyAlias);
 
             final OpenIdResolver impl = openIdResolverFactory.createPublicKeyResolver(issuer, key);
             openIdResolvers.put(issuer, impl);
+            keyStore.addListener(new PublicKeyReloader(issuer, keyAlias, impl));
         } catch (KeystoreManagerException kme) {
             LOG.debug("Error accessing the KeystoreManager", kme);
             return false;
@@ -193,4 +207,41 @@ public class OpenIdResolverServiceImpl implements OpenIdResolverService {
         return true;
     }
 
+    /**
+     * Creates the resolver of an issuer again with its public key once its keystore has been reloaded, and stops
+     * listening to the keystore once the issuer has been configured with another resolver.
+     */
+    private final class PublicKeyReloader implements ManagedKeyStore.Listener {
+        private final String issuer;
+        private final String keyAlias;
+        private OpenIdResolver resolver;
+
+        private PublicKeyReloader(final String issuer, final String keyAlias, final OpenIdResolver resolver) {
+            this.issuer = issuer;
+            this.keyAlias = keyAlias;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public synchronized void keyStoreReloaded(final ManagedKeyStore keyStore) {
+            if (openIdResolvers.get(issuer) != resolver) {
+                keyStore.removeListener(this);
+                return;
+            }
+            final OpenIdResolver reloaded;
+            try {
+                reloaded = openIdResolverFactory.createPublicKeyResolver(issuer, keyStore.getPublicKey(keyAlias));
+            } catch (KeystoreManagerException | NullPointerException e) {
+                LOG.warn("Unable to read the key of issuer {} from the reloaded keystore", issuer, e);
+                openIdResolvers.remove(issuer, resolver);
+                keyStore.removeListener(this);
+                return;
+            }
+            if (openIdResolvers.replace(issuer, resolver, reloaded)) {
+                resolver = reloaded;
+            } else {
+                keyStore.removeListener(this);
+            }
+        }
+    }
 }
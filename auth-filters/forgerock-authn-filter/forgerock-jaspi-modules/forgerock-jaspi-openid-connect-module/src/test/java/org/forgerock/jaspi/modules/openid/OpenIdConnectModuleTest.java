@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014-2015 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 
 package org.forgerock.jaspi.modules.openid;
@@ -45,10 +45,13 @@ import org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolver;
 import org.forgerock.jaspi.modules.openid.resolvers.service.OpenIdResolverService;
 import org.forgerock.jaspi.modules.openid.resolvers.service.OpenIdResolverServiceConfigurator;
 import org.forgerock.json.jose.common.JwtReconstruction;
+import org.forgerock.json.jose.common.VerifiedJwtCache;
 import org.forgerock.json.jose.exceptions.InvalidJwtException;
 import org.forgerock.json.jose.exceptions.JwtReconstructionException;
+import org.forgerock.json.jose.jws.JwsHeader;
 import org.forgerock.json.jose.jws.SignedJwt;
 import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.util.time.Duration;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -292,6 +295,86 @@ public class OpenIdConnectModuleTest {
         assertNull(res);
     }
 
+    @Test
+    public void shouldNotVerifyCachedJwtAgain() throws Exception {
+        //given
+        testModule = new OpenIdConnectModule(mockConfigurator, mockReconstruction, mockService, mockCallback,
+                OpenIdConnectModule.HEADER_KEY, new VerifiedJwtCache(10, Duration.duration("5 minutes")));
+        OpenIdResolver mockResolver = givenValidJwtInRequest();
+        MessageInfoContext mockMessage = givenMessageWithJwt("jwt");
+
+        //when
+        AuthStatus first = testModule.validateRequest(mockMessage, new Subject(), null).getOrThrowUninterruptibly();
+        AuthStatus second = testModule.validateRequest(mockMessage, new Subject(), null).getOrThrowUninterruptibly();
+
+        //then
+        assertEquals(first, AuthStatus.SUCCESS);
+        assertEquals(second, AuthStatus.SUCCESS);
+        verify(mockResolver, times(1)).validateIdentity(any(SignedJwt.class));
+        verify(mockCallback, times(2)).handle(any(Callback[].class));
+    }
+
+    @Test
+    public void shouldVerifyCachedJwtAgainWithTheKeyOfAnotherResolver() throws Exception {
+        //given
+        testModule = new OpenIdConnectModule(mockConfigurator, mockReconstruction, mockService, mockCallback,
+                OpenIdConnectModule.HEADER_KEY, new VerifiedJwtCache(10, Duration.duration("5 minutes")));
+        OpenIdResolver firstResolver = givenValidJwtInRequest();
+        MessageInfoContext mockMessage = givenMessageWithJwt("jwt");
+        testModule.validateRequest(mockMessage, new Subject(), null).getOrThrowUninterruptibly();
+        OpenIdResolver secondResolver = mock(OpenIdResolver.class);
+        given(mockService.getResolverForIssuer("issuer")).willReturn(secondResolver);
+
+        //when
+        AuthStatus res = testModule.validateRequest(mockMessage, new Subject(), null).getOrThrowUninterruptibly();
+
+        //then
+        assertEquals(res, AuthStatus.SUCCESS);
+        verify(firstResolver, times(1)).validateIdentity(any(SignedJwt.class));
+        verify(secondResolver, times(1)).validateIdentity(any(SignedJwt.class));
+    }
+
+    @Test
+    public void shouldVerifyEveryJwtWhenCacheIsNotConfigured() throws Exception {
+        //given
+        OpenIdResolver mockResolver = givenValidJwtInRequest();
+        MessageInfoContext mockMessage = givenMessageWithJwt("jwt");
+
+        //when
+        testModule.validateRequest(mockMessage, new Subject(), null).getOrThrowUninterruptibly();
+        testModule.validateRequest(mockMessage, new Subject(), null).getOrThrowUninterruptibly();
+
+        //then
+        verify(mockResolver, times(2)).validateIdentity(any(SignedJwt.class));
+    }
+
+    private OpenIdResolver givenValidJwtInRequest() throws Exception {
+        OpenIdResolver mockResolver = mock(OpenIdResolver.class);
+        SignedJwt jws = mock(SignedJwt.class);
+        JwtClaimsSet claimSet = mock(JwtClaimsSet.class);
+
+        JwsHeader header = new JwsHeader();
+        header.setKeyId("key");
+
+        given(jws.getHeader()).willReturn(header);
+        given(jws.getClaimsSet()).willReturn(claimSet);
+        given(claimSet.getIssuer()).willReturn("issuer");
+        given(claimSet.getSubject()).willReturn("alice");
+        given(mockReconstruction.reconstructJwt(anyString(), any(Class.class))).willReturn(jws);
+        given(mockService.getResolverForIssuer("issuer")).willReturn(mockResolver);
+        return mockResolver;
+    }
+
+    private MessageInfoContext givenMessageWithJwt(String jwtInRequest) {
+        Request request = new Request();
+        MessageInfoContext mockMessage = mock(MessageInfoContext.class);
+
+        given(mockMessage.getRequest()).willReturn(request);
+        given(mockMessage.getResponse()).willReturn(new Response());
+        request.getHeaders().put(OpenIdConnectModule.HEADER_KEY, jwtInRequest);
+        return mockMessage;
+    }
+
     @Test
     public void shouldReturnSecureSuccess() throws Exception {
 
@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 package org.forgerock.jaspi.modules.openid.resolvers;
 
@@ -29,6 +29,7 @@ import org.testng.annotations.Test;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Date;
+import java.util.Map;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
@@ -62,7 +63,7 @@ public class JWKOpenIdResolverImplTest {
         given(mockJwt.getHeader()).willReturn(mockHeader);
         given(mockHeader.getKeyId()).willReturn("keyId");
 
-        verify(mockParser, times(1)).generateMapFromJWK(any(URL.class)); //first time occured on creation
+        verify(mockParser, times(1)).generateMapFromJWK(any(URL.class), any(Map.class)); //first time occured on creation
 
         boolean success = false;
 
@@ -74,10 +75,33 @@ public class JWKOpenIdResolverImplTest {
         }
 
         //then
-        verify(mockParser, times(2)).generateMapFromJWK(any(URL.class)); //second time when we found no id
+        verify(mockParser, times(2)).generateMapFromJWK(any(URL.class), any(Map.class)); //second time when we found no id
         assertTrue(success);
     }
 
+    @Test
+    public void testResolverDoesNotReloadJWKAgainWhenProvidedWithAnotherInvalidKeyId()
+            throws FailedToLoadJWKException {
+        //given
+        SignedJwt mockJwt = mock(SignedJwt.class);
+        JwsHeader mockHeader = mock(JwsHeader.class);
+
+        given(mockJwt.getHeader()).willReturn(mockHeader);
+        given(mockHeader.getKeyId()).willReturn("keyId", "otherKeyId");
+
+        //when
+        for (int i = 0; i < 2; i++) {
+            try {
+                testResolver.verifySignature(mockJwt);
+            } catch (InvalidSignatureException e) {
+                // expected
+            }
+        }
+
+        //then
+        verify(mockParser, times(2)).generateMapFromJWK(any(URL.class), any(Map.class)); //rate limited
+    }
+
     @Test(expectedExceptions = InvalidSignatureException.class)
     public void testInvalidSignatureThrowsException()
             throws InvalidSignatureException, FailedToLoadJWKException {
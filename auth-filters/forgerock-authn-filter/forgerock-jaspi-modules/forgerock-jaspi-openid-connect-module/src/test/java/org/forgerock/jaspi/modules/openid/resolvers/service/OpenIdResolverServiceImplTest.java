@@ -15,6 +15,7 @@
 */
 package org.forgerock.jaspi.modules.openid.resolvers.service;
 
+import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -22,11 +23,15 @@ import java.net.URLDecoder;
 import org.forgerock.jaspi.modules.openid.exceptions.FailedToLoadJWKException;
 import org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolver;
 import org.forgerock.jaspi.modules.openid.resolvers.OpenIdResolverFactory;
+import org.forgerock.security.keystore.KeyStoreRegistry;
+import org.forgerock.security.keystore.KeyStoreType;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertNull;
 import org.testng.annotations.Test;
@@ -215,4 +220,51 @@ public class OpenIdResolverServiceImplTest {
         assertEquals("issuer", resolver.getIssuer());
     }
 
+    @Test
+    public void checkPublicKeyResolverIsCreatedAgainWhenKeystoreIsReloaded()
+            throws UnsupportedEncodingException, FileNotFoundException {
+        //given
+        KeyStoreRegistry registry = new KeyStoreRegistry();
+        OpenIdResolverServiceImpl testResolverService =
+                new OpenIdResolverServiceImpl(new OpenIdResolverFactory(0, 0), registry, 0, 0);
+        String keystoreLocation = URLDecoder.decode(ClassLoader.getSystemResource("cacert.jks").getFile(), "UTF-8");
+        try {
+            testResolverService.configureResolverWithKey("issuer", "google", keystoreLocation, "JKS", "storepass");
+            OpenIdResolver resolver = testResolverService.getResolverForIssuer("issuer");
+
+            //when
+            registry.getKeyStore(keystoreLocation, KeyStoreType.JKS, "storepass").reload();
+
+            //then
+            OpenIdResolver reloaded = testResolverService.getResolverForIssuer("issuer");
+            assertNotNull(reloaded);
+            assertNotSame(reloaded, resolver);
+            assertEquals(reloaded.getIssuer(), "issuer");
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    public void checkReconfiguredResolverIsKeptWhenKeystoreIsReloaded()
+            throws UnsupportedEncodingException, FileNotFoundException {
+        //given
+        KeyStoreRegistry registry = new KeyStoreRegistry();
+        OpenIdResolverServiceImpl testResolverService =
+                new OpenIdResolverServiceImpl(new OpenIdResolverFactory(0, 0), registry, 0, 0);
+        String keystoreLocation = URLDecoder.decode(ClassLoader.getSystemResource("cacert.jks").getFile(), "UTF-8");
+        try {
+            testResolverService.configureResolverWithKey("issuer", "google", keystoreLocation, "JKS", "storepass");
+            testResolverService.configureResolverWithSecret("issuer", "string");
+            OpenIdResolver resolver = testResolverService.getResolverForIssuer("issuer");
+
+            //when
+            registry.getKeyStore(keystoreLocation, KeyStoreType.JKS, "storepass").reload();
+
+            //then
+            assertSame(testResolverService.getResolverForIssuer("issuer"), resolver);
+        } finally {
+            registry.close();
+        }
+    }
 }
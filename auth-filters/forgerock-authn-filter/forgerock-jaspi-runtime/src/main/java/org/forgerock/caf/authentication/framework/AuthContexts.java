@@ -16,6 +16,9 @@
 
 package org.forgerock.caf.authentication.framework;
 
+import static org.forgerock.caf.authentication.framework.AuthModules.recordAuthStatus;
+import static org.forgerock.caf.authentication.framework.AuthModules.recordCompletion;
+import static org.forgerock.caf.authentication.framework.AuthModules.recordException;
 import static org.forgerock.caf.authentication.framework.AuthStatusUtils.*;
 
 import javax.security.auth.Subject;
@@ -51,6 +54,9 @@ import org.slf4j.Logger;
  * <p>{@link #withLogging(Logger, AsyncServerAuthContext)} wraps the
  * {@code AsyncServerAuthModule}(s) and apply functions to log the result of each method call.</p>
  *
+ * <p>{@link #withMetrics(AuthenticationMetrics, String, AsyncServerAuthContext)} wraps the
+ * {@code AsyncServerAuthContext} and records the latency and outcome of each method call.</p>
+ *
  * <p>As {@code withValidation} changes the processing flow, it must be applied after the other
  * methods, i.e.
  * <pre><code>
@@ -178,6 +184,28 @@ final class AuthContexts {
         return new LoggingAuthContext(logger, authContext);
     }
 
+    /**
+     * <p>Measures each method call, for the given {@code AsyncServerAuthContext}, and records
+     * its latency and outcome in the given {@code AuthenticationMetrics}, under the given
+     * name.</p>
+     *
+     * <p>The auth context is returned as is if there is no {@code AuthenticationMetrics}, so
+     * that disabled metrics cost nothing.</p>
+     *
+     * @param metrics The {@code AuthenticationMetrics} to record to, or {@code null}.
+     * @param name The name to record the metrics under.
+     * @param authContext The {@code AsyncServerAuthContext} to be be wrapped.
+     * @return The provided {@code AsyncServerAuthContext} with measuring functions attached.
+     */
+    static AsyncServerAuthContext withMetrics(AuthenticationMetrics metrics, String name,
+            AsyncServerAuthContext authContext) {
+        Reject.ifNull(authContext);
+        if (metrics == null) {
+            return authContext;
+        }
+        return new MeasuredAuthContext(metrics, name, authContext);
+    }
+
     private static final class ValidatingAuthContext extends WrappedAuthContext {
 
         private ValidatingAuthContext(AsyncServerAuthContext authContext) {
@@ -219,6 +247,56 @@ final class AuthContexts {
         }
     }
 
+    private static final class MeasuredAuthContext extends WrappedAuthContext {
+
+        private final AuthenticationMetrics metrics;
+        private final String name;
+
+        private MeasuredAuthContext(AuthenticationMetrics metrics, String name, AsyncServerAuthContext authContext) {
+            super(authContext);
+            this.metrics = metrics;
+            this.name = name;
+        }
+
+        @Override
+        public Promise<AuthStatus, AuthenticationException> validateRequest(MessageContext context,
+                Subject clientSubject, Subject serviceSubject) {
+            final long start = System.nanoTime();
+            try {
+                return recordAuthStatus(metrics, name, AuthenticationMetrics.VALIDATE_REQUEST, start,
+                        super.validateRequest(context, clientSubject, serviceSubject));
+            } catch (RuntimeException e) {
+                recordException(metrics, name, AuthenticationMetrics.VALIDATE_REQUEST, start);
+                throw e;
+            }
+        }
+
+        @Override
+        public Promise<AuthStatus, AuthenticationException> secureResponse(MessageContext context,
+                Subject serviceSubject) {
+            final long start = System.nanoTime();
+            try {
+                return recordAuthStatus(metrics, name, AuthenticationMetrics.SECURE_RESPONSE, start,
+                        super.secureResponse(context, serviceSubject));
+            } catch (RuntimeException e) {
+                recordException(metrics, name, AuthenticationMetrics.SECURE_RESPONSE, start);
+                throw e;
+            }
+        }
+
+        @Override
+        public Promise<Void, AuthenticationException> cleanSubject(MessageContext context, Subject clientSubject) {
+            final long start = System.nanoTime();
+            try {
+                return recordCompletion(metrics, name, AuthenticationMetrics.CLEAN_SUBJECT, start,
+                        super.cleanSubject(context, clientSubject));
+            } catch (RuntimeException e) {
+                recordException(metrics, name, AuthenticationMetrics.CLEAN_SUBJECT, start);
+                throw e;
+            }
+        }
+    }
+
     private static final class AuditingAuthContext extends WrappedAuthContext {
 
         private AuditingAuthContext(AsyncServerAuthContext authContext) {
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.caf.authentication.framework;
@@ -33,11 +33,15 @@ import java.util.Map;
 import org.forgerock.caf.authentication.api.AsyncServerAuthModule;
 import org.forgerock.caf.authentication.api.AuthenticationException;
 import org.forgerock.caf.authentication.api.MessageInfoContext;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.services.context.AbstractContext;
 import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
 import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.promise.RuntimeExceptionHandler;
 import org.slf4j.Logger;
 
 /**
@@ -63,6 +67,10 @@ import org.slf4j.Logger;
  * wrap the {@code AsyncServerAuthModule}(s) and apply functions to log the result of each method
  * call.</p>
  *
+ * <p>{@link #withMetrics(AuthenticationMetrics, AsyncServerAuthModule)} wraps the
+ * {@code AsyncServerAuthModule} and records how long each {@code validateRequest},
+ * {@code secureResponse} and {@code cleanSubject} method call takes, and its outcome.</p>
+ *
  * <p>As {@code withValidation} changes the processing flow, it must be applied after the other
  * methods, i.e.
  * <pre><code>
@@ -278,6 +286,157 @@ final class AuthModules {
         return modules;
     }
 
+    /**
+     * <p>Measures the {@link AsyncServerAuthModule#validateRequest(MessageInfoContext, Subject, Subject)},
+     * {@link AsyncServerAuthModule#secureResponse(MessageInfoContext, Subject)} and
+     * {@link AsyncServerAuthModule#cleanSubject(MessageInfoContext, Subject)} method calls, for the
+     * given {@code AsyncServerAuthModule}, and records their latency and outcome in the given
+     * {@code AuthenticationMetrics}.</p>
+     *
+     * <p>The auth module is returned as is if there is no {@code AuthenticationMetrics}, so that
+     * disabled metrics cost nothing.</p>
+     *
+     * @param metrics The {@code AuthenticationMetrics} to record to, or {@code null}.
+     * @param authModule The {@code AsyncServerAuthModule} to be be wrapped.
+     * @return The provided {@code AsyncServerAuthModule} with measuring functions attached.
+     */
+    static AsyncServerAuthModule withMetrics(AuthenticationMetrics metrics, AsyncServerAuthModule authModule) {
+        if (metrics == null || authModule == null) {
+            return authModule;
+        }
+        return new MeasuredAuthModule(metrics, authModule);
+    }
+
+    /**
+     * Starts validating the request with the given auth module straight away, concurrently with the auth modules
+     * before it, and returns a module whose {@code validateRequest} completes with the outcome of that validation.
+     *
+     * @param authModule The side-effect-free auth module, before it is wrapped with logging, auditing and validation.
+     * @param messageInfo The message context of the request.
+     * @param serviceSubject The service subject.
+     * @return The auth module to use in place of the given module for this request only.
+     */
+    static HedgedAuthModule withHedging(AsyncServerAuthModule authModule, MessageInfoContext messageInfo,
+            Subject serviceSubject) {
+        return new HedgedAuthModule(authModule, messageInfo, serviceSubject);
+    }
+
+    /**
+     * An auth module whose request validation has been started ahead of time, against a copy of the request context
+     * map and an empty client subject. When the module is actually asked to validate the request, it waits for the
+     * outcome of that validation and then copies the changes it made to the request context map and the principals
+     * and credentials it added to the client subject, so that the caller cannot tell that it ran ahead of time.
+     */
+    static final class HedgedAuthModule extends WrappedAuthModule {
+
+        private final Map<String, Object> initialRequestContextMap;
+        private final ForkedMessageInfoContext forkedMessageInfo;
+        private final Subject forkedClientSubject = new Subject();
+        private final Promise<AuthStatus, AuthenticationException> validation;
+        private final RuntimeException validationFailure;
+
+        private HedgedAuthModule(AsyncServerAuthModule authModule, MessageInfoContext messageInfo,
+                Subject serviceSubject) {
+            super(authModule);
+            this.initialRequestContextMap = new HashMap<>(messageInfo.getRequestContextMap());
+            this.forkedMessageInfo = new ForkedMessageInfoContext(messageInfo,
+                    new HashMap<>(initialRequestContextMap));
+            Promise<AuthStatus, AuthenticationException> validation = null;
+            RuntimeException validationFailure = null;
+            try {
+                validation = authModule.validateRequest(forkedMessageInfo, forkedClientSubject, serviceSubject);
+            } catch (RuntimeException e) {
+                // Thrown when the module is asked to validate the request, as it would have been.
+                validationFailure = e;
+            }
+            this.validation = validation;
+            this.validationFailure = validationFailure;
+        }
+
+        @Override
+        public Promise<AuthStatus, AuthenticationException> validateRequest(final MessageInfoContext messageInfo,
+                final Subject clientSubject, Subject serviceSubject) {
+            if (validationFailure != null) {
+                throw validationFailure;
+            }
+            return validation.thenAlways(new Runnable() {
+                @Override
+                public void run() {
+                    merge(messageInfo.getRequestContextMap(), clientSubject);
+                }
+            });
+        }
+
+        /**
+         * Cancels the validation if the auth module has not been asked to validate the request, because an auth
+         * module before it has already completed the authentication.
+         */
+        void cancel() {
+            if (validation != null) {
+                validation.cancel(true);
+            }
+        }
+
+        private void merge(Map<String, Object> requestContextMap, Subject clientSubject) {
+            Map<String, Object> forkedRequestContextMap = forkedMessageInfo.getRequestContextMap();
+            for (String key : initialRequestContextMap.keySet()) {
+                if (!forkedRequestContextMap.containsKey(key)) {
+                    requestContextMap.remove(key);
+                }
+            }
+            for (Map.Entry<String, Object> entry : forkedRequestContextMap.entrySet()) {
+                if (!initialRequestContextMap.containsKey(entry.getKey())
+                        || initialRequestContextMap.get(entry.getKey()) != entry.getValue()) {
+                    requestContextMap.put(entry.getKey(), entry.getValue());
+                }
+            }
+            clientSubject.getPrincipals().addAll(forkedClientSubject.getPrincipals());
+            clientSubject.getPublicCredentials().addAll(forkedClientSubject.getPublicCredentials());
+            clientSubject.getPrivateCredentials().addAll(forkedClientSubject.getPrivateCredentials());
+        }
+    }
+
+    /**
+     * A message context which shares the request and response of another message context, but has its own request
+     * context map.
+     */
+    private static final class ForkedMessageInfoContext extends AbstractContext implements MessageInfoContext {
+
+        private final MessageInfoContext messageInfo;
+        private final Map<String, Object> requestContextMap;
+
+        private ForkedMessageInfoContext(MessageInfoContext messageInfo, Map<String, Object> requestContextMap) {
+            super(messageInfo, "jaspi");
+            this.messageInfo = messageInfo;
+            this.requestContextMap = requestContextMap;
+        }
+
+        @Override
+        public Request getRequest() {
+            return messageInfo.getRequest();
+        }
+
+        @Override
+        public Response getResponse() {
+            return messageInfo.getResponse();
+        }
+
+        @Override
+        public void setRequest(Request request) {
+            messageInfo.setRequest(request);
+        }
+
+        @Override
+        public void setResponse(Response response) {
+            messageInfo.setResponse(response);
+        }
+
+        @Override
+        public Map<String, Object> getRequestContextMap() {
+            return requestContextMap;
+        }
+    }
+
     private static final class ValidatingAuthModule extends WrappedAuthModule {
 
         private ValidatingAuthModule(AsyncServerAuthModule authModule) {
@@ -319,6 +478,129 @@ final class AuthModules {
         }
     }
 
+    private static final class MeasuredAuthModule extends WrappedAuthModule {
+
+        private final AuthenticationMetrics metrics;
+
+        private MeasuredAuthModule(AuthenticationMetrics metrics, AsyncServerAuthModule authModule) {
+            super(authModule);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Promise<AuthStatus, AuthenticationException> validateRequest(MessageInfoContext messageInfo,
+                Subject clientSubject, Subject serviceSubject) {
+            final long start = System.nanoTime();
+            try {
+                return recordAuthStatus(metrics, getModuleId(), AuthenticationMetrics.VALIDATE_REQUEST, start,
+                        super.validateRequest(messageInfo, clientSubject, serviceSubject));
+            } catch (RuntimeException e) {
+                recordException(metrics, getModuleId(), AuthenticationMetrics.VALIDATE_REQUEST, start);
+                throw e;
+            }
+        }
+
+        @Override
+        public Promise<AuthStatus, AuthenticationException> secureResponse(MessageInfoContext messageInfo,
+                Subject serviceSubject) {
+            final long start = System.nanoTime();
+            try {
+                return recordAuthStatus(metrics, getModuleId(), AuthenticationMetrics.SECURE_RESPONSE, start,
+                        super.secureResponse(messageInfo, serviceSubject));
+            } catch (RuntimeException e) {
+                recordException(metrics, getModuleId(), AuthenticationMetrics.SECURE_RESPONSE, start);
+                throw e;
+            }
+        }
+
+        @Override
+        public Promise<Void, AuthenticationException> cleanSubject(MessageInfoContext messageInfo,
+                Subject clientSubject) {
+            final long start = System.nanoTime();
+            try {
+                return recordCompletion(metrics, getModuleId(), AuthenticationMetrics.CLEAN_SUBJECT, start,
+                        super.cleanSubject(messageInfo, clientSubject));
+            } catch (RuntimeException e) {
+                recordException(metrics, getModuleId(), AuthenticationMetrics.CLEAN_SUBJECT, start);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Records the latency and the {@code AuthStatus} of the given phase once it completes.
+     *
+     * @param metrics The {@code AuthenticationMetrics} to record to.
+     * @param moduleId The id of the auth module, or the name of the framework.
+     * @param phase The phase.
+     * @param start The {@link System#nanoTime()} at which the phase started.
+     * @param promise The outcome of the phase.
+     * @return The given {@code Promise}, with the recording function attached.
+     */
+    static Promise<AuthStatus, AuthenticationException> recordAuthStatus(final AuthenticationMetrics metrics,
+            final String moduleId, final String phase, final long start,
+            Promise<AuthStatus, AuthenticationException> promise) {
+        return recordExceptions(metrics, moduleId, phase, start, promise
+                .thenOnResult(new ResultHandler<AuthStatus>() {
+                    @Override
+                    public void handleResult(AuthStatus authStatus) {
+                        metrics.record(moduleId, phase, asString(authStatus), System.nanoTime() - start);
+                    }
+                }));
+    }
+
+    /**
+     * Records the latency of the given phase, which does not return an {@code AuthStatus}, once it completes.
+     *
+     * @param metrics The {@code AuthenticationMetrics} to record to.
+     * @param moduleId The id of the auth module, or the name of the framework.
+     * @param phase The phase.
+     * @param start The {@link System#nanoTime()} at which the phase started.
+     * @param promise The outcome of the phase.
+     * @return The given {@code Promise}, with the recording function attached.
+     */
+    static Promise<Void, AuthenticationException> recordCompletion(final AuthenticationMetrics metrics,
+            final String moduleId, final String phase, final long start,
+            Promise<Void, AuthenticationException> promise) {
+        return recordExceptions(metrics, moduleId, phase, start, promise
+                .thenOnResult(new ResultHandler<Void>() {
+                    @Override
+                    public void handleResult(Void result) {
+                        metrics.record(moduleId, phase, AuthenticationMetrics.OUTCOME_SUCCESS,
+                                System.nanoTime() - start);
+                    }
+                }));
+    }
+
+    private static <V> Promise<V, AuthenticationException> recordExceptions(final AuthenticationMetrics metrics,
+            final String moduleId, final String phase, final long start, Promise<V, AuthenticationException> promise) {
+        return promise
+                .thenOnException(new ExceptionHandler<AuthenticationException>() {
+                    @Override
+                    public void handleException(AuthenticationException error) {
+                        recordException(metrics, moduleId, phase, start);
+                    }
+                })
+                .thenOnRuntimeException(new RuntimeExceptionHandler() {
+                    @Override
+                    public void handleRuntimeException(RuntimeException error) {
+                        recordException(metrics, moduleId, phase, start);
+                    }
+                });
+    }
+
+    /**
+     * Records the latency of the given phase, which has failed.
+     *
+     * @param metrics The {@code AuthenticationMetrics} to record to.
+     * @param moduleId The id of the auth module, or the name of the framework.
+     * @param phase The phase.
+     * @param start The {@link System#nanoTime()} at which the phase started.
+     */
+    static void recordException(AuthenticationMetrics metrics, String moduleId, String phase, long start) {
+        metrics.record(moduleId, phase, AuthenticationMetrics.OUTCOME_EXCEPTION, System.nanoTime() - start);
+    }
+
     // @Checkstyle:off
     // Checkstyle for some reason is enforcing that this class must be final,
     // which cannot be the case as SessionAuditingAuthModule inherits from it!
@@ -11,11 +11,13 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.caf.authentication.framework;
 
+import static org.forgerock.caf.authentication.framework.AuthContexts.withMetrics;
+import static org.forgerock.caf.authentication.framework.AuthModules.withMetrics;
 import static org.forgerock.caf.authentication.framework.AuthenticationFramework.REQUIRED_MESSAGE_TYPES_SUPPORT;
 import static org.forgerock.caf.authentication.framework.JaspiAdapters.adapt;
 
@@ -148,10 +150,12 @@ public final class AuthenticationFilter implements Filter {
         private String name = "AuthenticationFilter";
         private Logger logger;
         private AuditApi auditApi;
+        private AuthenticationMetrics metrics;
         private Subject serviceSubject = new Subject();
         private final ResponseHandler responseHandler = new ResponseHandler();
         private AuthenticationModuleBuilder sessionAuthModuleBuilder = null;
         private final List<AuthenticationModuleBuilder> authModuleBuilders = new ArrayList<>();
+        private final List<AsyncServerAuthModule> sideEffectFreeAuthModules = new ArrayList<>();
 
         /**
          * <p>Sets the name of the logger instance that the framework should create and use to log
@@ -192,6 +196,21 @@ public final class AuthenticationFilter implements Filter {
             return this;
         }
 
+        /**
+         * <p>Sets the {@code AuthenticationMetrics} instance that the framework will use to record
+         * the latency and outcome of each auth module, and of the framework as a whole, under the
+         * name of the framework, see {@link #named(String)}.</p>
+         *
+         * <p>If not set, nothing is measured.</p>
+         *
+         * @param metrics The {@code AuthenticationMetrics} instance.
+         * @return This builder instance.
+         */
+        public AuthenticationFilterBuilder metrics(AuthenticationMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         /**
          * Sets the service {@code Subject} that contains credentials, for this framework instance,
          * that auth modules can use to secure response messages.
@@ -286,11 +305,16 @@ public final class AuthenticationFilter implements Filter {
             List<Promise<Void, AuthenticationException>> initializationPromises = new ArrayList<>();
 
             if (sessionAuthModuleBuilder != null && sessionAuthModuleBuilder.authModule != null) {
-                sessionAuthModule = sessionAuthModuleBuilder.authModule;
+                sessionAuthModule = withMetrics(metrics, sessionAuthModuleBuilder.authModule);
                 initializationPromises.add(initializeModule(sessionAuthModuleBuilder));
             }
+            sideEffectFreeAuthModules.clear();
             for (AuthenticationModuleBuilder authModuleBuilder : authModuleBuilders) {
-                authModules.add(authModuleBuilder.authModule);
+                AsyncServerAuthModule authModule = withMetrics(metrics, authModuleBuilder.authModule);
+                authModules.add(authModule);
+                if (authModuleBuilder.sideEffectFree) {
+                    sideEffectFreeAuthModules.add(authModule);
+                }
                 initializationPromises.add(initializeModule(authModuleBuilder));
             }
             Promise<List<Void>, AuthenticationException> initializationPromise = Promises.when(initializationPromises);
@@ -312,8 +336,10 @@ public final class AuthenticationFilter implements Filter {
                 List<AsyncServerAuthModule> authModules,
                 Promise<List<Void>, AuthenticationException> initializationPromise) {
             return new AuthenticationFilter(logger, auditApi, serviceSubject, responseHandler,
-                    new AggregateAuthContext(logger, new SessionAuthContext(logger, sessionAuthModule),
-                            new FallbackAuthContext(logger, authModules)), initializationPromise);
+                    withMetrics(metrics, name,
+                            new AggregateAuthContext(logger, new SessionAuthContext(logger, sessionAuthModule),
+                                    new FallbackAuthContext(logger, authModules, sideEffectFreeAuthModules))),
+                    initializationPromise);
         }
     }
 
@@ -340,6 +366,7 @@ public final class AuthenticationFilter implements Filter {
         private CallbackHandler handler;
         private Map<String, Object> settings;
         private AsyncServerAuthModule authModule;
+        private boolean sideEffectFree;
 
         /**
          * Creates a builder to configure the provided {@code AsyncServerAuthModule} instance.
@@ -409,5 +436,21 @@ public final class AuthenticationFilter implements Filter {
             this.settings = settings;
             return this;
         }
+
+        /**
+         * Declares that the {@code validateRequest} method of the auth module has no side effects,
+         * so that it can be called concurrently with the auth modules configured before it.
+         *
+         * <p>Only applies to the auth modules configured with
+         * {@link AuthenticationFilterBuilder#authModules(AuthenticationModuleBuilder...)}, not to the
+         * session module.</p>
+         *
+         * @return This auth module builder instance.
+         * @see FallbackAuthContext
+         */
+        public AuthenticationModuleBuilder sideEffectFree() {
+            this.sideEffectFree = true;
+            return this;
+        }
     }
 }
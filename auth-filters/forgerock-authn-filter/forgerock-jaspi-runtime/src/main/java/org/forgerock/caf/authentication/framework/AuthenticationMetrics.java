@@ -0,0 +1,59 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.caf.authentication.framework;
+
+/**
+ * <p>Metrics API interface for recording how long each auth module, and the authentication framework as a whole,
+ * takes to process requests and responses, and with what outcome.</p>
+ *
+ * <p>The framework only measures the auth modules when it has been configured with an {@code AuthenticationMetrics}
+ * instance, see {@link AuthenticationFilter.AuthenticationFilterBuilder#metrics(AuthenticationMetrics)}.
+ * {@link AuthenticationMetricsRegistry} is the default implementation.</p>
+ *
+ * <p>Implementations of this interface must be thread-safe, and should be quick, as they are called on the request
+ * processing path.</p>
+ */
+public interface AuthenticationMetrics {
+
+    /** The phase in which a request message is validated. */
+    String VALIDATE_REQUEST = "validateRequest";
+
+    /** The phase in which a response message is secured. */
+    String SECURE_RESPONSE = "secureResponse";
+
+    /** The phase in which the client subject is cleaned. */
+    String CLEAN_SUBJECT = "cleanSubject";
+
+    /**
+     * The outcome of the {@link #CLEAN_SUBJECT} phase when it succeeds, as it does not return an {@code AuthStatus}.
+     */
+    String OUTCOME_SUCCESS = "SUCCESS";
+
+    /** The outcome of a phase which failed with an exception. */
+    String OUTCOME_EXCEPTION = "EXCEPTION";
+
+    /**
+     * Records the processing of a message by an auth module, or by the whole authentication framework.
+     *
+     * @param moduleId The id of the auth module, or the name of the authentication framework.
+     * @param phase The phase: {@link #VALIDATE_REQUEST}, {@link #SECURE_RESPONSE} or {@link #CLEAN_SUBJECT}.
+     * @param outcome The returned {@code AuthStatus}, as given by {@link AuthStatusUtils#asString}, or
+     *                {@link #OUTCOME_SUCCESS} or {@link #OUTCOME_EXCEPTION}.
+     * @param durationNanos How long the phase took, in nanoseconds.
+     */
+    void record(String moduleId, String phase, String outcome, long durationNanos);
+}
@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.caf.authentication.framework;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * <p>The default {@link AuthenticationMetrics} implementation, which keeps, per auth module and phase, a latency
+ * histogram and a counter per outcome.</p>
+ *
+ * <p>A {@link #snapshot() snapshot} of the metrics can be read at any time, for example through an
+ * {@link AuthenticationMetricsResourceProvider}. It has the following form, with latencies in microseconds:</p>
+ * {@code
+ * {
+ *   "Session-JwtSessionModule": {
+ *     "validateRequest": {
+ *       "outcomes": {
+ *         "SEND_FAILURE": 12,
+ *         "SUCCESS": 340
+ *       },
+ *       "latency": {
+ *         "count": 352,
+ *         "mean": 180,
+ *         "max": 2047,
+ *         "p50": 151,
+ *         "p90": 303,
+ *         "p99": 1151,
+ *         "p999": 2047
+ *       }
+ *     },
+ *     ...
+ *   },
+ *   ...
+ * }
+ * }
+ */
+public final class AuthenticationMetricsRegistry implements AuthenticationMetrics {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, PhaseMetrics>> modules = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(String moduleId, String phase, String outcome, long durationNanos) {
+        ConcurrentMap<String, PhaseMetrics> phases = modules.get(moduleId);
+        if (phases == null) {
+            final ConcurrentMap<String, PhaseMetrics> newPhases = new ConcurrentHashMap<>();
+            phases = modules.putIfAbsent(moduleId, newPhases);
+            if (phases == null) {
+                phases = newPhases;
+            }
+        }
+        PhaseMetrics metrics = phases.get(phase);
+        if (metrics == null) {
+            final PhaseMetrics newMetrics = new PhaseMetrics();
+            metrics = phases.putIfAbsent(phase, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        metrics.record(outcome, durationNanos);
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded so far, with the modules and phases in alphabetical order.
+     *
+     * @return The snapshot of the metrics.
+     */
+    public JsonValue snapshot() {
+        final JsonValue snapshot = json(object());
+        for (Map.Entry<String, ConcurrentMap<String, PhaseMetrics>> module : new TreeMap<>(modules).entrySet()) {
+            final JsonValue phases = json(object());
+            for (Map.Entry<String, PhaseMetrics> phase : new TreeMap<>(module.getValue()).entrySet()) {
+                phases.put(phase.getKey(), phase.getValue().toJsonValue().getObject());
+            }
+            snapshot.put(module.getKey(), phases.getObject());
+        }
+        return snapshot;
+    }
+
+    /** The metrics of one phase of one auth module. */
+    private static final class PhaseMetrics {
+        private final ConcurrentMap<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private void record(String outcome, long durationNanos) {
+            AtomicLong counter = outcomes.get(outcome);
+            if (counter == null) {
+                final AtomicLong newCounter = new AtomicLong();
+                counter = outcomes.putIfAbsent(outcome, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            counter.incrementAndGet();
+            latency.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        }
+
+        private JsonValue toJsonValue() {
+            final Map<String, Object> outcomeCounts = new TreeMap<>();
+            for (Map.Entry<String, AtomicLong> outcome : outcomes.entrySet()) {
+                outcomeCounts.put(outcome.getKey(), outcome.getValue().get());
+            }
+            return json(object(
+                    field("outcomes", outcomeCounts),
+                    field("latency", latency.toJsonValue().getObject())));
+        }
+    }
+}
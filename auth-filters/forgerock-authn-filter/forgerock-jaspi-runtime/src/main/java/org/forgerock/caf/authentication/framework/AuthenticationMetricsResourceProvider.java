@@ -0,0 +1,77 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.caf.authentication.framework;
+
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.ActionResponse;
+import org.forgerock.json.resource.NotSupportedException;
+import org.forgerock.json.resource.PatchRequest;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.SingletonResourceProvider;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+
+/**
+ * A read-only CREST resource which exposes the {@link AuthenticationMetricsRegistry#snapshot() snapshot} of the
+ * metrics recorded by an {@link AuthenticationMetricsRegistry}.
+ */
+public final class AuthenticationMetricsResourceProvider implements SingletonResourceProvider {
+
+    private final AuthenticationMetricsRegistry registry;
+
+    /**
+     * Creates a new resource provider exposing the metrics of the given registry.
+     *
+     * @param registry The non-{@code null} metrics registry.
+     */
+    public AuthenticationMetricsResourceProvider(AuthenticationMetricsRegistry registry) {
+        Reject.ifNull(registry);
+        this.registry = registry;
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(Context context, ReadRequest request) {
+        return newResultPromise(newResourceResponse(null, null, registry.snapshot()));
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionInstance(Context context, ActionRequest request) {
+        return newExceptionPromise(notSupported());
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> patchInstance(Context context, PatchRequest request) {
+        return newExceptionPromise(notSupported());
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> updateInstance(Context context, UpdateRequest request) {
+        return newExceptionPromise(notSupported());
+    }
+
+    private static ResourceException notSupported() {
+        return new NotSupportedException("Authentication metrics are read-only");
+    }
+}
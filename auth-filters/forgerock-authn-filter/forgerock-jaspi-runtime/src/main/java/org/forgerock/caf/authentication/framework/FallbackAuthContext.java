@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.caf.authentication.framework;
@@ -24,6 +24,8 @@ import static org.forgerock.caf.authentication.framework.AuthStatusUtils.isSucce
 import javax.security.auth.Subject;
 import javax.security.auth.message.AuthStatus;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.forgerock.caf.authentication.api.AsyncServerAuthContext;
@@ -54,12 +56,30 @@ import org.slf4j.Logger;
  * authenticated the incoming request message will get the opportunity to secure the response
  * message.</p>
  *
+ * <p>Auth modules whose {@code validateRequest} has no side effects can be declared as such, so
+ * that they are called concurrently with the auth modules before them rather than only once
+ * those have failed. This reduces the latency of requests which are only authenticated by one of
+ * the last auth modules, or not at all, when the auth modules make remote calls. The outcome is
+ * the same as when calling the auth modules in order: the auth modules still report their
+ * outcomes, and are audited, in order, the outcome of the first auth module which does not
+ * return {@code SEND_FAILURE} is used, and the concurrent calls which are no longer needed are
+ * cancelled.</p>
+ *
+ * <p>A side-effect-free auth module is called with a copy of the request context map and an empty
+ * client subject. The changes it makes to them are only applied to the request context map and
+ * client subject of the request once all the auth modules before it have failed. It must not
+ * modify the request or the response, depend on what the auth modules before it put in the
+ * request context map, or modify the objects held in the request context map.</p>
+ *
  * @since 2.0.0
  */
 public final class FallbackAuthContext implements AsyncServerAuthContext, AuthContextWithState {
 
     private final Logger logger;
     private final List<AsyncServerAuthModule> authModules;
+    /** The side-effect-free auth modules, before they are wrapped, or {@code null} for the other auth modules. */
+    private final List<AsyncServerAuthModule> sideEffectFreeAuthModules;
+    private final boolean hedged;
 
     /**
      * Creates a new {@code FallbackAuthContext} managing the provided
@@ -69,9 +89,34 @@ public final class FallbackAuthContext implements AsyncServerAuthContext, AuthCo
      * @param authModules The {@code List} of {@code AsyncServerAuthModule}s.
      */
     public FallbackAuthContext(Logger logger, List<AsyncServerAuthModule> authModules) {
-        Reject.ifNull(logger, authModules);
+        this(logger, authModules, Collections.<AsyncServerAuthModule>emptySet());
+    }
+
+    /**
+     * Creates a new {@code FallbackAuthContext} managing the provided
+     * {@code AsyncServerAuthModule}s, some of which are called concurrently.
+     *
+     * @param logger The {@link Logger} instance.
+     * @param authModules The {@code List} of {@code AsyncServerAuthModule}s.
+     * @param sideEffectFreeAuthModules The {@code AsyncServerAuthModule}s, from {@code authModules},
+     *                                  whose {@code validateRequest} has no side effects.
+     */
+    public FallbackAuthContext(Logger logger, List<AsyncServerAuthModule> authModules,
+            Collection<AsyncServerAuthModule> sideEffectFreeAuthModules) {
+        Reject.ifNull(logger, authModules, sideEffectFreeAuthModules);
         this.logger = logger;
         this.authModules = withValidation(withAuditing(withLogging(logger, authModules)));
+        this.sideEffectFreeAuthModules = new ArrayList<>(authModules.size());
+        boolean hedged = false;
+        for (AsyncServerAuthModule authModule : authModules) {
+            if (sideEffectFreeAuthModules.contains(authModule)) {
+                this.sideEffectFreeAuthModules.add(authModule);
+                hedged = true;
+            } else {
+                this.sideEffectFreeAuthModules.add(null);
+            }
+        }
+        this.hedged = hedged;
     }
 
     /**
@@ -83,6 +128,9 @@ public final class FallbackAuthContext implements AsyncServerAuthContext, AuthCo
      * <p>If the end of the module list is reached then an {@code AuthStatus} value of
      * {@code SEND_FAILURE} is returned.</p>
      *
+     * <p>The side-effect-free auth modules are all called straight away, but their outcomes are
+     * only used once the auth modules before them have returned {@code SEND_FAILURE}.</p>
+     *
      * @param context {@inheritDoc}
      * @param clientSubject {@inheritDoc}
      * @param serviceSubject {@inheritDoc}
@@ -92,7 +140,30 @@ public final class FallbackAuthContext implements AsyncServerAuthContext, AuthCo
     public Promise<AuthStatus, AuthenticationException> validateRequest(MessageContext context, Subject clientSubject,
             Subject serviceSubject) {
         FallbackAuthContextState state = context.getState(this);
-        return new FallbackChain(logger, authModules, 0, state).validateRequest(context, clientSubject, serviceSubject);
+        if (!hedged) {
+            return new FallbackChain(logger, authModules, 0, state)
+                    .validateRequest(context, clientSubject, serviceSubject);
+        }
+        List<AsyncServerAuthModule> requestAuthModules = new ArrayList<>(authModules);
+        final List<HedgedAuthModule> hedgedAuthModules = new ArrayList<>();
+        for (int i = 0; i < sideEffectFreeAuthModules.size(); i++) {
+            AsyncServerAuthModule authModule = sideEffectFreeAuthModules.get(i);
+            if (authModule != null) {
+                HedgedAuthModule hedgedAuthModule = withHedging(authModule, context, serviceSubject);
+                hedgedAuthModules.add(hedgedAuthModule);
+                requestAuthModules.set(i, withValidation(withAuditing(withLogging(logger, hedgedAuthModule))));
+            }
+        }
+        return new FallbackChain(logger, requestAuthModules, 0, state)
+                .validateRequest(context, clientSubject, serviceSubject)
+                .thenAlways(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (HedgedAuthModule hedgedAuthModule : hedgedAuthModules) {
+                            hedgedAuthModule.cancel();
+                        }
+                    }
+                });
     }
 
     private static final class FallbackChain {
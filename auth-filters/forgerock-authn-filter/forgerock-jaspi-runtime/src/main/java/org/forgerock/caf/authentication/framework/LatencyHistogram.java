@@ -0,0 +1,130 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.caf.authentication.framework;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * <p>A lock-free histogram of latencies, in microseconds, in the manner of HdrHistogram.</p>
+ *
+ * <p>Values below 32 are counted exactly, and larger values in buckets whose width is a sixteenth of their lower
+ * bound, so that percentiles are reported within about 6% of their actual value, whatever the magnitude of the
+ * latencies, with a fixed number of buckets.</p>
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    private static final String[] PERCENTILE_FIELDS = { "p50", "p90", "p99", "p999" };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param micros The latency, in microseconds. Negative values are recorded as zero.
+     */
+    void record(long micros) {
+        final long value = Math.max(0, micros);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax;
+        do {
+            currentMax = max.get();
+        } while (value > currentMax && !max.compareAndSet(currentMax, value));
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return The number of recorded latencies.
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the recorded latencies fall, as the upper bound of the
+     * bucket holding it.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency, in microseconds, or 0 if no latency has been recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        final long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns a snapshot of the histogram, with the count, mean, maximum and main percentiles of the latencies, in
+     * microseconds. The snapshot is not atomic: latencies recorded while it is taken may be partially included.
+     *
+     * @return The snapshot of the histogram.
+     */
+    JsonValue toJsonValue() {
+        final long total = count.get();
+        final JsonValue json = json(object(
+                field("count", total),
+                field("mean", total == 0 ? 0 : sum.get() / total),
+                field("max", max.get())));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.put(PERCENTILE_FIELDS[i], getValueAtPercentile(PERCENTILES[i]));
+        }
+        return json;
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.caf.authentication.framework;
@@ -802,4 +802,64 @@ public class AuthModulesTest {
         assertThat(promise).failedWithException();
         verify(logger).error(contains("failed"), eq("MODULE_ID"), eq(exception));
     }
+
+    @Test
+    public void measuredAuthModuleShouldRecordValidateRequestOutcome() {
+
+        //Given
+        AuthenticationMetrics metrics = mock(AuthenticationMetrics.class);
+        AsyncServerAuthModule authModule = mock(AsyncServerAuthModule.class);
+        MessageInfoContext messageInfo = mock(MessageInfoContext.class);
+        Subject clientSubject = new Subject();
+        Subject serviceSubject = new Subject();
+
+        given(authModule.getModuleId()).willReturn("MODULE_ID");
+        given(authModule.validateRequest(messageInfo, clientSubject, serviceSubject))
+                .willReturn(Promises.<AuthStatus, AuthenticationException>newResultPromise(AuthStatus.SEND_FAILURE));
+
+        //When
+        Promise<AuthStatus, AuthenticationException> promise = AuthModules.withMetrics(metrics, authModule)
+                .validateRequest(messageInfo, clientSubject, serviceSubject);
+
+        //Then
+        assertThat(promise).succeeded().withObject().isEqualTo(AuthStatus.SEND_FAILURE);
+        verify(metrics).record(eq("MODULE_ID"), eq(AuthenticationMetrics.VALIDATE_REQUEST), eq("SEND_FAILURE"),
+                anyLong());
+    }
+
+    @Test
+    public void measuredAuthModuleShouldRecordCleanSubjectException() {
+
+        //Given
+        AuthenticationMetrics metrics = mock(AuthenticationMetrics.class);
+        AsyncServerAuthModule authModule = mock(AsyncServerAuthModule.class);
+        MessageInfoContext messageInfo = mock(MessageInfoContext.class);
+        Subject clientSubject = new Subject();
+
+        given(authModule.getModuleId()).willReturn("MODULE_ID");
+        given(authModule.cleanSubject(messageInfo, clientSubject)).willReturn(
+                Promises.<Void, AuthenticationException>newExceptionPromise(new AuthenticationException("ERROR")));
+
+        //When
+        Promise<Void, AuthenticationException> promise = AuthModules.withMetrics(metrics, authModule)
+                .cleanSubject(messageInfo, clientSubject);
+
+        //Then
+        assertThat(promise).failedWithException();
+        verify(metrics).record(eq("MODULE_ID"), eq(AuthenticationMetrics.CLEAN_SUBJECT),
+                eq(AuthenticationMetrics.OUTCOME_EXCEPTION), anyLong());
+    }
+
+    @Test
+    public void withMetricsShouldNotWrapAuthModuleWhenMetricsAreDisabled() {
+
+        //Given
+        AsyncServerAuthModule authModule = mock(AsyncServerAuthModule.class);
+
+        //When
+        AsyncServerAuthModule measuredAuthModule = AuthModules.withMetrics(null, authModule);
+
+        //Then
+        Assertions.assertThat(measuredAuthModule).isSameAs(authModule);
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.caf.authentication.framework;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.caf.authentication.framework.AuthenticationMetrics.CLEAN_SUBJECT;
+import static org.forgerock.caf.authentication.framework.AuthenticationMetrics.VALIDATE_REQUEST;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AuthenticationMetricsRegistryTest {
+
+    private AuthenticationMetricsRegistry registry;
+
+    @BeforeMethod
+    public void setUp() {
+        registry = new AuthenticationMetricsRegistry();
+    }
+
+    @Test
+    public void shouldRecordLatencyAndOutcomesPerModuleAndPhase() {
+
+        //Given
+        registry.record("Session", VALIDATE_REQUEST, "SUCCESS", TimeUnit.MILLISECONDS.toNanos(2));
+        registry.record("Session", VALIDATE_REQUEST, "SUCCESS", TimeUnit.MILLISECONDS.toNanos(4));
+        registry.record("Session", VALIDATE_REQUEST, "SEND_FAILURE", TimeUnit.MILLISECONDS.toNanos(6));
+        registry.record("OpenAM", CLEAN_SUBJECT, "EXCEPTION", TimeUnit.MILLISECONDS.toNanos(1));
+
+        //When
+        JsonValue snapshot = registry.snapshot();
+
+        //Then
+        assertThat(snapshot.keys()).containsExactly("OpenAM", "Session");
+        JsonValue validateRequest = snapshot.get("Session").get(VALIDATE_REQUEST);
+        assertThat(validateRequest.get("outcomes").get("SUCCESS").asLong()).isEqualTo(2L);
+        assertThat(validateRequest.get("outcomes").get("SEND_FAILURE").asLong()).isEqualTo(1L);
+        assertThat(validateRequest.get("latency").get("count").asLong()).isEqualTo(3L);
+        assertThat(validateRequest.get("latency").get("mean").asLong()).isEqualTo(4_000L);
+        assertThat(validateRequest.get("latency").get("max").asLong()).isEqualTo(6_000L);
+        assertThat(snapshot.get("Session").isDefined(CLEAN_SUBJECT)).isFalse();
+        assertThat(snapshot.get("OpenAM").get(CLEAN_SUBJECT).get("outcomes").get("EXCEPTION").asLong())
+                .isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldExposeSnapshotAsReadOnlyResource() throws Exception {
+
+        //Given
+        registry.record("Session", VALIDATE_REQUEST, "SUCCESS", 1_000);
+        AuthenticationMetricsResourceProvider provider = new AuthenticationMetricsResourceProvider(registry);
+
+        //When
+        ResourceResponse response = provider.readInstance(new RootContext(), newReadRequest("metrics"))
+                .getOrThrow();
+
+        //Then
+        assertThat(response.getContent().get("Session").get(VALIDATE_REQUEST).get("latency").get("count").asLong())
+                .isEqualTo(1L);
+    }
+}
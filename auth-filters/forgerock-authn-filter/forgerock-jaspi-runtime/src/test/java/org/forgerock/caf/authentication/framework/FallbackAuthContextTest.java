@@ -16,7 +16,8 @@
 
 package org.forgerock.caf.authentication.framework;
 
-import static org.forgerock.util.test.assertj.AssertJPromiseAssert.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.test.assertj.AssertJPromiseAssert.assertThat;
 import static org.mockito.BDDMockito.*;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
@@ -24,7 +25,9 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.security.Principal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,6 +41,7 @@ import org.forgerock.caf.authentication.api.AuthenticationState;
 import org.forgerock.caf.authentication.api.MessageContext;
 import org.forgerock.caf.authentication.api.MessageInfoContext;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.Promises;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -282,4 +286,81 @@ public class FallbackAuthContextTest {
         verify(authModuleOne).cleanSubject(context, clientSubject);
         verify(authModuleTwo).cleanSubject(context, clientSubject);
     }
+
+    @Test
+    public void validateRequestShouldCallSideEffectFreeAuthModuleBeforeFirstAuthModuleFails() {
+
+        //Given
+        MessageContext context = mockMessageContext();
+        Subject clientSubject = new Subject();
+        Subject serviceSubject = new Subject();
+        PromiseImpl<AuthStatus, AuthenticationException> authModuleOneResult = PromiseImpl.create();
+        AsyncServerAuthModule authModuleOne = mockAuthModule(authModuleOneResult);
+        AsyncServerAuthModule authModuleTwo = mockAuthModule(null,
+                Promises.<AuthStatus, AuthenticationException>newResultPromise(AuthStatus.SEND_SUCCESS));
+        final Principal principal = mock(Principal.class);
+        given(authModuleTwo.validateRequest(any(MessageInfoContext.class), any(Subject.class), any(Subject.class)))
+                .willAnswer(new Answer<Promise<AuthStatus, AuthenticationException>>() {
+                    @Override
+                    public Promise<AuthStatus, AuthenticationException> answer(InvocationOnMock invocation) {
+                        MessageInfoContext messageInfo = (MessageInfoContext) invocation.getArguments()[0];
+                        messageInfo.getRequestContextMap().put("authModuleTwo", "VALUE");
+                        ((Subject) invocation.getArguments()[1]).getPrincipals().add(principal);
+                        return Promises.newResultPromise(AuthStatus.SUCCESS);
+                    }
+                });
+
+        authContext = new FallbackAuthContext(mock(Logger.class), Arrays.asList(authModuleOne, authModuleTwo),
+                Collections.singleton(authModuleTwo));
+
+        //When
+        Promise<AuthStatus, AuthenticationException> promise = authContext.validateRequest(context, clientSubject,
+                serviceSubject);
+
+        //Then
+        verify(authModuleTwo).validateRequest(any(MessageInfoContext.class), any(Subject.class), eq(serviceSubject));
+        assertThat(promise.isDone()).isFalse();
+        assertThat(context.getRequestContextMap()).doesNotContainKey("authModuleTwo");
+        assertThat(clientSubject.getPrincipals()).isEmpty();
+
+        //When
+        authModuleOneResult.handleResult(AuthStatus.SEND_FAILURE);
+
+        //Then
+        assertThat(promise).succeeded().withObject().isEqualTo(AuthStatus.SUCCESS);
+        assertThat(context.getRequestContextMap()).containsEntry("authModuleTwo", "VALUE");
+        assertThat(clientSubject.getPrincipals()).containsOnly(principal);
+        assertThat(authContext.secureResponse(context, serviceSubject)).succeeded().withObject()
+                .isEqualTo(AuthStatus.SEND_SUCCESS);
+    }
+
+    @Test
+    public void whenFirstAuthModuleSucceedsValidateRequestShouldCancelSideEffectFreeAuthModule() {
+
+        //Given
+        MessageContext context = mockMessageContext();
+        Subject clientSubject = new Subject();
+        Subject serviceSubject = new Subject();
+        AsyncServerAuthModule authModuleOne = mockAuthModule(
+                Promises.<AuthStatus, AuthenticationException>newResultPromise(AuthStatus.SUCCESS));
+        PromiseImpl<AuthStatus, AuthenticationException> authModuleTwoResult =
+                new PromiseImpl<AuthStatus, AuthenticationException>() {
+                    @Override
+                    protected AuthenticationException tryCancel(boolean mayInterruptIfRunning) {
+                        return new AuthenticationException("Cancelled");
+                    }
+                };
+        AsyncServerAuthModule authModuleTwo = mockAuthModule(authModuleTwoResult);
+
+        authContext = new FallbackAuthContext(mock(Logger.class), Arrays.asList(authModuleOne, authModuleTwo),
+                Collections.singleton(authModuleTwo));
+
+        //When
+        Promise<AuthStatus, AuthenticationException> promise = authContext.validateRequest(context, clientSubject,
+                serviceSubject);
+
+        //Then
+        assertThat(promise).succeeded().withObject().isEqualTo(AuthStatus.SUCCESS);
+        assertThat(authModuleTwoResult.isCancelled()).isTrue();
+    }
 }
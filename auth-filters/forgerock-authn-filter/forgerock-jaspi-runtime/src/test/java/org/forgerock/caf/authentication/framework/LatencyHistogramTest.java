@@ -0,0 +1,76 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.caf.authentication.framework;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.json.JsonValue;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldMapEveryValueToBucketContainingIt() {
+        for (long value = 0; value < 1_000_000; value += value < 1024 ? 1 : 997) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.upperBoundOf(index)).isGreaterThanOrEqualTo(value);
+            assertThat(index == 0 || LatencyHistogram.upperBoundOf(index - 1) < value).isTrue();
+        }
+    }
+
+    @Test
+    public void shouldReportPercentilesWithinBucketPrecision() {
+
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+
+        //Then
+        assertThat(histogram.getCount()).isEqualTo(10_000L);
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(5_000L, 5_000L * 17 / 16);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(9_900L, 9_900L * 17 / 16);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(10_000L);
+    }
+
+    @Test
+    public void shouldSummarizeHistogramAsJson() {
+
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(30);
+
+        //When
+        JsonValue json = histogram.toJsonValue();
+
+        //Then
+        assertThat(json.get("count").asLong()).isEqualTo(2L);
+        assertThat(json.get("mean").asLong()).isEqualTo(20L);
+        assertThat(json.get("max").asLong()).isEqualTo(30L);
+        assertThat(json.get("p50").asLong()).isEqualTo(10L);
+        assertThat(json.get("p999").asLong()).isEqualTo(30L);
+    }
+
+    @Test
+    public void shouldReportZeroWhenEmpty() {
+        assertThat(new LatencyHistogram().getValueAtPercentile(99)).isEqualTo(0L);
+    }
+}
@@ -11,12 +11,13 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.authz.filter.api;
 
 import org.forgerock.json.JsonValue;
+import org.forgerock.util.time.Duration;
 
 /**
  * Represents the result of the authorization of a request.
@@ -32,7 +33,7 @@ public final class AuthorizationResult {
      * @return A successful {@code AuthorizationResult} instance.
      */
     public static AuthorizationResult accessPermitted() {
-        return new AuthorizationResult(true, null, null);
+        return new AuthorizationResult(true, null, null, null);
     }
 
     /**
@@ -43,7 +44,7 @@ public final class AuthorizationResult {
      * @return A failed {@code AuthorizationResult} instance.
      */
     public static AuthorizationResult accessDenied(String reason) {
-        return new AuthorizationResult(false, reason, null);
+        return new AuthorizationResult(false, reason, null, null);
     }
 
     /**
@@ -55,12 +56,13 @@ public final class AuthorizationResult {
      * @return A failed {@code AuthorizationResult} instance.
      */
     public static AuthorizationResult accessDenied(String reason, JsonValue detail) {
-        return new AuthorizationResult(false, reason, detail);
+        return new AuthorizationResult(false, reason, detail, null);
     }
 
     private final boolean authorized;
     private final String reason;
     private final JsonValue detail;
+    private final Duration timeToLive;
 
     /**
      * Constructs a new {@code AuthorizationResult} instance.
@@ -69,11 +71,25 @@ public final class AuthorizationResult {
      * @param reason The reason why authorization failed. {@code null} if the request is authorized.
      * @param detail A {@code JsonValue} containing additional detail on why authorization failed. Maybe {@code null}
      *               when the request is unauthorized or {@code null} if the request is authorized.
+     * @param timeToLive How long the result may be cached for. {@code null} if unspecified.
      */
-    private AuthorizationResult(boolean authorized, String reason, JsonValue detail) {
+    private AuthorizationResult(boolean authorized, String reason, JsonValue detail, Duration timeToLive) {
         this.authorized = authorized;
         this.reason = reason;
         this.detail = detail;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns a copy of this {@code AuthorizationResult} which may be cached for the given duration, by an
+     * authorization module such as {@code CachingCrestAuthorizationModule}. A zero duration means that the result
+     * must not be cached at all.
+     *
+     * @param timeToLive How long the result may be cached for.
+     * @return A copy of this {@code AuthorizationResult} with the given time to live.
+     */
+    public AuthorizationResult withTimeToLive(Duration timeToLive) {
+        return new AuthorizationResult(authorized, reason, detail, timeToLive);
     }
 
     /**
@@ -103,4 +119,14 @@ public final class AuthorizationResult {
     public JsonValue getDetail() {
         return detail;
     }
+
+    /**
+     * Gets how long this result may be cached for.
+     *
+     * @return How long the result may be cached for, or {@code null} if the authorization module did not say, in
+     * which case caches apply their own default.
+     */
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
 }
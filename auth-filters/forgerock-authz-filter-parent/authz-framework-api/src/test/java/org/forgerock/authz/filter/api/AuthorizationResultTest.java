@@ -11,12 +11,15 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.authz.filter.api;
 
+import java.util.concurrent.TimeUnit;
+
 import org.forgerock.json.JsonValue;
+import org.forgerock.util.time.Duration;
 import org.testng.annotations.Test;
 
 import static org.forgerock.json.JsonValue.json;
@@ -72,4 +75,23 @@ public class AuthorizationResultTest {
         assertEquals(authorizationResult.getReason(), reason);
         assertEquals(authorizationResult.getDetail(), detail);
     }
+
+    @Test
+    public void shouldCopyAuthorizationResultWithTimeToLive() {
+
+        //Given
+        String reason = "REASON";
+        JsonValue detail = json(object());
+        AuthorizationResult authorizationResult = AuthorizationResult.accessDenied(reason, detail);
+
+        //When
+        AuthorizationResult cacheableResult = authorizationResult.withTimeToLive(Duration.duration("5 minutes"));
+
+        //Then
+        assertNull(authorizationResult.getTimeToLive());
+        assertFalse(cacheableResult.isAuthorized());
+        assertEquals(cacheableResult.getReason(), reason);
+        assertEquals(cacheableResult.getDetail(), detail);
+        assertEquals(cacheableResult.getTimeToLive().to(TimeUnit.MINUTES), 5L);
+    }
 }
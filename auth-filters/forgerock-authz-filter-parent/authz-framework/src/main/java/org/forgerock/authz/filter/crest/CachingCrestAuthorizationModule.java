@@ -0,0 +1,400 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.authz.filter.crest;
+
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.authz.filter.api.AuthorizationResult;
+import org.forgerock.authz.filter.crest.api.CrestAuthorizationModule;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.InternalServerErrorException;
+import org.forgerock.json.resource.PatchRequest;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.Request;
+import org.forgerock.json.resource.RequestType;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourcePath;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Function;
+import org.forgerock.util.PerItemEvictionStrategyCache;
+import org.forgerock.util.Reject;
+import org.forgerock.util.crypto.Digests;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+
+/**
+ * A {@link CrestAuthorizationModule} which caches the authorization decisions of another module.
+ * <p>
+ * Decisions are cached against a {@link DecisionKeyFunction decision key}, which by default is a digest of the
+ * authenticated subject found in the {@link SecurityContext}, the request type, a prefix of the resource path and the
+ * action or query, so that repeated requests from the same subject to the same resources are only evaluated once.
+ * Each decision is cached for its {@link AuthorizationResult#getTimeToLive() time to live}, or for the default time to
+ * live of this module if the wrapped module did not give one; decisions which fail are never cached. Concurrent
+ * requests for the same decision share a single evaluation of the wrapped module. Once the cache holds its maximum
+ * number of decisions, the requests needing a new decision are evaluated without being cached, until decisions expire.
+ * <p>
+ * The default decision key ignores the content of the requests, so modules whose decisions depend on it, or on
+ * anything else in the context, should be given their own decision key function. By default, only the decisions for
+ * read and query requests are cached, so that each request changing a resource is authorized afresh.
+ */
+public class CachingCrestAuthorizationModule implements CrestAuthorizationModule {
+
+    /** The maximum number of decisions cached by default. */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * Computes the key an authorization decision is cached against.
+     */
+    public interface DecisionKeyFunction {
+
+        /**
+         * Returns the key the decision for the given request is cached against. Requests with the same key must
+         * always get the same decision from the wrapped module.
+         *
+         * @param context The current context.
+         * @param request The request to authorize.
+         * @return The decision key, or {@code null} if the decision must not be cached.
+         */
+        String decisionKey(Context context, Request request);
+    }
+
+    /**
+     * Returns the default decision key function for read and query requests, which digests the authenticated subject,
+     * the request type, the first path elements of the resource path and the query of each request. Other requests,
+     * and requests without a {@link SecurityContext}, are not cached.
+     *
+     * @param resourcePathPrefixLength The number of resource path elements to include in the key: the requests made to
+     *                                 the resources sharing these first path elements share their decision.
+     * @return The default decision key function.
+     */
+    public static DecisionKeyFunction defaultDecisionKeyFunction(final int resourcePathPrefixLength) {
+        return defaultDecisionKeyFunction(resourcePathPrefixLength, EnumSet.of(RequestType.READ, RequestType.QUERY));
+    }
+
+    /**
+     * Returns the default decision key function for the given request types, which digests the authenticated subject,
+     * the request type, the first path elements of the resource path and the action or query of each request.
+     * Requests of other types, and requests without a {@link SecurityContext}, are not cached.
+     *
+     * @param resourcePathPrefixLength The number of resource path elements to include in the key: the requests made to
+     *                                 the resources sharing these first path elements share their decision.
+     * @param requestTypes The types of the requests whose decisions are cached.
+     * @return The default decision key function.
+     */
+    public static DecisionKeyFunction defaultDecisionKeyFunction(final int resourcePathPrefixLength,
+            final Set<RequestType> requestTypes) {
+        Reject.ifTrue(resourcePathPrefixLength < 0, "The resource path prefix length must not be negative");
+        Reject.ifNull(requestTypes);
+        final Set<RequestType> cachedRequestTypes = requestTypes.isEmpty()
+                ? EnumSet.noneOf(RequestType.class)
+                : EnumSet.copyOf(requestTypes);
+        return new DecisionKeyFunction() {
+            @Override
+            public String decisionKey(Context context, Request request) {
+                if (!cachedRequestTypes.contains(request.getRequestType())
+                        || !context.containsContext(SecurityContext.class)) {
+                    return null;
+                }
+                final SecurityContext securityContext = context.asContext(SecurityContext.class);
+                final ResourcePath path = request.getResourcePathObject();
+                final MessageDigest digest = Digests.newSha256();
+                update(digest, securityContext.getAuthenticationId());
+                update(digest, String.valueOf(new TreeMap<>(securityContext.getAuthorization())));
+                update(digest, request.getRequestType().name());
+                update(digest, path.head(Math.min(resourcePathPrefixLength, path.size())).toString());
+                if (request instanceof ActionRequest) {
+                    update(digest, ((ActionRequest) request).getAction());
+                } else if (request instanceof QueryRequest) {
+                    final QueryRequest queryRequest = (QueryRequest) request;
+                    update(digest, queryRequest.getQueryId());
+                    update(digest, queryRequest.getQueryExpression());
+                    update(digest, String.valueOf(queryRequest.getQueryFilter()));
+                }
+                return new String(digest.digest(), StandardCharsets.ISO_8859_1);
+            }
+        };
+    }
+
+    /** Adds a length prefixed value to the digest, so that the values cannot run into each other. */
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            digest.update((byte) 1);
+            digest.update(new byte[] {
+                (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8),
+                (byte) bytes.length
+            });
+            digest.update(bytes);
+        }
+    }
+
+    private final CrestAuthorizationModule module;
+    private final DecisionKeyFunction decisionKeyFunction;
+    private final int maxSize;
+    private final PerItemEvictionStrategyCache<String, Promise<AuthorizationResult, ResourceException>> cache;
+    private final AsyncFunction<Promise<AuthorizationResult, ResourceException>, Duration, Exception> timeToLive;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a new {@code CachingCrestAuthorizationModule}, which caches up to {@link #DEFAULT_MAX_SIZE}
+     * decisions against the {@link #defaultDecisionKeyFunction(int) default decision key} of the whole resource path.
+     *
+     * @param module The authorization module whose decisions are cached.
+     * @param executorService The executor service used to evict the decisions from the cache.
+     * @param defaultTimeToLive How long decisions without a time to live of their own are cached for.
+     */
+    public CachingCrestAuthorizationModule(CrestAuthorizationModule module, ScheduledExecutorService executorService,
+            Duration defaultTimeToLive) {
+        this(module, executorService, defaultTimeToLive, defaultDecisionKeyFunction(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Constructs a new {@code CachingCrestAuthorizationModule}, which caches up to {@link #DEFAULT_MAX_SIZE}
+     * decisions.
+     *
+     * @param module The authorization module whose decisions are cached.
+     * @param executorService The executor service used to evict the decisions from the cache.
+     * @param defaultTimeToLive How long decisions without a time to live of their own are cached for.
+     * @param decisionKeyFunction The function computing the keys the decisions are cached against.
+     */
+    public CachingCrestAuthorizationModule(CrestAuthorizationModule module, ScheduledExecutorService executorService,
+            Duration defaultTimeToLive, DecisionKeyFunction decisionKeyFunction) {
+        this(module, executorService, defaultTimeToLive, DEFAULT_MAX_SIZE, decisionKeyFunction);
+    }
+
+    /**
+     * Constructs a new {@code CachingCrestAuthorizationModule}.
+     *
+     * @param module The authorization module whose decisions are cached.
+     * @param executorService The executor service used to evict the decisions from the cache.
+     * @param defaultTimeToLive How long decisions without a time to live of their own are cached for.
+     * @param maxSize The maximum number of decisions to cache.
+     * @param decisionKeyFunction The function computing the keys the decisions are cached against.
+     */
+    public CachingCrestAuthorizationModule(CrestAuthorizationModule module, ScheduledExecutorService executorService,
+            Duration defaultTimeToLive, int maxSize, DecisionKeyFunction decisionKeyFunction) {
+        Reject.ifNull(module, executorService, defaultTimeToLive, decisionKeyFunction);
+        Reject.ifTrue(maxSize < 0, "The maximum cache size must not be negative");
+        this.module = module;
+        this.decisionKeyFunction = decisionKeyFunction;
+        this.maxSize = maxSize;
+        this.cache = new PerItemEvictionStrategyCache<>(executorService, defaultTimeToLive);
+        this.timeToLive = new DecisionTimeToLiveFunction(defaultTimeToLive);
+    }
+
+    /**
+     * Returns the name of the wrapped authorization module.
+     *
+     * @return The name of the wrapped authorization module.
+     */
+    @Override
+    public String getName() {
+        return module.getName();
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizeCreate(final Context context,
+            final CreateRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizeCreate(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizeRead(final Context context,
+            final ReadRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizeRead(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizeUpdate(final Context context,
+            final UpdateRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizeUpdate(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizeDelete(final Context context,
+            final DeleteRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizeDelete(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizePatch(final Context context,
+            final PatchRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizePatch(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizeAction(final Context context,
+            final ActionRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizeAction(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<AuthorizationResult, ResourceException> authorizeQuery(final Context context,
+            final QueryRequest request) {
+        return authorize(context, request, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+            @Override
+            public Promise<AuthorizationResult, ResourceException> call() {
+                return module.authorizeQuery(context, request);
+            }
+        });
+    }
+
+    private Promise<AuthorizationResult, ResourceException> authorize(Context context, Request request,
+            final Callable<Promise<AuthorizationResult, ResourceException>> evaluation) {
+        requests.incrementAndGet();
+        final String key = decisionKeyFunction.decisionKey(context, request);
+        // The size is only checked approximately, so concurrent requests may exceed it by a few decisions.
+        if (key == null || cache.size() >= maxSize && !cache.containsKey(key)) {
+            misses.incrementAndGet();
+            return evaluate(evaluation);
+        }
+        try {
+            return cache.getValue(key, new Callable<Promise<AuthorizationResult, ResourceException>>() {
+                @Override
+                public Promise<AuthorizationResult, ResourceException> call() {
+                    misses.incrementAndGet();
+                    return evaluate(evaluation);
+                }
+            }, timeToLive);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return newExceptionPromise(authorizationFailed(e));
+        } catch (ExecutionException e) {
+            return newExceptionPromise(authorizationFailed(e.getCause()));
+        }
+    }
+
+    private static Promise<AuthorizationResult, ResourceException> evaluate(
+            Callable<Promise<AuthorizationResult, ResourceException>> evaluation) {
+        try {
+            return evaluation.call();
+        } catch (Exception e) {
+            return newExceptionPromise(authorizationFailed(e));
+        }
+    }
+
+    private static ResourceException authorizationFailed(Throwable cause) {
+        return new InternalServerErrorException("Authorization failed", cause);
+    }
+
+    /**
+     * Returns the number of authorization requests which have been answered from the cache, including those which
+     * shared the evaluation of a concurrent identical request.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return requests.get() - misses.get();
+    }
+
+    /**
+     * Returns the number of authorization requests which have been evaluated by the wrapped module.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the proportion of the authorization requests which have been answered from the cache.
+     *
+     * @return The cache hit rate, between 0 and 1, or 0 if there has been no request yet.
+     */
+    public double getHitRate() {
+        final long count = requests.get();
+        return count == 0 ? 0 : (double) (count - misses.get()) / count;
+    }
+
+    /** Caches each decision for its own time to live, or the default one, and failed decisions not at all. */
+    private static final class DecisionTimeToLiveFunction
+            implements AsyncFunction<Promise<AuthorizationResult, ResourceException>, Duration, Exception> {
+
+        private final Function<AuthorizationResult, Duration, ResourceException> resultTimeToLive;
+        private final Function<ResourceException, Duration, ResourceException> failureTimeToLive =
+                new Function<ResourceException, Duration, ResourceException>() {
+                    @Override
+                    public Duration apply(ResourceException e) {
+                        return Duration.ZERO;
+                    }
+                };
+
+        private DecisionTimeToLiveFunction(final Duration defaultTimeToLive) {
+            this.resultTimeToLive = new Function<AuthorizationResult, Duration, ResourceException>() {
+                @Override
+                public Duration apply(AuthorizationResult result) {
+                    return result.getTimeToLive() != null ? result.getTimeToLive() : defaultTimeToLive;
+                }
+            };
+        }
+
+        @Override
+        public Promise<? extends Duration, ? extends Exception> apply(
+                Promise<AuthorizationResult, ResourceException> decision) {
+            return decision.then(resultTimeToLive, failureTimeToLive);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.authz.filter.crest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.authz.filter.crest.CachingCrestAuthorizationModule.defaultDecisionKeyFunction;
+import static org.forgerock.json.resource.Requests.newActionRequest;
+import static org.forgerock.json.resource.Requests.newDeleteRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.forgerock.util.time.Duration.duration;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.authz.filter.api.AuthorizationResult;
+import org.forgerock.authz.filter.crest.api.CrestAuthorizationModule;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.ForbiddenException;
+import org.forgerock.json.resource.PatchRequest;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.RequestType;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CachingCrestAuthorizationModuleTest {
+
+    private ScheduledExecutorService executorService;
+    private CountingModule module;
+
+    @BeforeMethod
+    public void setUp() {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        module = new CountingModule();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldCacheDecisionForSameSubjectAndResource() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(Integer.MAX_VALUE);
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted());
+
+        //When
+        AuthorizationResult first = cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob"))
+                .getOrThrow();
+        AuthorizationResult second = cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob"))
+                .getOrThrow();
+
+        //Then
+        assertThat(first.isAuthorized()).isTrue();
+        assertThat(second).isSameAs(first);
+        assertThat(module.evaluations.get()).isEqualTo(1);
+        assertThat(cachingModule.getHitCount()).isEqualTo(1L);
+        assertThat(cachingModule.getMissCount()).isEqualTo(1L);
+        assertThat(cachingModule.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void shouldNotShareDecisionBetweenSubjectsOrRequestTypes() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = new CachingCrestAuthorizationModule(module, executorService,
+                duration("1 minute"), defaultDecisionKeyFunction(Integer.MAX_VALUE, EnumSet.allOf(RequestType.class)));
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted());
+
+        //When
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeRead(subject("carol"), newReadRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeDelete(subject("alice"), newDeleteRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeAction(subject("alice"), newActionRequest("users/bob", "lock")).getOrThrow();
+        cachingModule.authorizeAction(subject("alice"), newActionRequest("users/bob", "unlock")).getOrThrow();
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(5);
+        assertThat(cachingModule.getHitCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotCacheWriteDecisionsByDefault() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(Integer.MAX_VALUE);
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted());
+
+        //When
+        cachingModule.authorizeDelete(subject("alice"), newDeleteRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeDelete(subject("alice"), newDeleteRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeAction(subject("alice"), newActionRequest("users/bob", "lock")).getOrThrow();
+        cachingModule.authorizeAction(subject("alice"), newActionRequest("users/bob", "lock")).getOrThrow();
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(4);
+        assertThat(cachingModule.getHitCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotCacheMoreDecisionsThanMaxSize() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = new CachingCrestAuthorizationModule(module, executorService,
+                duration("1 minute"), 1, defaultDecisionKeyFunction(Integer.MAX_VALUE));
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted());
+
+        //When
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/carol")).getOrThrow();
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/carol")).getOrThrow();
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob")).getOrThrow();
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(3);
+        assertThat(cachingModule.getHitCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldShareDecisionBetweenResourcesWithSamePathPrefix() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(1);
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted());
+
+        //When
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/carol")).getOrThrow();
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("groups/admins")).getOrThrow();
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentEvaluations() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(Integer.MAX_VALUE);
+        PromiseImpl<AuthorizationResult, ResourceException> decision = PromiseImpl.create();
+        module.decision = decision;
+
+        //When
+        Promise<AuthorizationResult, ResourceException> first =
+                cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob"));
+        Promise<AuthorizationResult, ResourceException> second =
+                cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob"));
+        decision.handleResult(AuthorizationResult.accessDenied("REASON"));
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(1);
+        assertThat(first.getOrThrow().getReason()).isEqualTo("REASON");
+        assertThat(second.getOrThrow().getReason()).isEqualTo("REASON");
+    }
+
+    @Test
+    public void shouldNotCacheFailedEvaluations() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(Integer.MAX_VALUE);
+        module.decision = newExceptionPromise((ResourceException) new ForbiddenException());
+
+        //When
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob"));
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob"));
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(2);
+        assertThat(cachingModule.getMissCount()).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldHonourDecisionTimeToLive() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(Integer.MAX_VALUE);
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted().withTimeToLive(Duration.ZERO));
+
+        //When
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeRead(subject("alice"), newReadRequest("users/bob")).getOrThrow();
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(2);
+        assertThat(cachingModule.getHitRate()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void shouldNotCacheDecisionWithoutSecurityContext() throws Exception {
+
+        //Given
+        CachingCrestAuthorizationModule cachingModule = newCachingModule(Integer.MAX_VALUE);
+        module.decision = newResultPromise(AuthorizationResult.accessPermitted());
+
+        //When
+        cachingModule.authorizeRead(new RootContext(), newReadRequest("users/bob")).getOrThrow();
+        cachingModule.authorizeRead(new RootContext(), newReadRequest("users/bob")).getOrThrow();
+
+        //Then
+        assertThat(module.evaluations.get()).isEqualTo(2);
+        assertThat(cachingModule.getMissCount()).isEqualTo(2L);
+    }
+
+    private CachingCrestAuthorizationModule newCachingModule(int resourcePathPrefixLength) {
+        return new CachingCrestAuthorizationModule(module, executorService, duration("1 minute"),
+                defaultDecisionKeyFunction(resourcePathPrefixLength));
+    }
+
+    private static Context subject(String authenticationId) {
+        return new SecurityContext(new RootContext(), authenticationId, Collections.<String, Object>emptyMap());
+    }
+
+    /** Returns the same decision for every request, counting the evaluations. */
+    private static final class CountingModule implements CrestAuthorizationModule {
+
+        private final AtomicInteger evaluations = new AtomicInteger();
+        private Promise<AuthorizationResult, ResourceException> decision;
+
+        @Override
+        public String getName() {
+            return "CountingModule";
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizeCreate(Context context,
+                CreateRequest request) {
+            return evaluate();
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizeRead(Context context, ReadRequest request) {
+            return evaluate();
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizeUpdate(Context context,
+                UpdateRequest request) {
+            return evaluate();
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizeDelete(Context context,
+                DeleteRequest request) {
+            return evaluate();
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizePatch(Context context,
+                PatchRequest request) {
+            return evaluate();
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizeAction(Context context,
+                ActionRequest request) {
+            return evaluate();
+        }
+
+        @Override
+        public Promise<AuthorizationResult, ResourceException> authorizeQuery(Context context,
+                QueryRequest request) {
+            return evaluate();
+        }
+
+        private Promise<AuthorizationResult, ResourceException> evaluate() {
+            evaluations.incrementAndGet();
+            return decision;
+        }
+    }
+}
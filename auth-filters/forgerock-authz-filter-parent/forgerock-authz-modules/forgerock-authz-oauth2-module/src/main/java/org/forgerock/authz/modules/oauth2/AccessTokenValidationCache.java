@@ -11,27 +11,50 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.authz.modules.oauth2;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.forgerock.util.crypto.Digests;
+import org.forgerock.util.time.TimeService;
 
 /**
  * <p>Cache for caching AccessToken validation results.</p>
  *
- * <p>The cache is created with a maximum size, which when reached the cache will remove the oldest entry.</p>
+ * <p>Each entry expires at the {@link AccessTokenValidationResponse#getExpiryTime() expiry time} of its access token:
+ * expired entries are never returned, and responses for tokens which have already expired are not cached at all.</p>
+ *
+ * <p>The cache is created with a maximum size. Once it is reached, a new entry is only admitted if its access token
+ * has been seen more often recently than the access token of the oldest entry, which it then replaces, so that a
+ * scan of tokens which are only used once cannot flush the tokens in regular use. How often each token has been seen
+ * is estimated with a small count-min sketch, which is aged periodically.</p>
+ *
+ * <p>The cache is lock-free: reads and writes of different tokens do not contend with each other, and the maximum
+ * size may be briefly exceeded while entries are added concurrently.</p>
  *
  * @since 1.4.0
  */
 class AccessTokenValidationCache {
 
-    private final Map<String, AccessTokenValidationResponse> cache;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxSize;
+    private final TimeService timeService;
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    /** The entries in the order they were added, oldest first, along with entries which have since been replaced. */
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final FrequencySketch frequencies;
 
     /**
      * Constructs a new instance of the AccessTokenValidationCache.
@@ -39,47 +62,76 @@ class AccessTokenValidationCache {
      * @param maxSize The maximum size of the cache.
      */
     AccessTokenValidationCache(final int maxSize) {
-        cache = new LinkedHashMap<String, AccessTokenValidationResponse>(maxSize) {
-            /**
-             * Serial Version UID.
-             */
-            public static final long serialVersionUID = -1L;
-
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, AccessTokenValidationResponse> eldestEntry) {
-                return size() > maxSize;
-            }
-        };
+        this(maxSize, TimeService.SYSTEM);
     }
 
     /**
-     * Adds an entry to the cache.
+     * Constructs a new instance of the AccessTokenValidationCache.
+     *
+     * @param maxSize The maximum size of the cache.
+     * @param timeService The time service used to expire the entries.
+     */
+    AccessTokenValidationCache(final int maxSize, final TimeService timeService) {
+        this.maxSize = maxSize;
+        this.timeService = timeService;
+        this.frequencies = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Adds an entry to the cache, unless the access token has already expired, or the cache is full of access tokens
+     * which are used more often.
      *
      * @param accessToken The access token.
      * @param validationResponse The validation response.
      */
     void add(String accessToken, AccessTokenValidationResponse validationResponse) {
-        try {
-            lock.writeLock().lock();
-            cache.put(accessToken, validationResponse);
-        } finally {
-            lock.writeLock().unlock();
+        frequencies.increment(accessToken);
+        if (maxSize <= 0 || validationResponse == null || isExpired(validationResponse)) {
+            return;
+        }
+        final Entry entry = new Entry(accessToken, validationResponse);
+        if (cache.containsKey(accessToken)) {
+            cache.put(accessToken, entry);
+            enqueue(entry);
+            purgeStaleEntries();
+            return;
         }
+        while (cache.size() >= maxSize) {
+            final Entry victim = dequeue();
+            if (victim == null) {
+                break;
+            } else if (cache.get(victim.accessToken) != victim) {
+                // The entry has been replaced since, or already evicted.
+                continue;
+            } else if (!isExpired(victim.validationResponse)
+                    && frequencies.frequency(accessToken) <= frequencies.frequency(victim.accessToken)) {
+                // Not admitted: give the victim another chance, as it is used at least as often.
+                enqueue(victim);
+                return;
+            }
+            cache.remove(victim.accessToken, victim);
+        }
+        cache.put(accessToken, entry);
+        enqueue(entry);
+        purgeStaleEntries();
     }
 
     /**
      * Retrieves an entry from the cache.
      *
      * @param accessToken The access token.
-     * @return The access tokens validation response.
+     * @return The access tokens validation response, or {@code null} if it is not in the cache or has expired.
      */
     AccessTokenValidationResponse get(String accessToken) {
-        try {
-            lock.readLock().lock();
-            return cache.get(accessToken);
-        } finally {
-            lock.readLock().unlock();
+        frequencies.increment(accessToken);
+        final Entry entry = cache.get(accessToken);
+        if (entry == null) {
+            return null;
+        } else if (isExpired(entry.validationResponse)) {
+            cache.remove(accessToken, entry);
+            return null;
         }
+        return entry.validationResponse;
     }
 
     /**
@@ -88,11 +140,121 @@ class AccessTokenValidationCache {
      * @return The cache size.
      */
     int size() {
-        try {
-            lock.readLock().lock();
-            return cache.size();
-        } finally {
-            lock.readLock().unlock();
+        return cache.size();
+    }
+
+    /**
+     * Drops the replaced and expired entries from the queue once it holds twice as many entries as the cache can, as
+     * happens when the tokens in use expire and are validated again before the cache is full.
+     */
+    private void purgeStaleEntries() {
+        for (int i = queued.get(); i > 0 && queued.get() > 2 * maxSize; i--) {
+            final Entry entry = dequeue();
+            if (entry == null) {
+                return;
+            } else if (cache.get(entry.accessToken) == entry) {
+                if (isExpired(entry.validationResponse)) {
+                    cache.remove(entry.accessToken, entry);
+                } else {
+                    enqueue(entry);
+                }
+            }
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        queued.incrementAndGet();
+        entries.offer(entry);
+    }
+
+    private Entry dequeue() {
+        final Entry entry = entries.poll();
+        if (entry != null) {
+            queued.decrementAndGet();
+        }
+        return entry;
+    }
+
+    private boolean isExpired(AccessTokenValidationResponse validationResponse) {
+        return validationResponse.getExpiryTime() < timeService.now();
+    }
+
+    /** A cached validation response. */
+    private static final class Entry {
+        private final String accessToken;
+        private final AccessTokenValidationResponse validationResponse;
+
+        private Entry(String accessToken, AccessTokenValidationResponse validationResponse) {
+            this.accessToken = accessToken;
+            this.validationResponse = validationResponse;
+        }
+    }
+
+    /**
+     * Estimates how often each access token has been seen recently, with four counters per token, each an element of
+     * an {@link AtomicIntegerArray} which stops counting at 15. The counters are halved each time ten times as many
+     * tokens as the cache can hold have been counted, so that tokens which are no longer used are eventually
+     * forgotten.
+     * <p>
+     * The counters of a token are chosen from a salted SHA-256 digest of the token, rather than from its
+     * {@link String#hashCode() hash code}, so that clients cannot craft tokens sharing the counters of other tokens to
+     * inflate their frequencies.
+     */
+    private static final class FrequencySketch {
+        private static final int MAX_FREQUENCY = 15;
+        private static final int COUNTERS_PER_TOKEN = 4;
+
+        private final AtomicIntegerArray counters;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+        private final byte[] salt = new byte[16];
+
+        private FrequencySketch(int maxSize) {
+            final int width = Integer.highestOneBit(Math.max(16, Math.min(maxSize, 1 << 24)) * 2 - 1) * 4;
+            this.counters = new AtomicIntegerArray(width);
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, maxSize);
+            new SecureRandom().nextBytes(salt);
+        }
+
+        private void increment(String accessToken) {
+            for (int index : indexesOf(accessToken)) {
+                int count;
+                do {
+                    count = counters.get(index);
+                } while (count < MAX_FREQUENCY && !counters.compareAndSet(index, count, count + 1));
+            }
+            if (additions.incrementAndGet() == sampleSize) {
+                reset();
+            }
+        }
+
+        private int frequency(String accessToken) {
+            int frequency = MAX_FREQUENCY;
+            for (int index : indexesOf(accessToken)) {
+                frequency = Math.min(frequency, counters.get(index));
+            }
+            return frequency;
+        }
+
+        /** Halves all the counters. Concurrent increments may be lost, which only makes the estimates rougher. */
+        private void reset() {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, counters.get(i) >>> 1);
+            }
+            additions.set(0);
+        }
+
+        private int[] indexesOf(String accessToken) {
+            final MessageDigest digest = Digests.newSha256();
+            digest.update(salt);
+            final ByteBuffer hash = ByteBuffer.wrap(digest.digest(accessToken.getBytes(StandardCharsets.UTF_8)));
+            final int[] indexes = new int[COUNTERS_PER_TOKEN];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = hash.getInt() & mask;
+            }
+            return indexes;
         }
     }
 }
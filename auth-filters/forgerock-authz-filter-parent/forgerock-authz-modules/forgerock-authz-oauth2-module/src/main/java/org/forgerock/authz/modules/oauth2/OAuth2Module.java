@@ -11,11 +11,12 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.authz.modules.oauth2;
 
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import java.util.HashSet;
@@ -25,8 +26,10 @@ import java.util.Set;
 import org.forgerock.authz.filter.api.AuthorizationContext;
 import org.forgerock.authz.filter.api.AuthorizationException;
 import org.forgerock.authz.filter.api.AuthorizationResult;
+import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Function;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseCoalescer;
 import org.forgerock.util.promise.ResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +59,38 @@ public class OAuth2Module {
     private volatile Set<String> requiredScopes = new HashSet<>();
     private volatile boolean cacheEnabled = true;
     private volatile AccessTokenValidationCache cache;
+    private final PromiseCoalescer<String, AccessTokenValidationResponse, OAuth2Exception> pendingValidations =
+            new PromiseCoalescer<>();
+
+    /** Validates an access token which is not being validated already, adding the response to the cache. */
+    private final AsyncFunction<String, AccessTokenValidationResponse, OAuth2Exception> cachingValidator =
+            new AsyncFunction<String, AccessTokenValidationResponse, OAuth2Exception>() {
+                @Override
+                public Promise<AccessTokenValidationResponse, OAuth2Exception> apply(final String accessToken) {
+                    final Promise<AccessTokenValidationResponse, OAuth2Exception> validation;
+                    try {
+                        validation = accessTokenValidator.validate(accessToken);
+                    } catch (RuntimeException e) {
+                        return newExceptionPromise(new OAuth2Exception(e.getMessage(), e));
+                    }
+                    // The response is cached before the validation stops being pending.
+                    return validation
+                            .thenOnResult(new ResultHandler<AccessTokenValidationResponse>() {
+                                @Override
+                                public void handleResult(AccessTokenValidationResponse validationResponse) {
+                                    cache.add(accessToken, validationResponse);
+                                }
+                            })
+                            .thenCatchRuntimeException(
+                                    new Function<RuntimeException, AccessTokenValidationResponse, OAuth2Exception>() {
+                                        @Override
+                                        public AccessTokenValidationResponse apply(RuntimeException e)
+                                                throws OAuth2Exception {
+                                            throw new OAuth2Exception(e.getMessage(), e);
+                                        }
+                                    });
+                }
+            };
 
     /**
      * Creates a new {@code OAuth2Module} instance with the provided configuration.
@@ -153,22 +188,17 @@ public class OAuth2Module {
 
     /**
      * Validates the access token and if the cache is enabled will store the result in the cache for subsequent
-     * requests.
+     * requests. While the cache is enabled, concurrent requests with the same access token share a single validation.
      *
      * @param accessToken The access token to validate.
      * @return An AccessTokenValidationResponse containing the result of the validation.
      * @throws OAuth2Exception If the access token could not be validated.
      */
     private Promise<AccessTokenValidationResponse, OAuth2Exception> validateAccessToken(final String accessToken) {
-        return accessTokenValidator.validate(accessToken)
-                .thenOnResult(new ResultHandler<AccessTokenValidationResponse>() {
-                    @Override
-                    public void handleResult(AccessTokenValidationResponse validationResponse) {
-                        if (cacheEnabled) {
-                            cache.add(accessToken, validationResponse);
-                        }
-                    }
-                });
+        if (!cacheEnabled) {
+            return accessTokenValidator.validate(accessToken);
+        }
+        return pendingValidations.apply(accessToken, cachingValidator);
     }
 
     /**
@@ -11,11 +11,12 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.authz.modules.oauth2;
 
+import org.forgerock.util.time.TimeService;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -27,11 +28,26 @@ import static org.testng.Assert.assertNull;
 
 public class AccessTokenValidationCacheTest {
 
+    private static final long NOW = 1_000_000L;
+    private static final long EXPIRY_TIME = NOW + 60_000L;
+
     private AccessTokenValidationCache cache;
+    private long now;
 
     @BeforeMethod
     public void setUp() {
-        cache = new AccessTokenValidationCache(2);
+        now = NOW;
+        cache = new AccessTokenValidationCache(2, new TimeService() {
+            @Override
+            public long now() {
+                return now;
+            }
+
+            @Override
+            public long since(long past) {
+                return now - past;
+            }
+        });
     }
 
     @Test
@@ -39,7 +55,7 @@ public class AccessTokenValidationCacheTest {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken, validationResponse);
@@ -53,7 +69,7 @@ public class AccessTokenValidationCacheTest {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken, validationResponse);
@@ -64,15 +80,15 @@ public class AccessTokenValidationCacheTest {
     }
 
     @Test
-    public void shouldRemoveOldestEntryWhenCacheFull() {
+    public void shouldNotAdmitEntryUsedLessOftenThanOldestEntryWhenCacheFull() {
 
         //Given
         String accessToken1 = "ACCESS_TOKEN_1";
         String accessToken2 = "ACCESS_TOKEN_2";
         String accessToken3 = "ACCESS_TOKEN_3";
-        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(0);
-        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(0);
-        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken1, validationResponse1);
@@ -80,17 +96,94 @@ public class AccessTokenValidationCacheTest {
         cache.add(accessToken3, validationResponse3);
 
         //Then
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get(accessToken1), validationResponse1);
+        assertEquals(cache.get(accessToken2), validationResponse2);
+        assertNull(cache.get(accessToken3));
+    }
+
+    @Test
+    public void shouldReplaceOldestEntryWithEntryUsedMoreOftenWhenCacheFull() {
+
+        //Given
+        String accessToken1 = "ACCESS_TOKEN_1";
+        String accessToken2 = "ACCESS_TOKEN_2";
+        String accessToken3 = "ACCESS_TOKEN_3";
+        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        cache.add(accessToken1, validationResponse1);
+        cache.add(accessToken2, validationResponse2);
+        cache.get(accessToken3);
+        cache.get(accessToken3);
+
+        //When
+        cache.add(accessToken3, validationResponse3);
+
+        //Then
+        assertEquals(cache.size(), 2);
         assertNull(cache.get(accessToken1));
         assertEquals(cache.get(accessToken2), validationResponse2);
         assertEquals(cache.get(accessToken3), validationResponse3);
     }
 
+    @Test
+    public void shouldReplaceExpiredEntryWhenCacheFull() {
+
+        //Given
+        String accessToken1 = "ACCESS_TOKEN_1";
+        String accessToken2 = "ACCESS_TOKEN_2";
+        String accessToken3 = "ACCESS_TOKEN_3";
+        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(NOW + 1_000L);
+        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        cache.add(accessToken1, validationResponse1);
+        cache.add(accessToken2, validationResponse2);
+        now += 2_000L;
+
+        //When
+        cache.add(accessToken3, validationResponse3);
+
+        //Then
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get(accessToken2), validationResponse2);
+        assertEquals(cache.get(accessToken3), validationResponse3);
+    }
+
+    @Test
+    public void shouldNotReturnExpiredEntry() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        cache.add(accessToken, new AccessTokenValidationResponse(EXPIRY_TIME));
+
+        //When
+        now = EXPIRY_TIME + 1;
+
+        //Then
+        assertNull(cache.get(accessToken));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void shouldNotAddExpiredEntry() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+
+        //When
+        cache.add(accessToken, new AccessTokenValidationResponse(0));
+
+        //Then
+        assertEquals(cache.size(), 0);
+    }
+
     @Test
     public void shouldGetEntryFromCache() {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken, validationResponse);
@@ -105,7 +198,7 @@ public class AccessTokenValidationCacheTest {
         //Given
         String accessToken1 = "ACCESS_TOKEN_1";
         String accessToken2 = "ACCESS_TOKEN_2";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken1, validationResponse);
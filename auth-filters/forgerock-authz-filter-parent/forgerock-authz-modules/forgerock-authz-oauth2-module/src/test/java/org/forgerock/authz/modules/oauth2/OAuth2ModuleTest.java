@@ -25,6 +25,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.*;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,6 +37,7 @@ import org.forgerock.authz.filter.api.AuthorizationContext;
 import org.forgerock.authz.filter.api.AuthorizationException;
 import org.forgerock.authz.filter.api.AuthorizationResult;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.Promises;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -174,6 +176,33 @@ public class OAuth2ModuleTest {
         verify(cache, times(2)).get("ACCESS_TOKEN");
     }
 
+    @Test
+    public void shouldShareValidationOfConcurrentRequestsWhenCacheEnabled() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+        AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
+        PromiseImpl<AccessTokenValidationResponse, OAuth2Exception> validationResponsePromise = PromiseImpl.create();
+
+        createOAuth2Module(true);
+        given(cache.get("ACCESS_TOKEN")).willReturn(null);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(validationResponsePromise);
+        given(validationResponse.isTokenValid()).willReturn(true);
+        given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
+
+        //When
+        Promise<AuthorizationResult, AuthorizationException> first = oAuth2Module.authorize(accessToken, context);
+        Promise<AuthorizationResult, AuthorizationException> second = oAuth2Module.authorize(accessToken, context);
+        validationResponsePromise.handleResult(validationResponse);
+
+        //Then
+        verify(tokenValidator, times(1)).validate("ACCESS_TOKEN");
+        verify(cache, times(1)).add("ACCESS_TOKEN", validationResponse);
+        assertTrue(first.getOrThrowUninterruptibly().isAuthorized());
+        assertTrue(second.getOrThrowUninterruptibly().isAuthorized());
+    }
+
     @Test
     public void shouldReturnTrueWhenNotUsingCacheTokenValid() {
 
@@ -246,6 +275,33 @@ public class OAuth2ModuleTest {
         verifyZeroInteractions(cache);
     }
 
+    @Test
+    public void shouldNotKeepValidationPendingWhenValidatorThrowsWithCacheEnabled() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+
+        createOAuth2Module(true);
+        given(cache.get("ACCESS_TOKEN")).willReturn(null);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willThrow(new IllegalArgumentException("Malformed token"));
+
+        //When
+        Promise<AuthorizationResult, AuthorizationException> first = oAuth2Module.authorize(accessToken, context);
+        Promise<AuthorizationResult, AuthorizationException> second = oAuth2Module.authorize(accessToken, context);
+
+        //Then
+        verify(tokenValidator, times(2)).validate("ACCESS_TOKEN");
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        try {
+            first.getOrThrowUninterruptibly();
+            fail("Expected AuthorizationException");
+        } catch (AuthorizationException e) {
+            assertThat(e.getCause()).isInstanceOf(OAuth2Exception.class);
+        }
+    }
+
     @Test (expectedExceptions = AuthorizationException.class)
     public void shouldThrowAuthorizationExceptionWhenOAuth2ExceptionThrown() {
 
@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.crypto.simple;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.crypto.JsonCryptoException;
+import org.forgerock.json.crypto.JsonEncryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the encryption and decryption of a JSON value by the {@link SimpleEncryptor} and {@link SimpleDecryptor},
+ * with symmetric ciphers, and with an asymmetric cipher with and without sharing and caching the session keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SimpleCryptoBenchmark {
+
+    @Param({ "AES/CBC/PKCS5Padding", "AES/GCM/NoPadding", "RSA/ECB/OAEPWithSHA1AndMGF1Padding" })
+    private String cipher;
+
+    private final JsonValue value = new JsonValue("Lorem ipsum dolor sit amet, consectetur adipiscing elit.");
+    private SimpleEncryptor encryptor;
+    private JsonEncryptor batchEncryptor;
+    private SimpleDecryptor decryptor;
+    private SimpleDecryptor uncachedDecryptor;
+    private JsonValue encrypted;
+    private JsonValue batchEncrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Key encryptionKey;
+        final Key decryptionKey;
+        if (cipher.startsWith("AES")) {
+            final KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(128);
+            final SecretKey secretKey = generator.generateKey();
+            encryptionKey = secretKey;
+            decryptionKey = secretKey;
+        } else {
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            final KeyPair keyPair = generator.generateKeyPair();
+            encryptionKey = keyPair.getPublic();
+            decryptionKey = keyPair.getPrivate();
+        }
+        final SimpleKeySelector selector = new SimpleKeySelector() {
+            @Override
+            public Key select(String key) {
+                return decryptionKey;
+            }
+        };
+        encryptor = new SimpleEncryptor(cipher, encryptionKey, "key");
+        batchEncryptor = encryptor.batch();
+        decryptor = new SimpleDecryptor(selector);
+        uncachedDecryptor = new SimpleDecryptor(selector, 0);
+        encrypted = encryptor.encrypt(value);
+        batchEncrypted = batchEncryptor.encrypt(value);
+    }
+
+    @Benchmark
+    public JsonValue encrypt() throws JsonCryptoException {
+        return encryptor.encrypt(value);
+    }
+
+    @Benchmark
+    public JsonValue encryptBatch() throws JsonCryptoException {
+        return batchEncryptor.encrypt(value);
+    }
+
+    @Benchmark
+    public JsonValue decrypt() throws JsonCryptoException {
+        return uncachedDecryptor.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public JsonValue decryptBatchWithKeyCache() throws JsonCryptoException {
+        return decryptor.decrypt(batchEncrypted);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SimpleCryptoBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
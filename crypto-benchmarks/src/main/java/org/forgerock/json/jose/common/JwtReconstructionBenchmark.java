@@ -0,0 +1,105 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.common;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SignedJwt;
+import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the reconstruction of signed JWTs of increasing sizes, with and without reading their claims.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class JwtReconstructionBenchmark {
+
+    /** The approximate size of the JWT, in bytes. */
+    @Param({ "200", "1024", "4096", "8192" })
+    private int size;
+
+    private final JwtReconstruction jwtReconstruction = new JwtReconstruction();
+    private String jwt;
+
+    @Setup
+    public void setUp() {
+        final byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) 42);
+        final SigningHandler signingHandler = new SigningManager().newHmacSigningHandler(secret);
+        final String unpadded = build(signingHandler, "");
+        // Each base64url character of the payload holds 3/4 of a byte.
+        final int padding = Math.max(0, (size - unpadded.length()) * 3 / 4);
+        final char[] data = new char[padding];
+        Arrays.fill(data, 'x');
+        jwt = build(signingHandler, new String(data));
+    }
+
+    @Benchmark
+    public SignedJwt reconstruct() {
+        return jwtReconstruction.reconstructJwt(jwt, SignedJwt.class);
+    }
+
+    @Benchmark
+    public String reconstructAndReadClaims() {
+        return jwtReconstruction.reconstructJwt(jwt, SignedJwt.class).getClaimsSet().getSubject();
+    }
+
+    private static String build(final SigningHandler signingHandler, final String data) {
+        final JwtBuilderFactory jwtBuilderFactory = new JwtBuilderFactory();
+        return jwtBuilderFactory.jws(signingHandler)
+                .headers().alg(JwsAlgorithm.HS256).done()
+                .claims(jwtBuilderFactory.claims()
+                        .iss("https://as.example.com")
+                        .sub("demo")
+                        .claim("data", data)
+                        .build())
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JwtReconstructionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
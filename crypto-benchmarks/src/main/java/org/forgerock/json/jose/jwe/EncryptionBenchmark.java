@@ -0,0 +1,129 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwe;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the encryption and decryption of JWTs with the handlers of the {@link EncryptionManager}, for each key
+ * management algorithm and content encryption method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    @Param({ "RSA_OAEP", "A128KW", "DIRECT" })
+    private String algorithm;
+
+    @Param({ "A128GCM", "A128CBC_HS256" })
+    private String method;
+
+    private final JwtBuilderFactory jwtBuilderFactory = new JwtBuilderFactory();
+    private JweAlgorithm jweAlgorithm;
+    private EncryptionMethod encryptionMethod;
+    private Key encryptionKey;
+    private Key decryptionKey;
+    private JwtClaimsSet claims;
+    private String jwt;
+
+    @Setup
+    public void setUp() throws Exception {
+        jweAlgorithm = JweAlgorithm.valueOf(algorithm);
+        encryptionMethod = EncryptionMethod.valueOf(method);
+        switch (jweAlgorithm.getAlgorithmType()) {
+        case RSA:
+            final KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+            rsa.initialize(2048);
+            final KeyPair keyPair = rsa.generateKeyPair();
+            encryptionKey = keyPair.getPublic();
+            decryptionKey = keyPair.getPrivate();
+            break;
+        case AES_KEYWRAP:
+            encryptionKey = new SecretKeySpec(key(16), "AES");
+            decryptionKey = encryptionKey;
+            break;
+        default:
+            encryptionKey = new SecretKeySpec(key(encryptionMethod.getKeySize() / 8), "AES");
+            decryptionKey = encryptionKey;
+            break;
+        }
+        claims = jwtBuilderFactory.claims()
+                .iss("https://as.example.com")
+                .sub("demo")
+                .claim("scope", Arrays.asList("openid", "profile", "email"))
+                .build();
+        jwt = encrypt();
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return jwtBuilderFactory.jwe(encryptionKey)
+                .headers().alg(jweAlgorithm).enc(encryptionMethod).done()
+                .claims(claims)
+                .build();
+    }
+
+    @Benchmark
+    public JwtClaimsSet decrypt() {
+        final EncryptedJwt encryptedJwt = jwtBuilderFactory.reconstruct(jwt, EncryptedJwt.class);
+        encryptedJwt.decrypt(decryptionKey);
+        return encryptedJwt.getClaimsSet();
+    }
+
+    private static byte[] key(final int length) {
+        final byte[] key = new byte[length];
+        Arrays.fill(key, (byte) 42);
+        return key;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(EncryptionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwk;
+
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the parsing of JWK sets of RSA keys, as published by an OpenID Connect provider, with and without
+ * converting the keys to JCA keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class JWKSetParseBenchmark {
+
+    /** The number of keys in the set. */
+    @Param({ "1", "5", "20" })
+    private int keys;
+
+    private String json;
+
+    @Setup
+    public void setUp() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final List<JWK> jwks = new ArrayList<>();
+        for (int i = 0; i < keys; i++) {
+            final RSAPublicKey key = (RSAPublicKey) generator.generateKeyPair().getPublic();
+            jwks.add(new RsaJWK(key, KeyUse.SIG, "RS256", "key" + i, null, null, null));
+        }
+        json = new JWKSet(jwks).toJsonString();
+    }
+
+    @Benchmark
+    public JWKSet parse() {
+        return JWKSet.parse(json);
+    }
+
+    @Benchmark
+    public List<RSAPublicKey> parseAndConvertKeys() {
+        final List<RSAPublicKey> publicKeys = new ArrayList<>(keys);
+        for (final JWK jwk : JWKSet.parse(json).getJWKsAsList()) {
+            publicKeys.add(((RsaJWK) jwk).toRSAPublicKey());
+        }
+        return publicKeys;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JWKSetParseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jws;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the signing handlers returned by the {@link SigningManager}, for each family of signing algorithms.
+ * {@code verifyWithNewHandler} is the baseline for callers that build a new handler for every verification, as
+ * the OpenID Connect resolvers used to, rather than reusing one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SigningBenchmark {
+
+    @Param({ "HS256", "HS512", "RS256", "ES256", "ES384", "ES512" })
+    private String algorithm;
+
+    private final SigningManager signingManager = new SigningManager();
+    private JwsAlgorithm jwsAlgorithm;
+    private byte[] secret;
+    private KeyPair keyPair;
+    private SigningHandler signingHandler;
+    private SigningHandler verificationHandler;
+    private byte[] data;
+    private byte[] signature;
+
+    @Setup
+    public void setUp() throws Exception {
+        jwsAlgorithm = JwsAlgorithm.valueOf(algorithm);
+        switch (jwsAlgorithm.getAlgorithmType()) {
+        case HMAC:
+            secret = new byte[64];
+            Arrays.fill(secret, (byte) 42);
+            signingHandler = signingManager.newHmacSigningHandler(secret);
+            break;
+        case RSA:
+            final KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+            rsa.initialize(2048);
+            keyPair = rsa.generateKeyPair();
+            signingHandler = signingManager.newRsaSigningHandler(keyPair.getPrivate());
+            break;
+        case ECDSA:
+            final KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+            ec.initialize(new ECGenParameterSpec(curveName(jwsAlgorithm)));
+            keyPair = ec.generateKeyPair();
+            signingHandler = signingManager.newEcdsaSigningHandler((ECPrivateKey) keyPair.getPrivate());
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported algorithm " + algorithm);
+        }
+        verificationHandler = newVerificationHandler();
+        // The signing input of a typical access token.
+        final StringBuilder input = new StringBuilder("eyJ0eXAiOiJKV1QiLCJhbGciOiJIUzI1NiJ9.");
+        while (input.length() < 600) {
+            input.append("eyJzdWIiOiJkZW1vIiwiaXNzIjoiaHR0cHM6Ly9hcy5leGFtcGxlLmNvbSJ9");
+        }
+        data = input.toString().getBytes(StandardCharsets.US_ASCII);
+        signature = signingHandler.sign(jwsAlgorithm, data);
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return signingHandler.sign(jwsAlgorithm, data);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return verificationHandler.verify(jwsAlgorithm, data, signature);
+    }
+
+    @Benchmark
+    public boolean verifyWithNewHandler() {
+        return newVerificationHandler().verify(jwsAlgorithm, data, signature);
+    }
+
+    private SigningHandler newVerificationHandler() {
+        switch (jwsAlgorithm.getAlgorithmType()) {
+        case HMAC:
+            return signingManager.newHmacSigningHandler(secret);
+        case RSA:
+            return signingManager.newRsaSigningHandler(keyPair.getPublic());
+        default:
+            return signingManager.newEcdsaVerificationHandler((ECPublicKey) keyPair.getPublic());
+        }
+    }
+
+    private static String curveName(final JwsAlgorithm algorithm) {
+        switch (algorithm) {
+        case ES256:
+            return "secp256r1";
+        case ES384:
+            return "secp384r1";
+        default:
+            return "secp521r1";
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SigningBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
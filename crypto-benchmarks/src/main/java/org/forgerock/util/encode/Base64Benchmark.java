@@ -0,0 +1,123 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.encode;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@link Base64} and the {@link Base64Codec} it can be compared with. {@link Base64url} now delegates to
+ * {@link Base64Codec#BASE64URL}, so the {@code legacyUrl} benchmarks keep its previous implementation, which
+ * rewrote the output of {@link Base64} with regular expressions, as the baseline for the {@code codecUrl} ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class Base64Benchmark {
+
+    /** The number of bytes to encode. */
+    @Param({ "32", "256", "4096", "1048576" })
+    private int size;
+
+    private byte[] bytes;
+    private String base64;
+    private String base64url;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        base64 = Base64.encode(bytes);
+        base64url = Base64url.encode(bytes);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return Base64.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return Base64.decode(base64);
+    }
+
+    @Benchmark
+    public String legacyUrlEncode() {
+        return Base64.encode(bytes).replaceAll("\\+", "-").replaceAll("/", "_").replaceAll("=", "");
+    }
+
+    @Benchmark
+    public byte[] legacyUrlDecode() {
+        final StringBuilder builder = new StringBuilder(base64url.replaceAll("-", "+").replaceAll("_", "/"));
+        final int modulus = builder.length() % 4;
+        if (modulus != 0) {
+            for (int i = 0; i < 4 - modulus; i++) {
+                builder.append('=');
+            }
+        }
+        return Base64.decode(builder.toString());
+    }
+
+    @Benchmark
+    public String codecEncode() {
+        return Base64Codec.BASE64.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] codecDecode() {
+        return Base64Codec.BASE64.decode(base64);
+    }
+
+    @Benchmark
+    public String codecUrlEncode() {
+        return Base64Codec.BASE64URL.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] codecUrlDecode() {
+        return Base64Codec.BASE64URL.decode(base64url);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Base64Benchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -18,10 +18,13 @@ package org.forgerock.services.routing;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.http.routing.RoutingMode;
 import org.forgerock.http.ApiProducer;
@@ -39,6 +42,10 @@ import org.forgerock.util.Pair;
  * and a handler (H). When a request (R) is received the router invokes each {@code RouteMatcher} to see if it
  * matches and then invokes the associated handler if it is the best match.
  * <p>
+ * Routers may optionally cache the outcome of route resolution, see {@link #setRouteCacheSize(int)}. Sub-classes
+ * which support caching must override {@link #getRouteCacheKey(Context, Object)} and
+ * {@link #isCacheable(RouteMatcher)}.
+ * <p>
  * Concrete implementations of {@code AbstractRouter} existing in both {@link org.forgerock.http.routing.Router CHF}
  * and CREST.
  *
@@ -57,6 +64,17 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
     private ApiProducer<D> apiProducer;
     private D api;
 
+    /**
+     * Cached route resolutions. The map is replaced whenever the routes change, so resolutions which were computed
+     * using the previous routes are discarded along with it.
+     */
+    private volatile ConcurrentMap<Object, CachedRoute<H>> routeCache = new ConcurrentHashMap<>();
+    /** Whether all the routes can be cached, only updated before the route cache is replaced. */
+    private boolean routesCacheable = true;
+    private volatile int routeCacheSize;
+    private final AtomicLong routeCacheHits = new AtomicLong();
+    private final AtomicLong routeCacheMisses = new AtomicLong();
+
     /**
      * Creates a new abstract router with no routes defined.
      */
@@ -106,6 +124,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
                 H handler = route.getValue();
                 descriptorChanged |= updateApiDescriptor(routes.put(route.getKey(), handler), handler);
             }
+            invalidateRouteCache();
             if (descriptorChanged) {
                 notifyDescriptorChange();
             }
@@ -126,7 +145,9 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
      * @return This router instance.
      */
     public final T addRoute(RouteMatcher<R> matcher, H handler) {
-        return updateApiDescriptorAndNotify(routes.put(matcher, handler), handler);
+        H oldHandler = routes.put(matcher, handler);
+        invalidateRouteCache();
+        return updateApiDescriptorAndNotify(oldHandler, handler);
     }
 
     private boolean updateApiDescriptor(H oldHandler, H newHandler) {
@@ -158,6 +179,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
     public final T setDefaultRoute(H handler) {
         H oldDefault = this.defaultRoute;
         this.defaultRoute = handler;
+        invalidateRouteCache();
         return updateApiDescriptorAndNotify(oldDefault, handler);
     }
 
@@ -179,6 +201,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
      */
     public final T removeAllRoutes() {
         routes.clear();
+        invalidateRouteCache();
         api = null;
         return getThis();
     }
@@ -199,6 +222,9 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
             isModified |= removed != null;
             apiDescriptorModified |= updateApiDescriptor(removed, null);
         }
+        if (isModified) {
+            invalidateRouteCache();
+        }
         if (apiDescriptorModified) {
             notifyDescriptorChange();
         }
@@ -219,6 +245,21 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
      * {@code RouteMatcher}s could not be compared to one another.
      */
     protected Pair<Context, H> getBestRoute(Context context, R request) throws IncomparableRouteMatchException {
+        // Read the cache before the routes so that a resolution is never cached against newer routes.
+        ConcurrentMap<Object, CachedRoute<H>> cache = routeCache;
+        Object key = routeCacheSize > 0 && routesCacheable ? getRouteCacheKey(context, request) : null;
+        if (key != null) {
+            CachedRoute<H> cached = cache.get(key);
+            if (cached != null) {
+                routeCacheHits.incrementAndGet();
+                if (!cached.referenced) {
+                    cached.referenced = true;
+                }
+                return cached.resolve(context);
+            }
+            routeCacheMisses.incrementAndGet();
+        }
+
         H handler = null;
         RouteMatch bestMatch = null;
         for (Map.Entry<RouteMatcher<R>, H> route : routes.entrySet()) {
@@ -230,16 +271,108 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
                 }
             }
         }
-        if (bestMatch != null) {
-            return Pair.of(bestMatch.decorateContext(context), handler);
+        if (bestMatch == null) {
+            handler = defaultRoute;
         }
 
-        if (defaultRoute != null) {
-            return Pair.of(context, defaultRoute);
+        CachedRoute<H> resolution = new CachedRoute<>(bestMatch, handler);
+        if (key != null) {
+            cacheRoute(cache, key, resolution);
         }
+        return resolution.resolve(context);
+    }
+
+    /**
+     * Returns the key identifying the outcome of routing the provided request, or {@code null} if the outcome of
+     * routing the request should not be cached. Two requests having equal keys must be matched in the same way by
+     * every route matcher for which {@link #isCacheable(RouteMatcher)} returns {@code true}.
+     * <p>
+     * This implementation returns {@code null}.
+     *
+     * @param context The request context.
+     * @param request The request to be routed.
+     * @return The route cache key, or {@code null} if the request should not be cached.
+     */
+    protected Object getRouteCacheKey(Context context, R request) {
         return null;
     }
 
+    /**
+     * Indicates whether the provided route matcher evaluates requests solely based on the information captured by
+     * {@link #getRouteCacheKey(Context, Object)}, and that the {@link RouteMatch}es it returns can be applied to
+     * the context of another request having the same key. Route resolutions are only cached while all routes are
+     * cacheable.
+     * <p>
+     * This implementation returns {@code false}.
+     *
+     * @param matcher The route matcher.
+     * @return {@code true} if the outcome of the matcher can be cached.
+     */
+    protected boolean isCacheable(RouteMatcher<R> matcher) {
+        return false;
+    }
+
+    /**
+     * Sets the maximum number of route resolutions which will be cached by this router. Route resolutions are
+     * cached by the key returned from {@link #getRouteCacheKey(Context, Object)} and the cache is cleared whenever
+     * routes are added or removed. The default size is zero, which disables the cache.
+     *
+     * @param size The maximum number of cached route resolutions, or zero to disable caching.
+     * @return This router instance.
+     */
+    public final T setRouteCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The route cache size must not be negative");
+        }
+        routeCacheSize = size;
+        invalidateRouteCache();
+        return getThis();
+    }
+
+    /**
+     * Returns the number of requests which have been routed using a cached route resolution.
+     *
+     * @return The number of route cache hits.
+     */
+    public final long getRouteCacheHitCount() {
+        return routeCacheHits.get();
+    }
+
+    /**
+     * Returns the number of cacheable requests which have been routed by evaluating the routes.
+     *
+     * @return The number of route cache misses.
+     */
+    public final long getRouteCacheMissCount() {
+        return routeCacheMisses.get();
+    }
+
+    private void cacheRoute(ConcurrentMap<Object, CachedRoute<H>> cache, Object key, CachedRoute<H> resolution) {
+        if (cache.size() >= routeCacheSize) {
+            // Second chance eviction: the map's iteration order is unrelated to recency, so skip the resolutions
+            // used since the scan last passed over them, clearing their reference bit, and evict the first unused one.
+            Iterator<CachedRoute<H>> resolutions = cache.values().iterator();
+            for (int scanned = 0; resolutions.hasNext() && scanned <= routeCacheSize; scanned++) {
+                CachedRoute<H> candidate = resolutions.next();
+                if (!candidate.referenced) {
+                    resolutions.remove();
+                    break;
+                }
+                candidate.referenced = false;
+            }
+        }
+        cache.put(key, resolution);
+    }
+
+    private synchronized void invalidateRouteCache() {
+        boolean cacheable = true;
+        for (RouteMatcher<R> matcher : routes.keySet()) {
+            cacheable &= isCacheable(matcher);
+        }
+        routesCacheable = cacheable;
+        routeCache = new ConcurrentHashMap<>();
+    }
+
     @Override
     public synchronized D api(ApiProducer<D> producer) {
         if (apiProducer == null) {
@@ -322,4 +455,26 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
         updateApi();
         notifyListeners();
     }
+
+    /**
+     * The outcome of routing a request: the best route match, if any, and the handler it selected.
+     */
+    private static final class CachedRoute<H> {
+        private final RouteMatch match;
+        private final H handler;
+        /** Whether the resolution has been used since the eviction scan last passed over it. */
+        private volatile boolean referenced;
+
+        CachedRoute(RouteMatch match, H handler) {
+            this.match = match;
+            this.handler = handler;
+        }
+
+        Pair<Context, H> resolve(Context context) {
+            if (handler == null) {
+                return null;
+            }
+            return Pair.of(match != null ? match.decorateContext(context) : context, handler);
+        }
+    }
 }
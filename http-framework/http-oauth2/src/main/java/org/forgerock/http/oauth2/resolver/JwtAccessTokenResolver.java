@@ -0,0 +1,370 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.http.oauth2.resolver;
+
+import static java.lang.String.format;
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.Utils.closeSilently;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Key;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.oauth2.AccessTokenException;
+import org.forgerock.http.oauth2.AccessTokenInfo;
+import org.forgerock.http.oauth2.AccessTokenResolver;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Responses;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.jose.common.JwtReconstruction;
+import org.forgerock.json.jose.jwk.JWKSet;
+import org.forgerock.json.jose.jwk.JWKSetStore;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SignedJwt;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A {@link JwtAccessTokenResolver} validates access tokens issued as signed JWTs locally, without calling the
+ * authorization server, and delegates the resolution of any other (opaque) access token to another
+ * {@link AccessTokenResolver}, such as an {@link OpenAmAccessTokenResolver}.
+ * <p>
+ * A JWT access token is accepted if its signature is verified with the key named by its {@literal kid} header,
+ * taken from a {@link JWKSetStore} or from a fixed set of keys, if it has an expiration time which has not passed
+ * and a not-before time, if any, which has, and if its issuer and audience are the expected ones, when they are
+ * configured. When no audience is configured, the token must have the {@literal at+jwt} type header of the JWT
+ * profile for OAuth 2.0 access tokens, as otherwise any other JWT signed by the authorization server, such as an
+ * OpenID Connect ID token, would be accepted as an access token.
+ * <p>
+ * The scopes of the token are read from its {@literal scope} claim, which is either a space separated string or an
+ * array, or else from its {@literal scp} claim. All the claims of the token are available as the raw information of
+ * the resulting {@link AccessTokenInfo}.
+ * <p>
+ * As the token is not checked with the authorization server, a JWT access token which has been revoked is accepted
+ * until it expires.
+ */
+public class JwtAccessTokenResolver implements AccessTokenResolver {
+
+    /** The minimum time between two reloads of a JWK set caused by unknown key IDs. */
+    private static final Duration MIN_REFRESH_INTERVAL = Duration.duration(30L, TimeUnit.SECONDS);
+
+    /** The {@literal typ} header of JWT access tokens, which may also be given as a media type. */
+    private static final String ACCESS_TOKEN_TYPE = "at+jwt";
+    private static final String ACCESS_TOKEN_MEDIA_TYPE = "application/" + ACCESS_TOKEN_TYPE;
+
+    private final JWKSetStore keyStore;
+    private final String issuer;
+    private final String audience;
+    private final AccessTokenResolver opaqueTokenResolver;
+    private final TimeService time;
+
+    /**
+     * Creates a new {@link JwtAccessTokenResolver} verifying JWT access tokens with the keys of the given store.
+     *
+     * @param keyStore
+     *         store of the keys of the authorization server, such as one loaded with {@link #jwkSetLoader(Handler,
+     *         URI)}
+     * @param issuer
+     *         expected {@literal iss} claim of the tokens, or {@code null} if it is not checked
+     * @param audience
+     *         value which the {@literal aud} claim of the tokens must contain, or {@code null} if it is not checked, in
+     *         which case the tokens must have the {@literal at+jwt} type header instead
+     * @param opaqueTokenResolver
+     *         resolver for the tokens which are not JWTs, or {@code null} if they are rejected
+     * @param time
+     *         time service used to check the token expiration time
+     */
+    public JwtAccessTokenResolver(final JWKSetStore keyStore,
+                                  final String issuer,
+                                  final String audience,
+                                  final AccessTokenResolver opaqueTokenResolver,
+                                  final TimeService time) {
+        this.keyStore = checkNotNull(keyStore);
+        this.issuer = issuer;
+        this.audience = audience;
+        this.opaqueTokenResolver = opaqueTokenResolver;
+        this.time = checkNotNull(time);
+    }
+
+    /**
+     * Creates a new {@link JwtAccessTokenResolver} verifying JWT access tokens with the given keys. A key mapped to
+     * the {@code null} key ID verifies the tokens which have no {@literal kid} header.
+     *
+     * @param keys
+     *         public or secret keys of the authorization server, indexed by key ID
+     * @param issuer
+     *         expected {@literal iss} claim of the tokens, or {@code null} if it is not checked
+     * @param audience
+     *         value which the {@literal aud} claim of the tokens must contain, or {@code null} if it is not checked, in
+     *         which case the tokens must have the {@literal at+jwt} type header instead
+     * @param opaqueTokenResolver
+     *         resolver for the tokens which are not JWTs, or {@code null} if they are rejected
+     * @param time
+     *         time service used to check the token expiration time
+     */
+    public JwtAccessTokenResolver(final Map<String, ? extends Key> keys,
+                                  final String issuer,
+                                  final String audience,
+                                  final AccessTokenResolver opaqueTokenResolver,
+                                  final TimeService time) {
+        this(fixedKeyStore(keys), issuer, audience, opaqueTokenResolver, time);
+    }
+
+    private static JWKSetStore fixedKeyStore(final Map<String, ? extends Key> keys) {
+        final JWKSetStore.LoadedKeys loadedKeys = new JWKSetStore.LoadedKeys(keys, -1L);
+        // The keys never change, so there is nothing to load again in the background.
+        return new JWKSetStore(new JWKSetStore.Loader() {
+            @Override
+            public Promise<JWKSetStore.LoadedKeys, IOException> load() {
+                return newResultPromise(loadedKeys);
+            }
+        }, Duration.UNLIMITED, MIN_REFRESH_INTERVAL, null);
+    }
+
+    /**
+     * Creates a {@link JWKSetStore} loader which reads a JWK set, such as the {@literal jwks_uri} of an authorization
+     * server, with the given client. The keys are kept for as long as the {@literal Cache-Control} or
+     * {@literal Expires} headers of the response allow.
+     * <p>
+     * The loader does not wait for the response, so that tokens can be resolved without blocking while the JWK set
+     * is loaded.
+     *
+     * @param client
+     *         Http client handler used to load the JWK set
+     * @param jwkSetUri
+     *         URI of the JWK set
+     * @return a loader for a {@link JWKSetStore}
+     */
+    public static JWKSetStore.Loader jwkSetLoader(final Handler client, final URI jwkSetUri) {
+        checkNotNull(client);
+        checkNotNull(jwkSetUri);
+        return new JWKSetStore.Loader() {
+            @Override
+            public Promise<JWKSetStore.LoadedKeys, IOException> load() {
+                final Request request = new Request().setMethod("GET").setUri(jwkSetUri);
+                return client.handle(new RootContext(), request)
+                             .then(loadedKeys(jwkSetUri),
+                                   Responses.<JWKSetStore.LoadedKeys, IOException>noopExceptionFunction());
+            }
+        };
+    }
+
+    private static Function<Response, JWKSetStore.LoadedKeys, IOException> loadedKeys(final URI jwkSetUri) {
+        return new Function<Response, JWKSetStore.LoadedKeys, IOException>() {
+            @Override
+            public JWKSetStore.LoadedKeys apply(final Response response) throws IOException {
+                try {
+                    if (!response.getStatus().isSuccessful()) {
+                        throw new IOException(format("The JWK set %s could not be loaded (status: %s)",
+                                                     jwkSetUri, response.getStatus()));
+                    }
+                    final JWKSet jwkSet = JWKSet.parse(new JsonValue(response.getEntity().getJson()));
+                    return JWKSetStore.LoadedKeys.fromJWKSet(jwkSet,
+                            JWKSetStore.parseMaxAge(response.getHeaders().getFirst("Cache-Control"),
+                                                    response.getHeaders().getFirst("Expires"),
+                                                    System.currentTimeMillis()));
+                } catch (RuntimeException e) {
+                    throw new IOException(format("The JWK set %s is not valid", jwkSetUri), e);
+                } finally {
+                    closeSilently(response);
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a {@link JWKSetStore} which loads the JWK set at the given URI with the given client, which loads it
+     * again in the background before it expires, after an hour unless the response says otherwise, and which also
+     * loads it again when a token names an unknown key, at most every 30 seconds.
+     *
+     * @param client
+     *         Http client handler used to load the JWK set
+     * @param jwkSetUri
+     *         URI of the JWK set
+     * @return a store of the keys of the JWK set
+     */
+    public static JWKSetStore jwkSetStore(final Handler client, final URI jwkSetUri) {
+        return new JWKSetStore(jwkSetLoader(client, jwkSetUri), Duration.duration(1L, TimeUnit.HOURS),
+                               MIN_REFRESH_INTERVAL);
+    }
+
+    @Override
+    public Promise<AccessTokenInfo, AccessTokenException> resolve(final Context context, final String token) {
+        final SignedJwt jwt = reconstruct(token);
+        if (jwt == null) {
+            if (opaqueTokenResolver == null) {
+                return newExceptionPromise(new AccessTokenException("The access token is not a signed JWT"));
+            }
+            return opaqueTokenResolver.resolve(context, token);
+        }
+        try {
+            checkHeader(jwt);
+        } catch (AccessTokenException e) {
+            return newExceptionPromise(e);
+        }
+        final String keyId = jwt.getHeader().getKeyId();
+        return keyStore.getSigningHandlerAsync(keyId)
+                       .then(new Function<SigningHandler, AccessTokenInfo, AccessTokenException>() {
+                           @Override
+                           public AccessTokenInfo apply(final SigningHandler signingHandler)
+                                   throws AccessTokenException {
+                               if (signingHandler == null) {
+                                   throw new AccessTokenException(
+                                           format("The JWT access token is signed with an unknown key (kid: %s)",
+                                                  keyId));
+                               }
+                               return validate(jwt, token, signingHandler);
+                           }
+                       }, new Function<IOException, AccessTokenInfo, AccessTokenException>() {
+                           @Override
+                           public AccessTokenInfo apply(final IOException e) throws AccessTokenException {
+                               throw new AccessTokenException(
+                                       "The keys of the authorization server could not be loaded", e);
+                           }
+                       });
+    }
+
+    /** Returns the signed JWT the token is, or {@code null} if it is not one. */
+    private static SignedJwt reconstruct(final String token) {
+        // A JWS in compact serialization has three parts, anything else is handled as an opaque token.
+        final int firstDot = token.indexOf('.');
+        final int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+        try {
+            return new JwtReconstruction().reconstructJwt(token, SignedJwt.class);
+        } catch (RuntimeException e) {
+            // Not a JWT after all, such as an opaque token containing dots.
+            return null;
+        }
+    }
+
+    private void checkHeader(final SignedJwt jwt) throws AccessTokenException {
+        final JwsAlgorithm algorithm = jwt.getHeader().getAlgorithm();
+        if (algorithm == null || algorithm == JwsAlgorithm.NONE) {
+            throw new AccessTokenException("The JWT access token is not signed");
+        }
+        if (audience == null && !isAccessTokenType(jwt.getHeader().getTypeString())) {
+            // Without an audience to check, the type is all that tells an access token from another JWT.
+            throw new AccessTokenException(format("The JWT is not an access token (typ: %s)",
+                                                  jwt.getHeader().getTypeString()));
+        }
+    }
+
+    private static boolean isAccessTokenType(final String type) {
+        if (type == null) {
+            return false;
+        }
+        final String lowerCaseType = type.toLowerCase(Locale.ROOT);
+        return lowerCaseType.equals(ACCESS_TOKEN_TYPE) || lowerCaseType.equals(ACCESS_TOKEN_MEDIA_TYPE);
+    }
+
+    private AccessTokenInfo validate(final SignedJwt jwt, final String token, final SigningHandler signingHandler)
+            throws AccessTokenException {
+        if (!verify(jwt, signingHandler)) {
+            throw new AccessTokenException("The signature of the JWT access token is not valid");
+        }
+
+        final JwtClaimsSet claims = jwt.getClaimsSet();
+        final long now = time.now();
+        final Date expirationTime = claims.getExpirationTime();
+        if (expirationTime == null || expirationTime.getTime() <= now) {
+            throw new AccessTokenException("The JWT access token has expired");
+        }
+        final Date notBeforeTime = claims.getNotBeforeTime();
+        if (notBeforeTime != null && notBeforeTime.getTime() > now) {
+            throw new AccessTokenException("The JWT access token is not valid yet");
+        }
+        if (issuer != null && !issuer.equals(claims.getIssuer())) {
+            throw new AccessTokenException(format("The JWT access token was issued by %s", claims.getIssuer()));
+        }
+        if (audience != null) {
+            final List<String> audiences = claims.getAudience();
+            if (audiences == null || !audiences.contains(audience)) {
+                throw new AccessTokenException("The JWT access token is not intended for this resource server");
+            }
+        }
+        return new AccessTokenInfo(rawInfo(claims), token, scopes(claims), expirationTime.getTime());
+    }
+
+    private static boolean verify(final SignedJwt jwt, final SigningHandler signingHandler) {
+        try {
+            return jwt.verify(signingHandler);
+        } catch (RuntimeException e) {
+            // Such as an algorithm which does not match the type of the key.
+            return false;
+        }
+    }
+
+    private static JsonValue rawInfo(final JwtClaimsSet claims) {
+        final Map<String, Object> info = new LinkedHashMap<>();
+        for (final String key : claims.keys()) {
+            info.put(key, claims.get(key).getObject());
+        }
+        return new JsonValue(info);
+    }
+
+    private static Set<String> scopes(final JwtClaimsSet claims) throws AccessTokenException {
+        JsonValue scope = claims.get("scope");
+        if (scope.isNull()) {
+            scope = claims.get("scp");
+        }
+        if (scope.isNull()) {
+            return Collections.emptySet();
+        } else if (scope.isString()) {
+            final Set<String> scopes = new LinkedHashSet<>();
+            for (final String value : scope.asString().split(" ")) {
+                if (!value.isEmpty()) {
+                    scopes.add(value);
+                }
+            }
+            return scopes;
+        } else if (scope.isCollection()) {
+            final Collection<Object> values = scope.asCollection();
+            final Set<String> scopes = new LinkedHashSet<>();
+            for (final Object value : values) {
+                if (!(value instanceof String)) {
+                    throw new AccessTokenException("The scopes of the JWT access token are not valid");
+                }
+                scopes.add((String) value);
+            }
+            return scopes;
+        }
+        throw new AccessTokenException("The scopes of the JWT access token are not valid");
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.http.oauth2.resolver;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.net.URI;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.oauth2.AccessTokenException;
+import org.forgerock.http.oauth2.AccessTokenInfo;
+import org.forgerock.http.oauth2.AccessTokenResolver;
+import org.forgerock.http.oauth2.resolver.OpenAmAccessTokenResolverTest.ResponseHandler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.builders.JwtClaimsSetBuilder;
+import org.forgerock.json.jose.jwk.JWK;
+import org.forgerock.json.jose.jwk.JWKSet;
+import org.forgerock.json.jose.jwk.JWKSetStore;
+import org.forgerock.json.jose.jwk.KeyUse;
+import org.forgerock.json.jose.jwk.RsaJWK;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JwtAccessTokenResolverTest {
+
+    private static final String KEY_ID = "key";
+    private static final String ISSUER = "https://openam.example.com/openam/oauth2";
+    private static final String AUDIENCE = "resource-server";
+
+    private final JwtBuilderFactory jwtBuilderFactory = new JwtBuilderFactory();
+    private final SigningManager signingManager = new SigningManager();
+    private KeyPair keyPair;
+    private KeyPair otherKeyPair;
+    private OpaqueTokenResolver opaqueTokenResolver;
+
+    @BeforeClass
+    public void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        otherKeyPair = generator.generateKeyPair();
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        opaqueTokenResolver = new OpaqueTokenResolver();
+    }
+
+    @Test
+    public void shouldResolveSignedJwtLocally() throws Exception {
+        Date expirationTime = inSeconds(60);
+        String token = jwt(keyPair, KEY_ID, claims(expirationTime).claim("scope", "email profile"));
+
+        AccessTokenInfo info = resolver().resolve(new RootContext(), token).getOrThrow();
+
+        assertThat(info.getToken()).isEqualTo(token);
+        assertThat(info.getScopes()).containsOnly("email", "profile");
+        assertThat(info.getExpiresAt()).isEqualTo(expirationTime.getTime());
+        assertThat(info.asJsonValue().get("sub").asString()).isEqualTo("alice");
+        assertThat(opaqueTokenResolver.calls).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReadScopesFromArray() throws Exception {
+        String token = jwt(keyPair, KEY_ID, claims(inSeconds(60)).claim("scp", asList("email", "profile")));
+
+        AccessTokenInfo info = resolver().resolve(new RootContext(), token).getOrThrow();
+
+        assertThat(info.getScopes()).containsOnly("email", "profile");
+    }
+
+    @Test
+    public void shouldDelegateOpaqueTokens() throws Exception {
+        AccessTokenInfo info = resolver().resolve(new RootContext(), "70e5776c-b0fa-4c70-9962-defb0e9c3cd6")
+                                         .getOrThrow();
+
+        assertThat(info.getToken()).isEqualTo("70e5776c-b0fa-4c70-9962-defb0e9c3cd6");
+        assertThat(opaqueTokenResolver.calls).isEqualTo(1);
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectOpaqueTokensWithoutOpaqueTokenResolver() throws Exception {
+        new JwtAccessTokenResolver(keys(), null, null, null, TimeService.SYSTEM)
+                .resolve(new RootContext(), "70e5776c-b0fa-4c70-9962-defb0e9c3cd6").getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectExpiredJwt() throws Exception {
+        resolver().resolve(new RootContext(), jwt(keyPair, KEY_ID, claims(inSeconds(-1)))).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectJwtWithoutExpirationTime() throws Exception {
+        resolver().resolve(new RootContext(), jwt(keyPair, KEY_ID, claims(null))).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectJwtNotValidYet() throws Exception {
+        String token = jwt(keyPair, KEY_ID, claims(inSeconds(120)).nbf(inSeconds(60)));
+
+        resolver().resolve(new RootContext(), token).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectJwtSignedWithAnotherKey() throws Exception {
+        resolver().resolve(new RootContext(), jwt(otherKeyPair, KEY_ID, claims(inSeconds(60)))).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectJwtSignedWithUnknownKey() throws Exception {
+        resolver().resolve(new RootContext(), jwt(keyPair, "unknown", claims(inSeconds(60)))).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectJwtFromAnotherIssuer() throws Exception {
+        String token = jwt(keyPair, KEY_ID, claims(inSeconds(60)).iss("https://attacker.example.com"));
+
+        resolver().resolve(new RootContext(), token).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectJwtForAnotherAudience() throws Exception {
+        String token = jwt(keyPair, KEY_ID, claims(inSeconds(60)).aud(asList("another-resource-server")));
+
+        resolver().resolve(new RootContext(), token).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectUnsignedJwt() throws Exception {
+        String token = jwtBuilderFactory.jws(signingManager.newNopSigningHandler())
+                .headers()
+                    .alg(JwsAlgorithm.NONE)
+                    .kid(KEY_ID)
+                .done()
+                .claims(claims(inSeconds(60)).build())
+                .build();
+
+        resolver().resolve(new RootContext(), token).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class)
+    public void shouldRejectIdTokenWhenNoAudienceIsConfigured() throws Exception {
+        // An ID token is signed by the same keys, but is intended for the client, and has no access token type.
+        String idToken = jwt(keyPair, KEY_ID, claims(inSeconds(60)).aud(asList("client")).claim("nonce", "n-0S6"));
+
+        resolverWithoutAudience().resolve(new RootContext(), idToken).getOrThrow();
+    }
+
+    @Test
+    public void shouldAcceptAccessTokenTypeWhenNoAudienceIsConfigured() throws Exception {
+        String token = jwt(keyPair, KEY_ID, "at+jwt", claims(inSeconds(60)));
+        String mediaTypeToken = jwt(keyPair, KEY_ID, "application/at+jwt", claims(inSeconds(60)));
+
+        assertThat(resolverWithoutAudience().resolve(new RootContext(), token).getOrThrow().getToken())
+                .isEqualTo(token);
+        assertThat(resolverWithoutAudience().resolve(new RootContext(), mediaTypeToken).getOrThrow().getToken())
+                .isEqualTo(mediaTypeToken);
+    }
+
+    @Test
+    public void shouldNotWaitForJwkSetWhileResolving() throws Exception {
+        final PromiseImpl<Response, NeverThrowsException> jwkSetResponse = PromiseImpl.create();
+        JWKSetStore keyStore = JwtAccessTokenResolver.jwkSetStore(new Handler() {
+            @Override
+            public Promise<Response, NeverThrowsException> handle(Context context, Request request) {
+                return jwkSetResponse;
+            }
+        }, URI.create("https://openam.example.com/openam/oauth2/connect/jwk_uri"));
+        JwtAccessTokenResolver resolver =
+                new JwtAccessTokenResolver(keyStore, ISSUER, AUDIENCE, opaqueTokenResolver, TimeService.SYSTEM);
+
+        Promise<AccessTokenInfo, AccessTokenException> info =
+                resolver.resolve(new RootContext(), jwt(keyPair, KEY_ID, claims(inSeconds(60))));
+        assertThat(info.isDone()).isFalse();
+
+        jwkSetResponse.handleResult(jwkSetResponse());
+        assertThat(info.getOrThrow().getScopes()).isEmpty();
+    }
+
+    @Test
+    public void shouldVerifyJwtWithKeysOfJwkSet() throws Exception {
+        Response response = jwkSetResponse();
+        JWKSetStore keyStore = JwtAccessTokenResolver.jwkSetStore(new ResponseHandler(response),
+                URI.create("https://openam.example.com/openam/oauth2/connect/jwk_uri"));
+        JwtAccessTokenResolver resolver =
+                new JwtAccessTokenResolver(keyStore, ISSUER, AUDIENCE, opaqueTokenResolver, TimeService.SYSTEM);
+
+        AccessTokenInfo info = resolver.resolve(new RootContext(), jwt(keyPair, KEY_ID, claims(inSeconds(60))))
+                                       .getOrThrow();
+
+        assertThat(info.getScopes()).isEmpty();
+        assertThat(opaqueTokenResolver.calls).isEqualTo(0);
+    }
+
+    private Response jwkSetResponse() {
+        RsaJWK jwk = new RsaJWK((RSAPublicKey) keyPair.getPublic(), KeyUse.SIG, "RS256", KEY_ID, null, null, null);
+        JWKSet jwkSet = new JWKSet(Collections.<JWK>singletonList(jwk));
+        return new Response(Status.OK).setEntity(jwkSet.toJsonString());
+    }
+
+    private JwtAccessTokenResolver resolver() {
+        return new JwtAccessTokenResolver(keys(), ISSUER, AUDIENCE, opaqueTokenResolver, TimeService.SYSTEM);
+    }
+
+    private JwtAccessTokenResolver resolverWithoutAudience() {
+        return new JwtAccessTokenResolver(keys(), ISSUER, null, opaqueTokenResolver, TimeService.SYSTEM);
+    }
+
+    private Map<String, Key> keys() {
+        Map<String, Key> keys = new HashMap<>();
+        keys.put(KEY_ID, keyPair.getPublic());
+        return keys;
+    }
+
+    private JwtClaimsSetBuilder claims(Date expirationTime) {
+        JwtClaimsSetBuilder claims = jwtBuilderFactory.claims()
+                .sub("alice")
+                .iss(ISSUER)
+                .aud(Collections.singletonList(AUDIENCE));
+        if (expirationTime != null) {
+            claims.exp(expirationTime);
+        }
+        return claims;
+    }
+
+    private String jwt(KeyPair signingKeyPair, String keyId, JwtClaimsSetBuilder claims) {
+        return jwt(signingKeyPair, keyId, "JWT", claims);
+    }
+
+    private String jwt(KeyPair signingKeyPair, String keyId, String type, JwtClaimsSetBuilder claims) {
+        return jwtBuilderFactory.jws(signingManager.newRsaSigningHandler(signingKeyPair.getPrivate()))
+                .headers()
+                    .alg(JwsAlgorithm.RS256)
+                    .kid(keyId)
+                    .header("typ", type)
+                .done()
+                .claims(claims.build())
+                .build();
+    }
+
+    private static Date inSeconds(int seconds) {
+        // JWT times have a precision of one second.
+        return new Date((System.currentTimeMillis() / 1000L + seconds) * 1000L);
+    }
+
+    private static final class OpaqueTokenResolver implements AccessTokenResolver {
+        private int calls;
+
+        @Override
+        public Promise<AccessTokenInfo, AccessTokenException> resolve(Context context, String token) {
+            calls++;
+            return newResultPromise(new AccessTokenInfo(json(object()),
+                    token, Collections.<String>emptySet(), AccessTokenInfo.NEVER_EXPIRES));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyrighted [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.crypto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.Reject;
+
+/**
+ * Encrypts or decrypts all the marked values of a JSON value tree at once, on a fork-join pool.
+ * <p>
+ * Unlike a {@link JsonCryptoTransformer}, which decrypts values one at a time as they are read, this decrypts all the
+ * {@code $crypto} objects of a tree up front, in parallel, which is faster when a document holds many encrypted
+ * values. The encryptors and decryptors must therefore be thread-safe, which {@code SimpleEncryptor} and
+ * {@code SimpleDecryptor} are. When encrypting many values with an asymmetric key, use a
+ * {@code SimpleEncryptor.batch()} encryptor so that the values share one session key.
+ * <p>
+ * The values are encrypted or decrypted in parallel, but the tree is only modified by the calling thread, once they
+ * have all been processed: if any of them fails, the tree is left unchanged.
+ */
+public class BulkJsonCrypto {
+
+    /** The number of values processed by each fork-join task. */
+    private static final int BATCH_SIZE = 8;
+
+    /** The pool to encrypt or decrypt the values on. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a new bulk processor, which runs on the given pool.
+     *
+     * @param pool the fork-join pool to encrypt or decrypt the values on.
+     */
+    public BulkJsonCrypto(ForkJoinPool pool) {
+        this.pool = Reject.checkNotNull(pool);
+    }
+
+    /**
+     * Encrypts the values identified by the given pointers, replacing each of them with a {@code $crypto} object.
+     * Pointers to undefined values are ignored.
+     *
+     * @param value the JSON value tree to encrypt the values of.
+     * @param encryptor the encryptor to apply.
+     * @param pointers the pointers to the values to encrypt, relative to {@code value}.
+     * @return the JSON value tree, with its values encrypted.
+     * @throws JsonCryptoException if any of the values cannot be encrypted.
+     */
+    public JsonValue encrypt(JsonValue value, final JsonEncryptor encryptor, Collection<JsonPointer> pointers)
+            throws JsonCryptoException {
+        // Ignore the transformers, which could decrypt the values as they are read.
+        final JsonValue tree = new JsonValue(value.getObject());
+        final List<Target> targets = new ArrayList<>(pointers.size());
+        for (JsonPointer pointer : pointers) {
+            JsonValue target = tree.get(pointer);
+            if (target != null) {
+                targets.add(new Target(pointer, target.getObject()));
+            }
+        }
+        process(targets, new Operation() {
+            @Override
+            public Object apply(Object object) throws JsonCryptoException {
+                return new JsonCrypto(encryptor.getType(), encryptor.encrypt(new JsonValue(object)))
+                        .toJsonValue().getObject();
+            }
+        });
+        return apply(value, tree, targets);
+    }
+
+    /**
+     * Decrypts all the {@code $crypto} objects of the given type found in the given JSON value tree, including those
+     * nested in encrypted values, replacing each of them with its decrypted value.
+     *
+     * @param value the JSON value tree to decrypt the values of.
+     * @param decryptor the decryptor to apply.
+     * @return the JSON value tree, with its values decrypted.
+     * @throws JsonCryptoException if any of the values cannot be decrypted.
+     */
+    public JsonValue decrypt(JsonValue value, final JsonDecryptor decryptor) throws JsonCryptoException {
+        final JsonValue tree = new JsonValue(value.getObject());
+        final List<Target> targets = new ArrayList<>();
+        findEncryptedValues(tree.getObject(), new JsonPointer(), decryptor.getType(), targets);
+        process(targets, new Operation() {
+            @Override
+            public Object apply(Object object) throws JsonCryptoException {
+                JsonValue decrypted = decryptor.decrypt(new JsonCrypto(new JsonValue(object)).getValue());
+                // The decrypted value may itself hold encrypted values, which are decrypted by the same task.
+                return decrypt(decrypted, decryptor).getObject();
+            }
+        });
+        return apply(value, tree, targets);
+    }
+
+    private void process(List<Target> targets, Operation operation) throws JsonCryptoException {
+        if (targets.isEmpty()) {
+            return;
+        }
+        Task task = new Task(targets, 0, targets.size(), operation);
+        if (ForkJoinTask.getPool() == pool) {
+            // Nested decryption, already running on the pool: callers running on other pools still use this one.
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        for (Target target : targets) {
+            if (target.failure != null) {
+                throw target.failure;
+            }
+        }
+    }
+
+    private static JsonValue apply(JsonValue value, JsonValue tree, List<Target> targets) {
+        for (Target target : targets) {
+            if (target.pointer.isEmpty()) {
+                value.setObject(target.result);
+            } else {
+                tree.put(target.pointer, target.result);
+            }
+        }
+        return value;
+    }
+
+    private static void findEncryptedValues(Object object, JsonPointer pointer, String type, List<Target> targets) {
+        if (object instanceof Map) {
+            JsonValue value = new JsonValue(object);
+            if (JsonCrypto.isJsonCrypto(value)) {
+                if (type.equals(new JsonCrypto(value).getType())) {
+                    targets.add(new Target(pointer, object));
+                }
+                return;
+            }
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                findEncryptedValues(entry.getValue(), pointer.child(String.valueOf(entry.getKey())), type, targets);
+            }
+        } else if (object instanceof List) {
+            List<?> list = (List<?>) object;
+            for (int i = 0; i < list.size(); i++) {
+                findEncryptedValues(list.get(i), pointer.child(i), type, targets);
+            }
+        }
+    }
+
+    /** Encrypts or decrypts a value. */
+    private interface Operation {
+        Object apply(Object object) throws JsonCryptoException;
+    }
+
+    /** A value to encrypt or decrypt, and the outcome. */
+    private static final class Target {
+        private final JsonPointer pointer;
+        private final Object object;
+        private Object result;
+        private JsonCryptoException failure;
+
+        private Target(JsonPointer pointer, Object object) {
+            this.pointer = pointer;
+            this.object = object;
+        }
+    }
+
+    /** Processes a range of the targets, splitting it into smaller tasks while it is larger than a batch. */
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Target> targets;
+        private final int from;
+        private final int to;
+        private final transient Operation operation;
+
+        private Task(List<Target> targets, int from, int to, Operation operation) {
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+            this.operation = operation;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    Target target = targets.get(i);
+                    try {
+                        target.result = operation.apply(target.object);
+                    } catch (JsonCryptoException e) {
+                        target.failure = e;
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Task(targets, from, middle, operation), new Task(targets, middle, to, operation));
+            }
+        }
+    }
+}
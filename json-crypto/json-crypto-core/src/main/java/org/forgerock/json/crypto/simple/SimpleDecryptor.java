@@ -11,17 +11,21 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
- * Copyright 2011-2015 ForgeRock AS.
+ * Copyright 2011-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.crypto.simple;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.forgerock.json.crypto.JsonCryptoException;
@@ -33,25 +37,70 @@ import org.forgerock.util.encode.Base64;
 /**
  * Decrypts a {@code $crypto} JSON object value encrypted with the
  * {@code x-simple-encryption} type.
+ * <p>
+ * Values encrypted with an asymmetric key hold a session key wrapped with that key. As unwrapping a key is an
+ * expensive private key operation, and as the values encrypted by a {@link SimpleEncryptor#batch() batch} encryptor
+ * all share the same wrapped session key, the most recently unwrapped session keys are kept in a bounded cache,
+ * keyed by the wrapped key.
  */
 public class SimpleDecryptor implements JsonDecryptor {
 
     /** The type of cryptographic representation that this decryptor supports. */
     public static final String TYPE = "x-simple-encryption";
 
+    /** The default maximum number of unwrapped session keys to cache. */
+    public static final int DEFAULT_KEY_CACHE_SIZE = 100;
+
+    /** A session key, along with the private key it was unwrapped with. */
+    private static final class UnwrappedKey {
+        private final Key privateKey;
+        private final Key sessionKey;
+
+        private UnwrappedKey(Key privateKey, Key sessionKey) {
+            this.privateKey = privateKey;
+            this.sessionKey = sessionKey;
+        }
+    }
+
     /** Converts between JSON constructs and Java objects. */
     private final ObjectMapper mapper = new ObjectMapper();
 
-    /** TODO: Description. */
+    /** Selects the keys to decrypt with, by alias. */
     private final SimpleKeySelector selector;
 
+    /** The most recently unwrapped session keys, keyed by wrapped key, or {@code null} if they are not cached. */
+    private final Map<String, UnwrappedKey> unwrappedKeys;
+
     /**
-     * TODO: Description.
+     * Constructs a new simple decryptor, which caches up to {@value #DEFAULT_KEY_CACHE_SIZE} unwrapped session keys.
      *
-     * @param selector TODO.
+     * @param selector selects the keys to decrypt with.
      */
     public SimpleDecryptor(SimpleKeySelector selector) {
+        this(selector, DEFAULT_KEY_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a new simple decryptor.
+     *
+     * @param selector selects the keys to decrypt with.
+     * @param keyCacheSize the maximum number of unwrapped session keys to cache, or 0 to unwrap the session key of
+     *                     each value.
+     */
+    public SimpleDecryptor(SimpleKeySelector selector, final int keyCacheSize) {
         this.selector = selector;
+        if (keyCacheSize > 0) {
+            this.unwrappedKeys = new LinkedHashMap<String, UnwrappedKey>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UnwrappedKey> eldest) {
+                    return size() > keyCacheSize;
+                }
+            };
+        } else {
+            this.unwrappedKeys = null;
+        }
     }
 
     @Override
@@ -76,16 +125,17 @@ public class SimpleDecryptor implements JsonDecryptor {
             if (key.isString()) {
                 symmetricKey = select(key.asString());
             } else {
-                Key privateKey = select(key.get("key").required().asString());
-                Cipher asymmetric = Cipher.getInstance(key.get("cipher").required().asString());
-                asymmetric.init(Cipher.DECRYPT_MODE, privateKey);
-                byte[] ciphertext = Base64.decode(key.get("data").required().asString());
-                symmetricKey = new SecretKeySpec(asymmetric.doFinal(ciphertext), cipher.split("/", 2)[0]);
+                symmetricKey = unwrap(key, cipher.split("/", 2)[0]);
             }
             Cipher symmetric = Cipher.getInstance(cipher);
             String iv = value.get("iv").asString();
-            IvParameterSpec ivps = (iv == null ? null : new IvParameterSpec(Base64.decode(iv)));
-            symmetric.init(Cipher.DECRYPT_MODE, symmetricKey, ivps);
+            AlgorithmParameterSpec parameters = null;
+            if (iv != null) {
+                parameters = SimpleEncryptor.isGcm(cipher)
+                        ? new GCMParameterSpec(SimpleEncryptor.GCM_TAG_LENGTH, Base64.decode(iv))
+                        : new IvParameterSpec(Base64.decode(iv));
+            }
+            symmetric.init(Cipher.DECRYPT_MODE, symmetricKey, parameters);
             byte[] plaintext = symmetric.doFinal(Base64.decode(value.get("data").required().asString()));
             return new JsonValue(mapper.readValue(plaintext, Object.class));
         } catch (GeneralSecurityException | IOException | JsonValueException e) {
@@ -93,4 +143,40 @@ public class SimpleDecryptor implements JsonDecryptor {
         }
     }
 
+    /**
+     * Unwraps a session key, or returns it from the cache if it has already been unwrapped with the same private key.
+     *
+     * @param key the wrapped key object.
+     * @param algorithm the algorithm of the session key.
+     * @return the session key.
+     * @throws JsonCryptoException if the private key cannot be selected.
+     * @throws GeneralSecurityException if the session key cannot be unwrapped.
+     */
+    private Key unwrap(JsonValue key, String algorithm) throws JsonCryptoException, GeneralSecurityException {
+        String alias = key.get("key").required().asString();
+        String wrappingCipher = key.get("cipher").required().asString();
+        String data = key.get("data").required().asString();
+        Key privateKey = select(alias);
+        String cacheKey = null;
+        if (unwrappedKeys != null) {
+            cacheKey = alias + '\n' + wrappingCipher + '\n' + algorithm + '\n' + data;
+            UnwrappedKey cached;
+            synchronized (unwrappedKeys) {
+                cached = unwrappedKeys.get(cacheKey);
+            }
+            // The private key may have changed since the session key was cached, for example after a key rotation.
+            if (cached != null && cached.privateKey.equals(privateKey)) {
+                return cached.sessionKey;
+            }
+        }
+        Cipher asymmetric = Cipher.getInstance(wrappingCipher);
+        asymmetric.init(Cipher.DECRYPT_MODE, privateKey);
+        Key sessionKey = new SecretKeySpec(asymmetric.doFinal(Base64.decode(data)), algorithm);
+        if (cacheKey != null) {
+            synchronized (unwrappedKeys) {
+                unwrappedKeys.put(cacheKey, new UnwrappedKey(privateKey, sessionKey));
+            }
+        }
+        return sessionKey;
+    }
 }
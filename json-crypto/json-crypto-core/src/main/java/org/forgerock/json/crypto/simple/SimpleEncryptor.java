@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
- * Copyright 2011-2015 ForgeRock AS.
+ * Copyright 2011-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.crypto.simple;
@@ -19,10 +19,13 @@ package org.forgerock.json.crypto.simple;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.SecureRandom;
 import java.util.HashMap;
+import java.util.Map;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.forgerock.json.crypto.JsonCryptoException;
@@ -32,12 +35,32 @@ import org.forgerock.util.encode.Base64;
 
 /**
  * Encrypts a JSON value into an {@code x-simple-encryption} type {@code $crypto} JSON object.
+ * <p>
+ * Symmetric ciphers in GCM mode, such as {@code AES/GCM/NoPadding}, are supported as well as the block cipher
+ * modes supported by the JCE provider: a random 96-bit initialization vector is generated for each value, and the
+ * values are authenticated with a 128-bit tag.
+ * <p>
+ * With an asymmetric key, each value is encrypted with its own randomly generated session key, which is wrapped
+ * with the asymmetric key. When many values are encrypted together, for example all the encrypted fields of a
+ * configuration document, use a {@link #batch() batch} encryptor instead, which wraps a single session key.
  */
 public class SimpleEncryptor implements JsonEncryptor {
 
     /** The type of cryptographic representation that this encryptor supports. */
     public static final String TYPE = "x-simple-encryption";
 
+    /** The symmetric cipher used with the session keys of {@link #batch() batch} encryptors. */
+    public static final String BATCH_CIPHER = "AES/GCM/NoPadding";
+
+    /** The length in bits of the GCM initialization vectors. */
+    static final int GCM_IV_LENGTH = 96;
+
+    /** The length in bits of the GCM authentication tags. */
+    static final int GCM_TAG_LENGTH = 128;
+
+    /** Generates the GCM initialization vectors. */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     /** Converts between Java objects and JSON constructs. */
     private final ObjectMapper mapper = new ObjectMapper();
 
@@ -68,22 +91,73 @@ public class SimpleEncryptor implements JsonEncryptor {
         return TYPE;
     }
 
+    /**
+     * Returns an encryptor which encrypts all the values it is given with the same randomly generated session key,
+     * so that the asymmetric key of this encryptor is used once for the whole batch, rather than once per value.
+     * Each value is encrypted with {@value #BATCH_CIPHER} and its own initialization vector, and the encrypted values
+     * all refer to the same wrapped session key, so that a {@link SimpleDecryptor} only unwraps it once.
+     * <p>
+     * The returned encryptor is thread-safe, but should not be kept longer than the batch, so that the session key
+     * is not used to encrypt an unbounded number of values. If the key of this encryptor is a symmetric key, there is
+     * no session key to share and this encryptor is returned.
+     *
+     * @return An encryptor sharing one session key between all the values it encrypts.
+     * @throws JsonCryptoException If the session key cannot be generated or wrapped.
+     */
+    public JsonEncryptor batch() throws JsonCryptoException {
+        if (key instanceof SecretKey) {
+            return this;
+        }
+        try {
+            final SecretKey sessionKey = generateSessionKey();
+            final Map<String, Object> keyObject = wrap(sessionKey);
+            return new JsonEncryptor() {
+                @Override
+                public String getType() {
+                    return TYPE;
+                }
+
+                @Override
+                public JsonValue encrypt(JsonValue value) throws JsonCryptoException {
+                    try {
+                        return new JsonValue(symmetric(value.getObject(), BATCH_CIPHER, sessionKey,
+                                new HashMap<>(keyObject)));
+                    } catch (GeneralSecurityException | IOException e) {
+                        throw new JsonCryptoException(e);
+                    }
+                }
+            };
+        } catch (GeneralSecurityException e) {
+            throw new JsonCryptoException(e);
+        }
+    }
+
     /**
      * Encrypts with a symmetric cipher.
      *
      * @param object the value to be encrypted.
+     * @param cipher the symmetric cipher to encrypt with.
+     * @param key the symmetric key to encrypt with.
+     * @param keyReference the alias of the key, or the wrapped key, to list in the encrypted object.
      * @return the encrypted value.
      * @throws GeneralSecurityException if a cryptographic operation failed.
      * @throws IOException if an I/O exception occurred.
      */
-    private Object symmetric(Object object) throws GeneralSecurityException, IOException {
+    private Map<String, Object> symmetric(Object object, String cipher, Key key, Object keyReference)
+            throws GeneralSecurityException, IOException {
         Cipher symmetric = Cipher.getInstance(cipher);
-        symmetric.init(Cipher.ENCRYPT_MODE, key);
+        if (isGcm(cipher)) {
+            byte[] iv = new byte[GCM_IV_LENGTH / 8];
+            RANDOM.nextBytes(iv);
+            symmetric.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        } else {
+            symmetric.init(Cipher.ENCRYPT_MODE, key);
+        }
         String data = Base64.encode(symmetric.doFinal(mapper.writeValueAsBytes(object)));
         byte[] iv = symmetric.getIV();
         HashMap<String, Object> result = new HashMap<>();
-        result.put("cipher", this.cipher);
-        result.put("key", this.alias);
+        result.put("cipher", cipher);
+        result.put("key", keyReference);
         result.put("data", data);
         if (iv != null) {
             result.put("iv", Base64.encode(iv));
@@ -101,30 +175,43 @@ public class SimpleEncryptor implements JsonEncryptor {
      */
     private Object asymmetric(Object object) throws GeneralSecurityException, IOException {
         String symmetricCipher = "AES/ECB/PKCS5Padding"; // no IV required for randomly-generated session key
+        SecretKey sessionKey = generateSessionKey();
+        return symmetric(object, symmetricCipher, sessionKey, wrap(sessionKey));
+    }
+
+    private SecretKey generateSessionKey() throws GeneralSecurityException {
         KeyGenerator generator = KeyGenerator.getInstance("AES");
         generator.init(128);
-        SecretKey sessionKey = generator.generateKey();
-        Cipher symmetric = Cipher.getInstance(symmetricCipher);
-        symmetric.init(Cipher.ENCRYPT_MODE, sessionKey);
-        String data = Base64.encode(symmetric.doFinal(mapper.writeValueAsBytes(object)));
+        return generator.generateKey();
+    }
+
+    /**
+     * Wraps a session key with the asymmetric key of this encryptor.
+     *
+     * @param sessionKey the session key to wrap.
+     * @return the wrapped key object to list in the encrypted object.
+     * @throws GeneralSecurityException if a cryptographic operation failed.
+     */
+    private Map<String, Object> wrap(SecretKey sessionKey) throws GeneralSecurityException {
         Cipher asymmetric = Cipher.getInstance(cipher);
         asymmetric.init(Cipher.ENCRYPT_MODE, key);
         HashMap<String, Object> keyObject = new HashMap<>();
         keyObject.put("cipher", this.cipher);
         keyObject.put("key", this.alias);
         keyObject.put("data", Base64.encode(asymmetric.doFinal(sessionKey.getEncoded())));
-        HashMap<String, Object> result = new HashMap<>();
-        result.put("cipher", symmetricCipher);
-        result.put("key", keyObject);
-        result.put("data", data);
-        return result;
+        return keyObject;
+    }
+
+    static boolean isGcm(String cipher) {
+        String[] transformation = cipher.split("/");
+        return transformation.length > 1 && transformation[1].equalsIgnoreCase("GCM");
     }
 
     @Override
     public JsonValue encrypt(JsonValue value) throws JsonCryptoException {
         Object object = value.getObject();
         try {
-            return new JsonValue((key instanceof SecretKey ? symmetric(object) : asymmetric(object)));
+            return new JsonValue(key instanceof SecretKey ? symmetric(object, cipher, key, alias) : asymmetric(object));
         } catch (GeneralSecurityException | IOException e) {
             throw new JsonCryptoException(e);
         }
@@ -27,8 +27,15 @@ import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.forgerock.json.crypto.simple.SimpleDecryptor;
 import org.forgerock.json.crypto.simple.SimpleEncryptor;
@@ -45,6 +52,8 @@ public class JsonCryptoTest {
 
     private static final String ASYMMETRIC_CIPHER = "RSA/ECB/OAEPWithSHA1AndMGF1Padding";
 
+    private static final String GCM_CIPHER = "AES/GCM/NoPadding";
+
     private static final String PASSWORD = "P@55W0RD";
 
     private static final String PLAINTEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
@@ -105,6 +114,100 @@ public class JsonCryptoTest {
         assertThat(value.getObject()).isEqualTo(PLAINTEXT);
     }
 
+    @Test
+    public void testGcmEncryption() throws JsonCryptoException {
+        JsonValue value = new JsonValue(PLAINTEXT);
+        value = new SimpleEncryptor(GCM_CIPHER, secretKey, "secretKey").encrypt(value);
+        assertThat(value.get("iv").isString()).isTrue();
+        value = new SimpleDecryptor(selector).decrypt(value);
+        assertThat(value.getObject()).isEqualTo(PLAINTEXT);
+    }
+
+    @Test
+    public void testBatchEncryptionSharesSessionKey() throws JsonCryptoException {
+        JsonEncryptor encryptor = new SimpleEncryptor(ASYMMETRIC_CIPHER, publicKey, "privateKey").batch();
+        JsonValue first = encryptor.encrypt(new JsonValue(PASSWORD));
+        JsonValue second = encryptor.encrypt(new JsonValue(PLAINTEXT));
+        assertThat(first.get("cipher").asString()).isEqualTo(SimpleEncryptor.BATCH_CIPHER);
+        assertThat(first.get("key").getObject()).isEqualTo(second.get("key").getObject());
+        assertThat(first.get("iv").asString()).isNotEqualTo(second.get("iv").asString());
+        SimpleDecryptor decryptor = new SimpleDecryptor(selector);
+        assertThat(decryptor.decrypt(first).getObject()).isEqualTo(PASSWORD);
+        assertThat(decryptor.decrypt(second).getObject()).isEqualTo(PLAINTEXT);
+        assertThat(new SimpleDecryptor(selector, 0).decrypt(second).getObject()).isEqualTo(PLAINTEXT);
+    }
+
+    @Test
+    public void testBulkEncryption() throws JsonCryptoException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BulkJsonCrypto bulk = new BulkJsonCrypto(pool);
+            JsonValue value = new JsonValue(new HashMap<String, Object>());
+            ArrayList<JsonPointer> pointers = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                value.put("field" + i, Arrays.asList(PASSWORD + i, i));
+                pointers.add(new JsonPointer("/field" + i + "/0"));
+            }
+            value.put("description", PLAINTEXT);
+            JsonEncryptor encryptor = new SimpleEncryptor(ASYMMETRIC_CIPHER, publicKey, "privateKey").batch();
+
+            bulk.encrypt(value, encryptor, pointers);
+            assertThat(JsonCrypto.isJsonCrypto(value.get(new JsonPointer("/field7/0")))).isTrue();
+            assertThat(value.get(new JsonPointer("/field7/1")).getObject()).isEqualTo(7);
+
+            // encrypt the whole document again, to check nested values
+            bulk.encrypt(value, encryptor, Arrays.asList(new JsonPointer("/description"), new JsonPointer()));
+            assertThat(JsonCrypto.isJsonCrypto(value)).isTrue();
+
+            bulk.decrypt(value, new SimpleDecryptor(selector));
+            for (int i = 0; i < 50; i++) {
+                assertThat(value.get(new JsonPointer("/field" + i + "/0")).getObject()).isEqualTo(PASSWORD + i);
+            }
+            assertThat(value.get("description").getObject()).isEqualTo(PLAINTEXT);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBulkEncryptionFromAnotherPoolRunsOnConfiguredPool() throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        final ForkJoinPool otherPool = new ForkJoinPool(2);
+        try {
+            final BulkJsonCrypto bulk = new BulkJsonCrypto(pool);
+            final JsonValue value = new JsonValue(new HashMap<String, Object>());
+            value.put("field", PASSWORD);
+            final Set<ForkJoinPool> pools = Collections.newSetFromMap(new ConcurrentHashMap<ForkJoinPool, Boolean>());
+            final JsonEncryptor encryptor = new JsonEncryptor() {
+                private final JsonEncryptor delegate = new SimpleEncryptor(SYMMETRIC_CIPHER, secretKey, "secretKey");
+
+                @Override
+                public String getType() {
+                    return delegate.getType();
+                }
+
+                @Override
+                public JsonValue encrypt(JsonValue value) throws JsonCryptoException {
+                    pools.add(ForkJoinTask.getPool());
+                    return delegate.encrypt(value);
+                }
+            };
+
+            otherPool.submit(new Callable<JsonValue>() {
+                @Override
+                public JsonValue call() throws JsonCryptoException {
+                    return bulk.encrypt(value, encryptor, Arrays.asList(new JsonPointer("/field")));
+                }
+            }).get();
+
+            assertThat(pools).containsOnly(pool);
+            assertThat(JsonCrypto.isJsonCrypto(value.get("field"))).isTrue();
+        } finally {
+            pool.shutdown();
+            otherPool.shutdown();
+        }
+    }
+
     @Test
     public void testJsonCryptoTransformer() throws JsonCryptoException {
         JsonValue value = new JsonValue(PLAINTEXT);
@@ -161,6 +264,14 @@ public class JsonCryptoTest {
         new SimpleDecryptor(selector).decrypt(value);
     }
 
+    @Test(expectedExceptions = JsonCryptoException.class)
+    public void testTamperedGcmData() throws JsonCryptoException {
+        SimpleEncryptor encryptor = new SimpleEncryptor(GCM_CIPHER, secretKey, "secretKey");
+        JsonValue value = encryptor.encrypt(new JsonValue(PLAINTEXT));
+        value.put("data", encryptor.encrypt(new JsonValue(PASSWORD)).get("data").asString());
+        new SimpleDecryptor(selector).decrypt(value);
+    }
+
     @Test(expectedExceptions = JsonCryptoException.class)
     public void testUnknownKey() throws JsonCryptoException {
         JsonValue value = new JsonValue(PLAINTEXT);
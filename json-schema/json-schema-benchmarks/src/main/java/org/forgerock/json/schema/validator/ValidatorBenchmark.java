@@ -0,0 +1,173 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator;
+
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.schema.validator.validators.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the validation of valid and invalid instances against representative schemas: a managed user with many
+ * declared properties, nested objects and arrays, and an extensible object whose properties are matched by pattern
+ * properties. Run it with the GC profiler to see how much is allocated per validation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    /** The number of custom attributes of the managed user, or of extension properties of the extensible object. */
+    private static final int ATTRIBUTES = 20;
+
+    /** The schema to validate against. */
+    @Param({ "managedUser", "patternProperties" })
+    private String schema;
+
+    private Validator validator;
+    private Object validInstance;
+    private Object invalidInstance;
+
+    @Setup
+    public void setUp() {
+        if ("managedUser".equals(schema)) {
+            validator = ObjectValidatorFactory.getTypeValidator(managedUserSchema());
+            validInstance = managedUser("active").getObject();
+            invalidInstance = managedUser("locked").getObject();
+        } else {
+            validator = ObjectValidatorFactory.getTypeValidator(extensibleObjectSchema());
+            validInstance = extensibleObject("value").getObject();
+            invalidInstance = extensibleObject(Boolean.TRUE).getObject();
+        }
+    }
+
+    @Benchmark
+    public boolean validateValidInstance() {
+        ErrorHandler handler = new FailFastErrorHandler();
+        validator.validate(validInstance, null, handler);
+        return handler.hasError();
+    }
+
+    @Benchmark
+    public boolean validateInvalidInstance() {
+        ErrorHandler handler = new CollectErrorsHandler();
+        validator.validate(invalidInstance, null, handler);
+        return handler.hasError();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> managedUserSchema() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("userName", object(field("type", "string"), field("required", true), field("minLength", 1)));
+        properties.put("givenName", object(field("type", "string"), field("required", true)));
+        properties.put("sn", object(field("type", "string"), field("required", true)));
+        properties.put("mail", object(field("type", "string"), field("pattern", "^[^@]+@[^@]+$")));
+        properties.put("accountStatus", object(field("type", "string"), field("enum", array("active", "inactive"))));
+        properties.put("telephoneNumber", object(field("type", array("string", "null"))));
+        properties.put("roles", object(field("type", "array"),
+                field("items", object(field("type", "object"),
+                        field("properties", object(field("_ref", object(field("type", "string"))))),
+                        field("additionalProperties", false)))));
+        properties.put("effectiveAssignments", object(field("type", "array"),
+                field("items", object(field("type", "string")))));
+        properties.put("preferences", object(field("type", "object"),
+                field("properties", object(
+                        field("updates", object(field("type", "boolean"))),
+                        field("marketing", object(field("type", "boolean")))))));
+        for (int i = 0; i < ATTRIBUTES; i++) {
+            properties.put("attribute" + i, object(field("type", "string")));
+        }
+        return (Map<String, Object>) object(
+                field("type", "object"),
+                field("properties", properties),
+                field("additionalProperties", false));
+    }
+
+    private static JsonValue managedUser(String accountStatus) {
+        JsonValue user = json(object(
+                field("userName", "bjensen"),
+                field("givenName", "Barbara"),
+                field("sn", "Jensen"),
+                field("mail", "bjensen@example.com"),
+                field("accountStatus", accountStatus),
+                field("telephoneNumber", null),
+                field("roles", array(
+                        object(field("_ref", "managed/role/employee")),
+                        object(field("_ref", "managed/role/manager")))),
+                field("effectiveAssignments", array("assignment1", "assignment2", "assignment3")),
+                field("preferences", object(field("updates", true), field("marketing", false)))));
+        for (int i = 0; i < ATTRIBUTES; i++) {
+            user.put("attribute" + i, "value" + i);
+        }
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> extensibleObjectSchema() {
+        return (Map<String, Object>) object(
+                field("type", "object"),
+                field("properties", object(field("_id", object(field("type", "string"))))),
+                field("patternProperties", object(
+                        field("^x-", object(field("type", "string"))),
+                        field("^tag[0-9]+$", object(field("type", "boolean"))))),
+                field("additionalProperties", false));
+    }
+
+    private static JsonValue extensibleObject(Object extensionValue) {
+        JsonValue object = json(object(field("_id", "0")));
+        for (int i = 0; i < ATTRIBUTES; i++) {
+            object.put("x-extension" + i, i == ATTRIBUTES - 1 ? extensionValue : "value");
+            object.put("tag" + i, true);
+        }
+        return object;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ValidatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
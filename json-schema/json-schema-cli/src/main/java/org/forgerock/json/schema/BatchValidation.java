@@ -0,0 +1,290 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.schema.validator.CollectErrorsHandler;
+import org.forgerock.json.schema.validator.Constants;
+import org.forgerock.json.schema.validator.FailFastErrorHandler;
+import org.forgerock.json.schema.validator.SchemaRegistry;
+import org.forgerock.json.schema.validator.exceptions.ValidationException;
+import org.forgerock.json.schema.validator.validators.Validator;
+
+/**
+ * Validates many documents in parallel against the schemas of a {@link SchemaRegistry}, and prints the outcome of
+ * each validation, then a summary, as JSON lines.
+ * <p>
+ * Documents are read and validated in chunks, on a fork-join pool, and the results of each chunk are printed in the
+ * order the documents were read, so the memory needed does not depend on the number of documents.
+ */
+final class BatchValidation {
+
+    /** The number of documents read before being validated in parallel. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** The number of documents validated by each fork-join task. */
+    private static final int BATCH_SIZE = 8;
+
+    /** Integers are read as longs, as expected by the validators. */
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(DeserializationFeature.USE_LONG_FOR_INTS);
+
+    private final SchemaRegistry registry;
+    private final URI defaultSchemaId;
+    private final boolean collectAllErrors;
+    private final ForkJoinPool pool;
+    private final PrintStream out;
+    private final List<Document> chunk = new ArrayList<>(CHUNK_SIZE);
+
+    private final long start = System.nanoTime();
+    private long documentCount;
+    private long validCount;
+    private long invalidCount;
+    private long failedCount;
+
+    /**
+     * Creates a batch validation.
+     *
+     * @param registry the registry holding the compiled schemas
+     * @param defaultSchemaId the id of the schema of the documents which do not have a {@code $schema} property, or
+     *                        {@code null}
+     * @param collectAllErrors whether to report all the errors of each document, rather than the first one
+     * @param pool the pool to validate the documents on
+     * @param out where to print the results
+     */
+    BatchValidation(SchemaRegistry registry, URI defaultSchemaId, boolean collectAllErrors, ForkJoinPool pool,
+            PrintStream out) {
+        this.registry = registry;
+        this.defaultSchemaId = defaultSchemaId;
+        this.collectAllErrors = collectAllErrors;
+        this.pool = pool;
+        this.out = out;
+    }
+
+    /**
+     * Validates the given JSON file.
+     *
+     * @param file the JSON file
+     */
+    void addFile(final File file) {
+        add(new Document(file.getPath()) {
+            @Override
+            Object read() throws IOException {
+                return MAPPER.readValue(file, Object.class);
+            }
+        });
+    }
+
+    /**
+     * Validates each non blank line read from the given reader as a JSON document.
+     *
+     * @param reader the reader of the JSON lines
+     * @param name the name of the input, which the line numbers are appended to
+     * @throws IOException if the lines cannot be read
+     */
+    void addLines(BufferedReader reader, String name) throws IOException {
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.trim().isEmpty()) {
+                final String json = line;
+                add(new Document(name + ":" + lineNumber) {
+                    @Override
+                    Object read() throws IOException {
+                        return MAPPER.readValue(json, Object.class);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Validates the remaining documents, then prints the summary of the whole batch.
+     *
+     * @return {@code true} if all the documents were valid
+     */
+    boolean finish() {
+        flush();
+        final long elapsed = System.nanoTime() - start;
+        final Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("documents", documentCount);
+        summary.put("valid", validCount);
+        summary.put("invalid", invalidCount);
+        summary.put("failed", failedCount);
+        summary.put("parallelism", pool.getParallelism());
+        summary.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        summary.put("documentsPerSecond", elapsed > 0 ? documentCount * 1e9 / elapsed : 0);
+        print(Collections.<String, Object>singletonMap("summary", summary));
+        return invalidCount == 0 && failedCount == 0;
+    }
+
+    private void add(Document document) {
+        chunk.add(document);
+        if (chunk.size() == CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        pool.invoke(new Task(chunk, 0, chunk.size()));
+        for (Document document : chunk) {
+            documentCount++;
+            if (document.failure != null) {
+                failedCount++;
+            } else if (document.errors.isEmpty()) {
+                validCount++;
+            } else {
+                invalidCount++;
+            }
+            print(document.toResult());
+        }
+        chunk.clear();
+    }
+
+    private void print(Map<String, Object> result) {
+        try {
+            out.println(MAPPER.writeValueAsString(result));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Must not be called concurrently for the same document. */
+    private void validate(Document document) {
+        final long documentStart = System.nanoTime();
+        try {
+            final JsonValue value = new JsonValue(document.read());
+            URI schemaId = value.isMap() ? value.get(Constants.SCHEMA).asURI() : null;
+            if (null == schemaId) {
+                schemaId = defaultSchemaId;
+            }
+            if (null == schemaId) {
+                document.failure = "The document has no " + Constants.SCHEMA + " and no schema id was given";
+                return;
+            }
+            document.schemaId = schemaId;
+            final Validator validator = registry.getValidator(schemaId);
+            if (null == validator) {
+                document.failure = "Schema " + schemaId + " not found";
+            } else if (collectAllErrors) {
+                final CollectErrorsHandler handler = new CollectErrorsHandler();
+                validator.validate(value.getObject(), null, handler);
+                document.errors.addAll(handler.getExceptions());
+            } else {
+                try {
+                    validator.validate(value.getObject(), null, new FailFastErrorHandler());
+                } catch (ValidationException e) {
+                    document.errors.add(e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            document.failure = String.valueOf(e.getMessage());
+        } finally {
+            document.duration = System.nanoTime() - documentStart;
+        }
+    }
+
+    /** A document to validate, and the outcome of its validation. */
+    private abstract static class Document {
+        private final String source;
+        private URI schemaId;
+        private final List<ValidationException> errors = new ArrayList<>(0);
+        private String failure;
+        private long duration;
+
+        private Document(String source) {
+            this.source = source;
+        }
+
+        abstract Object read() throws IOException;
+
+        private Map<String, Object> toResult() {
+            final Map<String, Object> result = new LinkedHashMap<>();
+            result.put("source", source);
+            if (schemaId != null) {
+                result.put("schema", schemaId.toString());
+            }
+            if (failure != null) {
+                result.put("status", "failed");
+                result.put("failure", failure);
+            } else {
+                result.put("status", errors.isEmpty() ? "valid" : "invalid");
+                if (!errors.isEmpty()) {
+                    final List<Map<String, Object>> details = new ArrayList<>(errors.size());
+                    for (ValidationException error : errors) {
+                        final Map<String, Object> detail = new LinkedHashMap<>();
+                        if (error.getJsonValue() != null) {
+                            detail.put("path", error.getJsonValue().getPointer().toString());
+                        }
+                        detail.put("message", error.getMessage());
+                        details.add(detail);
+                    }
+                    result.put("errors", details);
+                }
+            }
+            result.put("durationMicros", TimeUnit.NANOSECONDS.toMicros(duration));
+            return result;
+        }
+    }
+
+    /** Validates a range of the documents, splitting it into smaller tasks while it is larger than a batch. */
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Document> documents;
+        private final int from;
+        private final int to;
+
+        private Task(List<Document> documents, int from, int to) {
+            this.documents = documents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    validate(documents.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Task(documents, from, middle), new Task(documents, middle, to));
+            }
+        }
+    }
+}
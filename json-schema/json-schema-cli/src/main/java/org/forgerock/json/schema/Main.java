@@ -19,27 +19,32 @@ package org.forgerock.json.schema;
 import static org.kohsuke.args4j.ExampleMode.ALL;
 import static org.kohsuke.args4j.ExampleMode.REQUIRED;
 
+import java.io.BufferedReader;
 import java.io.Console;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.schema.validator.Constants;
 import org.forgerock.json.schema.validator.ErrorHandler;
 import org.forgerock.json.schema.validator.FailFastErrorHandler;
-import org.forgerock.json.schema.validator.ObjectValidatorFactory;
+import org.forgerock.json.schema.validator.SchemaRegistry;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.forgerock.json.schema.validator.validators.Validator;
@@ -57,7 +62,7 @@ public final class Main {
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final String ROOT_SCHEMA_ID = "http://www.forgerock.org/schema/";
 
-    private final Map<URI, Validator> schemaCache = new HashMap<>();
+    private SchemaRegistry registry;
 
     @Option(name = "-v", aliases = {"--verbose"}, usage = "display all validation error not just the first")
     private boolean verbose;
@@ -74,9 +79,22 @@ public final class Main {
             usage = "id of the schema. Optional if the object has \"$schema\" property")
     private String schemaURI;
 
-    @Option(name = "-f", aliases = {"--file"}, usage = "input from this file", metaVar = "sample.json")
+    @Option(name = "-f", aliases = {"--file"}, metaVar = "sample.json",
+            usage = "input from this file, or from the standard input if - in batch mode")
     private File inputFile;
 
+    @Option(name = "-B", aliases = {"--batch"},
+            usage = "validate the files and folders given as arguments, or the JSON lines read from the standard "
+                    + "input if there are none, and print the results as JSON lines")
+    private boolean batch;
+
+    @Option(name = "-p", aliases = {"--parallelism"}, metaVar = "N",
+            usage = "number of documents validated in parallel in batch mode. Default: number of processors")
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // batch mode prints its results to the standard output, so the progress goes to the standard error
+    private PrintStream log = System.out;
+
     // receives other command line parameters than options
     @Argument
     private List<String> arguments = new ArrayList<>();
@@ -132,9 +150,20 @@ public final class Main {
             throw new IllegalArgumentException("-b (-base) must be an absolute URI");
         }
 
+        if (batch) {
+            log = System.err;
+        }
+
         // load all schema
         init(base);
 
+        if (batch) {
+            if (!validateBatch(System.in, System.out)) {
+                System.exit(1);
+            }
+            return;
+        }
+
         if (null == inputFile) {
             while (true) {
                 try {
@@ -154,12 +183,13 @@ public final class Main {
 
     //Initialization
 
-    private void init(URI base) throws IOException {
-        System.out.append("Loading schemas from: ")
+    void init(URI base) throws IOException {
+        log.append("Loading schemas from: ")
                 .append(schemaFile.getAbsolutePath())
                 .append(" with base ")
                 .append(base.toString())
                 .println(" URI");
+        registry = new SchemaRegistry(base);
         if (schemaFile.isDirectory()) {
             validateDirectory(schemaFile);
             FileFilter filter = new FileFilter() {
@@ -180,18 +210,19 @@ public final class Main {
         } else {
             System.exit(1);
         }
+        // compile all the schemas up front, resolving the references between them
+        registry.compileAll();
     }
 
     private void loadSchema(URI base, File schemaFile) throws IOException {
         JsonValue schemaMap = new JsonValue(MAPPER.readValue(new FileInputStream(schemaFile), Map.class));
         URI id = schemaMap.get(Constants.ID).required().asURI();
-        Validator v = ObjectValidatorFactory.getTypeValidator(schemaMap.asMap());
         if (!id.isAbsolute()) {
             id = base.resolve(id);
         }
-        schemaCache.put(id, v);
-        System.out.append("Schema ").append(id.toString()).println(" loaded from file:");
-        System.out.append("     location: ").println(schemaFile.getAbsolutePath());
+        id = registry.register(id, schemaMap.asMap());
+        log.append("Schema ").append(id.toString()).println(" loaded from file:");
+        log.append("     location: ").println(schemaFile.getAbsolutePath());
     }
 
     /**
@@ -251,7 +282,7 @@ public final class Main {
             schemaId = new URI(schemaURI);
         }
 
-        Validator validator = schemaCache.get(schemaId);
+        Validator validator = registry.getValidator(schemaId);
         if (null != validator) {
             if (verbose) {
                 final boolean[] valid = new boolean[1];
@@ -279,6 +310,57 @@ public final class Main {
         }
     }
 
+    /**
+     * Validates the files and folders given as arguments, or the JSON lines read from the given input if there are
+     * none, and prints the results as JSON lines.
+     *
+     * @param in the input to read the JSON lines from when {@code -} or no file is given
+     * @param out where to print the results
+     * @return {@code true} if all the documents were valid
+     * @throws IOException if the JSON lines cannot be read
+     * @throws URISyntaxException if the schema id is not a valid URI
+     */
+    boolean validateBatch(InputStream in, PrintStream out) throws IOException, URISyntaxException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("-p (--parallelism) must be at least 1");
+        }
+        final URI schemaId = isEmptyOrBlank(schemaURI) ? null : new URI(schemaURI);
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final BatchValidation validation = new BatchValidation(registry, schemaId, verbose, pool, out);
+            final List<String> inputs = new ArrayList<>(arguments);
+            if (null != inputFile) {
+                inputs.add(inputFile.getPath());
+            }
+            if (inputs.isEmpty()) {
+                inputs.add("-");
+            }
+            final FileFilter filter = new FileFilter() {
+                @Override
+                public boolean accept(File f) {
+                    return f.isDirectory() || f.getName().endsWith(".json");
+                }
+            };
+            for (String input : inputs) {
+                final File file = new File(input);
+                if ("-".equals(input)) {
+                    validation.addLines(
+                            new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), "stdin");
+                } else if (file.isDirectory()) {
+                    validateDirectory(file);
+                    for (File f : getFileListingNoSort(file, filter)) {
+                        validation.addFile(f);
+                    }
+                } else {
+                    validation.addFile(file);
+                }
+            }
+            return validation.finish();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     private JsonValue loadFromConsole() throws IOException {
         System.out.println();
         System.out.println("> Enter 'exit' and press enter to exit");
@@ -332,7 +414,7 @@ public final class Main {
 
     }
 
-    private Main() {
+    Main() {
 
     }
 }
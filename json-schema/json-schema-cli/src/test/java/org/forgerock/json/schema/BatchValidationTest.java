@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.json.JsonValue.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.schema.validator.SchemaRegistry;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class BatchValidationTest {
+
+    private static final URI USER_SCHEMA = URI.create("http://www.example.com/schema/user");
+
+    private SchemaRegistry registry;
+    private ForkJoinPool pool;
+    private ByteArrayOutputStream out;
+
+    @BeforeMethod
+    public void setUp() {
+        registry = new SchemaRegistry(URI.create("http://www.example.com/schema/"));
+        registry.register(json(object(
+                field("id", "user"),
+                field("type", "object"),
+                field("required", array("name")),
+                field("properties", object(field("name", object(field("type", "string"))))))).asMap());
+        registry.compileAll();
+        pool = new ForkJoinPool(4);
+        out = new ByteArrayOutputStream();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldPrintTheResultsInTheOrderTheDocumentsWereRead() throws Exception {
+        // given
+        BatchValidation validation = newBatchValidation(USER_SCHEMA);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            lines.append(i % 3 == 0 ? "{ \"name\": 1 }" : "{ \"name\": \"user" + i + "\" }").append('\n');
+        }
+
+        // when
+        validation.addLines(reader(lines.toString()), "stdin");
+        boolean valid = validation.finish();
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(valid).isFalse();
+        assertThat(results).hasSize(3001);
+        for (int i = 0; i < 3000; i++) {
+            assertThat(results.get(i).get("source").asString()).isEqualTo("stdin:" + (i + 1));
+            assertThat(results.get(i).get("status").asString()).isEqualTo(i % 3 == 0 ? "invalid" : "valid");
+        }
+    }
+
+    @Test
+    public void shouldReportDocumentsWhoseSchemaIsNotFound() throws Exception {
+        // given
+        BatchValidation validation = newBatchValidation(null);
+
+        // when
+        validation.addLines(reader("{ \"$schema\": \"http://www.example.com/schema/unknown\", \"name\": \"a\" }\n"
+                + "{ \"name\": \"a\" }"), "stdin");
+        boolean valid = validation.finish();
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(valid).isFalse();
+        assertThat(results.get(0).get("status").asString()).isEqualTo("failed");
+        assertThat(results.get(0).get("schema").asString()).isEqualTo("http://www.example.com/schema/unknown");
+        assertThat(results.get(0).get("failure").asString())
+                .isEqualTo("Schema http://www.example.com/schema/unknown not found");
+        assertThat(results.get(1).get("status").asString()).isEqualTo("failed");
+        assertThat(results.get(1).get("failure").asString()).contains("no $schema");
+    }
+
+    @Test
+    public void shouldReportDocumentsWhichCannotBeRead() throws Exception {
+        // given
+        BatchValidation validation = newBatchValidation(USER_SCHEMA);
+        File missing = new File(System.getProperty("java.io.tmpdir"), "missing-" + System.nanoTime() + ".json");
+
+        // when
+        validation.addFile(missing);
+        validation.addLines(reader("{ \"name\": \"a\" }\n{ \"name\": \n"), "stdin");
+        boolean valid = validation.finish();
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(valid).isFalse();
+        assertThat(results.get(0).get("source").asString()).isEqualTo(missing.getPath());
+        assertThat(results.get(0).get("status").asString()).isEqualTo("failed");
+        assertThat(results.get(0).get("failure").isString()).isTrue();
+        assertThat(results.get(1).get("status").asString()).isEqualTo("valid");
+        assertThat(results.get(2).get("source").asString()).isEqualTo("stdin:2");
+        assertThat(results.get(2).get("status").asString()).isEqualTo("failed");
+    }
+
+    @Test
+    public void shouldSummarizeTheBatch() throws Exception {
+        // given
+        BatchValidation validation = newBatchValidation(USER_SCHEMA);
+
+        // when
+        validation.addLines(reader("{ \"name\": \"a\" }\n\n{ \"name\": \"b\" }\n{}\n"
+                + "{ \"$schema\": \"http://www.example.com/schema/unknown\" }\n[\n"), "stdin");
+        validation.finish();
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(results).hasSize(6);
+        JsonValue summary = results.get(5).get("summary");
+        assertThat(summary.get("documents").asLong()).isEqualTo(5);
+        assertThat(summary.get("valid").asLong()).isEqualTo(2);
+        assertThat(summary.get("invalid").asLong()).isEqualTo(1);
+        assertThat(summary.get("failed").asLong()).isEqualTo(2);
+        assertThat(summary.get("parallelism").asInteger()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldSucceedWhenAllTheDocumentsAreValid() throws Exception {
+        // given
+        BatchValidation validation = newBatchValidation(USER_SCHEMA);
+
+        // when
+        validation.addLines(reader("{ \"name\": \"a\" }\n{ \"$schema\": \"" + USER_SCHEMA + "\", \"name\": \"b\" }"),
+                "stdin");
+        boolean valid = validation.finish();
+
+        // then
+        assertThat(valid).isTrue();
+        assertThat(readResults().get(2).get("summary").get("valid").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReportAllTheErrorsWhenAsked() throws Exception {
+        // given
+        registry.register(json(object(
+                field("id", "point"),
+                field("type", "object"),
+                field("properties", object(
+                        field("x", object(field("type", "number"))),
+                        field("y", object(field("type", "number"))))))).asMap());
+        registry.compileAll();
+        BatchValidation validation = new BatchValidation(registry, URI.create("http://www.example.com/schema/point"),
+                true, pool, new PrintStream(out, true, "UTF-8"));
+
+        // when
+        validation.addLines(reader("{ \"x\": \"a\", \"y\": \"b\" }"), "stdin");
+        validation.finish();
+
+        // then
+        JsonValue result = readResults().get(0);
+        assertThat(result.get("status").asString()).isEqualTo("invalid");
+        assertThat(result.get("errors").size()).isEqualTo(2);
+    }
+
+    private BatchValidation newBatchValidation(URI defaultSchemaId) throws Exception {
+        return new BatchValidation(registry, defaultSchemaId, false, pool, new PrintStream(out, true, "UTF-8"));
+    }
+
+    private static BufferedReader reader(String lines) {
+        return new BufferedReader(new StringReader(lines));
+    }
+
+    private List<JsonValue> readResults() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<JsonValue> results = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            results.add(new JsonValue(mapper.readValue(line, Map.class)));
+        }
+        return results;
+    }
+}
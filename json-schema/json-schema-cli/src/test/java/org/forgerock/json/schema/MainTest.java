@@ -0,0 +1,167 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.forgerock.json.JsonValue;
+import org.kohsuke.args4j.CmdLineParser;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class MainTest {
+
+    private static final URI BASE = URI.create("http://www.example.com/schema/");
+
+    private File directory;
+    private File schema;
+    private ByteArrayOutputStream out;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("batch").toFile();
+        schema = write("schema.json", "{ \"id\": \"user\", \"type\": \"object\", \"required\": [\"name\"] }");
+        out = new ByteArrayOutputStream();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void shouldValidateTheFilesOfTheGivenFolders() throws Exception {
+        // given
+        File documents = new File(directory, "documents");
+        assertThat(documents.mkdir()).isTrue();
+        write("documents/valid.json", "{ \"name\": \"a\" }");
+        write("documents/invalid.json", "{}");
+        write("documents/ignored.txt", "not JSON");
+
+        // when
+        boolean valid = validateBatch(stdin(""), "-i", BASE.resolve("user").toString(), documents.getPath());
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(valid).isFalse();
+        assertThat(results).hasSize(3);
+        assertThat(results.get(2).get("summary").get("valid").asLong()).isEqualTo(1);
+        assertThat(results.get(2).get("summary").get("invalid").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldValidateTheStandardInputWhenNoFileIsGiven() throws Exception {
+        // when
+        boolean valid = validateBatch(stdin("{ \"name\": \"a\" }\n{ \"name\": \"b\" }\n"),
+                "-i", BASE.resolve("user").toString());
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(valid).isTrue();
+        assertThat(results.get(0).get("source").asString()).isEqualTo("stdin:1");
+        assertThat(results.get(1).get("source").asString()).isEqualTo("stdin:2");
+        assertThat(results.get(2).get("summary").get("valid").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldKeepTheOrderOfTheInputs() throws Exception {
+        // given
+        File first = write("first.json", "{ \"name\": \"a\" }");
+        File missing = new File(directory, "missing.json");
+
+        // when
+        boolean valid = validateBatch(stdin("{ \"$schema\": \"" + BASE.resolve("unknown") + "\" }\n"),
+                "-p", "2", "-i", BASE.resolve("user").toString(), "-f", "-", first.getPath(), missing.getPath());
+
+        // then
+        List<JsonValue> results = readResults();
+        assertThat(valid).isFalse();
+        assertThat(results.get(0).get("source").asString()).isEqualTo(first.getPath());
+        assertThat(results.get(0).get("status").asString()).isEqualTo("valid");
+        assertThat(results.get(1).get("source").asString()).isEqualTo(missing.getPath());
+        assertThat(results.get(1).get("status").asString()).isEqualTo("failed");
+        assertThat(results.get(2).get("source").asString()).isEqualTo("stdin:1");
+        assertThat(results.get(2).get("failure").asString()).isEqualTo("Schema " + BASE.resolve("unknown")
+                + " not found");
+        assertThat(results.get(3).get("summary").get("failed").asLong()).isEqualTo(2);
+        assertThat(results.get(3).get("summary").get("parallelism").asInteger()).isEqualTo(2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectParallelismLowerThanOne() throws Exception {
+        validateBatch(stdin(""), "-p", "0");
+    }
+
+    private boolean validateBatch(InputStream in, String... arguments) throws Exception {
+        Main main = new Main();
+        List<String> args = new ArrayList<>();
+        args.add("-B");
+        args.add("-s");
+        args.add(schema.getPath());
+        for (String argument : arguments) {
+            args.add(argument);
+        }
+        new CmdLineParser(main).parseArgument(args.toArray(new String[args.size()]));
+        main.init(BASE);
+        return main.validateBatch(in, new PrintStream(out, true, "UTF-8"));
+    }
+
+    private static InputStream stdin(String lines) {
+        return new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private List<JsonValue> readResults() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<JsonValue> results = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            results.add(new JsonValue(mapper.readValue(line, Map.class)));
+        }
+        return results;
+    }
+}
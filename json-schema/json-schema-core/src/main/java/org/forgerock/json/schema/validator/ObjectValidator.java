@@ -25,7 +25,8 @@ import java.util.Map;
  * <p/>
  * The validators was designed to keep in the memory or other cache and validate multiple instances.
  * This implementation creates a new {@link Validator} each time
- * and uses the {@link FailFastErrorHandler} to validate the instance object.
+ * and uses the {@link FailFastErrorHandler} to validate the instance object. Callers validating many instances
+ * should get their validators from a {@link SchemaRegistry} instead.
  */
 public final class ObjectValidator {
     /**
@@ -19,7 +19,6 @@ package org.forgerock.json.schema.validator;
 import static org.forgerock.json.schema.validator.Constants.*;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,20 +40,6 @@ import org.forgerock.json.schema.validator.validators.Validator;
 @SuppressWarnings("deprecation")
 public final class ObjectValidatorFactory {
 
-    private static final Map<String, Class<? extends Validator>> VALIDATORS;
-
-    static {
-        VALIDATORS = new HashMap<>(8);
-        VALIDATORS.put(TYPE_STRING, StringTypeValidator.class);
-        VALIDATORS.put(TYPE_NUMBER, NumberTypeValidator.class);
-        VALIDATORS.put(TYPE_INTEGER, IntegerTypeValidator.class);
-        VALIDATORS.put(TYPE_BOOLEAN, BooleanTypeValidator.class);
-        VALIDATORS.put(TYPE_OBJECT, ObjectTypeValidator.class);
-        VALIDATORS.put(TYPE_ARRAY, ArrayTypeValidator.class);
-        VALIDATORS.put(TYPE_NULL, NullTypeValidator.class);
-        VALIDATORS.put(TYPE_ANY, AnyTypeValidator.class);
-    }
-
     private ObjectValidatorFactory() {
         // hide ctor of utility class
     }
@@ -89,6 +74,17 @@ public final class ObjectValidatorFactory {
         return v;
     }
 
+    /**
+     * Returns a validator validating the schema, whose references have not been resolved yet.
+     *
+     * @param schema JSON Schema Draft-03 object
+     * @return the validator, whose references must be resolved before it is used.
+     * @see Validator#resolveSchemaReferences(org.forgerock.json.schema.validator.validators.ReferenceResolver)
+     */
+    static Validator getUnresolvedTypeValidator(Map<String, Object> schema) {
+        return getTypeValidatorInner(schema, Collections.<String>emptyList());
+    }
+
     private static Validator getTypeValidatorInner(Map<String, Object> schema, List<String> jsonPointer) {
         Object typeValue = schema.get(TYPE);
         if (null == typeValue) {
@@ -117,18 +113,29 @@ public final class ObjectValidatorFactory {
      * @throws RuntimeException when the validators in the <code>schema</code> is not supported.
      */
     public static Validator getTypeValidator(String type, Map<String, Object> schema, List<String> jsonPointer) {
-        Class<? extends Validator> clazz = findClass(type);
-        if (null != clazz) {
-            try {
-                return clazz.getConstructor(Map.class, List.class).newInstance(schema, jsonPointer);
-            } catch (Exception ex) {
-                throw new RuntimeException("Failed to initialize the new Validator instance");
+        if (null != type) {
+            // Validators are built for each sub-schema, so avoid looking up their constructors reflectively.
+            switch (type) {
+            case TYPE_STRING:
+                return new StringTypeValidator(schema, jsonPointer);
+            case TYPE_NUMBER:
+                return new NumberTypeValidator(schema, jsonPointer);
+            case TYPE_INTEGER:
+                return new IntegerTypeValidator(schema, jsonPointer);
+            case TYPE_BOOLEAN:
+                return new BooleanTypeValidator(schema, jsonPointer);
+            case TYPE_OBJECT:
+                return new ObjectTypeValidator(schema, jsonPointer);
+            case TYPE_ARRAY:
+                return new ArrayTypeValidator(schema, jsonPointer);
+            case TYPE_NULL:
+                return new NullTypeValidator(schema, jsonPointer);
+            case TYPE_ANY:
+                return new AnyTypeValidator(schema, jsonPointer);
+            default:
+                break;
             }
         }
         throw new RuntimeException("Unsupported validators exception {}");
     }
-
-    private static Class<? extends Validator> findClass(String type) {
-        return VALIDATORS.get(type);
-    }
 }
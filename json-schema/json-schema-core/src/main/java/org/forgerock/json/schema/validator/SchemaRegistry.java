@@ -0,0 +1,249 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.schema.validator.exceptions.SchemaException;
+import org.forgerock.json.schema.validator.validators.ReferenceResolver;
+import org.forgerock.json.schema.validator.validators.Validator;
+
+/**
+ * SchemaRegistry compiles schemas into validators once, and shares them between all the callers validating instances
+ * against the same schema.
+ * <p>
+ * Schemas are registered with their id, resolved against the base URI of the registry, and are compiled the first
+ * time a validator is requested for them, or when {@link #compileAll()} is called at startup. Their references are
+ * resolved at the same time, including the references to other registered schemas, which may reference each other
+ * in turn. Schemas without an id are compiled and cached by content, so they should not be built dynamically.
+ * <p>
+ * The validators returned by the registry are fully linked and must not be modified: they can be used concurrently
+ * by any number of threads. The registry itself is thread-safe.
+ */
+public final class SchemaRegistry {
+
+    private final URI base;
+
+    /** The registered schemas, by id. */
+    private final ConcurrentMap<URI, Map<String, Object>> schemas = new ConcurrentHashMap<>();
+
+    /** The compiled schemas, by id. */
+    private final ConcurrentMap<URI, Validator> validators = new ConcurrentHashMap<>();
+
+    /** The sub-schemas of the compiled schemas which have been looked up, by id with fragment. */
+    private final ConcurrentMap<URI, Validator> fragmentValidators = new ConcurrentHashMap<>();
+
+    /** The compiled schemas without id, by content. */
+    private final ConcurrentMap<Map<String, Object>, Validator> anonymousValidators = new ConcurrentHashMap<>();
+
+    /** The schemas being compiled, which are only published once all their references are resolved. */
+    private final Map<URI, Validator> compiling = new HashMap<>();
+
+    /** The number of nested compilations, guarded by the {@code compiling} lock. */
+    private int depth;
+
+    /**
+     * Creates a new registry.
+     *
+     * @param base the absolute URI against which relative schema ids and references are resolved
+     * @throws IllegalArgumentException when the <code>base</code> is not an absolute URI.
+     */
+    public SchemaRegistry(URI base) {
+        if (!base.isAbsolute()) {
+            throw new IllegalArgumentException("The base URI must be absolute: " + base);
+        }
+        this.base = base;
+    }
+
+    /**
+     * Registers a schema with the id it holds.
+     *
+     * @param schema JSON Schema Draft-03 object, which is copied
+     * @return the absolute id of the schema
+     * @throws SchemaException when the <code>schema</code> has no id.
+     * @throws IllegalStateException when a different schema has already been registered with the same id.
+     */
+    public URI register(Map<String, Object> schema) {
+        final JsonValue id = new JsonValue(schema).get(Constants.ID);
+        if (id.isNull()) {
+            throw new SchemaException(new JsonValue(schema), "The schema has no " + Constants.ID);
+        }
+        return register(id.asURI(), schema);
+    }
+
+    /**
+     * Registers a schema with the given id, whatever the id it holds.
+     *
+     * @param id the id of the schema, which may be relative to the base URI of the registry
+     * @param schema JSON Schema Draft-03 object, which is copied
+     * @return the absolute id of the schema
+     * @throws IllegalStateException when a different schema has already been registered with the same id.
+     */
+    @SuppressWarnings("unchecked")
+    public URI register(URI id, Map<String, Object> schema) {
+        final URI documentId = getDocumentId(base.resolve(id));
+        final Map<String, Object> copy = (Map<String, Object>) new JsonValue(schema).copy().getObject();
+        final Map<String, Object> existing = schemas.putIfAbsent(documentId, copy);
+        if (existing != null && !existing.equals(copy)) {
+            throw new IllegalStateException("A different schema is already registered with id " + documentId);
+        }
+        return documentId;
+    }
+
+    /**
+     * Returns the validator of the schema with the given id, compiling it if needed. The id may have a fragment
+     * locating one of the sub-schemas of the schema.
+     *
+     * @param id the id of the schema, which may be relative to the base URI of the registry
+     * @return the validator, or {@code null} if no schema has been registered with this id, or if the schema has no
+     *         sub-schema at the location of the fragment
+     * @throws SchemaException when the schema, or one of the schemas it references, cannot be compiled.
+     */
+    public Validator getValidator(URI id) {
+        final URI absoluteId = base.resolve(id);
+        final URI documentId = getDocumentId(absoluteId);
+        final String fragment = absoluteId.getFragment();
+        final boolean hasFragment = fragment != null && !fragment.isEmpty();
+        Validator validator = hasFragment ? fragmentValidators.get(absoluteId) : validators.get(documentId);
+        if (validator == null) {
+            synchronized (compiling) {
+                validator = find(absoluteId);
+            }
+            // The sub-schemas of published schemas never change, so they can be looked up without the lock next time.
+            if (validator != null && hasFragment && validators.containsKey(documentId)) {
+                fragmentValidators.putIfAbsent(absoluteId, validator);
+            }
+        }
+        return validator;
+    }
+
+    /**
+     * Returns the validator of the given schema, compiling it if needed. A schema with an id is registered and looked
+     * up by id, and a schema without id is looked up by content.
+     *
+     * @param schema JSON Schema Draft-03 object
+     * @return the validator of the schema
+     * @throws SchemaException when the schema, or one of the schemas it references, cannot be compiled.
+     * @throws IllegalStateException when a different schema has already been registered with the same id.
+     */
+    @SuppressWarnings("unchecked")
+    public Validator getValidator(Map<String, Object> schema) {
+        if (schema.get(Constants.ID) != null) {
+            return getValidator(register(schema));
+        }
+        Validator validator = anonymousValidators.get(schema);
+        if (validator == null) {
+            final Map<String, Object> copy = (Map<String, Object>) new JsonValue(schema).copy().getObject();
+            synchronized (compiling) {
+                validator = anonymousValidators.get(copy);
+                if (validator == null) {
+                    validator = compile(null, copy);
+                    anonymousValidators.put(copy, validator);
+                }
+            }
+        }
+        return validator;
+    }
+
+    /**
+     * Compiles all the registered schemas which have not been compiled yet, so that the first validations do not
+     * have to, and so that invalid schemas and unresolvable references are reported early.
+     *
+     * @throws SchemaException when a schema, or one of the schemas it references, cannot be compiled.
+     */
+    public void compileAll() {
+        for (URI id : new ArrayList<>(schemas.keySet())) {
+            getValidator(id);
+        }
+    }
+
+    /**
+     * Returns the ids of the registered schemas.
+     *
+     * @return the ids of the registered schemas
+     */
+    public List<URI> getSchemaIds() {
+        return new ArrayList<>(schemas.keySet());
+    }
+
+    /** Must be called while holding the {@code compiling} lock. */
+    private Validator find(URI id) {
+        final URI documentId = getDocumentId(id);
+        Validator validator = validators.get(documentId);
+        if (validator == null) {
+            validator = compiling.get(documentId);
+        }
+        if (validator == null) {
+            final Map<String, Object> schema = schemas.get(documentId);
+            if (schema == null) {
+                return null;
+            }
+            validator = compile(documentId, schema);
+        }
+        final String fragment = id.getFragment();
+        return fragment == null || fragment.isEmpty() ? validator : validator.findValidator(new JsonPointer(fragment));
+    }
+
+    /**
+     * Compiles a schema and the schemas it references, and publishes them once they are all linked. Must be called
+     * while holding the {@code compiling} lock.
+     */
+    private Validator compile(final URI documentId, Map<String, Object> schema) {
+        depth++;
+        try {
+            final Validator validator = ObjectValidatorFactory.getUnresolvedTypeValidator(schema);
+            if (documentId != null) {
+                // Registered before resolving its references, which may lead back to it.
+                compiling.put(documentId, validator);
+            }
+            validator.resolveSchemaReferences(new ReferenceResolver() {
+                @Override
+                public Validator resolve(String reference) {
+                    return find((documentId != null ? documentId : base).resolve(reference));
+                }
+            });
+            if (depth == 1) {
+                validators.putAll(compiling);
+            }
+            return validator;
+        } finally {
+            if (--depth == 0) {
+                compiling.clear();
+            }
+        }
+    }
+
+    private static URI getDocumentId(URI id) {
+        if (id.getFragment() == null) {
+            return id;
+        }
+        try {
+            return new URI(id.getScheme(), id.getSchemeSpecificPart(), null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
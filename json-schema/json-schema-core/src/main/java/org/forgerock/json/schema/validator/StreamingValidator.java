@@ -0,0 +1,230 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.forgerock.json.schema.validator.exceptions.SchemaException;
+import org.forgerock.json.schema.validator.exceptions.ValidationException;
+import org.forgerock.json.schema.validator.validators.ContainerValidation;
+import org.forgerock.json.schema.validator.validators.Validator;
+
+/**
+ * StreamingValidator validates JSON documents while they are parsed, without first reading them into {@link Map}s
+ * and {@link List}s.
+ * <p/>
+ * Objects and arrays are validated one member at a time, so the memory needed is bounded by the nesting depth of
+ * the document rather than by its size, and a {@link FailFastErrorHandler} stops the parsing at the first violation.
+ * The nesting depth of the values which are validated is itself limited, so that a deeply nested document cannot
+ * exhaust the stack.
+ * Only the values which must be validated as a whole are read into memory: the values validated against several
+ * schemas, union types, {@code oneOf} constraints, arrays whose items must be unique and arrays validated against a
+ * tuple of schemas.
+ * <p/>
+ * The errors reported are the same as those {@link Validator#validate} reports for the same document once parsed,
+ * but in the order the document is read, which may differ. The only exception is an object with duplicate keys: the
+ * parsed document keeps only the last value of the key, whereas every value is validated here, so the errors of the
+ * earlier values are reported too.
+ */
+public final class StreamingValidator {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    /** The maximum nesting depth of the objects and arrays of a document, unless another one is given. */
+    public static final int DEFAULT_MAX_DEPTH = 1000;
+
+    private final Validator validator;
+    private final int maxDepth;
+
+    /**
+     * Creates a streaming validator which accepts documents nested up to {@link #DEFAULT_MAX_DEPTH} levels deep.
+     *
+     * @param validator the validator of the schema which documents are validated against, whose references must
+     *                  have been resolved
+     */
+    public StreamingValidator(Validator validator) {
+        this(validator, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Creates a streaming validator.
+     *
+     * @param validator the validator of the schema which documents are validated against, whose references must
+     *                  have been resolved
+     * @param maxDepth  the maximum nesting depth of the objects and arrays of a document, which must be positive
+     */
+    public StreamingValidator(Validator validator, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("The maximum depth must be positive, but was " + maxDepth);
+        }
+        this.validator = validator;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Validates the JSON document read from the given stream, which is not closed. The stream must not hold anything
+     * but white space after the document.
+     *
+     * @param input   the JSON document
+     * @param handler customised error handler like {@link FailFastErrorHandler}
+     * @throws IOException when the document cannot be read, is not valid JSON or is followed by other content.
+     * @throws SchemaException when the document violates the schema, or is nested too deeply
+     */
+    public void validate(InputStream input, ErrorHandler handler) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            validate(parser, handler);
+            if (null != parser.nextToken()) {
+                throw new JsonParseException("Unexpected content after the JSON document",
+                        parser.getTokenLocation());
+            }
+        }
+    }
+
+    /**
+     * Validates the next JSON value read by the given parser, leaving the parser on the last token of the value.
+     *
+     * @param parser  the parser, positioned on the first token of the value or just before it
+     * @param handler customised error handler like {@link FailFastErrorHandler}
+     * @throws IOException when the value cannot be read or is not valid JSON.
+     * @throws SchemaException when the value violates the schema, or is nested too deeply
+     */
+    public void validate(JsonParser parser, ErrorHandler handler) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (null == token || token == JsonToken.FIELD_NAME) {
+            token = parser.nextToken();
+        }
+        if (null == token) {
+            throw new EOFException("No JSON value to validate");
+        }
+        validate(validator, parser, new ValidationPath(), 0, handler);
+    }
+
+    private void validate(Validator validator, JsonParser parser, ValidationPath at, int depth,
+            ErrorHandler handler) throws IOException {
+        final JsonToken token = parser.getCurrentToken();
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            validator.validateAt(readValue(parser, at, depth), at, handler);
+            return;
+        }
+        checkDepth(depth + 1, at);
+        final boolean array = token == JsonToken.START_ARRAY;
+        final ContainerValidation container = validator.startContainer(array, at, handler);
+        if (null == container) {
+            validator.validateAt(readValue(parser, at, depth), at, handler);
+            return;
+        } else if (container == ContainerValidation.SKIP_MEMBERS) {
+            parser.skipChildren();
+            return;
+        }
+        int index = 0;
+        while (nextToken(parser) != (array ? JsonToken.END_ARRAY : JsonToken.END_OBJECT)) {
+            final String name;
+            if (array) {
+                name = null;
+                at.push(index++);
+            } else {
+                name = parser.getCurrentName();
+                nextToken(parser);
+                at.push(name);
+            }
+            final Validator[] validators = container.member(name, at, handler);
+            if (validators.length == 1) {
+                validate(validators[0], parser, at, depth + 1, handler);
+            } else if (validators.length == 0) {
+                parser.skipChildren();
+            } else {
+                final Object value = readValue(parser, at, depth + 1);
+                for (Validator v : validators) {
+                    v.validateAt(value, at, handler);
+                }
+            }
+            at.pop();
+        }
+        container.end(at, handler);
+    }
+
+    /**
+     * Reads the current value, in the same representation as the JSON parsers used with the validators.
+     *
+     * @param parser the parser, positioned on the first token of the value
+     * @param at     path of the value, only used to report a value nested too deeply
+     * @param depth  number of objects and arrays the value is nested in
+     */
+    private Object readValue(JsonParser parser, ValidationPath at, int depth) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case START_OBJECT:
+            checkDepth(depth + 1, at);
+            final Map<String, Object> object = new LinkedHashMap<>();
+            while (nextToken(parser) != JsonToken.END_OBJECT) {
+                final String name = parser.getCurrentName();
+                nextToken(parser);
+                object.put(name, readValue(parser, at, depth + 1));
+            }
+            return object;
+        case START_ARRAY:
+            checkDepth(depth + 1, at);
+            final List<Object> array = new ArrayList<>();
+            while (nextToken(parser) != JsonToken.END_ARRAY) {
+                array.add(readValue(parser, at, depth + 1));
+            }
+            return array;
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            // IntegerTypeValidator expects longs
+            return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                    ? parser.getBigIntegerValue()
+                    : (Object) parser.getLongValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            return parser.getEmbeddedObject();
+        }
+    }
+
+    private void checkDepth(int depth, ValidationPath at) {
+        if (depth > maxDepth) {
+            throw new ValidationException("The document is nested more than " + maxDepth + " levels deep",
+                    at.toJsonPointer());
+        }
+    }
+
+    private static JsonToken nextToken(JsonParser parser) throws IOException {
+        final JsonToken token = parser.nextToken();
+        if (null == token) {
+            throw new EOFException("Unexpected end of the JSON document");
+        }
+        return token;
+    }
+}
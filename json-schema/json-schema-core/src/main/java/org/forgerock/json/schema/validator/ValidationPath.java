@@ -0,0 +1,134 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator;
+
+import java.util.Arrays;
+
+import org.forgerock.json.JsonPointer;
+
+/**
+ * The location, in the instance being validated, of the value currently being validated.
+ * <p/>
+ * Validators descend into objects and arrays by pushing the name of each property, or the index of each item,
+ * before validating it and popping it afterwards. The path is only turned into a {@link JsonPointer} when an error
+ * is reported, so validating a valid instance does not allocate a pointer for each of its values.
+ * <p/>
+ * A path is mutable and not thread-safe: each validation uses its own.
+ */
+public final class ValidationPath {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final JsonPointer base;
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] indexes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Creates a path locating the root of the instance.
+     */
+    public ValidationPath() {
+        this(null);
+    }
+
+    /**
+     * Creates a path locating the given value.
+     *
+     * @param base the pointer to the value the validation starts at, or {@code null} for the root of the instance
+     */
+    public ValidationPath(JsonPointer base) {
+        this.base = base;
+    }
+
+    /**
+     * Descends into the given property of the current object.
+     *
+     * @param name the name of the property
+     */
+    public void push(String name) {
+        ensureCapacity();
+        names[size++] = name;
+    }
+
+    /**
+     * Descends into the given item of the current array.
+     *
+     * @param index the index of the item
+     */
+    public void push(int index) {
+        ensureCapacity();
+        names[size] = null;
+        indexes[size++] = index;
+    }
+
+    /**
+     * Returns to the parent of the current value.
+     */
+    public void pop() {
+        names[--size] = null;
+    }
+
+    /**
+     * Returns the number of properties and items pushed onto this path.
+     *
+     * @return the depth of the current value, relative to the value the validation started at
+     */
+    public int depth() {
+        return size;
+    }
+
+    /**
+     * Returns to the ancestor of the current value at the given depth, for instance after a validator has thrown
+     * an exception without popping the values it had descended into.
+     *
+     * @param depth the depth to return to, as returned by {@link #depth()}
+     */
+    public void truncate(int depth) {
+        while (size > depth) {
+            pop();
+        }
+    }
+
+    /**
+     * Returns a pointer to the current value.
+     *
+     * @return a new pointer to the current value
+     */
+    public JsonPointer toJsonPointer() {
+        final int baseSize = base != null ? base.size() : 0;
+        final String[] tokens = new String[baseSize + size];
+        for (int i = 0; i < baseSize; i++) {
+            tokens[i] = base.get(i);
+        }
+        for (int i = 0; i < size; i++) {
+            tokens[baseSize + i] = names[i] != null ? names[i] : Integer.toString(indexes[i]);
+        }
+        return new JsonPointer(tokens);
+    }
+
+    private void ensureCapacity() {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            indexes = Arrays.copyOf(indexes, size * 2);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toJsonPointer().toString();
+    }
+}
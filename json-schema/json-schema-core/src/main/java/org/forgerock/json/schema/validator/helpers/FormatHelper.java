@@ -18,6 +18,7 @@ package org.forgerock.json.schema.validator.helpers;
 
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.validators.SimpleValidator;
 
@@ -42,6 +43,18 @@ public class FormatHelper implements SimpleValidator<Object> {
 
     @Override
     public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+        validateAt(node, new ValidationPath(at), handler);
+    }
+
+    /**
+     * Validates the <code>node</code> value, located at the given path of the instance being validated.
+     *
+     * @param node    value to validate
+     * @param at      path of the node, which is only turned into a {@link JsonPointer} when an error is reported
+     * @param handler customised error handler
+     * @throws SchemaException when the <code>node</code> violates with the schema
+     */
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         //TODO: implements
     }
 }
@@ -18,12 +18,11 @@ package org.forgerock.json.schema.validator.helpers;
 
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.forgerock.json.schema.validator.validators.SimpleValidator;
 
-import java.lang.reflect.Method;
-
 /**
  * Helper compares two {@link Number}s to check the maximum constraint.
  *
@@ -56,33 +55,41 @@ public class MaximumHelper implements SimpleValidator<Number> {
 
     @Override
     public void validate(Number node, JsonPointer at, ErrorHandler handler) throws SchemaException {
-        if (maximum.getClass().isAssignableFrom(node.getClass())) {
-            try {
-                Method method = maximum.getClass().getMethod("compareTo", maximum.getClass());
-                method.invoke(maximum, node);
-                if ((Integer) method.invoke(maximum, node) < exclusiveMaximum) {
-                    handler.error(new ValidationException("minimum violation", at));
-                }
-            } catch (Exception e) {
-                handler.error(new ValidationException("Reflection exception at \"compareTo\" method invocation." , e,
-                        at));
+        validateAt(node, new ValidationPath(at), handler);
+    }
+
+    /**
+     * Validates the <code>node</code> value, located at the given path of the instance being validated.
+     *
+     * @param node    value to validate
+     * @param at      path of the node, which is only turned into a {@link JsonPointer} when an error is reported
+     * @param handler customised error handler
+     * @throws SchemaException when the <code>node</code> violates with the schema
+     */
+    public void validateAt(Number node, ValidationPath at, ErrorHandler handler) throws SchemaException {
+        if (maximum instanceof Comparable && maximum.getClass().isAssignableFrom(node.getClass())) {
+            // Numbers of the same type, such as two BigDecimals, are compared without converting them.
+            @SuppressWarnings("unchecked")
+            final int comparison = ((Comparable<Number>) maximum).compareTo(node);
+            if (comparison < exclusiveMaximum) {
+                handler.error(new ValidationException("maximum violation", at.toJsonPointer()));
             }
         } else {
             if (maximum instanceof Float) {
                 if (((Float) maximum).compareTo(node.floatValue()) < exclusiveMaximum) {
-                    handler.error(new ValidationException("maximum violation", at));
+                    handler.error(new ValidationException("maximum violation", at.toJsonPointer()));
                 }
             } else if (maximum instanceof Double) {
                 if (((Double) maximum).compareTo(node.doubleValue()) < exclusiveMaximum) {
-                    handler.error(new ValidationException("maximum violation", at));
+                    handler.error(new ValidationException("maximum violation", at.toJsonPointer()));
                 }
             } else if (maximum instanceof Integer) {
                 if (((Integer) maximum).compareTo(node.intValue()) < exclusiveMaximum) {
-                    handler.error(new ValidationException("maximum violation", at));
+                    handler.error(new ValidationException("maximum violation", at.toJsonPointer()));
                 }
             }  else if (maximum instanceof Long) {
                 if (((Long) maximum).compareTo(node.longValue()) < exclusiveMaximum) {
-                    handler.error(new ValidationException("maximum violation", at));
+                    handler.error(new ValidationException("maximum violation", at.toJsonPointer()));
                 }
             }
         }
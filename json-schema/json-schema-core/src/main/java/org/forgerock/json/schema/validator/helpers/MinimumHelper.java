@@ -18,12 +18,11 @@ package org.forgerock.json.schema.validator.helpers;
 
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.forgerock.json.schema.validator.validators.SimpleValidator;
 
-import java.lang.reflect.Method;
-
 /**
  * Helper compares two {@link Number}s to check the minimum constraint.
  *
@@ -56,34 +55,42 @@ public class MinimumHelper implements SimpleValidator<Number> {
 
     @Override
     public void validate(Number node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+        validateAt(node, new ValidationPath(at), handler);
+    }
 
-        if (minimum.getClass().isAssignableFrom(node.getClass())) {
-            try {
-                Method method = minimum.getClass().getMethod("compareTo", minimum.getClass());
-                method.invoke(minimum, node);
-                if ((Integer) method.invoke(minimum, node) > exclusiveMinimum) {
-                    handler.error(new ValidationException("minimum violation", at));
-                }
-            } catch (Exception e) {
-                handler.error(new ValidationException("Reflection exception at \"compareTo\" method invocation." , e,
-                        at));
+    /**
+     * Validates the <code>node</code> value, located at the given path of the instance being validated.
+     *
+     * @param node    value to validate
+     * @param at      path of the node, which is only turned into a {@link JsonPointer} when an error is reported
+     * @param handler customised error handler
+     * @throws SchemaException when the <code>node</code> violates with the schema
+     */
+    public void validateAt(Number node, ValidationPath at, ErrorHandler handler) throws SchemaException {
+
+        if (minimum instanceof Comparable && minimum.getClass().isAssignableFrom(node.getClass())) {
+            // Numbers of the same type, such as two BigDecimals, are compared without converting them.
+            @SuppressWarnings("unchecked")
+            final int comparison = ((Comparable<Number>) minimum).compareTo(node);
+            if (comparison > exclusiveMinimum) {
+                handler.error(new ValidationException("minimum violation", at.toJsonPointer()));
             }
         } else {
             if (minimum instanceof Float) {
                 if (((Float) minimum).compareTo(node.floatValue()) > exclusiveMinimum) {
-                    handler.error(new ValidationException("minimum violation", at));
+                    handler.error(new ValidationException("minimum violation", at.toJsonPointer()));
                 }
             } else if (minimum instanceof Double) {
                 if (((Double) minimum).compareTo(node.doubleValue()) > exclusiveMinimum) {
-                    handler.error(new ValidationException("minimum violation", at));
+                    handler.error(new ValidationException("minimum violation", at.toJsonPointer()));
                 }
             } else if (minimum instanceof Integer) {
                 if (((Integer) minimum).compareTo(node.intValue()) > exclusiveMinimum) {
-                    handler.error(new ValidationException("minimum violation", at));
+                    handler.error(new ValidationException("minimum violation", at.toJsonPointer()));
                 }
             } else if (minimum instanceof Long) {
                 if (((Long) minimum).compareTo(node.longValue()) > exclusiveMinimum) {
-                    handler.error(new ValidationException("minimum violation", at));
+                    handler.error(new ValidationException("minimum violation", at.toJsonPointer()));
                 }
             }
         }
@@ -16,8 +16,8 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 
@@ -55,9 +55,15 @@ public class AnyTypeValidator extends Validator {
      * {@inheritDoc}
      */
     @Override
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if (required && null == node) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return ContainerValidation.SKIP_MEMBERS;
+    }
 }
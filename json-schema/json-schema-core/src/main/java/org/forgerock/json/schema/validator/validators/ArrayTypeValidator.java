@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
- * Copyright 2011-2015 ForgeRock AS.
+ * Copyright 2011-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.schema.validator.validators;
@@ -25,9 +25,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
 import org.forgerock.json.schema.validator.ObjectValidatorFactory;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 
 /**
@@ -59,6 +59,8 @@ import org.forgerock.json.schema.validator.exceptions.ValidationException;
  */
 public class ArrayTypeValidator extends Validator {
 
+    private static final Validator[] NO_VALIDATORS = new Validator[0];
+
     /**
      * This attribute defines the minimum number of values in an array when
      * the array is the instance value.
@@ -152,7 +154,7 @@ public class ArrayTypeValidator extends Validator {
      * {@inheritDoc}
      */
     @Override
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) {
         if (node instanceof List) {
             @SuppressWarnings("unchecked")
             List<Object> nodeValue = (List<Object>) node;
@@ -167,34 +169,81 @@ public class ArrayTypeValidator extends Validator {
 
             if (null != singleValidator) {
                 for (int i = 0; i < nodeValue.size(); i++) {
-                    singleValidator.validate(nodeValue.get(i), getPath(at, Integer.toString(i)), handler);
+                    at.push(i);
+                    singleValidator.validateAt(nodeValue.get(i), at, handler);
+                    at.pop();
                 }
             } else if (null != tupleValidators) {
                 if (tupleValidators.size() > nodeValue.size()) {
-                    handler.error(new ValidationException("Array has less item then expected", getPath(at, null)));
+                    handler.error(new ValidationException("Array has less item then expected", at.toJsonPointer()));
                 } else if (!additionalItems && tupleValidators.size() < nodeValue.size()) {
-                    handler.error(new ValidationException("Array can not have additional item(s)", getPath(at, null)));
+                    handler.error(new ValidationException("Array can not have additional item(s)",
+                            at.toJsonPointer()));
                 } else {
                     for (int i = 0; i < nodeValue.size(); i++) {
                         Validator v = i < tupleValidators.size() ? tupleValidators.get(i) : additionalItemsValidator;
                         if (null != v) {
-                            v.validate(nodeValue.get(i), getPath(at, Integer.toString(i)), handler);
+                            at.push(i);
+                            v.validateAt(nodeValue.get(i), at, handler);
+                            at.pop();
                         }
                     }
                 }
             }
         } else if (null != node) {
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null), node));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer(), node));
         } else if (required) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Arrays are validated one item at a time unless the items must be unique, or are validated against a tuple of
+     * schemas, which need the whole array: the items of a tuple are only validated once the array is known to have
+     * the right number of items. The size constraints are checked once all the items have been read, except for the
+     * maximum number of items, which is reported as soon as it is exceeded.
+     */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        if (!array) {
+            return rejectContainer(false, at, handler);
+        } else if (uniqueItems || null != tupleValidators) {
+            return null;
         }
+        return new StreamedArray();
     }
 
-    private void checkUniqueItems(List<Object> nodeValue, JsonPointer at, ErrorHandler handler) {
+    private void checkUniqueItems(List<Object> nodeValue, ValidationPath at, ErrorHandler handler) {
         if (uniqueItems && nodeValue.size() > 1) {
             Set<Object> set = new HashSet<>(nodeValue);
             if (set.size() < nodeValue.size()) {
-                handler.error(new ValidationException("The items in the array must be unique", getPath(at, null)));
+                handler.error(new ValidationException("The items in the array must be unique", at.toJsonPointer()));
+            }
+        }
+    }
+
+    /** Validates the items of an array one at a time, as they are streamed. */
+    private final class StreamedArray implements ContainerValidation {
+
+        private final Validator[] singleValidators = null != singleValidator
+                ? new Validator[] { singleValidator } : NO_VALIDATORS;
+        private int size;
+
+        @Override
+        public Validator[] member(String name, ValidationPath at, ErrorHandler handler) {
+            size++;
+            if (maxItems > -1 && size == maxItems + 1) {
+                handler.error(new ValidationException(("maxItems error")));
+            }
+            return singleValidators;
+        }
+
+        @Override
+        public void end(ValidationPath at, ErrorHandler handler) {
+            if (minItems > -1 && size < minItems) {
+                handler.error(new ValidationException(("minItems error")));
             }
         }
     }
@@ -16,8 +16,8 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 
@@ -53,13 +53,19 @@ public class BooleanTypeValidator extends Validator {
     /**
      * {@inheritDoc}
      */
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if (node instanceof Boolean) {
             return;
         } else if (null != node) {
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null), node));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer(), node));
         } else if (required) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return rejectContainer(array, at, handler);
+    }
 }
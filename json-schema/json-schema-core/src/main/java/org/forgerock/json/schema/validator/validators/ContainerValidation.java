@@ -0,0 +1,65 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator.validators;
+
+import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
+import org.forgerock.json.schema.validator.exceptions.SchemaException;
+
+/**
+ * ContainerValidation validates an object or an array whose members are streamed one at a time, rather than held in
+ * memory, so that only the constraints on the container itself have to be tracked while its members are read.
+ *
+ * @see Validator#startContainer(boolean, ValidationPath, ErrorHandler)
+ */
+public interface ContainerValidation {
+
+    /** A container validation for containers whose members do not need to be validated. */
+    ContainerValidation SKIP_MEMBERS = new ContainerValidation() {
+        private final Validator[] noValidators = new Validator[0];
+
+        @Override
+        public Validator[] member(String name, ValidationPath at, ErrorHandler handler) {
+            return noValidators;
+        }
+
+        @Override
+        public void end(ValidationPath at, ErrorHandler handler) {
+            // Nothing to check.
+        }
+    };
+
+    /**
+     * Starts validating the next member of the container, reporting the errors which do not depend on its value.
+     *
+     * @param name    the name of the property, or {@code null} if the container is an array
+     * @param at      path of the member
+     * @param handler customised error handler like {@link org.forgerock.json.schema.validator.FailFastErrorHandler}
+     * @return the validators which the value of the member must be validated against, which may be empty
+     * @throws SchemaException when the member violates the schema of the container
+     */
+    Validator[] member(String name, ValidationPath at, ErrorHandler handler);
+
+    /**
+     * Completes the validation of the container, once all its members have been validated.
+     *
+     * @param at      path of the container
+     * @param handler customised error handler like {@link org.forgerock.json.schema.validator.FailFastErrorHandler}
+     * @throws SchemaException when the container violates the schema
+     */
+    void end(ValidationPath at, ErrorHandler handler);
+}
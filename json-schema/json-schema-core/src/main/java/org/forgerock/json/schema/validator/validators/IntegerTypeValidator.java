@@ -16,8 +16,8 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.forgerock.json.schema.validator.helpers.EnumHelper;
@@ -69,8 +69,8 @@ public class IntegerTypeValidator extends Validator {
      */
     private EnumHelper enumHelper = null;
 
-    private SimpleValidator<Number> minimumValidator = null;
-    private SimpleValidator<Number> maximumValidator = null;
+    private MinimumHelper minimumValidator = null;
+    private MaximumHelper maximumValidator = null;
 
     private static final long LONG_HIGH_BITS = 0xFFFFFFFF80000000L;
 
@@ -129,39 +129,45 @@ public class IntegerTypeValidator extends Validator {
     /**
      * {@inheritDoc}
      */
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if (node instanceof Number) {
             Number number = (Long) node;
             int nodeValue = truncate((Long) node, at, handler);
 
             if (null != minimumValidator) {
-                minimumValidator.validate(number, getPath(at, null), handler);
+                minimumValidator.validateAt(number, at, handler);
             }
             if (null != maximumValidator) {
-                maximumValidator.validate(number, getPath(at, null), handler);
+                maximumValidator.validateAt(number, at, handler);
             }
 
             if (0 != divisibleBy && nodeValue % divisibleBy != 0) {
-                handler.error(new ValidationException("", getPath(at, null)));
+                handler.error(new ValidationException("", at.toJsonPointer()));
             }
             if (null != enumHelper) {
-                enumHelper.validate(node, at, handler);
+                enumHelper.validateAt(node, at, handler);
             }
         } else if (null != node) {
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer()));
         } else if (required) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
         }
     }
 
 
-    private int truncate(Long nodeValue, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    private int truncate(Long nodeValue, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if ((nodeValue & LONG_HIGH_BITS) == 0 || (nodeValue & LONG_HIGH_BITS) == LONG_HIGH_BITS) {
             return nodeValue.intValue();
         } else {
             //TODO: Should it throw a type cast exception?
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer()));
             return nodeValue.intValue();
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return rejectContainer(array, at, handler);
+    }
 }
@@ -16,8 +16,8 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 
@@ -46,9 +46,15 @@ public class NullTypeValidator extends Validator {
     }
 
     @Override
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if (null != node) {
-            handler.error(new ValidationException(ERROR_MSG_NULL_TYPE, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_NULL_TYPE, at.toJsonPointer()));
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return rejectContainer(array, at, handler);
+    }
 }
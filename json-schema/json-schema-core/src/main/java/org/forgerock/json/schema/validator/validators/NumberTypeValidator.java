@@ -16,8 +16,8 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.forgerock.json.schema.validator.helpers.EnumHelper;
@@ -70,8 +70,8 @@ public class NumberTypeValidator extends Validator {
      */
     private EnumHelper enumHelper = null;
 
-    private SimpleValidator<Number> minimumValidator = null;
-    private SimpleValidator<Number> maximumValidator = null;
+    private MinimumHelper minimumValidator = null;
+    private MaximumHelper maximumValidator = null;
 
     /**
      * Construct a number type validator.
@@ -130,33 +130,39 @@ public class NumberTypeValidator extends Validator {
     /**
      * {@inheritDoc}
      */
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if (node instanceof Number) {
             Number nodeValue = (Number) node;
             if (null != minimumValidator) {
-                minimumValidator.validate(nodeValue, getPath(at, null), handler);
+                minimumValidator.validateAt(nodeValue, at, handler);
             }
             if (null != maximumValidator) {
-                maximumValidator.validate(nodeValue, getPath(at, null), handler);
+                maximumValidator.validateAt(nodeValue, at, handler);
             }
 
             //TODO: Implement this in the DivisibleByHelper
             if (divisibleBy instanceof Float && node instanceof Float
                     && ((Float) nodeValue) % ((Float) divisibleBy) != 0.0) {
-                handler.error(new ValidationException("", getPath(at, null)));
+                handler.error(new ValidationException("", at.toJsonPointer()));
             } else if (divisibleBy instanceof Double && node instanceof Double
                     && ((Double) nodeValue) % ((Double) divisibleBy) != 0.0) {
-                handler.error(new ValidationException("", getPath(at, null)));
+                handler.error(new ValidationException("", at.toJsonPointer()));
             }
 
 
             if (null != enumHelper) {
-                enumHelper.validate(node, at, handler);
+                enumHelper.validateAt(node, at, handler);
             }
         } else if (null != node) {
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer()));
         } else if (required) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return rejectContainer(array, at, handler);
+    }
 }
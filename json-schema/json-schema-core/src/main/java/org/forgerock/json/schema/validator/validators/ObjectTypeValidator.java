@@ -19,15 +19,14 @@ package org.forgerock.json.schema.validator.validators;
 import static org.forgerock.json.schema.validator.Constants.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -35,6 +34,7 @@ import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.CollectErrorsHandler;
 import org.forgerock.json.schema.validator.ErrorHandler;
 import org.forgerock.json.schema.validator.ObjectValidatorFactory;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 
 /**
@@ -63,11 +63,21 @@ public class ObjectTypeValidator extends Validator {
      * order of the instance properties MAY be in any order.
      */
     private final Map<String, PropertyValidatorBag> propertyValidators;
+    /** The names of the declared properties, to iterate over them without allocating an iterator. */
+    private final String[] propertyNames;
+    /** The validators of the declared properties, in the same order as {@link #propertyNames}. */
+    private final PropertyValidatorBag[] propertyValidatorBags;
     /**
      * An object instance is valid against this keyword if its property set
      * contains all elements in this keyword's array value.
      */
     private final Set<String> requiredPropertyNames = new HashSet<>();
+    private final String[] requiredPropertyNameArray;
+    /**
+     * The names of the properties whose presence is checked once all the properties of a streamed object have been
+     * read: the declared, required and dependency properties.
+     */
+    private final Set<String> trackedPropertyNames = new HashSet<>();
     /**
      * This attribute is an object that defines the requirements of a
      * property on an instance object.  If an object instance has a property
@@ -97,7 +107,8 @@ public class ObjectTypeValidator extends Validator {
      * the instance's property MUST be valid against the pattern name's
      * schema value.
      */
-    private Map<Pattern, Validator> patternPropertyValidators;
+    private ThreadLocalMatcher[] patternPropertyMatchers;
+    private Validator[] patternPropertyValidators;
     /**
      * This attribute defines a schema for all properties that are not
      * explicitly defined in an object type definition.  If specified, the
@@ -161,7 +172,8 @@ public class ObjectTypeValidator extends Validator {
             } else if (PATTERNPROPERTIES.equals(e.getKey())) {
                 if (e.getValue() instanceof Map) {
                     Map<String, Object> properties = (Map<String, Object>) e.getValue();
-                    patternPropertyValidators = new HashMap<>(properties.size());
+                    List<ThreadLocalMatcher> matchers = new ArrayList<>(properties.size());
+                    List<Validator> validators = new ArrayList<>(properties.size());
 
                     for (Map.Entry<String, Object> entry : properties.entrySet()) {
                         try {
@@ -169,12 +181,15 @@ public class ObjectTypeValidator extends Validator {
                             List<String> newPointer = newList(jsonPointer, PATTERNPROPERTIES, entry.getKey());
                             Validator validator = ObjectValidatorFactory.getTypeValidator(
                                     (Map<String, Object>) entry.getValue(), newPointer);
-                            patternPropertyValidators.put(p, validator);
+                            matchers.add(new ThreadLocalMatcher(p));
+                            validators.add(validator);
                         } catch (PatternSyntaxException pse) {
                             //LOG.error("Failed to apply pattern on " + at + ":
                             // Invalid RE syntax [" + pattern + "]", pse);
                         }
                     }
+                    patternPropertyMatchers = matchers.toArray(new ThreadLocalMatcher[matchers.size()]);
+                    patternPropertyValidators = validators.toArray(new Validator[validators.size()]);
                 }
             } else if (DEPENDENCIES.equals(e.getKey())) {
                 if (e.getValue() instanceof Map) {
@@ -240,105 +255,204 @@ public class ObjectTypeValidator extends Validator {
                 }
             }
         }
+        propertyNames = propertyValidators.keySet().toArray(new String[propertyValidators.size()]);
+        propertyValidatorBags = new PropertyValidatorBag[propertyNames.length];
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyValidatorBags[i] = propertyValidators.get(propertyNames[i]);
+            if (null != propertyValidatorBags[i].requiredProperties) {
+                trackedPropertyNames.addAll(propertyValidatorBags[i].requiredProperties);
+            }
+        }
+        requiredPropertyNameArray = requiredPropertyNames.toArray(new String[requiredPropertyNames.size()]);
+        trackedPropertyNames.addAll(propertyValidators.keySet());
+        trackedPropertyNames.addAll(requiredPropertyNames);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void validate(Object value, JsonPointer at, ErrorHandler handler) {
+    public void validateAt(Object value, ValidationPath at, ErrorHandler handler) {
         if (value instanceof Map) {
             @SuppressWarnings("unchecked")
             Map<String, Object> mapValue = (Map<String, Object>) value;
+            Set<String> instancePropertyKeySet = mapValue.keySet();
 
-            if (!mapValue.keySet().containsAll(requiredPropertyNames)) {
+            if (!containsAll(mapValue, requiredPropertyNameArray)) {
                 Set<String> missingRequiredProperties = new HashSet<>(requiredPropertyNames);
-                missingRequiredProperties.removeAll(mapValue.keySet());
+                missingRequiredProperties.removeAll(instancePropertyKeySet);
                 // @TODO: Add exception message: Missing required property names
                 handler.error(new ValidationException(
-                        "Missing required property names: " + missingRequiredProperties, getPath(at, null)));
+                        "Missing required property names: " + missingRequiredProperties, at.toJsonPointer()));
             }
 
-            Set<String> additionalPropertyNames = new HashSet<>(mapValue.keySet());
-            Set<String> instancePropertyKeySet = Collections.unmodifiableSet(mapValue.keySet());
-
-            for (Map.Entry<String, PropertyValidatorBag> schemaProperty : propertyValidators.entrySet()) {
-                final String propertyName = schemaProperty.getKey();
-                final PropertyValidatorBag propertyValue = schemaProperty.getValue();
+            int declaredPropertyCount = 0;
+            for (int i = 0; i < propertyNames.length; i++) {
+                final String propertyName = propertyNames[i];
+                final PropertyValidatorBag propertyValue = propertyValidatorBags[i];
                 //null == entry.getValue() can not used for Null type
                 // so first need to check the map contains the key before getting the potential null value
                 if (mapValue.containsKey(propertyName)) {
-                    final Object entryValue = mapValue.get(propertyName);
-                    propertyValue.validate(entryValue, instancePropertyKeySet, getPath(at, propertyName), handler);
-                    additionalPropertyNames.remove(propertyName);
+                    declaredPropertyCount++;
+                    at.push(propertyName);
+                    propertyValue.validate(mapValue.get(propertyName), instancePropertyKeySet, at, handler);
+                    at.pop();
                 } else if (propertyValue.isRequired()) {
                     // @TODO: Add exception message: Required property value is null
                     handler.error(new ValidationException(
-                            "Required property value is null", getPath(at, propertyName)));
+                            "Required property value is null", at.toJsonPointer().child(propertyName)));
                 }
             }
 
-            for (Iterator<String> iter = additionalPropertyNames.iterator(); iter.hasNext();) {
-                String additionalPropertyName = iter.next();
-                Object propertyValue = mapValue.get(additionalPropertyName);
-
-                if (null != additionalPropertyValidator) {
-                    additionalPropertyValidator.validate(propertyValue, getPath(at, additionalPropertyName), handler);
-                }
-
-                // @TODO: Implement Dependency check
-                Validator dependencyPropertyValidator = null != dependenciesValidators
-                        ? dependenciesValidators.get(additionalPropertyName) : null;
-                if (null != dependencyPropertyValidator) {
-                    dependencyPropertyValidator.validate(propertyValue, getPath(at, additionalPropertyName), handler);
-                }
-
-                if (null != patternPropertyValidators) {
-                    for (Map.Entry<Pattern, Validator> v : patternPropertyValidators.entrySet()) {
-                        Matcher matcher = v.getKey().matcher(additionalPropertyName);
-                        // Quoting "3.3 Regular expressions":
-                        // http://tools.ietf.org/html/draft-fge-json-schema-validation-00#section-3.3
-                        // "Finally, implementations MUST NOT consider that regular expressions
-                        // are anchored, neither at the beginning nor at the end.  This means,
-                        // for instance, that "es" matches "expression"."
-                        if (matcher.find()) {
-                            iter.remove();
-                            v.getValue().validate(propertyValue, getPath(at, additionalPropertyName), handler);
-                            break;
+            // Properties which are neither declared nor matched by a pattern property
+            int additionalPropertyCount = 0;
+            if (declaredPropertyCount < mapValue.size()) {
+                for (Map.Entry<String, Object> property : mapValue.entrySet()) {
+                    final String propertyName = property.getKey();
+                    if (!propertyValidators.containsKey(propertyName)) {
+                        at.push(propertyName);
+                        if (!validateAdditionalProperty(propertyName, property.getValue(), at, handler)) {
+                            additionalPropertyCount++;
                         }
+                        at.pop();
                     }
                 }
             }
 
+            String oneOfPropertyName = null;
             if (null != this.oneOfValidators) {
                 boolean oneIsvalid = false;
                 for (Validator validator : this.oneOfValidators) {
                     CollectErrorsHandler collectErrorsHandler = new CollectErrorsHandler();
-                    validator.validate(mapValue, getPath(at, null), collectErrorsHandler);
+                    validator.validateAt(mapValue, at, collectErrorsHandler);
                     if (!collectErrorsHandler.hasError()) {
                         oneIsvalid = true;
                         break;
                     }
                 }
                 if (oneIsvalid) {
-                    additionalPropertyNames.remove(mapValue.keySet().iterator().next());
+                    if (!mapValue.isEmpty()) {
+                        oneOfPropertyName = instancePropertyKeySet.iterator().next();
+                        if (isAdditionalProperty(oneOfPropertyName)) {
+                            additionalPropertyCount--;
+                        }
+                    }
                 } else {
                     // @TODO: Add exception message
                     handler.error(new ValidationException(
-                            "Error: Expected one of the validators to validate value", getPath(at, null)));
+                            "Error: Expected one of the validators to validate value", at.toJsonPointer()));
                 }
             }
 
-            if (!allowAdditionalProperties && !additionalPropertyNames.isEmpty()) {
+            if (!allowAdditionalProperties && additionalPropertyCount > 0) {
                 // @TODO: Add exception message: Additional Properties not allowed
-                handler.error(new ValidationException(
-                        "Error: Additional Properties not allowed: " + additionalPropertyNames, getPath(at, null)));
+                handler.error(new ValidationException("Error: Additional Properties not allowed: "
+                        + getAdditionalPropertyNames(mapValue, oneOfPropertyName), at.toJsonPointer()));
             }
         } else if (null != value) {
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer()));
         } else if (required) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Objects are validated one property at a time unless the schema has {@code oneOf} constraints, which need the
+     * whole object. The properties are validated in the order they are read, and each property which is not allowed
+     * is reported as soon as it is read.
+     */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        if (array) {
+            return rejectContainer(true, at, handler);
+        } else if (null != oneOfValidators) {
+            return null;
+        }
+        return new StreamedObject();
+    }
+
+    private static boolean containsAll(Map<String, Object> mapValue, String[] propertyNames) {
+        for (String propertyName : propertyNames) {
+            if (!mapValue.containsKey(propertyName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validates a property which is not declared in the schema.
+     *
+     * @return {@code true} if the property matched a pattern property, {@code false} if it is an additional property
+     */
+    private boolean validateAdditionalProperty(String propertyName, Object propertyValue, ValidationPath at,
+            ErrorHandler handler) {
+        if (null != additionalPropertyValidator) {
+            additionalPropertyValidator.validateAt(propertyValue, at, handler);
+        }
+
+        // @TODO: Implement Dependency check
+        Validator dependencyPropertyValidator = null != dependenciesValidators
+                ? dependenciesValidators.get(propertyName) : null;
+        if (null != dependencyPropertyValidator) {
+            dependencyPropertyValidator.validateAt(propertyValue, at, handler);
+        }
+
+        final int pattern = findPatternProperty(propertyName);
+        if (pattern < 0) {
+            return false;
+        }
+        patternPropertyValidators[pattern].validateAt(propertyValue, at, handler);
+        return true;
+    }
+
+    /** Returns the index of the first pattern property matching the given property name, or -1 if none does. */
+    private int findPatternProperty(String propertyName) {
+        if (null != patternPropertyMatchers) {
+            for (int i = 0; i < patternPropertyMatchers.length; i++) {
+                // Quoting "3.3 Regular expressions":
+                // http://tools.ietf.org/html/draft-fge-json-schema-validation-00#section-3.3
+                // "Finally, implementations MUST NOT consider that regular expressions
+                // are anchored, neither at the beginning nor at the end.  This means,
+                // for instance, that "es" matches "expression"."
+                if (patternPropertyMatchers[i].find(propertyName)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the validators of a property which is not declared in the schema. */
+    private Validator[] getAdditionalPropertyValidators(String propertyName, int pattern) {
+        final List<Validator> validators = new ArrayList<>(3);
+        if (null != additionalPropertyValidator) {
+            validators.add(additionalPropertyValidator);
+        }
+        if (null != dependenciesValidators && null != dependenciesValidators.get(propertyName)) {
+            validators.add(dependenciesValidators.get(propertyName));
+        }
+        if (pattern >= 0) {
+            validators.add(patternPropertyValidators[pattern]);
         }
+        return validators.toArray(new Validator[validators.size()]);
+    }
+
+    private boolean isAdditionalProperty(String propertyName) {
+        return !propertyValidators.containsKey(propertyName) && findPatternProperty(propertyName) < 0;
+    }
+
+    /** Only called to report an error, so that valid instances do not pay for building the set of names. */
+    private Set<String> getAdditionalPropertyNames(Map<String, Object> mapValue, String excludedPropertyName) {
+        Set<String> additionalPropertyNames = new HashSet<>();
+        for (String propertyName : mapValue.keySet()) {
+            if (isAdditionalProperty(propertyName) && !propertyName.equals(excludedPropertyName)) {
+                additionalPropertyNames.add(propertyName);
+            }
+        }
+        return additionalPropertyNames;
     }
 
     /** {@inheritDoc} */
@@ -349,7 +463,9 @@ public class ObjectTypeValidator extends Validator {
         for (PropertyValidatorBag v : val.propertyValidators.values()) {
             v.collectAllValidators(results);
         }
-        collectAllValidators(results, val.patternPropertyValidators);
+        if (val.patternPropertyValidators != null) {
+            collectAllValidators(results, Arrays.asList(val.patternPropertyValidators));
+        }
         if (val.additionalPropertyValidator != null) {
             val.additionalPropertyValidator.collectAllValidators(results);
         }
@@ -357,18 +473,70 @@ public class ObjectTypeValidator extends Validator {
         collectAllValidators(results, val.definitionValidators);
     }
 
+    /** Validates the properties of an object one at a time, as they are streamed. */
+    private final class StreamedObject implements ContainerValidation {
+
+        /** The tracked properties which the object has. */
+        private final Set<String> presentPropertyNames = new HashSet<>();
+
+        @Override
+        public Validator[] member(String name, ValidationPath at, ErrorHandler handler) {
+            if (trackedPropertyNames.contains(name)) {
+                presentPropertyNames.add(name);
+            }
+            final PropertyValidatorBag propertyValue = propertyValidators.get(name);
+            if (null != propertyValue) {
+                return propertyValue.validators;
+            }
+            final int pattern = findPatternProperty(name);
+            if (pattern < 0 && !allowAdditionalProperties) {
+                handler.error(new ValidationException("Error: Additional Properties not allowed: "
+                        + Collections.singleton(name), at.toJsonPointer().parent()));
+            }
+            return getAdditionalPropertyValidators(name, pattern);
+        }
+
+        @Override
+        public void end(ValidationPath at, ErrorHandler handler) {
+            if (!presentPropertyNames.containsAll(requiredPropertyNames)) {
+                Set<String> missingRequiredProperties = new HashSet<>(requiredPropertyNames);
+                missingRequiredProperties.removeAll(presentPropertyNames);
+                handler.error(new ValidationException(
+                        "Missing required property names: " + missingRequiredProperties, at.toJsonPointer()));
+            }
+            for (int i = 0; i < propertyNames.length; i++) {
+                final String propertyName = propertyNames[i];
+                final PropertyValidatorBag propertyValue = propertyValidatorBags[i];
+                if (presentPropertyNames.contains(propertyName)) {
+                    if (null != propertyValue.requiredProperties
+                            && !presentPropertyNames.containsAll(propertyValue.requiredProperties)) {
+                        handler.error(new ValidationException("Dependency ERROR: Missing properties",
+                                at.toJsonPointer().child(propertyName)));
+                    }
+                } else if (propertyValue.isRequired()) {
+                    handler.error(new ValidationException(
+                            "Required property value is null", at.toJsonPointer().child(propertyName)));
+                }
+            }
+        }
+    }
+
     private static final class PropertyValidatorBag implements SimpleValidator<Object> {
 
         private final Validator propertyValidator;
         private Validator dependencyValidator = null;
         private Set<String> requiredProperties = null;
+        /** The validators of the property value, when it is streamed. */
+        private Validator[] validators;
 
         private PropertyValidatorBag(Validator propertyValidator) {
             this.propertyValidator = propertyValidator;
+            this.validators = new Validator[] { propertyValidator };
         }
 
         private void setDependencyValidator(Validator dependencyValidator) {
             this.dependencyValidator = dependencyValidator;
+            this.validators = new Validator[] { propertyValidator, dependencyValidator };
         }
 
         @SuppressWarnings("unchecked")
@@ -395,17 +563,21 @@ public class ObjectTypeValidator extends Validator {
 
         @Override
         public void validate(Object value, JsonPointer at, ErrorHandler handler) {
-            propertyValidator.validate(value, at, handler);
+            validateAt(value, new ValidationPath(at), handler);
+        }
+
+        private void validateAt(Object value, ValidationPath at, ErrorHandler handler) {
+            propertyValidator.validateAt(value, at, handler);
             if (null != dependencyValidator) {
-                dependencyValidator.validate(value, at, handler);
+                dependencyValidator.validateAt(value, at, handler);
             }
         }
 
-        public void validate(Object value, Set<String> propertyKeySet, JsonPointer at, ErrorHandler handler) {
+        public void validate(Object value, Set<String> propertyKeySet, ValidationPath at, ErrorHandler handler) {
             if (null != requiredProperties && !propertyKeySet.containsAll(requiredProperties)) {
-                handler.error(new ValidationException("Dependency ERROR: Missing properties", at));
+                handler.error(new ValidationException("Dependency ERROR: Missing properties", at.toJsonPointer()));
             }
-            validate(value, at, handler);
+            validateAt(value, at, handler);
         }
     }
 
@@ -0,0 +1,37 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator.validators;
+
+import org.forgerock.json.schema.validator.exceptions.SchemaException;
+
+/**
+ * ReferenceResolver resolves the references to other schemas than the one holding the reference.
+ *
+ * @see Validator#resolveSchemaReferences(ReferenceResolver)
+ * @see org.forgerock.json.schema.validator.Constants#REF
+ */
+public interface ReferenceResolver {
+
+    /**
+     * Returns the validator defined at the location of the given reference.
+     *
+     * @param reference the reference, which may be relative to the id of the schema holding it
+     * @return the referenced validator, or {@code null} if there is no schema at this location
+     * @throws SchemaException when the referenced schema cannot be built
+     */
+    Validator resolve(String reference);
+}
@@ -19,9 +19,9 @@ package org.forgerock.json.schema.validator.validators;
 import java.util.List;
 import java.util.Map;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 
 /**
@@ -50,13 +50,23 @@ public class ReferenceTypeValidator extends Validator {
 
     /** {@inheritDoc} */
     @Override
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) {
         // referenceValidator should not be null, it is validated in Validator#resolveSchemaReferences()
         if (referenceValidator == null) {
             throw new SchemaException(new JsonValue(null, getJsonPointer()),
                     "Could not dereference JSON reference " + reference);
         }
-        referenceValidator.validate(node, getPath(at, null), handler);
+        referenceValidator.validateAt(node, at, handler);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        if (referenceValidator == null) {
+            throw new SchemaException(new JsonValue(null, getJsonPointer()),
+                    "Could not dereference JSON reference " + reference);
+        }
+        return referenceValidator.startContainer(array, at, handler);
     }
 
     /**
@@ -16,12 +16,11 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.forgerock.json.schema.validator.helpers.EnumHelper;
@@ -63,7 +62,7 @@ public class StringTypeValidator extends Validator {
      * Regular expressions SHOULD follow the regular expression
      * specification from ECMA 262/Perl 5
      */
-    private Pattern p = null;
+    private ThreadLocalMatcher patternMatcher = null;
     /**
      * When the instance value is a string, this defines the minimum length
      * of the string.
@@ -106,7 +105,7 @@ public class StringTypeValidator extends Validator {
                 if (e.getValue() instanceof String) {
                     String pattern = (String) e.getValue();
                     try {
-                        p = Pattern.compile(pattern, Pattern.UNICODE_CASE);
+                        patternMatcher = new ThreadLocalMatcher(Pattern.compile(pattern, Pattern.UNICODE_CASE));
                     } catch (PatternSyntaxException pse) {
                         //LOG.error("Failed to apply pattern on " + at + ": Invalid RE syntax [" + pattern + "]", pse);
                     }
@@ -141,32 +140,37 @@ public class StringTypeValidator extends Validator {
      * {@inheritDoc}
      */
     @Override
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
         if (node instanceof String) {
             String nodeValue = (String) node;
             if (minLength > -1 && nodeValue.length() < minLength) {
-                handler.error(new ValidationException("minLength error", getPath(at, null)));
+                handler.error(new ValidationException("minLength error", at.toJsonPointer()));
             }
             if (maxLength > -1 && nodeValue.length() > maxLength) {
-                handler.error(new ValidationException("maxLength error", getPath(at, null)));
+                handler.error(new ValidationException("maxLength error", at.toJsonPointer()));
             }
-            if (null != p) {
-                Matcher m = p.matcher(nodeValue);
-                if (!m.matches()) {
-                    handler.error(new ValidationException(getPath(at, null) + ": does not match the regex pattern "
-                            + p.pattern(), getPath(at, null)));
+            if (null != patternMatcher) {
+                if (!patternMatcher.matches(nodeValue)) {
+                    handler.error(new ValidationException(at.toJsonPointer() + ": does not match the regex pattern "
+                            + patternMatcher.pattern().pattern(), at.toJsonPointer()));
                 }
             }
             if (null != enumHelper) {
-                enumHelper.validate(node, at, handler);
+                enumHelper.validateAt(node, at, handler);
             }
             if (null != formatHelper) {
-                formatHelper.validate(node, at, handler);
+                formatHelper.validateAt(node, at, handler);
             }
         } else if (null != node) {
-            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_TYPE_MISMATCH, at.toJsonPointer()));
         } else if (required) {
-            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, getPath(at, null)));
+            handler.error(new ValidationException(ERROR_MSG_REQUIRED_PROPERTY, at.toJsonPointer()));
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return rejectContainer(array, at, handler);
+    }
 }
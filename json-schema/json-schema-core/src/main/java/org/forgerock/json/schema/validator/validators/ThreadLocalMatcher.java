@@ -0,0 +1,82 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator.validators;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Holds a {@link Matcher} for a pattern per thread, so that validators, which are shared between threads, can match
+ * each value against the pattern without creating a new matcher for it.
+ * <p/>
+ * The matcher is reset to an empty input after each match, so that it does not keep the last value it matched, which
+ * may be large or sensitive, reachable from a pooled thread.
+ */
+final class ThreadLocalMatcher extends ThreadLocal<Matcher> {
+
+    private final Pattern pattern;
+
+    ThreadLocalMatcher(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    @Override
+    protected Matcher initialValue() {
+        return pattern.matcher("");
+    }
+
+    /**
+     * Returns whether the entire input matches the pattern.
+     *
+     * @param input the character sequence to be matched
+     * @return {@code true} if the entire input matches the pattern
+     * @see Matcher#matches()
+     */
+    boolean matches(CharSequence input) {
+        final Matcher matcher = get().reset(input);
+        try {
+            return matcher.matches();
+        } finally {
+            matcher.reset("");
+        }
+    }
+
+    /**
+     * Returns whether the input contains a match for the pattern.
+     *
+     * @param input the character sequence to be matched
+     * @return {@code true} if a subsequence of the input matches the pattern
+     * @see Matcher#find()
+     */
+    boolean find(CharSequence input) {
+        final Matcher matcher = get().reset(input);
+        try {
+            return matcher.find();
+        } finally {
+            matcher.reset("");
+        }
+    }
+
+    /**
+     * Returns the pattern matched by this matcher.
+     *
+     * @return the pattern
+     */
+    Pattern pattern() {
+        return pattern;
+    }
+}
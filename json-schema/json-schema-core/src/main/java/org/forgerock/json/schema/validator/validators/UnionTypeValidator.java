@@ -16,10 +16,10 @@
 
 package org.forgerock.json.schema.validator.validators;
 
-import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.ErrorHandler;
 import org.forgerock.json.schema.validator.FailFastErrorHandler;
 import org.forgerock.json.schema.validator.ObjectValidatorFactory;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.forgerock.json.schema.validator.exceptions.ValidationException;
 
@@ -75,15 +75,18 @@ public class UnionTypeValidator extends Validator {
      * {@inheritDoc}
      */
     @Override
-    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
-        for (Validator v : validators) {
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
+        final ErrorHandler failFastHandler = new FailFastErrorHandler();
+        final int depth = at.depth();
+        for (int i = 0; i < validators.size(); i++) {
             try {
-                v.validate(node, at, new FailFastErrorHandler());
+                validators.get(i).validateAt(node, at, failFastHandler);
                 return;
             } catch (ValidationException e) {
                 //Only one helpers should success to be overall success.
+                at.truncate(depth);
             }
         }
-        handler.error(new ValidationException("Invalid union validators.", getPath(at, null)));
+        handler.error(new ValidationException("Invalid union validators.", at.toJsonPointer()));
     }
 }
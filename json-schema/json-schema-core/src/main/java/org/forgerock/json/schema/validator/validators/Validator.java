@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
- * Copyright 2011-2015 ForgeRock AS.
+ * Copyright 2011-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.schema.validator.validators;
@@ -20,6 +20,7 @@ import static org.forgerock.json.schema.validator.Constants.*;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,18 +28,26 @@ import java.util.Map;
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.schema.validator.Constants;
+import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 
 /**
  * Validator is the abstract base class of all typed validator.
  * <p>
  * Each validator that responsible validate one certain type of object MUST extend this class.
+ * <p>
+ * Validators validate the values nested in objects and arrays with
+ * {@link #validateAt(Object, ValidationPath, ErrorHandler)}, which keeps track of where the value is without building
+ * a {@link JsonPointer} for it unless an error is reported.
  */
 public abstract class Validator implements SimpleValidator<Object> {
 
     /** Whether the schema represented by this validator is required. */
     protected boolean required = false;
     private JsonPointer pointer;
+    /** Whether {@link #validate(Object, JsonPointer, ErrorHandler)} is overridden by the subclass. */
+    private final boolean overridesValidate;
 
     /**
      * Default ctor.
@@ -56,6 +65,85 @@ public abstract class Validator implements SimpleValidator<Object> {
         if (jsonPointer != null) {
             this.pointer = new JsonPointer(jsonPointer.toArray(new String[jsonPointer.size()]));
         }
+        this.overridesValidate = overridesValidate(getClass());
+    }
+
+    private static boolean overridesValidate(Class<?> type) {
+        try {
+            return type.getMethod("validate", Object.class, JsonPointer.class, ErrorHandler.class)
+                    .getDeclaringClass() != Validator.class;
+        } catch (NoSuchMethodException e) {
+            // Cannot happen, as the method is declared by this class.
+            return false;
+        }
+    }
+
+    /**
+     * Validates the <code>node</code> value against the embedded schema object.
+     *
+     * @param node    value to validate
+     * @param at      JSONPath of the node. null means it's the root node
+     * @param handler customised error handler like {@link org.forgerock.json.schema.validator.FailFastErrorHandler}
+     * @throws SchemaException when the <code>node</code> violates with the schema
+     * @see #validateAt(Object, ValidationPath, ErrorHandler)
+     */
+    @Override
+    public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+        validateAt(node, new ValidationPath(at), handler);
+    }
+
+    /**
+     * Validates the <code>node</code> value, located at the given path of the instance being validated, against the
+     * embedded schema object.
+     * <p/>
+     * Validators must leave the path as they found it when they return normally. Subclasses must override either
+     * this method or {@link #validate(Object, JsonPointer, ErrorHandler)}: the default implementation builds the
+     * pointer to the node and calls the latter if it is overridden.
+     *
+     * @param node    value to validate
+     * @param at      path of the node, which is only turned into a {@link JsonPointer} when an error is reported
+     * @param handler customised error handler like {@link org.forgerock.json.schema.validator.FailFastErrorHandler}
+     * @throws SchemaException when the <code>node</code> violates with the schema
+     * @throws UnsupportedOperationException if the subclass overrides neither method
+     */
+    public void validateAt(Object node, ValidationPath at, ErrorHandler handler) throws SchemaException {
+        if (!overridesValidate) {
+            // Calling validate would call this method again.
+            throw new UnsupportedOperationException(getClass().getName() + " must override either validateAt("
+                    + "Object, ValidationPath, ErrorHandler) or validate(Object, JsonPointer, ErrorHandler)");
+        }
+        validate(node, at.toJsonPointer(), handler);
+    }
+
+    /**
+     * Starts validating an object or an array whose members are streamed one at a time, rather than held in memory.
+     * <p/>
+     * The default implementation returns {@code null}, so that the container is read into memory and validated with
+     * {@link #validateAt(Object, ValidationPath, ErrorHandler)}.
+     *
+     * @param array   whether the container is an array rather than an object
+     * @param at      path of the container
+     * @param handler customised error handler like {@link org.forgerock.json.schema.validator.FailFastErrorHandler}
+     * @return the validation of the members of the container, or {@code null} if the whole container is needed
+     * @throws SchemaException when the container violates the schema whatever its members
+     */
+    public ContainerValidation startContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        return null;
+    }
+
+    /**
+     * Validates a container, whose members cannot make it valid against this validator, without reading them.
+     *
+     * @param array   whether the container is an array rather than an object
+     * @param at      path of the container
+     * @param handler customised error handler like {@link org.forgerock.json.schema.validator.FailFastErrorHandler}
+     * @return {@link ContainerValidation#SKIP_MEMBERS}
+     * @throws SchemaException when the container violates the schema
+     */
+    protected final ContainerValidation rejectContainer(boolean array, ValidationPath at, ErrorHandler handler) {
+        // Validating an empty container reports the same error as validating the streamed one would.
+        validateAt(array ? Collections.emptyList() : Collections.emptyMap(), at, handler);
+        return ContainerValidation.SKIP_MEMBERS;
     }
 
     /**
@@ -124,6 +212,19 @@ public abstract class Validator implements SimpleValidator<Object> {
      * @see Constants#REF
      */
     public void resolveSchemaReferences() {
+        resolveSchemaReferences(null);
+    }
+
+    /**
+     * Resolves schema references for this validator. References to the schema holding this validator, which start
+     * with {@code #}, are resolved to the validators held in this validator, and references to other schemas are
+     * resolved with the given resolver.
+     *
+     * @param resolver resolves references to other schemas, or {@code null} to resolve all the references locally
+     * @throws SchemaException when a reference cannot be resolved
+     * @see Constants#REF
+     */
+    public void resolveSchemaReferences(ReferenceResolver resolver) {
         final List<Validator> validators = new ArrayList<>();
         collectAllValidators(validators);
 
@@ -143,6 +244,15 @@ public abstract class Validator implements SimpleValidator<Object> {
 
         for (ReferenceTypeValidator v : references) {
             String ref = v.getReference();
+            if (resolver != null && !ref.startsWith("#")) {
+                final Validator referencedValidator = resolver.resolve(ref);
+                if (referencedValidator == null) {
+                    throw new SchemaException(new JsonValue(null, v.getJsonPointer()),
+                            "Could not dereference JSON reference " + ref);
+                }
+                v.setReferencedValidator(referencedValidator);
+                continue;
+            }
             if (ref.startsWith("#")) {
                 ref = ref.substring(1);
             }
@@ -155,6 +265,23 @@ public abstract class Validator implements SimpleValidator<Object> {
         }
     }
 
+    /**
+     * Returns the validator held in this validator which was defined at the given location of the schema.
+     *
+     * @param jsonPointer the JSON pointer locating the validator in the schema
+     * @return the validator, or {@code null} if no validator was defined at this location
+     */
+    public Validator findValidator(JsonPointer jsonPointer) {
+        final List<Validator> validators = new ArrayList<>();
+        collectAllValidators(validators);
+        for (Validator validator : validators) {
+            if (jsonPointer.equals(validator.getJsonPointer())) {
+                return validator;
+            }
+        }
+        return null;
+    }
+
     /**
      * Collects all the sub-validators held in this validator and aggregates them in the passed in Collection.
      *
@@ -0,0 +1,172 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.json.JsonValue.*;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.forgerock.json.schema.validator.exceptions.SchemaException;
+import org.forgerock.json.schema.validator.validators.StringTypeValidator;
+import org.forgerock.json.schema.validator.validators.Validator;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class SchemaRegistryTest {
+
+    private SchemaRegistry registry;
+
+    @BeforeMethod
+    public void setUp() {
+        registry = new SchemaRegistry(URI.create("http://www.example.com/schema/"));
+    }
+
+    @Test
+    public void shouldResolveReferencesToOtherSchemas() {
+        // given
+        registry.register(schema(object(
+                field("id", "user"),
+                field("type", "object"),
+                field("properties", object(
+                        field("address", object(field("$ref", "common#/definitions/address"))))))));
+        registry.register(schema(object(
+                field("id", "common"),
+                field("type", "object"),
+                field("definitions", object(
+                        field("address", object(field("type", "string"))))))));
+
+        // when
+        Validator validator = registry.getValidator(URI.create("user"));
+
+        // then
+        assertThat(isValid(validator, object(field("address", "1 Main Street")))).isTrue();
+        assertThat(isValid(validator, object(field("address", 1)))).isFalse();
+        assertThat(registry.getValidator(URI.create("http://www.example.com/schema/common#/definitions/address")))
+                .isInstanceOf(StringTypeValidator.class);
+    }
+
+    @Test
+    public void shouldResolveCyclicReferences() {
+        // given
+        registry.register(schema(object(
+                field("id", "node"),
+                field("type", "object"),
+                field("properties", object(
+                        field("name", object(field("type", "string"))),
+                        field("children", object(field("type", "array"), field("items", object(field("$ref", "list")))))
+                )))));
+        registry.register(schema(object(
+                field("id", "list"),
+                field("type", "object"),
+                field("properties", object(
+                        field("first", object(field("$ref", "node#"))))))));
+
+        // when
+        Validator validator = registry.getValidator(URI.create("node"));
+
+        // then
+        Object valid = object(field("name", "root"), field("children", array(
+                object(field("first", object(field("name", "child")))))));
+        Object invalid = object(field("name", "root"), field("children", array(
+                object(field("first", object(field("name", false)))))));
+        assertThat(isValid(validator, valid)).isTrue();
+        assertThat(isValid(validator, invalid)).isFalse();
+        assertThat(registry.getValidator(URI.create("list"))).isNotNull();
+    }
+
+    @Test
+    public void shouldCompileSchemasOnce() {
+        // given
+        Map<String, Object> anonymous = schema(object(field("type", "string")));
+        registry.register(schema(object(field("id", "string"), field("type", "string"))));
+
+        // when
+        Validator validator = registry.getValidator(URI.create("string"));
+
+        // then
+        assertThat(registry.getValidator(URI.create("http://www.example.com/schema/string"))).isSameAs(validator);
+        assertThat(registry.getValidator(schema(object(field("id", "string"), field("type", "string")))))
+                .isSameAs(validator);
+        assertThat(registry.getValidator(anonymous)).isSameAs(registry.getValidator(anonymous))
+                .isNotSameAs(validator);
+        assertThat(registry.getValidator(URI.create("unknown"))).isNull();
+    }
+
+    @Test
+    public void shouldReturnSameValidatorForSameFragment() {
+        // given
+        registry.register(schema(object(
+                field("id", "common"),
+                field("type", "object"),
+                field("definitions", object(
+                        field("address", object(field("type", "string"))))))));
+        URI address = URI.create("common#/definitions/address");
+
+        // when
+        Validator validator = registry.getValidator(address);
+
+        // then
+        assertThat(validator).isInstanceOf(StringTypeValidator.class);
+        assertThat(registry.getValidator(address)).isSameAs(validator);
+        assertThat(registry.getValidator(URI.create("http://www.example.com/schema/common#/definitions/address")))
+                .isSameAs(validator);
+        assertThat(registry.getValidator(URI.create("common#/definitions/unknown"))).isNull();
+        assertThat(registry.getValidator(URI.create("common#/definitions/unknown"))).isNull();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldNotReplaceRegisteredSchema() {
+        registry.register(schema(object(field("id", "string"), field("type", "string"))));
+        registry.register(schema(object(field("id", "string"), field("type", "number"))));
+    }
+
+    @Test
+    public void shouldNotPublishSchemasWithUnresolvableReferences() {
+        // given
+        registry.register(schema(object(field("id", "broken"), field("$ref", "valid#/definitions/unknown"))));
+        registry.register(schema(object(field("id", "valid"), field("type", "string"))));
+
+        // when
+        try {
+            registry.compileAll();
+            failBecauseExceptionWasNotThrown(SchemaException.class);
+        } catch (SchemaException e) {
+            // then
+            assertThat(registry.getValidator(URI.create("valid"))).isNotNull();
+        }
+        try {
+            registry.getValidator(URI.create("broken"));
+            failBecauseExceptionWasNotThrown(SchemaException.class);
+        } catch (SchemaException e) {
+            assertThat(e.getMessage()).contains("valid#/definitions/unknown");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> schema(Object schema) {
+        return (Map<String, Object>) schema;
+    }
+
+    private static boolean isValid(Validator validator, Object instance) {
+        ErrorHandler handler = new CollectErrorsHandler();
+        validator.validate(instance, null, handler);
+        return !handler.hasError();
+    }
+}
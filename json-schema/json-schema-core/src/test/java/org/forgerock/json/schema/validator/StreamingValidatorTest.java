@@ -0,0 +1,207 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.schema.validator;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.forgerock.json.schema.validator.exceptions.ValidationException;
+import org.forgerock.json.schema.validator.validators.Validator;
+import org.json.simple.parser.JSONParser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class StreamingValidatorTest {
+
+    private static final String SCHEMA = "{ \"type\": \"object\", \"required\": [\"name\"], "
+            + "\"properties\": { "
+            + "  \"name\": { \"type\": \"string\", \"pattern\": \"^[a-z]+$\" }, "
+            + "  \"age\": { \"type\": \"integer\", \"minimum\": 0 }, "
+            + "  \"tags\": { \"type\": \"array\", \"items\": { \"type\": \"string\" }, \"maxItems\": 3 }, "
+            + "  \"point\": { \"type\": \"array\", \"items\": [{ \"type\": \"number\" }, { \"type\": \"number\" }], "
+            + "               \"additionalItems\": false }, "
+            + "  \"unique\": { \"type\": \"array\", \"uniqueItems\": true }, "
+            + "  \"nickname\": { \"type\": [\"string\", \"null\"] }, "
+            + "  \"address\": { \"type\": \"object\", \"properties\": { \"city\": { \"type\": \"string\" } }, "
+            + "                 \"additionalProperties\": false }, "
+            + "  \"extra\": {} "
+            + "}, "
+            + "\"patternProperties\": { \"^x-\": { \"type\": \"boolean\" } }, "
+            + "\"additionalProperties\": false }";
+
+    private Validator validator;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        validator = ObjectValidatorFactory.getTypeValidator(parse(SCHEMA));
+    }
+
+    @DataProvider
+    public Object[][] documents() {
+        return new Object[][] {
+            { "{ \"name\": \"alice\", \"age\": 30, \"tags\": [\"a\", \"b\"], \"point\": [1, 2.5], "
+                    + "\"unique\": [1, 2], \"nickname\": null, \"address\": { \"city\": \"Bristol\" }, "
+                    + "\"extra\": { \"any\": [1, { \"thing\": true }] }, \"x-flag\": true }" },
+            { "{ \"age\": 30 }" },
+            { "{ \"name\": \"Alice\" }" },
+            { "{ \"name\": \"alice\", \"age\": -1 }" },
+            { "{ \"name\": \"alice\", \"tags\": [\"a\", 1, \"b\", \"c\"] }" },
+            { "{ \"name\": \"alice\", \"point\": [1, 2, 3] }" },
+            { "{ \"name\": \"alice\", \"point\": [1] }" },
+            { "{ \"name\": \"alice\", \"point\": [\"x\"] }" },
+            { "{ \"name\": \"alice\", \"point\": [\"x\", 2, \"y\"] }" },
+            { "{ \"name\": \"alice\", \"point\": [\"x\", 2] }" },
+            { "{ \"name\": \"alice\", \"tags\": [1, 2, 3, 4, 5] }" },
+            { "{ \"name\": \"alice\", \"unique\": [1, 1] }" },
+            { "{ \"name\": \"alice\", \"nickname\": 1 }" },
+            { "{ \"name\": \"alice\", \"address\": { \"city\": 1, \"zip\": \"BS1\" } }" },
+            { "{ \"name\": \"alice\", \"address\": [] }" },
+            { "{ \"name\": \"alice\", \"x-flag\": \"yes\", \"unknown\": 1 }" },
+            { "[\"alice\"]" },
+        };
+    }
+
+    @Test(dataProvider = "documents")
+    public void shouldReportTheSameErrorsAsTheValidator(String document) throws Exception {
+        // given
+        CollectErrorsHandler expected = new CollectErrorsHandler();
+        validator.validate(new JSONParser().parse(document), null, expected);
+
+        // when
+        CollectErrorsHandler actual = new CollectErrorsHandler();
+        new StreamingValidator(validator).validate(toStream(document), actual);
+
+        // then
+        assertThat(actual.hasError()).isEqualTo(expected.hasError());
+        assertThat(getErrors(actual)).isEqualTo(getErrors(expected));
+    }
+
+    @Test
+    public void shouldValidateEveryValueOfDuplicateKeys() throws Exception {
+        // given
+        String document = "{ \"name\": 1, \"name\": \"alice\" }";
+        CollectErrorsHandler parsed = new CollectErrorsHandler();
+        validator.validate(new JSONParser().parse(document), null, parsed);
+
+        // when
+        CollectErrorsHandler streamed = new CollectErrorsHandler();
+        new StreamingValidator(validator).validate(toStream(document), streamed);
+
+        // then
+        assertThat(parsed.hasError()).isFalse();
+        assertThat(getErrors(streamed)).hasSize(1);
+        assertThat(getErrors(streamed).get(0)).startsWith("/name: ");
+    }
+
+    @Test
+    public void shouldStopReadingAtTheFirstViolation() throws Exception {
+        // given
+        InputStream document = new SequenceInputStream(toStream("{ \"name\": 1, "), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("The rest of the document should not be read");
+            }
+        });
+
+        // when
+        try {
+            new StreamingValidator(validator).validate(document, new FailFastErrorHandler());
+            failBecauseExceptionWasNotThrown(ValidationException.class);
+        } catch (ValidationException e) {
+            // then
+            assertThat(e.getJsonValue().getPointer().toString()).isEqualTo("/name");
+        }
+    }
+
+    @Test
+    public void shouldRejectDocumentsNestedTooDeeply() throws Exception {
+        // given
+        String document = "{ \"name\": \"alice\", \"unique\": [[[1]]] }";
+
+        // when
+        try {
+            new StreamingValidator(validator, 3).validate(toStream(document), new CollectErrorsHandler());
+            failBecauseExceptionWasNotThrown(ValidationException.class);
+        } catch (ValidationException e) {
+            // then
+            assertThat(e.getMessage()).contains("3 levels");
+            assertThat(e.getJsonValue().getPointer().toString()).isEqualTo("/unique");
+        }
+    }
+
+    @Test
+    public void shouldAcceptDocumentsNestedUpToTheMaximumDepth() throws Exception {
+        // given
+        String document = "{ \"name\": \"alice\", \"unique\": [[1], [2]] }";
+        CollectErrorsHandler handler = new CollectErrorsHandler();
+
+        // when
+        new StreamingValidator(validator, 3).validate(toStream(document), handler);
+
+        // then
+        assertThat(handler.hasError()).isFalse();
+    }
+
+    @Test(expectedExceptions = JsonParseException.class)
+    public void shouldRejectContentAfterTheDocument() throws Exception {
+        new StreamingValidator(validator).validate(toStream("{ \"name\": \"alice\" } {}"),
+                new CollectErrorsHandler());
+    }
+
+    @Test
+    public void shouldAcceptWhiteSpaceAfterTheDocument() throws Exception {
+        // given
+        CollectErrorsHandler handler = new CollectErrorsHandler();
+
+        // when
+        new StreamingValidator(validator).validate(toStream("{ \"name\": \"alice\" }\n  \n"), handler);
+
+        // then
+        assertThat(handler.hasError()).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(String json) throws Exception {
+        return (Map<String, Object>) new JSONParser().parse(json);
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the path and message of each error, sorted since they are not reported in the same order. */
+    private static List<String> getErrors(CollectErrorsHandler handler) {
+        List<String> errors = new ArrayList<>();
+        for (ValidationException e : handler.getExceptions()) {
+            errors.add((e.getJsonValue() != null ? e.getJsonValue().getPointer() : null) + ": " + e.getMessage());
+        }
+        Collections.sort(errors);
+        return errors;
+    }
+}
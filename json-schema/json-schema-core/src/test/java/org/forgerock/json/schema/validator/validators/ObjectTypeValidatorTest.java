@@ -16,15 +16,19 @@
 
 package org.forgerock.json.schema.validator.validators;
 
+import static java.util.Collections.singleton;
 import static org.testng.Assert.*;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.forgerock.json.schema.validator.CollectErrorsHandler;
 import org.forgerock.json.schema.validator.ObjectValidatorFactory;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
+import org.forgerock.json.schema.validator.exceptions.ValidationException;
 import org.json.simple.parser.JSONParser;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -68,4 +72,65 @@ public class ObjectTypeValidatorTest extends ValidatorTestBase {
         Object o = parser.parse("{ \"$ref\" : \"#/definitions/unknown\" }");
         ObjectValidatorFactory.getTypeValidator((Map<String, Object>) o);
     }
+
+    @Test
+    public void errorsShouldBeReportedAtThePathOfTheInvalidValue() throws Exception {
+        Validator validator = getValidator("{ \"type\": \"object\", \"properties\": { \"a\": { \"type\": \"object\", "
+                + "\"properties\": { \"b\": { \"type\": \"array\", \"items\": { \"type\": \"string\" } } } } } }");
+        CollectErrorsHandler errorHandler = new CollectErrorsHandler();
+        validator.validate(new JSONParser().parse("{ \"a\": { \"b\": [ \"x\", 1 ] } }"), null, errorHandler);
+        assertEquals(getErrorPaths(errorHandler), singleton("/a/b/1"));
+    }
+
+    @Test
+    public void pathShouldBeRestoredAfterFailedUnionType() throws Exception {
+        Validator validator = getValidator("{ \"type\": \"object\", \"properties\": { "
+                + "\"u\": { \"type\": [ { \"type\": \"object\", \"properties\": { \"x\": { \"type\": \"string\" } } }, "
+                + "\"string\" ] }, \"v\": { \"type\": \"string\" }, \"w\": { \"type\": \"string\" } } }");
+        CollectErrorsHandler errorHandler = new CollectErrorsHandler();
+        validator.validate(new JSONParser().parse("{ \"u\": { \"x\": 1 }, \"v\": 2, \"w\": 3 }"), null,
+                errorHandler);
+        Set<String> expected = new HashSet<>();
+        expected.add("/u");
+        expected.add("/v");
+        expected.add("/w");
+        assertEquals(getErrorPaths(errorHandler), expected);
+    }
+
+    @Test
+    public void additionalPropertiesShouldExcludePatternProperties() throws Exception {
+        Validator validator = getValidator("{ \"type\": \"object\", "
+                + "\"properties\": { \"a\": { \"type\": \"string\" } }, "
+                + "\"patternProperties\": { \"^x-\": { \"type\": \"string\" } }, \"additionalProperties\": false }");
+
+        CollectErrorsHandler errorHandler = new CollectErrorsHandler();
+        validator.validate(new JSONParser().parse("{ \"a\": \"1\", \"x-b\": \"2\" }"), null, errorHandler);
+        assertFalse(errorHandler.hasError(), errorHandler.getExceptions().toString());
+
+        errorHandler = new CollectErrorsHandler();
+        validator.validate(new JSONParser().parse("{ \"a\": \"1\", \"x-b\": 2, \"c\": 3 }"), null, errorHandler);
+        assertEquals(errorHandler.getExceptions().size(), 2);
+        Set<String> expected = new HashSet<>();
+        expected.add("/");
+        expected.add("/x-b");
+        assertEquals(getErrorPaths(errorHandler), expected);
+        for (ValidationException exception : errorHandler.getExceptions()) {
+            if (exception.getJsonValue().getPointer().isEmpty()) {
+                assertTrue(exception.getMessage().contains("[c]"), exception.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Validator getValidator(String schema) throws Exception {
+        return ObjectValidatorFactory.getTypeValidator((Map<String, Object>) new JSONParser().parse(schema));
+    }
+
+    private static Set<String> getErrorPaths(CollectErrorsHandler errorHandler) {
+        Set<String> paths = new HashSet<>();
+        for (ValidationException exception : errorHandler.getExceptions()) {
+            paths.add(exception.getJsonValue().getPointer().toString());
+        }
+        return paths;
+    }
 }
@@ -19,12 +19,17 @@ package org.forgerock.json.schema.validator.validators;
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.schema.validator.Constants;
 import org.forgerock.json.schema.validator.ErrorHandler;
+import org.forgerock.json.schema.validator.FailFastErrorHandler;
+import org.forgerock.json.schema.validator.ValidationPath;
 import org.forgerock.json.schema.validator.exceptions.SchemaException;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @SuppressWarnings("javadoc")
 public class ValidatorTest {
@@ -43,4 +48,35 @@ public class ValidatorTest {
         Assert.assertEquals(validator.getPath(new JsonPointer("/path"), null), new JsonPointer("path"));
         Assert.assertEquals(validator.getPath(null, "path"), new JsonPointer("path"));
     }
+
+    @Test
+    public void validateAtCallsOverriddenValidate() throws SchemaException {
+        final List<JsonPointer> validated = new ArrayList<>();
+        Validator validator = new Validator(new HashMap<String, Object>(), null) {
+            @Override
+            public void validate(Object node, JsonPointer at, ErrorHandler handler) throws SchemaException {
+                validated.add(at);
+            }
+        };
+        ValidationPath at = new ValidationPath(new JsonPointer("/path"));
+        validator.validateAt("value", at, new FailFastErrorHandler());
+        Assert.assertEquals(validated.size(), 1);
+        Assert.assertEquals(validated.get(0), new JsonPointer("/path"));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void validateFailsWhenNeitherMethodIsOverridden() throws SchemaException {
+        Validator validator = new Validator(new HashMap<String, Object>(), null) {
+        };
+        validator.validate("value", new JsonPointer(), new FailFastErrorHandler());
+    }
+
+    @Test
+    public void threadLocalMatcherDoesNotKeepTheLastInput() {
+        ThreadLocalMatcher matcher = new ThreadLocalMatcher(Pattern.compile("s.*"));
+        Assert.assertTrue(matcher.matches("secret"));
+        Assert.assertFalse(matcher.get().matches(), "Matcher MUST be reset after matching");
+        Assert.assertTrue(matcher.find("a secret"));
+        Assert.assertFalse(matcher.get().find(0), "Matcher MUST be reset after finding");
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.forgerock.json.jose.common;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,11 +36,16 @@ import org.forgerock.json.jose.jwt.Jwt;
 import org.forgerock.json.jose.jwt.JwtClaimsSet;
 import org.forgerock.json.jose.jwt.JwtType;
 import org.forgerock.json.jose.utils.Utils;
-import org.forgerock.util.encode.Base64url;
+import org.forgerock.util.encode.Base64Codec;
 
 /**
  * A service that provides a method for reconstruct a JWT string back into its relevant JWT object,
  * (SignedJwt, EncryptedJwt, SignedEncryptedJwt).
+ * <p>
+ * The compact serialization is scanned once for the positions of its dots and each part is Base64url decoded
+ * straight from the ASCII bytes of the JWT, so the signing input of a signed JWT is a prefix of those bytes rather
+ * than a re-encoded copy of its parts. The claims of a plaintext or signed JWT are parsed with
+ * {@link JwtClaimsSet#parse(byte[])}, which only decodes nested claim values when they are read.
  *
  * @since 2.0.0
  */
@@ -51,6 +58,59 @@ public class JwtReconstruction {
     private static final int JWS_NUM_PARTS = 3;
     private static final int JWE_NUM_PARTS = 5;
 
+    /**
+     * The Base64url encoded parts of a JWT in compact serialization, located by the positions of the dots which
+     * separate them.
+     */
+    private static final class CompactJwt {
+        private final byte[] ascii;
+        private final int[] dots = new int[JWE_NUM_PARTS - 1];
+        private final int numberOfParts;
+
+        private CompactJwt(byte[] ascii) {
+            this.ascii = ascii;
+            int numberOfDots = 0;
+            for (int i = 0; i < ascii.length; i++) {
+                if (ascii[i] == '.') {
+                    if (numberOfDots < dots.length) {
+                        dots[numberOfDots] = i;
+                    }
+                    numberOfDots++;
+                }
+            }
+            this.numberOfParts = numberOfDots + 1;
+        }
+
+        private int start(int part) {
+            return part == 0 ? 0 : dots[part - 1] + 1;
+        }
+
+        private int end(int part) {
+            return part == numberOfParts - 1 ? ascii.length : dots[part];
+        }
+
+        private boolean isEmpty(int part) {
+            return start(part) == end(part);
+        }
+
+        private byte[] decode(int part) {
+            byte[] decoded = Base64Codec.BASE64URL.decode(ascii, start(part), end(part) - start(part));
+            if (decoded == null) {
+                throw new InvalidJwtException("Part " + part + " of the JWT is not valid Base64url");
+            }
+            return decoded;
+        }
+
+        private String encoded(int part) {
+            return new String(ascii, start(part), end(part) - start(part), StandardCharsets.US_ASCII);
+        }
+
+        /** Returns the ASCII bytes of the JWS Signing Input, i.e. the encoded header and payload and their dot. */
+        private byte[] signingInput() {
+            return Arrays.copyOf(ascii, dots[1]);
+        }
+    }
+
     /**
      * Reconstructs the given JWT string into a JWT object of the specified type.
      *
@@ -63,16 +123,16 @@ public class JwtReconstruction {
      */
     public <T extends Jwt> T reconstructJwt(String jwtString, Class<T> jwtClass) {
 
-
-        //split into parts
-        String[] jwtParts = jwtString.split("\\.", -1);
-        if (jwtParts.length != 3 && jwtParts.length != 5) {
-            throw new InvalidJwtException("not right number of dots, " + jwtParts.length);
+        //locate the parts
+        CompactJwt jwtParts = new CompactJwt(jwtString.getBytes(StandardCharsets.US_ASCII));
+        if (jwtParts.numberOfParts != JWS_NUM_PARTS && jwtParts.numberOfParts != JWE_NUM_PARTS) {
+            throw new InvalidJwtException("not right number of dots, " + jwtParts.numberOfParts);
         }
 
         //first part always header
         //turn into json value
-        JsonValue headerJson = new JsonValue(Utils.parseJson(Utils.base64urlDecode(jwtParts[0])));
+        Map<String, Object> header = Utils.parseJson(jwtParts.decode(0));
+        JsonValue headerJson = new JsonValue(header);
         JwtType contentType = null;
         if (headerJson.isDefined(PAYLOAD_CONTENT_TYPE)) {
             contentType = JwtType.jwtType(headerJson.get(PAYLOAD_CONTENT_TYPE).asString());
@@ -87,21 +147,21 @@ public class JwtReconstruction {
         if (headerJson.isDefined(ENCRYPTION_METHOD)) {
             //is encrypted jwt
             verifyNumberOfParts(jwtParts, JWE_NUM_PARTS);
-            jwt = reconstructEncryptedJwt(jwtParts);
+            jwt = reconstructEncryptedJwt(jwtParts, header);
         } else if (JwtType.JWE == contentType || JwtType.JWT == contentType || JwtType.JWE == jwtType) {
             verifyNumberOfParts(jwtParts, JWS_NUM_PARTS);
-            jwt = reconstructSignedEncryptedJwt(jwtParts);
+            jwt = reconstructSignedEncryptedJwt(jwtParts, header);
         } else if (headerJson.isDefined(ALGORITHM)) {
             //is signed jwt
             verifyNumberOfParts(jwtParts, JWS_NUM_PARTS);
-            jwt = reconstructSignedJwt(jwtParts);
+            jwt = reconstructSignedJwt(jwtParts, header);
         } else {
             //plaintext jwt
             verifyNumberOfParts(jwtParts, JWS_NUM_PARTS);
-            if (!jwtParts[2].isEmpty()) {
+            if (!jwtParts.isEmpty(2)) {
                 throw new InvalidJwtException("Third part of Plaintext JWT not empty.");
             }
-            jwt = reconstructSignedJwt(jwtParts);
+            jwt = reconstructSignedJwt(jwtParts, header);
         }
 
         return jwtClass.cast(jwt);
@@ -114,10 +174,10 @@ public class JwtReconstruction {
      * @param required The required number of parts.
      * @throws JwtReconstructionException If the jwt does not consist of the correct number of parts.
      */
-    private void verifyNumberOfParts(String[] jwtParts, int required) {
-        if (jwtParts.length != required) {
+    private void verifyNumberOfParts(CompactJwt jwtParts, int required) {
+        if (jwtParts.numberOfParts != required) {
             throw new JwtReconstructionException("Not the correct number of JWT parts. Expecting, " + required
-                    + ", actually, " + jwtParts.length);
+                    + ", actually, " + jwtParts.numberOfParts);
         }
     }
 
@@ -128,50 +188,39 @@ public class JwtReconstruction {
      * as well as signed JWTs.
      *
      * @param jwtParts The three base64url UTF-8 encoded string parts of a plaintext or signed JWT.
+     * @param header The decoded header.
      * @return A SignedJwt object.
      */
-    private SignedJwt reconstructSignedJwt(String[] jwtParts) {
+    private SignedJwt reconstructSignedJwt(CompactJwt jwtParts, Map<String, Object> header) {
 
-        String encodedHeader = jwtParts[0];
-        String encodedClaimsSet = jwtParts[1];
-        String encodedSignature = jwtParts[2];
+        byte[] signature = jwtParts.decode(2);
 
-        String header = Utils.base64urlDecode(encodedHeader);
+        JwsHeader jwsHeader = new JwsHeader(header);
 
-        byte[] signature = Base64url.decode(encodedSignature);
+        byte[] payload = new CompressionManager().getCompressionHandler(jwsHeader.getCompressionAlgorithm())
+                .decompress(jwtParts.decode(1));
+        JwtClaimsSet claimsSet = JwtClaimsSet.parse(payload);
 
-        JwsHeader jwsHeader = new JwsHeader(Utils.parseJson(header));
-
-        byte[] payload = new CompressionManager().decompress(jwsHeader.getCompressionAlgorithm(), encodedClaimsSet);
-        JwtClaimsSet claimsSet = new JwtClaimsSet(Utils.parseJson(new String(payload, Utils.CHARSET)));
-
-        return new SignedJwt(jwsHeader, claimsSet, (encodedHeader + "." + encodedClaimsSet).getBytes(Utils.CHARSET),
-                signature);
+        return new SignedJwt(jwsHeader, claimsSet, jwtParts.signingInput(), signature);
     }
 
     /**
      * Reconstructs an encrypted JWT from the given JWT string parts.
      *
      * @param jwtParts The five base64url UTF-8 encoded string parts of an encrypted JWT.
+     * @param header The decoded header.
      * @return An EncryptedJwt object.
      */
-    private EncryptedJwt reconstructEncryptedJwt(String[] jwtParts) {
-
-        String encodedHeader = jwtParts[0];
-        String encodedEncryptedKey = jwtParts[1];
-        String encodedInitialisationVector = jwtParts[2];
-        String encodedCiphertext = jwtParts[3];
-        String encodedAuthenticationTag = jwtParts[4];
+    private EncryptedJwt reconstructEncryptedJwt(CompactJwt jwtParts, Map<String, Object> header) {
 
+        String encodedHeader = jwtParts.encoded(0);
+        byte[] encryptedContentEncryptionKey = jwtParts.decode(1);
+        byte[] initialisationVector = jwtParts.decode(2);
+        byte[] ciphertext = jwtParts.decode(3);
+        byte[] authenticationTag = jwtParts.decode(4);
 
-        String header = Utils.base64urlDecode(encodedHeader);
-        byte[] encryptedContentEncryptionKey = Base64url.decode(encodedEncryptedKey);
-        byte[] initialisationVector = Base64url.decode(encodedInitialisationVector);
-        byte[] ciphertext = Base64url.decode(encodedCiphertext);
-        byte[] authenticationTag = Base64url.decode(encodedAuthenticationTag);
 
-
-        JweHeader jweHeader = new JweHeader(Utils.parseJson(header));
+        JweHeader jweHeader = new JweHeader(header);
 
         if (jweHeader.getContentType() != null) {
             return new SignedThenEncryptedJwt(jweHeader, encodedHeader, encryptedContentEncryptionKey,
@@ -189,31 +238,25 @@ public class JwtReconstruction {
      * the reconstructed nested EncryptedJwt.
      *
      * @param jwtParts The three base64url UTF-8 encoded string parts of a signed JWT.
+     * @param header The decoded header.
      * @return A SignedEncryptedJwt object.
      */
-    private EncryptedThenSignedJwt reconstructSignedEncryptedJwt(String[] jwtParts) {
-
-        String encodedHeader = jwtParts[0];
-        String encodedPayload = jwtParts[1];
-        String encodedSignature = jwtParts[2];
-
+    private EncryptedThenSignedJwt reconstructSignedEncryptedJwt(CompactJwt jwtParts, Map<String, Object> header) {
 
-        String header = Utils.base64urlDecode(encodedHeader);
-        String payloadString = Utils.base64urlDecode(encodedPayload);
-        byte[] signature = Base64url.decode(encodedSignature);
+        byte[] signature = jwtParts.decode(2);
 
-        //split into parts
-        String[] encryptedJwtParts = payloadString.split("\\.", -1);
+        //the payload is the compact serialization of the nested JWE
+        CompactJwt encryptedJwtParts = new CompactJwt(jwtParts.decode(1));
         verifyNumberOfParts(encryptedJwtParts, JWE_NUM_PARTS);
-        EncryptedJwt encryptedJwt = reconstructEncryptedJwt(encryptedJwtParts);
+        EncryptedJwt encryptedJwt = reconstructEncryptedJwt(encryptedJwtParts,
+                Utils.parseJson(encryptedJwtParts.decode(0)));
 
         Map<String, Object> combinedHeader = new HashMap<>(encryptedJwt.getHeader().getParameters());
-        combinedHeader.putAll(Utils.parseJson(header));
+        combinedHeader.putAll(header);
 
         JwsHeader jwsHeader = new JwsHeader(combinedHeader);
 
         // This can be changed to return EncryptedThenSignedJwt once SignedEncryptedJwt is removed
-        return new SignedEncryptedJwt(jwsHeader, encryptedJwt,
-                (encodedHeader + "." + encodedPayload).getBytes(Utils.CHARSET), signature);
+        return new SignedEncryptedJwt(jwsHeader, encryptedJwt, jwtParts.signingInput(), signature);
     }
 }
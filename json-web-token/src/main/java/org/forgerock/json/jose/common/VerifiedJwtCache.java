@@ -0,0 +1,195 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.common;
+
+import static org.forgerock.util.Reject.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.jose.jwt.Jwt;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.util.Reject;
+import org.forgerock.util.crypto.Digests;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A bounded cache of JWTs which have already been reconstructed and verified, so that a JWT which is presented many
+ * times during its lifetime, such as a bearer token or an ID token, does not have to be decoded and have its
+ * signature checked each time.
+ * <p>
+ * Entries are keyed by a SHA-256 digest of the compact serialization of the JWT, so the cache does not retain the
+ * tokens themselves, together with an identity of the key that verified them. The key identity is any object with
+ * meaningful {@code equals} and {@code hashCode} methods, such as the verification {@code Key} or a list holding the
+ * issuer and the ID of the key, and a JWT is only returned to callers presenting the same key identity.
+ * <p>
+ * An entry expires at the expiration time of its JWT or once the maximum age of the cache has elapsed, whichever
+ * comes first. JWTs which have already expired or which are not yet valid are not cached. The least recently used
+ * entry is evicted when the cache is full.
+ * <p>
+ * A cached JWT is accepted until it expires, so callers which need to notice revocation of a JWT or of its signing
+ * key before then should either not use this cache or keep its maximum age short. The cached JWT instances are
+ * shared between callers and must not be modified.
+ */
+public final class VerifiedJwtCache {
+
+    private static final class CacheKey {
+        private final byte[] digest;
+        private final Object keyIdentity;
+        private final int hashCode;
+
+        private CacheKey(final byte[] digest, final Object keyIdentity) {
+            this.digest = digest;
+            this.keyIdentity = keyIdentity;
+            this.hashCode = Arrays.hashCode(digest) * 31 + keyIdentity.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof CacheKey) {
+                final CacheKey that = (CacheKey) obj;
+                return Arrays.equals(digest, that.digest) && keyIdentity.equals(that.keyIdentity);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class CacheEntry {
+        private final Jwt jwt;
+        private final long expiresAt;
+
+        private CacheEntry(final Jwt jwt, final long expiresAt) {
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long maxAgeMillis;
+    private final TimeService timeService;
+    private final Map<CacheKey, CacheEntry> cache;
+
+    /**
+     * Creates a new cache of verified JWTs.
+     *
+     * @param maxSize The maximum number of JWTs to cache, which must be positive.
+     * @param maxAge The maximum time for which a JWT is cached, which may be {@link Duration#UNLIMITED} in which case
+     *               JWTs are cached until they expire.
+     */
+    public VerifiedJwtCache(final int maxSize, final Duration maxAge) {
+        this(maxSize, maxAge, TimeService.SYSTEM);
+    }
+
+    VerifiedJwtCache(final int maxSize, final Duration maxAge, final TimeService timeService) {
+        Reject.ifTrue(maxSize <= 0, "The maximum cache size must be positive");
+        this.maxSize = maxSize;
+        this.maxAgeMillis = checkNotNull(maxAge).isUnlimited() ? Long.MAX_VALUE : maxAge.to(TimeUnit.MILLISECONDS);
+        this.timeService = checkNotNull(timeService);
+        this.cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<CacheKey, CacheEntry> eldest) {
+                return size() > VerifiedJwtCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the verified JWT previously cached for the given compact serialization and key identity.
+     *
+     * @param jwtString The compact serialization of the JWT.
+     * @param keyIdentity The identity of the key which must have verified the JWT.
+     * @param jwtClass The JWT class the cached JWT must be an instance of.
+     * @param <T> The type of JWT.
+     * @return The cached JWT, or {@code null} if there is no unexpired JWT of the required type in the cache.
+     */
+    public <T extends Jwt> T get(final String jwtString, final Object keyIdentity, final Class<T> jwtClass) {
+        final CacheKey key = new CacheKey(Digests.sha256(jwtString), checkNotNull(keyIdentity));
+        final CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+            if (entry != null && entry.expiresAt <= timeService.now()) {
+                cache.remove(key);
+                return null;
+            }
+        }
+        return entry != null && jwtClass.isInstance(entry.jwt) ? jwtClass.cast(entry.jwt) : null;
+    }
+
+    /**
+     * Caches a JWT which has been reconstructed from the given compact serialization and then verified, and
+     * decrypted if needed, by the caller.
+     *
+     * @param jwtString The compact serialization of the JWT.
+     * @param keyIdentity The identity of the key which verified the JWT.
+     * @param verifiedJwt The verified JWT.
+     */
+    public void put(final String jwtString, final Object keyIdentity, final Jwt verifiedJwt) {
+        final long now = timeService.now();
+        long expiresAt = maxAgeMillis == Long.MAX_VALUE ? Long.MAX_VALUE : now + maxAgeMillis;
+        final JwtClaimsSet claimsSet = verifiedJwt.getClaimsSet();
+        if (claimsSet != null) {
+            final Date notBeforeTime = claimsSet.getNotBeforeTime();
+            if (notBeforeTime != null && notBeforeTime.getTime() > now) {
+                return;
+            }
+            final Date expirationTime = claimsSet.getExpirationTime();
+            if (expirationTime != null) {
+                expiresAt = Math.min(expiresAt, expirationTime.getTime());
+            }
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        final CacheKey key = new CacheKey(Digests.sha256(jwtString), checkNotNull(keyIdentity));
+        synchronized (cache) {
+            cache.put(key, new CacheEntry(verifiedJwt, expiresAt));
+        }
+    }
+
+    /**
+     * Removes all the JWTs from the cache, for example after a verification key has been revoked.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of JWTs in the cache, including any which have expired but have not been removed yet.
+     *
+     * @return The number of cached JWTs.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
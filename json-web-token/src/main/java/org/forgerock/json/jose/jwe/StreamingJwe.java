@@ -0,0 +1,360 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+
+package org.forgerock.json.jose.jwe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.Key;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
+import java.util.zip.ZipException;
+
+import org.forgerock.json.jose.exceptions.InvalidJwtException;
+import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweEncryptionException;
+import org.forgerock.json.jose.exceptions.JweException;
+import org.forgerock.json.jose.jwe.handlers.encryption.EncryptionHandler;
+import org.forgerock.json.jose.jwe.handlers.encryption.StreamingEncryptionHandler;
+import org.forgerock.json.jose.utils.Utils;
+import org.forgerock.util.encode.Base64Codec;
+import org.forgerock.util.encode.Base64url;
+
+/**
+ * Encrypts and decrypts JWEs in compact serialization from and to streams, so that large payloads, such as files,
+ * do not have to be held in memory as strings.
+ * <p>
+ * Unlike {@link EncryptedJwt}, which holds the whole payload in memory, the payload is compressed, encrypted and
+ * Base64url encoded as it is read, and decoded, decrypted and decompressed as it is written. The JWEs are ordinary
+ * compact JWEs, which can be read by {@link EncryptedJwt}, and the payload does not have to be a JWT claims set.
+ * <p>
+ * Encryption and CBC-HMAC decryption use constant memory. AES-GCM decryption does not: the SunJCE provider buffers
+ * the whole ciphertext until the authentication tag has been checked.
+ * <p>
+ * The plaintext written out while decrypting must not be trusted, and should be discarded, if decryption fails: with
+ * CBC-HMAC, it is written before the authentication tag has been checked. For the same reason, compressed JWEs using
+ * CBC-HMAC cannot be decrypted by streaming, since the payload would be decompressed before being authenticated.
+ */
+public class StreamingJwe {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingJwe.class.getName());
+
+    /** The size of the buffers used to copy the streams. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The maximum length of the encoded header, encrypted key and initialisation vector. */
+    private static final int MAX_SEGMENT_LENGTH = 65536;
+
+    private final EncryptionManager encryptionManager = new EncryptionManager();
+
+    /**
+     * Encrypts the given plaintext and writes it as a compact JWE.
+     *
+     * @param header The JWE header, which must use an algorithm and encryption method supporting streaming.
+     * @param key The key to encrypt the content encryption key with, or the content encryption key itself for direct
+     *            encryption.
+     * @param plaintext The plaintext to encrypt, which is read to the end but not closed.
+     * @param jwe The stream to write the compact JWE to, which is not closed.
+     * @throws IOException If the plaintext cannot be read or the JWE cannot be written.
+     * @throws JweEncryptionException If the plaintext cannot be encrypted.
+     */
+    public void encrypt(JweHeader header, Key key, InputStream plaintext, OutputStream jwe) throws IOException {
+        StreamingEncryptionHandler encryptionHandler = getEncryptionHandler(header);
+
+        Key contentEncryptionKey = encryptionHandler.getContentEncryptionKey();
+        if (contentEncryptionKey == null) {
+            contentEncryptionKey = key;
+        }
+        byte[] encryptedContentEncryptionKey = encryptionHandler.generateJWEEncryptedKey(key, contentEncryptionKey);
+        byte[] initialisationVector = encryptionHandler.generateInitialisationVector();
+        String encodedJweHeader = Utils.base64urlEncode(header.build());
+        byte[] additionalAuthenticatedData = encodedJweHeader.getBytes(Utils.CHARSET);
+
+        String prefix = new StringBuilder(encodedJweHeader)
+                .append(".").append(Base64url.encode(encryptedContentEncryptionKey))
+                .append(".").append(Base64url.encode(initialisationVector))
+                .append(".")
+                .toString();
+        jwe.write(prefix.getBytes(Utils.CHARSET));
+
+        EncryptingOutputStream ciphertext = new EncryptingOutputStream(
+                encryptionHandler.newContentEncryptor(contentEncryptionKey, initialisationVector,
+                        additionalAuthenticatedData),
+                Base64Codec.BASE64URL.newEncodingStream(new NonClosingOutputStream(jwe)));
+        Deflater deflater = null;
+        try {
+            OutputStream content = ciphertext;
+            if (header.getCompressionAlgorithm() == CompressionAlgorithm.DEF) {
+                deflater = new Deflater(Deflater.DEFLATED, true);
+                content = new DeflaterOutputStream(ciphertext, deflater, BUFFER_SIZE);
+            }
+            copy(plaintext, content);
+            content.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        jwe.write('.');
+        jwe.write(Base64url.encode(ciphertext.authenticationTag).getBytes(Utils.CHARSET));
+        jwe.flush();
+    }
+
+    /**
+     * Decrypts the given compact JWE and writes out its plaintext.
+     *
+     * @param jwe The compact JWE to decrypt, which is read to the end but not closed.
+     * @param key The key to decrypt the content encryption key with, or the content encryption key itself for direct
+     *            encryption.
+     * @param plaintext The stream to write the plaintext to, which is not closed. If an exception is thrown, the
+     *                  plaintext written so far must be discarded.
+     * @return The JWE header.
+     * @throws IOException If the JWE cannot be read or the plaintext cannot be written.
+     * @throws InvalidJwtException If the JWE is not a valid compact JWE.
+     * @throws JweException If the JWE is compressed and uses a CBC-HMAC encryption method.
+     * @throws JweDecryptionException If the JWE cannot be decrypted, or if it has been tampered with.
+     */
+    public JweHeader decrypt(InputStream jwe, Key key, OutputStream plaintext) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(jwe, BUFFER_SIZE);
+
+        String encodedJweHeader = new String(readSegment(in, true), Utils.CHARSET);
+        JweHeader header = new JweHeader(Utils.parseJson(decode(encodedJweHeader.getBytes(Utils.CHARSET))));
+        StreamingEncryptionHandler encryptionHandler = getEncryptionHandler(header);
+        boolean compressed = header.getCompressionAlgorithm() == CompressionAlgorithm.DEF;
+        if (compressed && header.getEncryptionMethod().getMacAlgorithm() != null) {
+            // The unauthenticated plaintext would be fed to the inflater, which could be made to expand it without
+            // bounds, or to fail differently from the MAC check.
+            throw new JweException("Compressed JWEs using " + header.getEncryptionMethod()
+                    + " cannot be decrypted by streaming");
+        }
+        byte[] encryptedContentEncryptionKey = decode(readSegment(in, true));
+        byte[] initialisationVector = decode(readSegment(in, true));
+
+        Key contentEncryptionKey = encryptionHandler.decryptContentEncryptionKey(key,
+                encryptedContentEncryptionKey);
+        byte[] additionalAuthenticatedData = encodedJweHeader.getBytes(Utils.CHARSET);
+
+        OutputStream content = new NonClosingOutputStream(plaintext);
+        Inflater inflater = null;
+        try {
+            if (compressed) {
+                inflater = new Inflater(true);
+                content = new InflaterOutputStream(content, inflater, BUFFER_SIZE);
+            }
+            DecryptingOutputStream decrypting = new DecryptingOutputStream(
+                    encryptionHandler.newContentDecryptor(contentEncryptionKey, initialisationVector,
+                            additionalAuthenticatedData),
+                    content);
+            SegmentInputStream ciphertext = new SegmentInputStream(in);
+            copy(Base64Codec.BASE64URL.newDecodingStream(ciphertext), decrypting);
+            if (!ciphertext.endsWithDot) {
+                throw new InvalidJwtException("JWE has no authentication tag");
+            }
+            decrypting.authenticationTag = decode(readSegment(in, false));
+            decrypting.close();
+        } catch (ZipException e) {
+            // Only raised by the inflater: report it like any other decryption failure.
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Decryption failed: " + e, e);
+            }
+            throw new JweDecryptionException();
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+        return header;
+    }
+
+    private StreamingEncryptionHandler getEncryptionHandler(JweHeader header) {
+        EncryptionHandler encryptionHandler = encryptionManager.getEncryptionHandler(header);
+        if (!(encryptionHandler instanceof StreamingEncryptionHandler)) {
+            throw new JweEncryptionException("Streaming is not supported by the JWE algorithm "
+                    + header.getAlgorithm());
+        }
+        return (StreamingEncryptionHandler) encryptionHandler;
+    }
+
+    /**
+     * Reads the next part of a compact JWE, which must end with a dot unless it is the last part.
+     */
+    private static byte[] readSegment(PushbackInputStream in, boolean endsWithDot) throws IOException {
+        SegmentInputStream segment = new SegmentInputStream(in);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = segment.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, n);
+            if (bytes.size() > MAX_SEGMENT_LENGTH) {
+                throw new InvalidJwtException("JWE header, key or initialisation vector too long");
+            }
+        }
+        if (segment.endsWithDot != endsWithDot) {
+            throw new InvalidJwtException("Invalid number of parts in the compact JWE");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decode(byte[] encoded) {
+        byte[] decoded = Base64Codec.BASE64URL.decode(encoded);
+        if (decoded == null) {
+            throw new InvalidJwtException("Invalid Base64url encoding in the compact JWE");
+        }
+        return decoded;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    /** Reads one part of a compact JWE, up to the next dot, which is consumed, or the end of the stream. */
+    private static final class SegmentInputStream extends FilterInputStream {
+        private boolean ended;
+        private boolean endsWithDot;
+
+        private SegmentInputStream(PushbackInputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            int n = in.read(b, off, Math.min(len, BUFFER_SIZE));
+            if (n < 0) {
+                ended = true;
+                return -1;
+            }
+            for (int i = off; i < off + n; i++) {
+                if (b[i] == '.') {
+                    // Leave the rest for the next part.
+                    ((PushbackInputStream) in).unread(b, i + 1, off + n - i - 1);
+                    ended = true;
+                    endsWithDot = true;
+                    return i == off ? -1 : i - off;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("Skip not supported");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /** Encrypts the content written to it, keeping the authentication tag once it is closed. */
+    private static final class EncryptingOutputStream extends FilterOutputStream {
+        private final StreamingEncryptionHandler.ContentEncryptor encryptor;
+        private byte[] authenticationTag;
+
+        private EncryptingOutputStream(StreamingEncryptionHandler.ContentEncryptor encryptor, OutputStream out) {
+            super(out);
+            this.encryptor = encryptor;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(encryptor.update(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (authenticationTag == null) {
+                JweEncryption last = encryptor.doFinal();
+                authenticationTag = last.getAuthenticationTag();
+                out.write(last.getCiphertext());
+                out.close();
+            }
+        }
+    }
+
+    /** Decrypts the content written to it, checking the authentication tag once it is closed. */
+    private static final class DecryptingOutputStream extends FilterOutputStream {
+        private final StreamingEncryptionHandler.ContentDecryptor decryptor;
+        private byte[] authenticationTag;
+
+        private DecryptingOutputStream(StreamingEncryptionHandler.ContentDecryptor decryptor, OutputStream out) {
+            super(out);
+            this.decryptor = decryptor;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(decryptor.update(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write(decryptor.doFinal(authenticationTag));
+            out.close();
+        }
+    }
+
+    /** Flushes rather than closes the stream it writes to. */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        private NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
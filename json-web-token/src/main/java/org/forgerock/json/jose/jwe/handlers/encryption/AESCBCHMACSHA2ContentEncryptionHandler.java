@@ -57,14 +57,14 @@ final class AESCBCHMACSHA2ContentEncryptionHandler extends ContentEncryptionHand
         final Key encryptionKey = encKey(key, method);
 
         try {
-            final Cipher cipher = Cipher.getInstance(method.getTransformation());
+            final Cipher cipher = CIPHERS.get(method.getTransformation());
             cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new IvParameterSpec(iv));
             final byte[] cipherText = cipher.doFinal(plainText);
 
             long alLength = additionalData.length * 8L;
             byte[] al = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN).putLong(alLength).array();
 
-            final Mac mac = Mac.getInstance(method.getMacAlgorithm());
+            final Mac mac = MACS.get(method.getMacAlgorithm());
             mac.init(macKey);
             mac.update(additionalData);
             mac.update(iv);
@@ -88,7 +88,7 @@ final class AESCBCHMACSHA2ContentEncryptionHandler extends ContentEncryptionHand
         byte[] al = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN).putLong(alLength).array();
 
         try {
-            final Mac mac = Mac.getInstance(method.getMacAlgorithm());
+            final Mac mac = MACS.get(method.getMacAlgorithm());
             mac.init(macKey);
             mac.update(additionalData);
             mac.update(iv);
@@ -99,7 +99,7 @@ final class AESCBCHMACSHA2ContentEncryptionHandler extends ContentEncryptionHand
 
             final boolean macValid = Utils.constantEquals(tag, cipherText.getAuthenticationTag());
 
-            final Cipher cipher = Cipher.getInstance(method.getTransformation());
+            final Cipher cipher = CIPHERS.get(method.getTransformation());
             cipher.init(Cipher.DECRYPT_MODE, encKey, new IvParameterSpec(iv));
             final byte[] plainText = cipher.doFinal(cipherText.getCiphertext());
 
@@ -117,6 +117,91 @@ final class AESCBCHMACSHA2ContentEncryptionHandler extends ContentEncryptionHand
         }
     }
 
+    @Override
+    StreamingEncryptionHandler.ContentEncryptor encryptor(final Key key, final byte[] iv,
+            final byte[] additionalData) {
+        try {
+            final Cipher cipher = Cipher.getInstance(method.getTransformation());
+            cipher.init(Cipher.ENCRYPT_MODE, encKey(key, method), new IvParameterSpec(iv));
+            final Mac mac = Mac.getInstance(method.getMacAlgorithm());
+            mac.init(macKey(key, method));
+            mac.update(additionalData);
+            mac.update(iv);
+            return new StreamingEncryptionHandler.ContentEncryptor() {
+                @Override
+                public byte[] update(final byte[] plaintext, final int offset, final int length) {
+                    final byte[] cipherText = nonNull(cipher.update(plaintext, offset, length));
+                    mac.update(cipherText);
+                    return cipherText;
+                }
+
+                @Override
+                public JweEncryption doFinal() {
+                    try {
+                        final byte[] cipherText = cipher.doFinal();
+                        mac.update(cipherText);
+                        mac.update(additionalDataLength(additionalData));
+                        return new JweEncryption(cipherText, Arrays.copyOf(mac.doFinal(), method.getKeyOffset()));
+                    } catch (GeneralSecurityException e) {
+                        throw new JweEncryptionException(e);
+                    }
+                }
+            };
+        } catch (GeneralSecurityException e) {
+            throw new JweEncryptionException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The plaintext is returned as the ciphertext is decrypted, before the MAC has been checked: it must not be
+     * trusted until the decryption has been completed.
+     */
+    @Override
+    StreamingEncryptionHandler.ContentDecryptor decryptor(final Key key, final byte[] iv,
+            final byte[] additionalData) {
+        try {
+            final Cipher cipher = Cipher.getInstance(method.getTransformation());
+            cipher.init(Cipher.DECRYPT_MODE, encKey(key, method), new IvParameterSpec(iv));
+            final Mac mac = Mac.getInstance(method.getMacAlgorithm());
+            mac.init(macKey(key, method));
+            mac.update(additionalData);
+            mac.update(iv);
+            return new StreamingEncryptionHandler.ContentDecryptor() {
+                @Override
+                public byte[] update(final byte[] cipherText, final int offset, final int length) {
+                    mac.update(cipherText, offset, length);
+                    return nonNull(cipher.update(cipherText, offset, length));
+                }
+
+                @Override
+                public byte[] doFinal(final byte[] authenticationTag) {
+                    try {
+                        mac.update(additionalDataLength(additionalData));
+                        final byte[] tag = Arrays.copyOf(mac.doFinal(), method.getKeyOffset());
+                        final boolean macValid = Utils.constantEquals(tag, authenticationTag);
+                        final byte[] plainText = cipher.doFinal();
+                        if (!macValid) {
+                            throw new GeneralSecurityException("MAC verification failed");
+                        }
+                        return plainText;
+                    } catch (GeneralSecurityException ex) {
+                        if (LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.log(Level.FINE, "Decryption failed: " + ex, ex);
+                        }
+                        throw new JweDecryptionException();
+                    }
+                }
+            };
+        } catch (GeneralSecurityException ex) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Decryption failed: " + ex, ex);
+            }
+            throw new JweDecryptionException();
+        }
+    }
+
     @Override
     Key generateEncryptionKey() {
         // We need to generate a CEK sufficiently large to supply the key for the AES block cipher and the HMAC. As
@@ -158,6 +243,11 @@ final class AESCBCHMACSHA2ContentEncryptionHandler extends ContentEncryptionHand
 
     }
 
+    /** Returns the AL value of the MAC input: the length of the additional data in bits, as a 64-bit integer. */
+    private static byte[] additionalDataLength(final byte[] additionalData) {
+        return ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN).putLong(additionalData.length * 8L).array();
+    }
+
     private static SecretKey macKey(final Key combinedKey, final EncryptionMethod method) {
         return new SecretKeySpec(combinedKey.getEncoded(), 0, method.getKeyOffset(), method.getMacAlgorithm());
     }
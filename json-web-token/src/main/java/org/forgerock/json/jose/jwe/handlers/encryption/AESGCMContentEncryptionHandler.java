@@ -52,7 +52,7 @@ final class AESGCMContentEncryptionHandler extends ContentEncryptionHandler {
     @Override
     JweEncryption encrypt(final Key key, final byte[] iv, final byte[] plainText, final byte[] additionalData) {
         try {
-            final Cipher cipher = Cipher.getInstance(encryptionMethod.getTransformation());
+            final Cipher cipher = CIPHERS.get(encryptionMethod.getTransformation());
             cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
             cipher.updateAAD(additionalData);
             final byte[] cipherText = cipher.doFinal(plainText);
@@ -68,7 +68,7 @@ final class AESGCMContentEncryptionHandler extends ContentEncryptionHandler {
     @Override
     byte[] decrypt(final Key key, final byte[] iv, final JweEncryption cipherText, final byte[] additionalData) {
         try {
-            final Cipher cipher = Cipher.getInstance(encryptionMethod.getTransformation());
+            final Cipher cipher = CIPHERS.get(encryptionMethod.getTransformation());
             cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
             cipher.updateAAD(additionalData);
             cipher.update(cipherText.getCiphertext());
@@ -81,6 +81,76 @@ final class AESGCMContentEncryptionHandler extends ContentEncryptionHandler {
         }
     }
 
+    @Override
+    StreamingEncryptionHandler.ContentEncryptor encryptor(final Key key, final byte[] iv,
+            final byte[] additionalData) {
+        try {
+            final Cipher cipher = Cipher.getInstance(encryptionMethod.getTransformation());
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            cipher.updateAAD(additionalData);
+            return new StreamingEncryptionHandler.ContentEncryptor() {
+                @Override
+                public byte[] update(final byte[] plaintext, final int offset, final int length) {
+                    return nonNull(cipher.update(plaintext, offset, length));
+                }
+
+                @Override
+                public JweEncryption doFinal() {
+                    try {
+                        // The tag is appended to the last part of the ciphertext.
+                        final byte[] cipherText = cipher.doFinal();
+                        final int tagStart = cipherText.length - TAG_LENGTH / 8;
+                        return new JweEncryption(Arrays.copyOfRange(cipherText, 0, tagStart),
+                                Arrays.copyOfRange(cipherText, tagStart, cipherText.length));
+                    } catch (GeneralSecurityException ex) {
+                        throw new JweEncryptionException(ex);
+                    }
+                }
+            };
+        } catch (GeneralSecurityException ex) {
+            throw new JweEncryptionException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The SunJCE provider only releases the plaintext once the whole ciphertext has been authenticated, so GCM
+     * decryption buffers the ciphertext internally, unlike CBC-HMAC decryption.
+     */
+    @Override
+    StreamingEncryptionHandler.ContentDecryptor decryptor(final Key key, final byte[] iv,
+            final byte[] additionalData) {
+        try {
+            final Cipher cipher = Cipher.getInstance(encryptionMethod.getTransformation());
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            cipher.updateAAD(additionalData);
+            return new StreamingEncryptionHandler.ContentDecryptor() {
+                @Override
+                public byte[] update(final byte[] ciphertext, final int offset, final int length) {
+                    return nonNull(cipher.update(ciphertext, offset, length));
+                }
+
+                @Override
+                public byte[] doFinal(final byte[] authenticationTag) {
+                    try {
+                        return cipher.doFinal(authenticationTag);
+                    } catch (GeneralSecurityException ex) {
+                        if (LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.log(Level.FINE, "Decryption failed: " + ex, ex);
+                        }
+                        throw new JweDecryptionException();
+                    }
+                }
+            };
+        } catch (GeneralSecurityException ex) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Decryption failed: " + ex, ex);
+            }
+            throw new JweDecryptionException();
+        }
+    }
+
     @Override
     Key generateEncryptionKey() {
         try {
@@ -29,7 +29,7 @@ import org.forgerock.json.jose.jwe.JweEncryption;
 /**
  * Provides JWE key encapsulation using the AES KeyWrap algorithm.
  */
-public final class AESKeyWrapEncryptionHandler implements EncryptionHandler {
+public final class AESKeyWrapEncryptionHandler implements StreamingEncryptionHandler {
     private final ContentEncryptionHandler contentEncryptionHandler;
     private final EncryptionMethod encryptionMethod;
 
@@ -51,7 +51,7 @@ public final class AESKeyWrapEncryptionHandler implements EncryptionHandler {
     @Override
     public byte[] generateJWEEncryptedKey(final Key key, final Key contentEncryptionKey) {
         try {
-            final Cipher cipher = Cipher.getInstance("AESWrap");
+            final Cipher cipher = ContentEncryptionHandler.CIPHERS.get("AESWrap");
             cipher.init(Cipher.WRAP_MODE, key);
             return cipher.wrap(contentEncryptionKey);
         } catch (GeneralSecurityException e) {
@@ -75,7 +75,7 @@ public final class AESKeyWrapEncryptionHandler implements EncryptionHandler {
     @Override
     public Key decryptContentEncryptionKey(final Key key, final byte[] encryptedContentEncryptionKey) {
         try {
-            final Cipher cipher = Cipher.getInstance("AESWrap");
+            final Cipher cipher = ContentEncryptionHandler.CIPHERS.get("AESWrap");
             cipher.init(Cipher.UNWRAP_MODE, key);
             return cipher.unwrap(encryptedContentEncryptionKey, encryptionMethod.getEncryptionAlgorithm(),
                     Cipher.SECRET_KEY);
@@ -91,4 +91,18 @@ public final class AESKeyWrapEncryptionHandler implements EncryptionHandler {
         return contentEncryptionHandler.decrypt(contentEncryptionKey, initialisationVector,
                 new JweEncryption(ciphertext, authenticationTag), additionalAuthenticatedData);
     }
+
+    @Override
+    public ContentEncryptor newContentEncryptor(final Key contentEncryptionKey, final byte[] initialisationVector,
+            final byte[] additionalAuthenticatedData) {
+        return contentEncryptionHandler.encryptor(contentEncryptionKey, initialisationVector,
+                additionalAuthenticatedData);
+    }
+
+    @Override
+    public ContentDecryptor newContentDecryptor(final Key contentEncryptionKey, final byte[] initialisationVector,
+            final byte[] additionalAuthenticatedData) {
+        return contentEncryptionHandler.decryptor(contentEncryptionKey, initialisationVector,
+                additionalAuthenticatedData);
+    }
 }
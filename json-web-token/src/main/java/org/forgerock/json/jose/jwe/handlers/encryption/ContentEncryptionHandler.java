@@ -16,13 +16,18 @@
 
 package org.forgerock.json.jose.jwe.handlers.encryption;
 
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
 import org.forgerock.json.jose.exceptions.JweEncryptionException;
 import org.forgerock.json.jose.jwe.EncryptionMethod;
 import org.forgerock.json.jose.jwe.JweEncryption;
+import org.forgerock.json.jose.utils.ThreadLocalPrimitives;
 import org.forgerock.util.Reject;
 
 /**
@@ -31,6 +36,28 @@ import org.forgerock.util.Reject;
 abstract class ContentEncryptionHandler {
     private static final String INITIALISATION_VECTOR_ALGORITHM = "SHA1PRNG";
 
+    /**
+     * Ciphers cached by transformation. Content encryption keys and IVs change with every message, so each cipher
+     * must be initialised before use, which fully resets it.
+     */
+    static final ThreadLocalPrimitives<Cipher> CIPHERS = new ThreadLocalPrimitives<Cipher>() {
+        @Override
+        protected Cipher newInstance(final String transformation) throws GeneralSecurityException {
+            return Cipher.getInstance(transformation);
+        }
+    };
+
+    /** MACs cached by algorithm. As for {@link #CIPHERS}, each MAC must be initialised before use. */
+    static final ThreadLocalPrimitives<Mac> MACS = new ThreadLocalPrimitives<Mac>() {
+        @Override
+        protected Mac newInstance(final String algorithm) throws GeneralSecurityException {
+            return Mac.getInstance(algorithm);
+        }
+    };
+
+    /** Lazily created because the PRNG is expensive to seed. {@code SecureRandom} is thread safe. */
+    private static volatile SecureRandom initialisationVectorGenerator;
+
     /**
      * Returns an appropriate content encryption handler for the given encryption method.
      *
@@ -57,22 +84,48 @@ abstract class ContentEncryptionHandler {
 
     abstract byte[] decrypt(Key key, byte[] iv, JweEncryption cipherText, byte[] additionalData);
 
+    /**
+     * Creates an incremental encryptor. Unlike {@link #encrypt}, which completes on the calling thread, the cipher
+     * is used across calls, so it must not be one of the thread local {@link #CIPHERS}.
+     */
+    abstract StreamingEncryptionHandler.ContentEncryptor encryptor(Key key, byte[] iv, byte[] additionalData);
+
+    /** Creates an incremental decryptor. As for {@link #encryptor}, it must not use the thread local ciphers. */
+    abstract StreamingEncryptionHandler.ContentDecryptor decryptor(Key key, byte[] iv, byte[] additionalData);
+
     abstract Key generateEncryptionKey();
 
     byte[] generateInitialisationVector() {
-        try {
-            final int ivByteLength = getIVByteLength();
-            SecureRandom randomGen = SecureRandom.getInstance(INITIALISATION_VECTOR_ALGORITHM);
-
-            byte[] bytes = new byte[ivByteLength];
-            randomGen.nextBytes(bytes);
-            return bytes;
-        } catch (NoSuchAlgorithmException e) {
-            throw new JweEncryptionException("Unsupported Algorithm, " + INITIALISATION_VECTOR_ALGORITHM, e);
+        final byte[] bytes = new byte[getIVByteLength()];
+        getInitialisationVectorGenerator().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static SecureRandom getInitialisationVectorGenerator() {
+        SecureRandom randomGen = initialisationVectorGenerator;
+        if (randomGen == null) {
+            synchronized (ContentEncryptionHandler.class) {
+                randomGen = initialisationVectorGenerator;
+                if (randomGen == null) {
+                    try {
+                        randomGen = SecureRandom.getInstance(INITIALISATION_VECTOR_ALGORITHM);
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new JweEncryptionException("Unsupported Algorithm, " + INITIALISATION_VECTOR_ALGORITHM,
+                                e);
+                    }
+                    initialisationVectorGenerator = randomGen;
+                }
+            }
         }
+        return randomGen;
     }
 
     int getIVByteLength() {
         return 128 / 8;
     }
+
+    /** Returns the given bytes, or an empty array if they are {@code null}, as returned by {@link Cipher#update}. */
+    static byte[] nonNull(final byte[] bytes) {
+        return bytes != null ? bytes : new byte[0];
+    }
 }
@@ -26,7 +26,7 @@ import org.forgerock.util.annotations.VisibleForTesting;
 /**
  * Supports direct encryption using a shared symmetric key.
  */
-public final class DirectEncryptionHandler implements EncryptionHandler {
+public final class DirectEncryptionHandler implements StreamingEncryptionHandler {
     private final ContentEncryptionHandler contentEncryptionHandler;
 
     /**
@@ -82,4 +82,18 @@ public final class DirectEncryptionHandler implements EncryptionHandler {
         return contentEncryptionHandler.decrypt(contentEncryptionKey, initialisationVector,
                 new JweEncryption(ciphertext, authenticationTag), additionalAuthenticatedData);
     }
+
+    @Override
+    public ContentEncryptor newContentEncryptor(final Key contentEncryptionKey, final byte[] initialisationVector,
+            final byte[] additionalAuthenticatedData) {
+        return contentEncryptionHandler.encryptor(contentEncryptionKey, initialisationVector,
+                additionalAuthenticatedData);
+    }
+
+    @Override
+    public ContentDecryptor newContentDecryptor(final Key contentEncryptionKey, final byte[] initialisationVector,
+            final byte[] additionalAuthenticatedData) {
+        return contentEncryptionHandler.decryptor(contentEncryptionKey, initialisationVector,
+                additionalAuthenticatedData);
+    }
 }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jwe.handlers.encryption;
@@ -37,7 +37,7 @@ import org.forgerock.util.Reject;
  *
  * @see <a href="https://tools.ietf.org/html/rfc7518#section-4.2">RFC 7518 Section 4.2 and 4.3</a>
  */
-public final class RSAEncryptionHandler implements EncryptionHandler {
+public final class RSAEncryptionHandler implements StreamingEncryptionHandler {
     private final EncryptionMethod encryptionMethod;
     private final ContentEncryptionHandler contentEncryptionHandler;
     private final JweAlgorithm jweAlgorithm;
@@ -122,7 +122,7 @@ public final class RSAEncryptionHandler implements EncryptionHandler {
     @Override
     public Key decryptContentEncryptionKey(Key key, byte[] encryptedContentEncryptionKey) {
         try {
-            final Cipher cipher = Cipher.getInstance(jweAlgorithm.getAlgorithm());
+            final Cipher cipher = ContentEncryptionHandler.CIPHERS.get(jweAlgorithm.getAlgorithm());
             cipher.init(Cipher.UNWRAP_MODE, key);
             return cipher.unwrap(encryptedContentEncryptionKey, encryptionMethod.getEncryptionAlgorithm(),
                     Cipher.SECRET_KEY);
@@ -141,9 +141,23 @@ public final class RSAEncryptionHandler implements EncryptionHandler {
                 new JweEncryption(ciphertext, authenticationTag), additionalAuthenticatedData);
     }
 
+    @Override
+    public ContentEncryptor newContentEncryptor(final Key contentEncryptionKey, final byte[] initialisationVector,
+            final byte[] additionalAuthenticatedData) {
+        return contentEncryptionHandler.encryptor(contentEncryptionKey, initialisationVector,
+                additionalAuthenticatedData);
+    }
+
+    @Override
+    public ContentDecryptor newContentDecryptor(final Key contentEncryptionKey, final byte[] initialisationVector,
+            final byte[] additionalAuthenticatedData) {
+        return contentEncryptionHandler.decryptor(contentEncryptionKey, initialisationVector,
+                additionalAuthenticatedData);
+    }
+
     private byte[] encryptKey(final RSAPublicKey keyEncryptionKey, final Key contentKey) {
         try {
-            final Cipher cipher = Cipher.getInstance(jweAlgorithm.getAlgorithm());
+            final Cipher cipher = ContentEncryptionHandler.CIPHERS.get(jweAlgorithm.getAlgorithm());
             cipher.init(Cipher.WRAP_MODE, keyEncryptionKey);
             return cipher.wrap(contentKey);
         } catch (GeneralSecurityException e) {
@@ -0,0 +1,107 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwe.handlers.encryption;
+
+import java.security.Key;
+
+import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweEncryptionException;
+import org.forgerock.json.jose.jwe.JweEncryption;
+
+/**
+ * An {@link EncryptionHandler} which can also encrypt and decrypt content incrementally, so that large payloads do not
+ * have to be passed as a single array. Whether the memory used is constant depends on the encryption method and the
+ * provider: the SunJCE provider buffers the whole ciphertext when decrypting AES-GCM.
+ */
+public interface StreamingEncryptionHandler extends EncryptionHandler {
+
+    /**
+     * Incrementally encrypts the content of a JWE. Encryptors are not thread-safe and cannot be reused.
+     */
+    interface ContentEncryptor {
+        /**
+         * Encrypts the next part of the plaintext.
+         *
+         * @param plaintext The buffer holding the plaintext.
+         * @param offset The offset of the plaintext in the buffer.
+         * @param length The length of the plaintext.
+         * @return The next part of the ciphertext, which may be empty.
+         * @throws JweEncryptionException If the plaintext cannot be encrypted.
+         */
+        byte[] update(byte[] plaintext, int offset, int length);
+
+        /**
+         * Completes the encryption.
+         *
+         * @return The last part of the ciphertext, which may be empty, and the authentication tag.
+         * @throws JweEncryptionException If the plaintext cannot be encrypted.
+         */
+        JweEncryption doFinal();
+    }
+
+    /**
+     * Incrementally decrypts the content of a JWE. Decryptors are not thread-safe and cannot be reused.
+     * <p>
+     * Depending on the encryption method and the provider, decryptors may return plaintext before the authentication
+     * tag has been checked: it must not be trusted until {@link #doFinal(byte[])} has returned.
+     */
+    interface ContentDecryptor {
+        /**
+         * Decrypts the next part of the ciphertext.
+         *
+         * @param ciphertext The buffer holding the ciphertext.
+         * @param offset The offset of the ciphertext in the buffer.
+         * @param length The length of the ciphertext.
+         * @return The next part of the plaintext, which may be empty.
+         * @throws JweDecryptionException If the ciphertext cannot be decrypted.
+         */
+        byte[] update(byte[] ciphertext, int offset, int length);
+
+        /**
+         * Completes the decryption and checks the authentication tag.
+         *
+         * @param authenticationTag The authentication tag.
+         * @return The last part of the plaintext, which may be empty.
+         * @throws JweDecryptionException If the ciphertext cannot be decrypted or the authentication tag is invalid.
+         */
+        byte[] doFinal(byte[] authenticationTag);
+    }
+
+    /**
+     * Creates an encryptor for the content of a JWE.
+     *
+     * @param contentEncryptionKey The Content Encryption Key.
+     * @param initialisationVector The Initialisation Vector.
+     * @param additionalAuthenticatedData An array of bytes representing the additional authenticated data.
+     * @return The content encryptor.
+     * @see #encryptPlaintext(Key, byte[], byte[], byte[])
+     */
+    ContentEncryptor newContentEncryptor(Key contentEncryptionKey, byte[] initialisationVector,
+            byte[] additionalAuthenticatedData);
+
+    /**
+     * Creates a decryptor for the content of a JWE.
+     *
+     * @param contentEncryptionKey The Content Encryption Key.
+     * @param initialisationVector The Initialisation Vector.
+     * @param additionalAuthenticatedData An array of bytes representing the additional authenticated data.
+     * @return The content decryptor.
+     * @see #decryptCiphertext(Key, byte[], byte[], byte[], byte[])
+     */
+    ContentDecryptor newContentDecryptor(Key contentEncryptionKey, byte[] initialisationVector,
+            byte[] additionalAuthenticatedData);
+}
@@ -203,7 +203,7 @@ public class EcJWK extends JWK {
         try {
             final SupportedEllipticCurve curve = SupportedEllipticCurve.forName(getCurve());
 
-            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            KeyFactory keyFactory = KEY_FACTORIES.get("EC");
             ECPoint point = new ECPoint(new BigInteger(Base64url.decode(getX())),
                     new BigInteger(Base64url.decode(getY())));
             return (ECPublicKey) keyFactory.generatePublic(new ECPublicKeySpec(point, curve.getParameters()));
@@ -220,7 +220,7 @@ public class EcJWK extends JWK {
         try {
             final SupportedEllipticCurve curve = SupportedEllipticCurve.forName(getCurve());
 
-            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            KeyFactory keyFactory = KEY_FACTORIES.get("EC");
             final BigInteger s = new BigInteger(Base64url.decode(getD()));
             return (ECPrivateKey) keyFactory.generatePrivate(new ECPrivateKeySpec(s, curve.getParameters()));
         } catch (GeneralSecurityException e) {
@@ -17,12 +17,15 @@
 package org.forgerock.json.jose.jwk;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.util.List;
 import java.util.Map;
 
 import org.forgerock.json.JsonException;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.jose.jwt.JWObject;
+import org.forgerock.json.jose.utils.ThreadLocalPrimitives;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -30,6 +33,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * The abstract base class for the 3 implementations of JWK.
  */
 public abstract class JWK extends JWObject {
+    /**
+     * Key factories for converting JWKs to and from Java keys, which are reused by the calling thread.
+     */
+    static final ThreadLocalPrimitives<KeyFactory> KEY_FACTORIES = new ThreadLocalPrimitives<KeyFactory>() {
+        @Override
+        protected KeyFactory newInstance(final String algorithm) throws GeneralSecurityException {
+            return KeyFactory.getInstance(algorithm);
+        }
+    };
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     /**
      * The KeyType key.
      */
@@ -194,9 +209,8 @@ public abstract class JWK extends JWObject {
      * @throws org.forgerock.json.JsonException If there is a problem parsing the json String.
      */
     protected static JsonValue toJsonValue(String json) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return new JsonValue(mapper.readValue(json, Map.class));
+            return new JsonValue(OBJECT_MAPPER.readValue(json, Map.class));
         } catch (IOException e) {
             throw new JsonException("Failed to parse json", e);
         }
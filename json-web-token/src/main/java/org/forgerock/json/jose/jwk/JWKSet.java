@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jwk;
@@ -33,6 +33,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class JWKSet extends JWObject {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     /**
      * Constructs an empty JWKSet.
      */
@@ -102,9 +104,8 @@ public class JWKSet extends JWObject {
      * @throws JsonException if unable to parse
      */
     protected static JsonValue toJsonValue(String json) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return new JsonValue(mapper.readValue(json, Map.class));
+            return new JsonValue(OBJECT_MAPPER.readValue(json, Map.class));
         } catch (IOException e) {
             throw new JsonException("Failed to parse json", e);
         }
@@ -0,0 +1,513 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwk;
+
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.security.Key;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.JsonException;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Function;
+import org.forgerock.util.encode.Base64url;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseCoalescer;
+import org.forgerock.util.promise.RuntimeExceptionHandler;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A store of the verification keys published by a remote JWK set, indexed by their key ID.
+ * <p>
+ * The keys, and a {@link SigningHandler} for each of them, are built once each time the JWK set is loaded and are
+ * then read without locking. The JWK set is loaded again:
+ * <ul>
+ *     <li>when it expires, according to the maximum age returned by the {@link Loader}, such as one derived from
+ *     the HTTP cache headers of the JWK set with {@link #parseMaxAge(String, String, long)}. Only the thread which
+ *     notices the expiry waits for the JWK set to be loaded, the others carry on using the current keys;</li>
+ *     <li>in the background, once three quarters of its maximum age have elapsed, so that rotated keys are picked
+ *     up before they are needed. The store is refreshed by the {@link ScheduledExecutorService} it is given, or by a
+ *     shared daemon thread. A failed background load is tried again after the minimum refresh interval;</li>
+ *     <li>when a key ID is not found, at most once per minimum refresh interval, so that a flood of JWTs with bogus
+ *     key IDs cannot cause a flood of requests to the JWK set. In between, unknown key IDs are simply not
+ *     found.</li>
+ * </ul>
+ * Concurrent loads are coalesced into one, which all the threads needing the new keys wait for. If a load fails,
+ * the current keys remain in use and no new attempt is made before the minimum refresh interval has elapsed.
+ * <p>
+ * {@link #getSigningHandlerAsync(String)} does not wait for the JWK set when it has to be loaded, as long as the
+ * {@link Loader} does not wait for it either, which suits callers which must not block, such as an HTTP filter.
+ */
+public final class JWKSetStore {
+
+    /**
+     * Loads the keys of a JWK set.
+     */
+    public interface Loader {
+        /**
+         * Loads the current keys of the JWK set. The loader should return as soon as the load has started, such as
+         * when an HTTP request has been sent, rather than wait for the keys.
+         *
+         * @return A promise of the keys, and of how long they may be used for, which fails with an
+         *         {@code IOException} if the JWK set could not be loaded.
+         */
+        Promise<LoadedKeys, IOException> load();
+    }
+
+    /**
+     * The keys of a JWK set, indexed by their key ID, and the time for which they may be used before the JWK set is
+     * loaded again.
+     */
+    public static final class LoadedKeys {
+        private final Map<String, Key> keys;
+        private final long maxAgeMillis;
+
+        /**
+         * Creates a new set of loaded keys.
+         *
+         * @param keys The keys indexed by their key ID.
+         * @param maxAgeMillis The time in milliseconds for which the keys may be used, or a negative value if it is
+         *                     unknown, in which case the default maximum age of the store applies.
+         */
+        public LoadedKeys(final Map<String, ? extends Key> keys, final long maxAgeMillis) {
+            this.keys = Collections.unmodifiableMap(new HashMap<>(checkNotNull(keys)));
+            this.maxAgeMillis = maxAgeMillis;
+        }
+
+        /**
+         * Extracts the public and secret keys of a JWK set.
+         *
+         * @param jwkSet The JWK set.
+         * @param maxAgeMillis The time in milliseconds for which the keys may be used, or a negative value if it is
+         *                     unknown.
+         * @return The keys of the JWK set, indexed by their key ID.
+         * @throws JsonException If one of the JWKs cannot be converted to a key.
+         */
+        public static LoadedKeys fromJWKSet(final JWKSet jwkSet, final long maxAgeMillis) {
+            final Map<String, Key> keys = new HashMap<>();
+            for (final JWK jwk : jwkSet.getJWKsAsList()) {
+                final Key key;
+                if (jwk instanceof RsaJWK) {
+                    key = ((RsaJWK) jwk).toRSAPublicKey();
+                } else if (jwk instanceof EcJWK) {
+                    key = ((EcJWK) jwk).toECPublicKey();
+                } else {
+                    final OctJWK octJWK = (OctJWK) jwk;
+                    key = new SecretKeySpec(Base64url.decode(octJWK.getKey()),
+                            JwsAlgorithm.getJwsAlgorithm(octJWK.getAlgorithm()).getMdAlgorithm());
+                }
+                keys.put(jwk.getKeyId(), key);
+            }
+            return new LoadedKeys(keys, maxAgeMillis);
+        }
+    }
+
+    /** An immutable view of the keys loaded at a given time. */
+    private static final class Snapshot {
+        private final Map<String, Key> keys;
+        private final Map<String, SigningHandler> signingHandlers;
+        private final long expiresAt;
+
+        private Snapshot(final Map<String, Key> keys, final Map<String, SigningHandler> signingHandlers,
+                final long expiresAt) {
+            this.keys = keys;
+            this.signingHandlers = signingHandlers;
+            this.expiresAt = expiresAt;
+        }
+
+        private Snapshot deferUntil(final long time) {
+            return new Snapshot(keys, signingHandlers, Math.max(expiresAt, time));
+        }
+    }
+
+    /** Refreshes the keys of a store in the background, unless the store is no longer used. */
+    private static final class ScheduledRefresh implements Runnable {
+        private final WeakReference<JWKSetStore> store;
+
+        private ScheduledRefresh(final JWKSetStore store) {
+            this.store = new WeakReference<>(store);
+        }
+
+        @Override
+        public void run() {
+            final JWKSetStore jwkSetStore = store.get();
+            if (jwkSetStore != null) {
+                jwkSetStore.refreshInBackground();
+            }
+        }
+    }
+
+    /** Holds the executor shared by the stores which are not given one, which is only created when first used. */
+    private static final class SharedExecutor {
+        private static final ScheduledExecutorService INSTANCE = newSharedExecutor();
+
+        private static ScheduledExecutorService newSharedExecutor() {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "JWKSetStore refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    private static final String JWK_SET = "jwks";
+
+    private static final Snapshot EMPTY = new Snapshot(Collections.<String, Key>emptyMap(),
+            Collections.<String, SigningHandler>emptyMap(), Long.MIN_VALUE);
+
+    private final Loader loader;
+    private final long defaultMaxAgeMillis;
+    private final long minRefreshIntervalMillis;
+    private final ScheduledExecutorService executor;
+    private final TimeService timeService;
+    private final SigningManager signingManager = new SigningManager();
+
+    private volatile Snapshot snapshot = EMPTY;
+    /** Shares the load in progress, if any, under the single key {@link #JWK_SET}. */
+    private final PromiseCoalescer<String, Snapshot, IOException> loads = new PromiseCoalescer<>();
+    private final AtomicReference<ScheduledFuture<?>> scheduledRefresh = new AtomicReference<>();
+    private final AtomicLong nextUnknownKeyRefresh = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new store, which loads the JWK set when a key is first requested, and which then loads it again in
+     * the background with a daemon thread shared by all the stores created with this constructor.
+     *
+     * @param loader Loads the keys of the JWK set.
+     * @param defaultMaxAge The time for which keys are used when the loader does not say, which may be
+     *                      {@link Duration#UNLIMITED} in which case the JWK set is only loaded again for unknown key
+     *                      IDs.
+     * @param minRefreshInterval The minimum time between two loads caused by unknown key IDs or failures.
+     */
+    public JWKSetStore(final Loader loader, final Duration defaultMaxAge, final Duration minRefreshInterval) {
+        this(loader, defaultMaxAge, minRefreshInterval, SharedExecutor.INSTANCE, TimeService.SYSTEM);
+    }
+
+    /**
+     * Creates a new store, which loads the JWK set when a key is first requested.
+     *
+     * @param loader Loads the keys of the JWK set.
+     * @param defaultMaxAge The time for which keys are used when the loader does not say, which may be
+     *                      {@link Duration#UNLIMITED} in which case the JWK set is only loaded again for unknown key
+     *                      IDs.
+     * @param minRefreshInterval The minimum time between two loads caused by unknown key IDs or failures.
+     * @param executor The executor used to load the JWK set in the background before it expires, or {@code null} if
+     *                 it should only be loaded once it has expired.
+     */
+    public JWKSetStore(final Loader loader, final Duration defaultMaxAge, final Duration minRefreshInterval,
+            final ScheduledExecutorService executor) {
+        this(loader, defaultMaxAge, minRefreshInterval, executor, TimeService.SYSTEM);
+    }
+
+    JWKSetStore(final Loader loader, final Duration defaultMaxAge, final Duration minRefreshInterval,
+            final ScheduledExecutorService executor, final TimeService timeService) {
+        this.loader = checkNotNull(loader);
+        this.defaultMaxAgeMillis = toMillis(defaultMaxAge);
+        this.minRefreshIntervalMillis = toMillis(minRefreshInterval);
+        this.executor = executor;
+        this.timeService = checkNotNull(timeService);
+    }
+
+    private static long toMillis(final Duration duration) {
+        return checkNotNull(duration).isUnlimited() ? Long.MAX_VALUE : duration.to(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the key with the given key ID.
+     *
+     * @param keyId The key ID.
+     * @return The key, or {@code null} if the JWK set does not contain it.
+     * @throws IOException If the JWK set had to be loaded and could not be.
+     */
+    public Key getKey(final String keyId) throws IOException {
+        return await(snapshotFor(keyId)).keys.get(keyId);
+    }
+
+    /**
+     * Returns a handler for verifying signatures with the key with the given key ID.
+     *
+     * @param keyId The key ID.
+     * @return The signing handler, or {@code null} if the JWK set does not contain the key, or if the key cannot be
+     *         used to verify signatures.
+     * @throws IOException If the JWK set had to be loaded and could not be.
+     */
+    public SigningHandler getSigningHandler(final String keyId) throws IOException {
+        return await(snapshotFor(keyId)).signingHandlers.get(keyId);
+    }
+
+    /**
+     * Returns a handler for verifying signatures with the key with the given key ID, without waiting for the JWK set
+     * if it has to be loaded.
+     *
+     * @param keyId The key ID.
+     * @return A promise of the signing handler, or of {@code null} if the JWK set does not contain the key or if the
+     *         key cannot be used to verify signatures, which fails with an {@code IOException} if the JWK set had to
+     *         be loaded and could not be.
+     */
+    public Promise<SigningHandler, IOException> getSigningHandlerAsync(final String keyId) {
+        return snapshotFor(keyId).then(new Function<Snapshot, SigningHandler, IOException>() {
+            @Override
+            public SigningHandler apply(final Snapshot current) {
+                return current.signingHandlers.get(keyId);
+            }
+        });
+    }
+
+    /**
+     * Loads the JWK set now, or waits for the load which is already in progress.
+     *
+     * @throws IOException If the JWK set could not be loaded.
+     */
+    public void refresh() throws IOException {
+        await(load(null));
+    }
+
+    private static Snapshot await(final Promise<Snapshot, IOException> snapshot) throws IOException {
+        try {
+            return snapshot.getOrThrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the JWK set to be loaded");
+        }
+    }
+
+    private Promise<Snapshot, IOException> snapshotFor(final String keyId) {
+        final long now = timeService.now();
+        final Snapshot current = snapshot;
+        if (now >= current.expiresAt) {
+            if (!current.keys.isEmpty() && loads.size() > 0) {
+                // Somebody else is loading the new keys, the current ones will do in the meantime.
+                return newResultPromise(current);
+            }
+            return load(current).thenCatchAsync(new AsyncFunction<IOException, Snapshot, IOException>() {
+                @Override
+                public Promise<Snapshot, IOException> apply(final IOException e) {
+                    if (current.keys.isEmpty()) {
+                        return newExceptionPromise(e);
+                    }
+                    // Keep using the keys we have, the failed load has deferred the next attempt.
+                    return snapshotWith(current, keyId, now);
+                }
+            });
+        }
+        return snapshotWith(current, keyId, now);
+    }
+
+    /** Returns the given keys, or loads them again if they lack the key ID and it is time to look for new keys. */
+    private Promise<Snapshot, IOException> snapshotWith(final Snapshot current, final String keyId, final long now) {
+        if (!current.keys.containsKey(keyId) && claimUnknownKeyRefresh(now)) {
+            return load(current);
+        }
+        return newResultPromise(current);
+    }
+
+    private boolean claimUnknownKeyRefresh(final long now) {
+        final long next = nextUnknownKeyRefresh.get();
+        return now >= next && nextUnknownKeyRefresh.compareAndSet(next, plus(now, minRefreshIntervalMillis));
+    }
+
+    private void refreshInBackground() {
+        load(null)
+                .thenOnException(new ExceptionHandler<IOException>() {
+                    @Override
+                    public void handleException(final IOException e) {
+                        // The current keys remain in use until they expire, try again once the failure is forgotten.
+                        scheduleRefresh(minRefreshIntervalMillis);
+                    }
+                })
+                .thenOnRuntimeException(new RuntimeExceptionHandler() {
+                    @Override
+                    public void handleRuntimeException(final RuntimeException e) {
+                        scheduleRefresh(minRefreshIntervalMillis);
+                    }
+                });
+    }
+
+    /** Schedules the next background refresh, which replaces the one scheduled before, if any. */
+    private void scheduleRefresh(final long delayMillis) {
+        if (executor == null) {
+            return;
+        }
+        final ScheduledFuture<?> refresh;
+        try {
+            refresh = executor.schedule(new ScheduledRefresh(this), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The executor has been shut down, the keys will be loaded again once they have expired.
+            return;
+        }
+        final ScheduledFuture<?> previous = scheduledRefresh.getAndSet(refresh);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    /**
+     * Loads the JWK set, unless a load is already in progress in which case its outcome is shared.
+     *
+     * @param stale The keys the caller found wanting, or {@code null} to load the JWK set whatever the current keys.
+     *              If other keys have been loaded since the caller read them, they are returned instead of loading
+     *              the JWK set once more, as the load the caller wanted to wait for may have just completed.
+     */
+    private Promise<Snapshot, IOException> load(final Snapshot stale) {
+        return loads.apply(JWK_SET, new AsyncFunction<String, Snapshot, IOException>() {
+            @Override
+            public Promise<Snapshot, IOException> apply(final String key) {
+                final Snapshot current = snapshot;
+                if (stale != null && current != stale && !current.keys.isEmpty()) {
+                    return newResultPromise(current);
+                }
+                return doLoad();
+            }
+        });
+    }
+
+    private Promise<Snapshot, IOException> doLoad() {
+        final Promise<LoadedKeys, IOException> loadedKeys;
+        try {
+            loadedKeys = loader.load();
+        } catch (RuntimeException e) {
+            deferNextLoad();
+            throw e;
+        }
+        return loadedKeys.then(new Function<LoadedKeys, Snapshot, IOException>() {
+            @Override
+            public Snapshot apply(final LoadedKeys keys) {
+                return newSnapshot(keys);
+            }
+        }, new Function<IOException, Snapshot, IOException>() {
+            @Override
+            public Snapshot apply(final IOException e) throws IOException {
+                deferNextLoad();
+                throw e;
+            }
+        }, new Function<RuntimeException, Snapshot, IOException>() {
+            @Override
+            public Snapshot apply(final RuntimeException e) {
+                deferNextLoad();
+                throw e;
+            }
+        });
+    }
+
+    private void deferNextLoad() {
+        snapshot = snapshot.deferUntil(plus(timeService.now(), minRefreshIntervalMillis));
+    }
+
+    private Snapshot newSnapshot(final LoadedKeys loadedKeys) {
+        final Map<String, SigningHandler> signingHandlers = new HashMap<>();
+        for (final Map.Entry<String, Key> entry : loadedKeys.keys.entrySet()) {
+            final SigningHandler signingHandler = newSigningHandler(entry.getValue());
+            if (signingHandler != null) {
+                signingHandlers.put(entry.getKey(), signingHandler);
+            }
+        }
+        final long now = timeService.now();
+        final long maxAge = Math.max(loadedKeys.maxAgeMillis >= 0 ? loadedKeys.maxAgeMillis : defaultMaxAgeMillis,
+                minRefreshIntervalMillis);
+        final Snapshot newSnapshot = new Snapshot(loadedKeys.keys, signingHandlers, plus(now, maxAge));
+        snapshot = newSnapshot;
+        if (maxAge != Long.MAX_VALUE) {
+            scheduleRefresh(maxAge - maxAge / 4);
+        }
+        return newSnapshot;
+    }
+
+    private SigningHandler newSigningHandler(final Key key) {
+        if (key instanceof ECPublicKey) {
+            return signingManager.newEcdsaVerificationHandler((ECPublicKey) key);
+        } else if (key instanceof RSAPublicKey) {
+            return signingManager.newRsaSigningHandler(key);
+        } else if (key instanceof SecretKey) {
+            return signingManager.newHmacSigningHandler(key.getEncoded());
+        }
+        return null;
+    }
+
+    private static long plus(final long time, final long millis) {
+        return millis > Long.MAX_VALUE - time ? Long.MAX_VALUE : time + millis;
+    }
+
+    /**
+     * Works out for how long an HTTP response may be cached, from its {@code Cache-Control} and {@code Expires}
+     * headers.
+     *
+     * @param cacheControl The value of the {@code Cache-Control} header, or {@code null}.
+     * @param expires The value of the {@code Expires} header, or {@code null}.
+     * @param now The current time in milliseconds, to compare the {@code Expires} header with.
+     * @return The time in milliseconds for which the response may be cached, or {@code -1} if the headers do not
+     *         say.
+     */
+    public static long parseMaxAge(final String cacheControl, final String expires, final long now) {
+        if (cacheControl != null) {
+            for (final String directive : cacheControl.split(",")) {
+                final String name = directive.trim().toLowerCase(Locale.ROOT);
+                if (name.equals("no-cache") || name.equals("no-store")) {
+                    return 0;
+                } else if (name.startsWith("max-age=")) {
+                    try {
+                        return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(name.substring(8).trim())));
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        if (expires != null) {
+            final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                return Math.max(0, format.parse(expires.trim()).getTime() - now);
+            } catch (ParseException e) {
+                // An invalid date means the response has already expired.
+                return 0;
+            }
+        }
+        return -1;
+    }
+}
@@ -414,7 +414,7 @@ public class RsaJWK extends JWK {
         try {
             RSAPublicKeySpec spec = new RSAPublicKeySpec(asPositiveBigInteger(getModulus()),
                     asPositiveBigInteger(getPublicExponent()));
-            KeyFactory factory = KeyFactory.getInstance("RSA");
+            KeyFactory factory = KEY_FACTORIES.get("RSA");
             return (RSAPublicKey) factory.generatePublic(spec);
         } catch (Exception e) {
             throw new JsonException("Unable to create RSA Public Key", e);
@@ -472,7 +472,7 @@ public class RsaJWK extends JWK {
         }
 
         try {
-            KeyFactory factory = KeyFactory.getInstance("RSA");
+            KeyFactory factory = KEY_FACTORIES.get("RSA");
             RSAPrivateKey priv = (RSAPrivateKey) factory.generatePrivate(spec);
             return priv;
         } catch (Exception e) {
@@ -17,10 +17,9 @@
 package org.forgerock.json.jose.jws.handlers;
 
 import java.nio.ByteBuffer;
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Signature;
-import java.security.SignatureException;
 import java.security.interfaces.ECKey;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
@@ -32,6 +31,7 @@ import org.forgerock.json.jose.jws.JwsAlgorithm;
 import org.forgerock.json.jose.jws.JwsAlgorithmType;
 import org.forgerock.json.jose.jws.SupportedEllipticCurve;
 import org.forgerock.json.jose.utils.DerUtils;
+import org.forgerock.json.jose.utils.ThreadLocalPrimitives;
 import org.forgerock.json.jose.utils.Utils;
 import org.forgerock.util.Reject;
 
@@ -39,6 +39,16 @@ import org.forgerock.util.Reject;
  * Elliptic Curve Digital Signature Algorithm (ECDSA) signing and verification.
  */
 public class ECDSASigningHandler implements SigningHandler {
+    /**
+     * Signatures cached by algorithm and shared by all handlers. They are not bound to any key, so each signature
+     * must be initialised with the key of the handler before use, which also resets it.
+     */
+    private static final ThreadLocalPrimitives<Signature> SIGNATURES = new ThreadLocalPrimitives<Signature>() {
+        @Override
+        protected Signature newInstance(final String algorithm) throws GeneralSecurityException {
+            return Signature.getInstance(algorithm);
+        }
+    };
     private final ECPrivateKey signingKey;
     private final ECPublicKey verificationKey;
     private final SupportedEllipticCurve curve;
@@ -75,14 +85,21 @@ public class ECDSASigningHandler implements SigningHandler {
         validateAlgorithm(algorithm);
 
         try {
-            final Signature signature = Signature.getInstance(algorithm.getAlgorithm());
-            signature.initSign(signingKey);
-            signature.update(data);
-            return derDecode(signature.sign(), curve.getSignatureSize());
-        } catch (SignatureException | InvalidKeyException e) {
-            throw new JwsSigningException(e);
+            final Signature signature = SIGNATURES.get(algorithm.getAlgorithm());
+            final byte[] derSignature;
+            try {
+                signature.initSign(signingKey);
+                signature.update(data);
+                derSignature = signature.sign();
+            } catch (GeneralSecurityException e) {
+                SIGNATURES.discard(algorithm.getAlgorithm());
+                throw e;
+            }
+            return derDecode(derSignature, curve.getSignatureSize());
         } catch (NoSuchAlgorithmException e) {
             throw new JwsSigningException("Unsupported Signing Algorithm, " + algorithm.getAlgorithm(), e);
+        } catch (GeneralSecurityException e) {
+            throw new JwsSigningException(e);
         }
     }
 
@@ -91,14 +108,20 @@ public class ECDSASigningHandler implements SigningHandler {
         validateAlgorithm(algorithm);
 
         try {
-            final Signature validator = Signature.getInstance(algorithm.getAlgorithm());
-            validator.initVerify(verificationKey);
-            validator.update(data);
-            return validator.verify(derEncode(signature));
-        } catch (SignatureException | InvalidKeyException e) {
-            throw new JwsSigningException(e);
+            final byte[] derSignature = derEncode(signature);
+            final Signature validator = SIGNATURES.get(algorithm.getAlgorithm());
+            try {
+                validator.initVerify(verificationKey);
+                validator.update(data);
+                return validator.verify(derSignature);
+            } catch (GeneralSecurityException e) {
+                SIGNATURES.discard(algorithm.getAlgorithm());
+                throw e;
+            }
         } catch (NoSuchAlgorithmException e) {
             throw new JwsSigningException("Unsupported Signing Algorithm, " + algorithm.getAlgorithm(), e);
+        } catch (GeneralSecurityException e) {
+            throw new JwsSigningException(e);
         }
     }
 
@@ -149,8 +172,8 @@ public class ECDSASigningHandler implements SigningHandler {
         final byte[] r = Arrays.copyOfRange(signature, 0, midPoint);
         final byte[] s = Arrays.copyOfRange(signature, midPoint, signature.length);
 
-        // Each integer component needs at most 2 bytes for the length field and 1 byte for the tag, for a total of 6
-        // bytes for both integers.
+        // Each integer component is at most 66 bytes long, so it needs 1 byte for the tag, 1 byte for the length
+        // field and at most 1 sign byte, for a total of 6 bytes for both integers.
         final ByteBuffer params = ByteBuffer.allocate(signature.length + 6);
         DerUtils.writeInteger(params, r);
         DerUtils.writeInteger(params, s);
@@ -161,7 +184,7 @@ public class ECDSASigningHandler implements SigningHandler {
         sequence.put(DerUtils.SEQUENCE_TAG);
         DerUtils.writeLength(sequence, size);
         sequence.put((ByteBuffer) params.flip());
-        return sequence.array();
+        return Arrays.copyOf(sequence.array(), sequence.position());
     }
 
 }
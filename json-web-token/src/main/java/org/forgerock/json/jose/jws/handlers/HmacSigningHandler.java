@@ -11,21 +11,21 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jws.handlers;
 
 import org.forgerock.json.jose.exceptions.JwsSigningException;
 import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.utils.ThreadLocalPrimitives;
 import org.forgerock.json.jose.utils.Utils;
 import org.forgerock.util.Reject;
 
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import javax.crypto.Mac;
-import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
@@ -35,6 +35,17 @@ import javax.crypto.spec.SecretKeySpec;
  */
 public class HmacSigningHandler implements SigningHandler {
 
+    /**
+     * MACs cached by algorithm and shared by all handlers. They are not bound to any key, so each MAC must be
+     * initialised with the shared secret of the handler before use.
+     */
+    private static final ThreadLocalPrimitives<Mac> MACS = new ThreadLocalPrimitives<Mac>() {
+        @Override
+        protected Mac newInstance(final String algorithm) throws GeneralSecurityException {
+            return Mac.getInstance(algorithm);
+        }
+    };
+
     private final byte[] sharedSecret;
 
     /**
@@ -52,7 +63,7 @@ public class HmacSigningHandler implements SigningHandler {
      */
     @Override
     public byte[] sign(JwsAlgorithm algorithm, String data) {
-        return signWithHMAC(algorithm.getAlgorithm(), sharedSecret, data.getBytes(Utils.CHARSET));
+        return signWithHMAC(algorithm.getAlgorithm(), data.getBytes(Utils.CHARSET));
     }
 
     /**
@@ -60,26 +71,29 @@ public class HmacSigningHandler implements SigningHandler {
      */
     @Override
     public byte[] sign(final JwsAlgorithm algorithm, final byte[] data) {
-        return signWithHMAC(algorithm.getAlgorithm(), sharedSecret, data);
+        return signWithHMAC(algorithm.getAlgorithm(), data);
     }
 
     /**
      * Performs the creation of the MAC for the data using the given Java Cryptographic algorithm.
      *
      * @param algorithm The Java Cryptographic algorithm.
-     * @param sharedSecret The shared secret to use to sign the data.
      * @param data The data to sign.
      * @return A byte array of the signature.
      */
-    private byte[] signWithHMAC(String algorithm, byte[] sharedSecret, byte[] data) {
+    private byte[] signWithHMAC(String algorithm, byte[] data) {
         try {
-            Mac mac = Mac.getInstance(algorithm);
-            SecretKey secretKey = new SecretKeySpec(sharedSecret, algorithm.toUpperCase());
-            mac.init(secretKey);
-            return mac.doFinal(data);
+            final Mac mac = MACS.get(algorithm);
+            try {
+                mac.init(new SecretKeySpec(sharedSecret, algorithm.toUpperCase()));
+                return mac.doFinal(data);
+            } catch (GeneralSecurityException e) {
+                MACS.discard(algorithm);
+                throw e;
+            }
         } catch (NoSuchAlgorithmException e) {
             throw new JwsSigningException("Unsupported Signing Algorithm, " + algorithm, e);
-        } catch (InvalidKeyException e) {
+        } catch (GeneralSecurityException e) {
             throw new JwsSigningException(e);
         }
     }
@@ -101,7 +115,7 @@ public class HmacSigningHandler implements SigningHandler {
      */
     @Override
     public boolean verify(JwsAlgorithm algorithm, byte[] data, byte[] signature) {
-        byte[] signed = signWithHMAC(algorithm.getAlgorithm(), sharedSecret, data);
+        byte[] signed = signWithHMAC(algorithm.getAlgorithm(), data);
         return MessageDigest.isEqual(signed, signature);
     }
 }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jws.handlers;
@@ -20,17 +20,17 @@ import org.forgerock.json.jose.exceptions.JwsSigningException;
 import org.forgerock.json.jose.exceptions.JwsVerifyingException;
 import org.forgerock.json.jose.jws.JwsAlgorithm;
 import org.forgerock.json.jose.jws.JwsAlgorithmType;
+import org.forgerock.json.jose.utils.ThreadLocalPrimitives;
 import org.forgerock.json.jose.utils.Utils;
 import org.forgerock.util.Reject;
 import org.forgerock.util.SignatureUtil;
 
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
-import java.security.SignatureException;
 
 /**
  * An implementation of the SigningHandler which can sign and verify using algorithms from the RSA family.
@@ -39,18 +39,38 @@ import java.security.SignatureException;
  */
 public class RSASigningHandler implements SigningHandler {
 
-    private final SignatureUtil signatureUtil;
+    /**
+     * Signatures cached by algorithm and shared by all handlers. They are not bound to any key, so each signature
+     * must be initialised with the key of the handler before use, which also resets it.
+     */
+    private static final ThreadLocalPrimitives<Signature> SIGNATURES = new ThreadLocalPrimitives<Signature>() {
+        @Override
+        protected Signature newInstance(final String algorithm) throws GeneralSecurityException {
+            return Signature.getInstance(algorithm);
+        }
+    };
+
     private final Key key;
 
     /**
-     * Constructs a new RSASigningHandler, with a SignatureUtil instance to delegate the signing and verifying calls to.
+     * Constructs a new RSASigningHandler.
      *
      * @param key The key used to sign and verify the signature.
-     * @param signatureUtil An instance of the SignatureUtil.
      */
-    public RSASigningHandler(Key key, SignatureUtil signatureUtil) {
+    public RSASigningHandler(Key key) {
         this.key = key;
-        this.signatureUtil = signatureUtil;
+    }
+
+    /**
+     * Constructs a new RSASigningHandler.
+     *
+     * @param key The key used to sign and verify the signature.
+     * @param signatureUtil Ignored, signatures are computed directly using the JCA.
+     * @deprecated Use {@link #RSASigningHandler(Key)} instead.
+     */
+    @Deprecated
+    public RSASigningHandler(Key key, SignatureUtil signatureUtil) {
+        this(key);
     }
 
     /**
@@ -58,16 +78,7 @@ public class RSASigningHandler implements SigningHandler {
      */
     @Override
     public byte[] sign(JwsAlgorithm algorithm, String data) {
-        validateAlgorithm(algorithm);
-        try {
-            Reject.ifFalse(key instanceof PrivateKey, "RSA requires private key for signing.");
-            return signatureUtil.sign((PrivateKey) key, algorithm.getAlgorithm(), data);
-        } catch (SignatureException e) {
-            if (e.getCause() != null && e.getCause().getClass().isAssignableFrom(NoSuchAlgorithmException.class)) {
-                throw new JwsSigningException("Unsupported Signing Algorithm, " + algorithm.getAlgorithm(), e);
-            }
-            throw new JwsSigningException(e);
-        }
+        return sign(algorithm, data.getBytes(Utils.CHARSET));
     }
 
     /**
@@ -76,16 +87,21 @@ public class RSASigningHandler implements SigningHandler {
     @Override
     public byte[] sign(final JwsAlgorithm algorithm, final byte[] data) {
         validateAlgorithm(algorithm);
+        Reject.ifFalse(key instanceof PrivateKey, "RSA requires private key for signing.");
         try {
-            Reject.ifFalse(key instanceof PrivateKey, "RSA requires private key for signing.");
-            Signature signature = Signature.getInstance(algorithm.getAlgorithm());
-            signature.initSign((PrivateKey) key);
-            signature.update(data);
-            return signature.sign();
-        } catch (SignatureException | InvalidKeyException e) {
-            throw new JwsSigningException(e);
+            final Signature signature = SIGNATURES.get(algorithm.getAlgorithm());
+            try {
+                signature.initSign((PrivateKey) key);
+                signature.update(data);
+                return signature.sign();
+            } catch (GeneralSecurityException e) {
+                SIGNATURES.discard(algorithm.getAlgorithm());
+                throw e;
+            }
         } catch (NoSuchAlgorithmException e) {
             throw new JwsSigningException("Unsupported Signing Algorithm, " + algorithm.getAlgorithm(), e);
+        } catch (GeneralSecurityException e) {
+            throw new JwsSigningException(e);
         }
     }
 
@@ -95,14 +111,20 @@ public class RSASigningHandler implements SigningHandler {
     @Override
     public boolean verify(JwsAlgorithm algorithm, byte[] data, byte[] signature) {
         validateAlgorithm(algorithm);
+        Reject.ifFalse(key instanceof PublicKey, "RSA requires public key for signature verification.");
         try {
-            Reject.ifFalse(key instanceof PublicKey, "RSA requires public key for signature verification.");
-            return signatureUtil.verify((PublicKey) key, algorithm.getAlgorithm(),
-                    new String(data, Utils.CHARSET), signature);
-        } catch (SignatureException e) {
-            if (e.getCause() != null && e.getCause().getClass().isAssignableFrom(NoSuchAlgorithmException.class)) {
-                throw new JwsVerifyingException("Unsupported Signing Algorithm, " + algorithm.getAlgorithm(), e);
+            final Signature validator = SIGNATURES.get(algorithm.getAlgorithm());
+            try {
+                validator.initVerify((PublicKey) key);
+                validator.update(data);
+                return validator.verify(signature);
+            } catch (GeneralSecurityException e) {
+                SIGNATURES.discard(algorithm.getAlgorithm());
+                throw e;
             }
+        } catch (NoSuchAlgorithmException e) {
+            throw new JwsVerifyingException("Unsupported Signing Algorithm, " + algorithm.getAlgorithm(), e);
+        } catch (GeneralSecurityException e) {
             throw new JwsVerifyingException(e);
         }
     }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jwt;
@@ -42,6 +42,15 @@ public abstract class JWObject {
         this.jsonValue = new JsonValue(new LinkedHashMap<>());
     }
 
+    /**
+     * Constructs a new JWObject backed by the given Map, which is used as is rather than copied.
+     *
+     * @param values The Map which holds this JWObject's values.
+     */
+    JWObject(Map<String, Object> values) {
+        this.jsonValue = new JsonValue(values);
+    }
+
     /**
      * Checks that the given value is of an assignable type from the required class.
      * <p>
@@ -53,6 +53,61 @@ public class JwtClaimsSet extends JWObject implements Payload {
         setClaims(claims);
     }
 
+    private JwtClaimsSet(LazyClaimsMap claims) {
+        super(claims);
+    }
+
+    /**
+     * Parses the UTF-8 encoded JSON representation of a Claims Set.
+     * <p>
+     * The JSON is checked for syntax errors and duplicate claim names, and the reserved claims are set as by
+     * {@link #setClaim(String, Object)}, but other claims whose values are JSON objects or arrays are only decoded
+     * when they are first read. This is cheaper than {@link #JwtClaimsSet(Map)} when only a few claims, such as the
+     * subject and the expiration time, are needed.
+     *
+     * @param json The UTF-8 encoded JSON object, which must not be modified afterwards.
+     * @return The Claims Set.
+     * @throws org.forgerock.json.jose.exceptions.InvalidJwtException If the JSON is not a well formed object or
+     *          contains duplicate claim names.
+     * @throws org.forgerock.json.jose.exceptions.JwtRuntimeException If a reserved claim has an invalid value.
+     */
+    public static JwtClaimsSet parse(byte[] json) {
+        JwtClaimsSet claimsSet = new JwtClaimsSet(new LazyClaimsMap(json));
+        claimsSet.setReservedClaims();
+        return claimsSet;
+    }
+
+    /**
+     * Sets the reserved claims again with {@link #setClaim(String, Object)}, as {@link #JwtClaimsSet(Map)} does, so
+     * that they are checked, stored under their reserved name whatever the case they were written in, and the times
+     * are stored as longs. The other claims are left as they were parsed.
+     */
+    private void setReservedClaims() {
+        List<String> otherCaseKeys = new ArrayList<>();
+        for (String key : keys()) {
+            JwtClaimsSetKey claimsSetKey = getClaimSetKey(key.toUpperCase());
+            Object value = claimsSetKey == CUSTOM ? null : get(key).getObject();
+            if (value == null) {
+                continue;
+            }
+            if (!key.equals(claimsSetKey.value())) {
+                otherCaseKeys.add(key);
+            } else if (claimsSetKey == AUD) {
+                // audiences are added to the existing ones, so they are set on an empty claims set then put in place
+                JwtClaimsSet audience = new JwtClaimsSet();
+                audience.setClaim(key, value);
+                put(key, audience.get(key).getObject());
+            } else {
+                setClaim(key, value);
+            }
+        }
+        for (String key : otherCaseKeys) {
+            Object value = get(key).getObject();
+            put(key, null);
+            setClaim(key, value);
+        }
+    }
+
     /**
      * Gets the type of the contents of the Claims Set.
      * <p>
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jwt;
@@ -66,15 +66,42 @@ public abstract class JwtHeader extends JWObject {
         put(TYP.value(), jwtType.toString());
     }
 
+    /**
+     * Sets the type of JWT this header represents, which is kept as it is unless it is one of the {@link JwtType}s,
+     * such as the explicit type of a JWT profile, for example {@literal at+jwt}.
+     *
+     * @param type The type.
+     */
+    private void setType(String type) {
+        for (JwtType jwtType : JwtType.values()) {
+            if (jwtType.name().equalsIgnoreCase(type)) {
+                setType(jwtType);
+                return;
+            }
+        }
+        put(TYP.value(), type);
+    }
+
     /**
      * Gets the type of JWT this header represents.
      *
      * @return The JwtType.
+     * @throws IllegalArgumentException If the type is not one of the {@link JwtType}s, in which case it can be
+     *         read with {@link #getTypeString()}.
      */
     public JwtType getType() {
         return JwtType.valueOf(get(TYP.value()).asString().toUpperCase());
     }
 
+    /**
+     * Gets the type of JWT this header represents, as it is set in the header.
+     *
+     * @return The type, such as {@literal JWT} or {@literal at+jwt}, or {@code null} if it is not set.
+     */
+    public String getTypeString() {
+        return get(TYP.value()).asString();
+    }
+
     /**
      * Sets the algorithm used to perform cryptographic signing and/or encryption on the JWT.
      *
@@ -118,7 +145,7 @@ public abstract class JwtHeader extends JWObject {
                 setType((JwtType) value);
             } else {
                 checkValueIsOfType(value, String.class);
-                setType(JwtType.jwtType((String) value));
+                setType((String) value);
             }
             break;
         }
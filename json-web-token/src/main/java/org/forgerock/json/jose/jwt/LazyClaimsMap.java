@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwt;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.json.jose.exceptions.InvalidJwtException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A Map of the claims of a JWT which are read from their UTF-8 JSON representation with a streaming parser.
+ * <p>
+ * The JSON is tokenized once, when the map is created, so malformed JSON and duplicate claim names are still
+ * rejected up front. Scalar claims, such as {@code exp} or {@code sub}, are decoded at the same time, but JSON
+ * objects and arrays are only remembered by their position in the JSON and are decoded the first time they are
+ * read. Operations which need every value, such as iterating over the entries, decode all remaining claims.
+ * <p>
+ * Since reading a claim may replace its position with the decoded value, every operation is synchronized on the
+ * map. This lets parsed claims be read concurrently, for example when the JWT is shared through a
+ * {@link org.forgerock.json.jose.common.VerifiedJwtCache}. For the same reason, {@link #keySet()} and
+ * {@link #entrySet()} return unmodifiable snapshots rather than views, so that they can be iterated over while other
+ * threads read or modify the claims.
+ */
+final class LazyClaimsMap extends AbstractMap<String, Object> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(JsonParser.Feature.STRICT_DUPLICATE_DETECTION, true);
+
+    /** The position of a claim value which has not been decoded yet. */
+    private static final class Undecoded {
+        private final int offset;
+        private final int length;
+
+        private Undecoded(final int offset, final int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final byte[] json;
+    private final Map<String, Object> claims;
+    private int undecoded;
+
+    /**
+     * Parses the given UTF-8 encoded JSON object.
+     *
+     * @param json The UTF-8 encoded JSON object, which must not be modified afterwards.
+     * @throws InvalidJwtException If the JSON is not a well formed object or contains duplicate claim names.
+     */
+    LazyClaimsMap(final byte[] json) {
+        this.json = json;
+        this.claims = new LinkedHashMap<>();
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    final int start = (int) parser.getTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    final int end = (int) parser.getCurrentLocation().getByteOffset();
+                    claims.put(name, new Undecoded(start, end - start));
+                    undecoded++;
+                } else {
+                    claims.put(name, parser.readValueAs(Object.class));
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the JSON object");
+            }
+        } catch (IOException e) {
+            throw new InvalidJwtException("Failed to parse json: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Object get(final Object key) {
+        final Object value = claims.get(key);
+        if (value instanceof Undecoded) {
+            return decode((String) key, (Undecoded) value);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized boolean containsKey(final Object key) {
+        return claims.containsKey(key);
+    }
+
+    @Override
+    public synchronized int size() {
+        return claims.size();
+    }
+
+    @Override
+    public synchronized Object put(final String key, final Object value) {
+        return decoded(claims.put(key, value));
+    }
+
+    @Override
+    public synchronized Object remove(final Object key) {
+        return decoded(claims.remove(key));
+    }
+
+    @Override
+    public synchronized void clear() {
+        claims.clear();
+        undecoded = 0;
+    }
+
+    @Override
+    public synchronized Set<String> keySet() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(claims.keySet()));
+    }
+
+    @Override
+    public synchronized Set<Entry<String, Object>> entrySet() {
+        if (undecoded > 0) {
+            for (final Entry<String, Object> entry : claims.entrySet()) {
+                if (entry.getValue() instanceof Undecoded) {
+                    entry.setValue(decode((Undecoded) entry.getValue()));
+                }
+            }
+            undecoded = 0;
+        }
+        return Collections.unmodifiableMap(new LinkedHashMap<>(claims)).entrySet();
+    }
+
+    private Object decode(final String key, final Undecoded position) {
+        final Object value = decode(position);
+        // Replacing the value of an existing key is not a structural modification.
+        claims.put(key, value);
+        undecoded--;
+        return value;
+    }
+
+    private Object decoded(final Object value) {
+        if (value instanceof Undecoded) {
+            undecoded--;
+            return decode((Undecoded) value);
+        }
+        return value;
+    }
+
+    private Object decode(final Undecoded position) {
+        try {
+            return OBJECT_MAPPER.readValue(json, position.offset, position.length, Object.class);
+        } catch (IOException e) {
+            // The JSON has already been parsed once, so this should not happen.
+            throw new InvalidJwtException("Failed to parse json: " + e.getMessage(), e);
+        }
+    }
+}
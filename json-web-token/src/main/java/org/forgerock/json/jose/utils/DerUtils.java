@@ -16,7 +16,6 @@
 
 package org.forgerock.json.jose.utils;
 
-import java.math.BigInteger;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
@@ -63,15 +62,25 @@ public final class DerUtils {
     }
 
     /**
-     * Writes an integer value in DER format to the given buffer.
+     * Writes an unsigned integer value in DER format to the given buffer. Redundant leading zero bytes are dropped,
+     * and a zero sign byte is added if the high bit of the value is set, as DER requires the minimal two's
+     * complement encoding.
      *
      * @param buffer the buffer to write the value to
-     * @param data the integer value (in big-endian format) to write
+     * @param data the unsigned integer value (in big-endian format) to write
      */
     public static void writeInteger(final ByteBuffer buffer, final byte[] data) {
+        int offset = 0;
+        while (offset < data.length - 1 && data[offset] == 0) {
+            offset++;
+        }
+        final boolean signByte = (data[offset] & 0x80) != 0;
         buffer.put(INTEGER_TAG);
-        writeLength(buffer, data.length);
-        buffer.put(data);
+        writeLength(buffer, data.length - offset + (signByte ? 1 : 0));
+        if (signByte) {
+            buffer.put((byte) 0);
+        }
+        buffer.put(data, offset, data.length - offset);
     }
 
     /**
@@ -109,9 +118,12 @@ public final class DerUtils {
         if (length < 128) {
             output.put((byte) (length & 0x7F));
         } else {
-            final byte[] bytes = BigInteger.valueOf(length).toByteArray();
-            output.put((byte) (bytes.length | 0x80));
-            output.put(bytes);
+            // Use as few bytes as possible, as DER requires.
+            final int numBytes = (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            output.put((byte) (numBytes | 0x80));
+            for (int i = numBytes - 1; i >= 0; i--) {
+                output.put((byte) (length >>> (i * 8)));
+            }
         }
     }
 }
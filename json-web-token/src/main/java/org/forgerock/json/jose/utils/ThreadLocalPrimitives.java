@@ -0,0 +1,80 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.utils;
+
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches JCA primitives, such as {@code Cipher}, {@code Mac} or {@code Signature} instances, for the calling thread
+ * so that the provider lookup is not repeated for every JOSE operation. Instances are meant to be shared, typically
+ * as a static field, so primitives should not be initialised with a key when they are created: callers initialise
+ * them with their own key on each use, which also resets them. The pool then holds a single primitive per algorithm
+ * and thread, however many keys are in use, rather than a keyed primitive for every key ever used on a thread.
+ * <p>
+ * JCA primitives are not thread safe, so each thread is given its own instance for each algorithm. A primitive
+ * which may have been left in an undefined state, for example because an operation failed, should be
+ * {@link #discard discarded}.
+ *
+ * @param <T> The type of primitive.
+ */
+public abstract class ThreadLocalPrimitives<T> {
+
+    private final ThreadLocal<Map<String, T>> primitives = new ThreadLocal<Map<String, T>>() {
+        @Override
+        protected Map<String, T> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    /**
+     * Returns the primitive for the given algorithm which is owned by the calling thread, creating it if needed.
+     *
+     * @param algorithm The Java Cryptographic algorithm.
+     * @return The primitive.
+     * @throws GeneralSecurityException If the primitive could not be created.
+     */
+    public final T get(final String algorithm) throws GeneralSecurityException {
+        final Map<String, T> threadPrimitives = primitives.get();
+        T primitive = threadPrimitives.get(algorithm);
+        if (primitive == null) {
+            primitive = newInstance(algorithm);
+            threadPrimitives.put(algorithm, primitive);
+        }
+        return primitive;
+    }
+
+    /**
+     * Removes the primitive for the given algorithm owned by the calling thread, so that a new one will be created
+     * next time it is needed.
+     *
+     * @param algorithm The Java Cryptographic algorithm.
+     */
+    public final void discard(final String algorithm) {
+        primitives.get().remove(algorithm);
+    }
+
+    /**
+     * Creates a new primitive for the given algorithm.
+     *
+     * @param algorithm The Java Cryptographic algorithm.
+     * @return The new primitive.
+     * @throws GeneralSecurityException If the primitive could not be created.
+     */
+    protected abstract T newInstance(String algorithm) throws GeneralSecurityException;
+}
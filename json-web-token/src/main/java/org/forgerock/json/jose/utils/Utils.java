@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.utils;
@@ -113,4 +113,20 @@ public final class Utils {
             throw new InvalidJwtException("Failed to parse json: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Parses the given UTF-8 encoded JSON into a Map, rejecting duplicate properties in the same way as
+     * {@link #parseJson(String)}.
+     *
+     * @param json The UTF-8 encoded JSON to parse.
+     * @return A Map of the JSON properties.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseJson(byte[] json) {
+        try {
+            return OBJECT_MAPPER.readValue(json, LinkedHashMap.class);
+        } catch (IOException e) {
+            throw new InvalidJwtException("Failed to parse json: " + e.getMessage(), e);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.common;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.time.Duration.duration;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.Date;
+
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.builders.JwtClaimsSetBuilder;
+import org.forgerock.json.jose.jwe.EncryptedJwt;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SignedJwt;
+import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class VerifiedJwtCacheTest {
+
+    private static final long NOW = 1_460_000_000_000L;
+    private static final String KEY = "key";
+
+    private final JwtBuilderFactory jwtBuilderFactory = new JwtBuilderFactory();
+    private final SigningHandler signingHandler = new SigningManager().newHmacSigningHandler(new byte[32]);
+    private TimeService timeService;
+    private VerifiedJwtCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        timeService = mock(TimeService.class);
+        given(timeService.now()).willReturn(NOW);
+        cache = new VerifiedJwtCache(2, duration(10, MINUTES), timeService);
+    }
+
+    @Test
+    public void shouldReturnCachedJwtForSameKeyIdentity() {
+        String jwtString = signedJwt(new Date(NOW + 60_000L), null);
+        SignedJwt jwt = jwtBuilderFactory.reconstruct(jwtString, SignedJwt.class);
+
+        cache.put(jwtString, KEY, jwt);
+
+        assertThat(cache.get(jwtString, KEY, SignedJwt.class)).isSameAs(jwt);
+        assertThat(cache.get(jwtString, "other key", SignedJwt.class)).isNull();
+        assertThat(cache.get(jwtString, KEY, EncryptedJwt.class)).isNull();
+        assertThat(cache.get(signedJwt(new Date(NOW + 120_000L), null), KEY, SignedJwt.class)).isNull();
+    }
+
+    @Test
+    public void shouldExpireEntriesAtExpirationTime() {
+        String jwtString = signedJwt(new Date(NOW + 60_000L), null);
+        cache.put(jwtString, KEY, jwtBuilderFactory.reconstruct(jwtString, SignedJwt.class));
+
+        given(timeService.now()).willReturn(NOW + 60_000L);
+
+        assertThat(cache.get(jwtString, KEY, SignedJwt.class)).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldExpireEntriesAfterMaximumAge() {
+        String jwtString = signedJwt(null, null);
+        cache.put(jwtString, KEY, jwtBuilderFactory.reconstruct(jwtString, SignedJwt.class));
+
+        given(timeService.now()).willReturn(NOW + 599_999L);
+        assertThat(cache.get(jwtString, KEY, SignedJwt.class)).isNotNull();
+
+        given(timeService.now()).willReturn(NOW + 600_000L);
+        assertThat(cache.get(jwtString, KEY, SignedJwt.class)).isNull();
+    }
+
+    @Test
+    public void shouldNotCacheExpiredOrNotYetValidJwts() {
+        String expired = signedJwt(new Date(NOW - 1_000L), null);
+        String notYetValid = signedJwt(new Date(NOW + 60_000L), new Date(NOW + 1_000L));
+
+        cache.put(expired, KEY, jwtBuilderFactory.reconstruct(expired, SignedJwt.class));
+        cache.put(notYetValid, KEY, jwtBuilderFactory.reconstruct(notYetValid, SignedJwt.class));
+
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntry() {
+        String first = signedJwt(new Date(NOW + 60_000L), null);
+        String second = signedJwt(new Date(NOW + 120_000L), null);
+        String third = signedJwt(new Date(NOW + 180_000L), null);
+
+        cache.put(first, KEY, jwtBuilderFactory.reconstruct(first, SignedJwt.class));
+        cache.put(second, KEY, jwtBuilderFactory.reconstruct(second, SignedJwt.class));
+        cache.get(first, KEY, SignedJwt.class);
+        cache.put(third, KEY, jwtBuilderFactory.reconstruct(third, SignedJwt.class));
+
+        assertThat(cache.get(first, KEY, SignedJwt.class)).isNotNull();
+        assertThat(cache.get(second, KEY, SignedJwt.class)).isNull();
+        assertThat(cache.get(third, KEY, SignedJwt.class)).isNotNull();
+    }
+
+    private String signedJwt(final Date expirationTime, final Date notBeforeTime) {
+        JwtClaimsSetBuilder claims = jwtBuilderFactory.claims().sub("alice");
+        if (expirationTime != null) {
+            claims.exp(expirationTime);
+        }
+        if (notBeforeTime != null) {
+            claims.nbf(notBeforeTime);
+        }
+        return jwtBuilderFactory.jws(signingHandler)
+                .headers()
+                    .alg(JwsAlgorithm.HS256)
+                .done()
+                .claims(claims.build())
+                .build();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+
+package org.forgerock.json.jose.jwe;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.common.JwtReconstruction;
+import org.forgerock.json.jose.exceptions.InvalidJwtException;
+import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweException;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.util.encode.Base64url;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class StreamingJweTest {
+    private KeyPair rsaKeyPair;
+    private Key aes128Key;
+    private Key aes256Key;
+
+    private final StreamingJwe streamingJwe = new StreamingJwe();
+
+    @BeforeClass
+    public void generateKeys() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        rsaKeyPair = keyPairGenerator.generateKeyPair();
+
+        byte[] keyData = new byte[32];
+        Arrays.fill(keyData, (byte) 42);
+        aes128Key = new SecretKeySpec(keyData, 0, 16, "AES");
+        aes256Key = new SecretKeySpec(keyData, "AES");
+    }
+
+    @DataProvider
+    public Object[][] algorithms() {
+        return new Object[][] {
+            { JweAlgorithm.RSA_OAEP_256, EncryptionMethod.A128GCM, rsaKeyPair.getPublic(), rsaKeyPair.getPrivate() },
+            { JweAlgorithm.RSAES_PKCS1_V1_5, EncryptionMethod.A128CBC_HS256, rsaKeyPair.getPublic(),
+                rsaKeyPair.getPrivate() },
+            { JweAlgorithm.A128KW, EncryptionMethod.A128GCM, aes128Key, aes128Key },
+            { JweAlgorithm.DIRECT, EncryptionMethod.A128CBC_HS256, aes256Key, aes256Key },
+            { JweAlgorithm.DIRECT, EncryptionMethod.A128GCM, aes128Key, aes128Key },
+        };
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void shouldRoundTripLargePayload(JweAlgorithm algorithm, EncryptionMethod method, Key encryptionKey,
+            Key decryptionKey) throws Exception {
+        // Given
+        byte[] payload = new byte[100000];
+        new Random(42).nextBytes(payload);
+        JweHeader header = header(algorithm, method);
+
+        // When
+        String jwe = encrypt(header, encryptionKey, payload);
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        JweHeader decryptedHeader = streamingJwe.decrypt(new ByteArrayInputStream(ascii(jwe)), decryptionKey,
+                plaintext);
+
+        // Then
+        assertThat(jwe.split("\\.")).hasSize(5);
+        assertThat(plaintext.toByteArray()).isEqualTo(payload);
+        assertThat(decryptedHeader.getEncryptionMethod()).isEqualTo(method);
+    }
+
+    @Test
+    public void shouldCompressPayload() throws Exception {
+        // Given
+        byte[] payload = new byte[100000];
+        Arrays.fill(payload, (byte) 'a');
+        JweHeader header = header(JweAlgorithm.DIRECT, EncryptionMethod.A128GCM);
+        header.setCompressionAlgorithm(CompressionAlgorithm.DEF);
+
+        // When
+        String jwe = encrypt(header, aes128Key, payload);
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        streamingJwe.decrypt(new ByteArrayInputStream(ascii(jwe)), aes128Key, plaintext);
+
+        // Then
+        assertThat(jwe.length()).isLessThan(payload.length / 10);
+        assertThat(plaintext.toByteArray()).isEqualTo(payload);
+    }
+
+    @Test
+    public void shouldBeReadableAsEncryptedJwt() throws Exception {
+        // Given
+        JwtClaimsSet claims = new JwtBuilderFactory().claims().claim("sub", "demo").build();
+        JweHeader header = header(JweAlgorithm.RSA_OAEP_256, EncryptionMethod.A128CBC_HS256);
+        header.setCompressionAlgorithm(CompressionAlgorithm.DEF);
+
+        // When
+        String jwe = encrypt(header, rsaKeyPair.getPublic(), claims.build().getBytes(StandardCharsets.UTF_8));
+        EncryptedJwt encryptedJwt = new JwtReconstruction().reconstructJwt(jwe, EncryptedJwt.class);
+        encryptedJwt.decrypt(rsaKeyPair.getPrivate());
+
+        // Then
+        assertThat(encryptedJwt.getClaimsSet().getSubject()).isEqualTo("demo");
+    }
+
+    @Test
+    public void shouldDecryptEncryptedJwt() throws Exception {
+        // Given
+        JwtClaimsSet claims = new JwtBuilderFactory().claims().claim("sub", "demo").build();
+        String jwe = new JwtBuilderFactory().jwe(rsaKeyPair.getPublic()).claims(claims)
+                .headers().alg(JweAlgorithm.RSA_OAEP_256).enc(EncryptionMethod.A128GCM).done().build();
+
+        // When
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        streamingJwe.decrypt(new ByteArrayInputStream(ascii(jwe)), rsaKeyPair.getPrivate(), plaintext);
+
+        // Then
+        assertThat(JwtClaimsSet.parse(plaintext.toByteArray()).getSubject()).isEqualTo("demo");
+    }
+
+    @Test(dataProvider = "algorithms", expectedExceptions = JweDecryptionException.class)
+    public void shouldRejectTamperedCiphertext(JweAlgorithm algorithm, EncryptionMethod method, Key encryptionKey,
+            Key decryptionKey) throws Exception {
+        // Given
+        String[] parts = encrypt(header(algorithm, method), encryptionKey, new byte[1000]).split("\\.");
+        byte[] ciphertext = Base64url.decode(parts[3]);
+        ciphertext[500] ^= 1;
+        parts[3] = Base64url.encode(ciphertext);
+
+        // When
+        streamingJwe.decrypt(new ByteArrayInputStream(ascii(join(parts))), decryptionKey,
+                new ByteArrayOutputStream());
+    }
+
+    @Test(expectedExceptions = InvalidJwtException.class)
+    public void shouldRejectJweWithoutAuthenticationTag() throws Exception {
+        // Given
+        String jwe = encrypt(header(JweAlgorithm.DIRECT, EncryptionMethod.A128GCM), aes128Key, new byte[10]);
+
+        // When
+        streamingJwe.decrypt(new ByteArrayInputStream(ascii(jwe.substring(0, jwe.lastIndexOf('.')))), aes128Key,
+                new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void shouldRefuseToDecryptCompressedCbcHmacJwe() throws Exception {
+        // Given
+        JweHeader header = header(JweAlgorithm.DIRECT, EncryptionMethod.A128CBC_HS256);
+        header.setCompressionAlgorithm(CompressionAlgorithm.DEF);
+        String jwe = encrypt(header, aes256Key, new byte[1000]);
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+
+        // When
+        try {
+            streamingJwe.decrypt(new ByteArrayInputStream(ascii(jwe)), aes256Key, plaintext);
+            failBecauseExceptionWasNotThrown(JweException.class);
+        } catch (JweException e) {
+            // Then
+            assertThat(e).isNotInstanceOf(JweDecryptionException.class);
+            assertThat(plaintext.size()).isEqualTo(0);
+        }
+    }
+
+    @Test(expectedExceptions = JweDecryptionException.class)
+    public void shouldReportInvalidCompressedPayloadAsDecryptionFailure() throws Exception {
+        // Given
+        JweHeader header = header(JweAlgorithm.DIRECT, EncryptionMethod.A128GCM);
+        header.setCompressionAlgorithm(CompressionAlgorithm.DEF);
+        String encodedHeader = Base64url.encode(header.build().getBytes(StandardCharsets.UTF_8));
+        byte[] iv = new byte[12];
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, aes128Key, new GCMParameterSpec(128, iv));
+        cipher.updateAAD(ascii(encodedHeader));
+        // Not a DEFLATE stream: the block type 3 is reserved.
+        byte[] ciphertext = cipher.doFinal(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff });
+        int tagStart = ciphertext.length - 16;
+        String jwe = join(new String[] { encodedHeader, "", Base64url.encode(iv),
+            Base64url.encode(Arrays.copyOf(ciphertext, tagStart)),
+            Base64url.encode(Arrays.copyOfRange(ciphertext, tagStart, ciphertext.length)) });
+
+        // When
+        streamingJwe.decrypt(new ByteArrayInputStream(ascii(jwe)), aes128Key, new ByteArrayOutputStream());
+    }
+
+    private String encrypt(JweHeader header, Key key, byte[] payload) throws Exception {
+        ByteArrayOutputStream jwe = new ByteArrayOutputStream();
+        streamingJwe.encrypt(header, key, new ByteArrayInputStream(payload), jwe);
+        return new String(jwe.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static JweHeader header(JweAlgorithm algorithm, EncryptionMethod method) {
+        JweHeader header = new JweHeader();
+        header.setAlgorithm(algorithm);
+        header.setEncryptionMethod(method);
+        return header;
+    }
+
+    private static byte[] ascii(String jwe) {
+        return jwe.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String join(String[] parts) {
+        StringBuilder builder = new StringBuilder(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            builder.append('.').append(parts[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwk;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.forgerock.util.time.Duration.duration;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.TimeService;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JWKSetStoreTest {
+
+    private static final long NOW = 1_460_000_000_000L;
+    private static final Key KEY = new SecretKeySpec(new byte[32], "HmacSHA256");
+    private static final Key OTHER_KEY = new SecretKeySpec(new byte[] { 1, 2, 3, 4 }, "HmacSHA256");
+
+    private JWKSetStore.Loader loader;
+    private TimeService timeService;
+    private JWKSetStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        loader = mock(JWKSetStore.Loader.class);
+        timeService = mock(TimeService.class);
+        given(timeService.now()).willReturn(NOW);
+        store = new JWKSetStore(loader, duration(10, MINUTES), duration(30, SECONDS), null, timeService);
+    }
+
+    @Test
+    public void shouldLoadKeysOnceForKnownKeyIds() throws Exception {
+        given(loader.load()).willReturn(keys("kid", KEY, -1));
+
+        assertThat(store.getKey("kid")).isSameAs(KEY);
+        assertThat(store.getKey("kid")).isSameAs(KEY);
+        assertThat(store.getSigningHandler("kid")).isNotNull();
+
+        verify(loader, times(1)).load();
+    }
+
+    @Test
+    public void shouldRateLimitLoadsForUnknownKeyIds() throws Exception {
+        given(loader.load()).willReturn(keys("kid", KEY, -1), keys("other", OTHER_KEY, -1));
+        store.refresh();
+
+        assertThat(store.getKey("other")).isSameAs(OTHER_KEY);
+        assertThat(store.getKey("unknown")).isNull();
+        assertThat(store.getKey("unknown")).isNull();
+        verify(loader, times(2)).load();
+
+        given(timeService.now()).willReturn(NOW + 30_000L);
+        assertThat(store.getKey("unknown")).isNull();
+        verify(loader, times(3)).load();
+    }
+
+    @Test
+    public void shouldReloadExpiredKeysAndKeepThemIfReloadFails() throws Exception {
+        given(loader.load()).willReturn(keys("kid", KEY, 60_000L), unavailable());
+        store.refresh();
+
+        given(timeService.now()).willReturn(NOW + 60_000L);
+        assertThat(store.getKey("kid")).isSameAs(KEY);
+        verify(loader, times(2)).load();
+
+        given(timeService.now()).willReturn(NOW + 70_000L);
+        assertThat(store.getKey("kid")).isSameAs(KEY);
+        verify(loader, times(2)).load();
+    }
+
+    @Test
+    public void shouldPickUpRotatedKeysInTheBackgroundBeforeTheyAreNeeded() throws Exception {
+        final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        store = new JWKSetStore(loader, duration(10, MINUTES), duration(30, SECONDS), executor, timeService);
+        given(loader.load()).willReturn(keys("kid", KEY, 60_000L), keys("other", OTHER_KEY, 60_000L));
+        store.refresh();
+
+        final ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(refresh.capture(), eq(45_000L), eq(MILLISECONDS));
+        given(timeService.now()).willReturn(NOW + 45_000L);
+        refresh.getValue().run();
+
+        // The rotated key is found without the reload caused by an unknown key ID.
+        assertThat(store.getKey("other")).isSameAs(OTHER_KEY);
+        verify(loader, times(2)).load();
+        verify(executor, times(2)).schedule(any(Runnable.class), eq(45_000L), eq(MILLISECONDS));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldFailWhenNoKeysCanBeLoaded() throws Exception {
+        given(loader.load()).willReturn(unavailable());
+
+        store.getKey("kid");
+    }
+
+    @Test(timeOut = 10_000)
+    public void shouldFetchExpiredKeysOnceForConcurrentLookups() throws Exception {
+        final int threads = 8;
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CyclicBarrier lookupsStarted = new CyclicBarrier(threads + 1);
+        store = new JWKSetStore(new JWKSetStore.Loader() {
+            @Override
+            public Promise<JWKSetStore.LoadedKeys, IOException> load() {
+                if (fetches.incrementAndGet() == 1) {
+                    return keys("kid", KEY, 60_000L);
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return newExceptionPromise((IOException) new InterruptedIOException());
+                }
+                return keys("kid", OTHER_KEY, 60_000L);
+            }
+        }, duration(10, MINUTES), duration(30, SECONDS), null, timeService);
+        store.refresh();
+        given(timeService.now()).willReturn(NOW + 60_000L);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Key>> lookups = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                lookups.add(executor.submit(new Callable<Key>() {
+                    @Override
+                    public Key call() throws Exception {
+                        lookupsStarted.await();
+                        return store.getKey("kid");
+                    }
+                }));
+            }
+            lookupsStarted.await();
+            release.countDown();
+
+            for (Future<Key> lookup : lookups) {
+                assertThat(lookup.get()).isIn(KEY, OTHER_KEY);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(store.getKey("kid")).isSameAs(OTHER_KEY);
+        assertThat(fetches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotWaitForKeysBeingLoadedWhenAskedAsynchronously() throws Exception {
+        final PromiseImpl<JWKSetStore.LoadedKeys, IOException> loadedKeys = PromiseImpl.create();
+        given(loader.load()).willReturn(loadedKeys);
+
+        final Promise<SigningHandler, IOException> signingHandler = store.getSigningHandlerAsync("kid");
+        assertThat(signingHandler.isDone()).isFalse();
+
+        loadedKeys.handleResult(new JWKSetStore.LoadedKeys(Collections.singletonMap("kid", KEY), -1));
+        assertThat(signingHandler.getOrThrow()).isNotNull();
+        verify(loader, times(1)).load();
+    }
+
+    @Test
+    public void shouldParseMaxAgeFromCacheHeaders() {
+        assertThat(JWKSetStore.parseMaxAge("public, max-age=300", null, NOW)).isEqualTo(300_000L);
+        assertThat(JWKSetStore.parseMaxAge("no-cache", null, NOW)).isEqualTo(0L);
+        assertThat(JWKSetStore.parseMaxAge(null, "Thu, 07 Apr 2016 03:33:20 GMT", NOW)).isEqualTo(0L);
+        assertThat(JWKSetStore.parseMaxAge(null, "Thu, 07 Apr 2016 03:43:20 GMT", NOW)).isEqualTo(600_000L);
+        assertThat(JWKSetStore.parseMaxAge(null, "yesterday", NOW)).isEqualTo(0L);
+        assertThat(JWKSetStore.parseMaxAge(null, null, NOW)).isEqualTo(-1L);
+    }
+
+    private static Promise<JWKSetStore.LoadedKeys, IOException> keys(final String keyId, final Key key,
+            final long maxAgeMillis) {
+        return newResultPromise(new JWKSetStore.LoadedKeys(Collections.singletonMap(keyId, key), maxAgeMillis));
+    }
+
+    private static Promise<JWKSetStore.LoadedKeys, IOException> unavailable() {
+        return newExceptionPromise(new IOException("unavailable"));
+    }
+}
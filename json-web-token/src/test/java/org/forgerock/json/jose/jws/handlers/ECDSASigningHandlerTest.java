@@ -90,6 +90,49 @@ public class ECDSASigningHandlerTest {
         assertThat(valid).isFalse();
     }
 
+    @Test(dataProvider = "supportedCurves")
+    public void shouldReuseHandlersAfterFailedVerification(JwsAlgorithm algorithm, EcJWK jwk, int expectedSize)
+            throws Exception {
+        // Given
+        ECDSASigningHandler signingHandler = new ECDSASigningHandler(jwk.toECPrivateKey());
+        ECDSASigningHandler verificationHandler = new ECDSASigningHandler(jwk.toECPublicKey());
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final byte[] tampered = "Sample Massage".getBytes(StandardCharsets.UTF_8);
+        final byte[] signature = signingHandler.sign(algorithm, data);
+
+        // When
+        boolean invalid = verificationHandler.verify(algorithm, tampered, signature);
+        boolean valid = verificationHandler.verify(algorithm, data, signingHandler.sign(algorithm, data));
+
+        // Then
+        assertThat(invalid).isFalse();
+        assertThat(valid).isTrue();
+    }
+
+    @Test(dataProvider = "supportedCurves")
+    public void shouldVerifySignaturesWhoseComponentsAreNotMinimalIntegers(JwsAlgorithm algorithm, EcJWK jwk,
+            int expectedSize) throws Exception {
+        // Given a signature whose components both need a sign byte or have a leading zero byte dropped in DER
+        ECDSASigningHandler signingHandler = new ECDSASigningHandler(jwk.toECPrivateKey());
+        ECDSASigningHandler verificationHandler = new ECDSASigningHandler(jwk.toECPublicKey());
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final int componentSize = expectedSize / 2;
+        byte[] signature;
+        do {
+            signature = signingHandler.sign(algorithm, data);
+        } while (isMinimal(signature[0]) || isMinimal(signature[componentSize]));
+
+        // When
+        boolean valid = verificationHandler.verify(algorithm, data, signature);
+
+        // Then
+        assertThat(valid).isTrue();
+    }
+
+    private static boolean isMinimal(byte firstByte) {
+        return firstByte != 0 && (firstByte & 0x80) == 0;
+    }
+
     @DataProvider
     public static Object[][] supportedCurves() {
         return new Object[][] {
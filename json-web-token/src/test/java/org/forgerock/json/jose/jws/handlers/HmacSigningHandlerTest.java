@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+
+package org.forgerock.json.jose.jws.handlers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class HmacSigningHandlerTest {
+
+    private static final byte[] SECRET = "a shared secret of at least 64 bytes, long enough for HS512 keys"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test(dataProvider = "algorithms")
+    public void shouldComputeTheSameMacOnEveryUse(JwsAlgorithm algorithm) throws Exception {
+        // Given
+        HmacSigningHandler signingHandler = new HmacSigningHandler(SECRET);
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final byte[] expected = mac(algorithm, data);
+
+        // When
+        final byte[] first = signingHandler.sign(algorithm, data);
+        signingHandler.sign(algorithm, "Another Message".getBytes(StandardCharsets.UTF_8));
+        final byte[] second = signingHandler.sign(algorithm, data);
+
+        // Then
+        assertThat(first).isEqualTo(expected);
+        assertThat(second).isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void shouldReuseHandlerAfterFailedVerification(JwsAlgorithm algorithm) throws Exception {
+        // Given
+        HmacSigningHandler signingHandler = new HmacSigningHandler(SECRET);
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final byte[] tampered = "Sample Massage".getBytes(StandardCharsets.UTF_8);
+        final byte[] signature = signingHandler.sign(algorithm, data);
+
+        // When
+        boolean invalid = signingHandler.verify(algorithm, tampered, signature);
+        boolean valid = signingHandler.verify(algorithm, data, signature);
+
+        // Then
+        assertThat(invalid).isFalse();
+        assertThat(valid).isTrue();
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void shouldUseTheSecretOfEachHandlerOnTheSameThread(JwsAlgorithm algorithm) throws Exception {
+        // Given
+        HmacSigningHandler signingHandler = new HmacSigningHandler(SECRET);
+        HmacSigningHandler otherHandler = new HmacSigningHandler(
+                "another shared secret of at least 64 bytes, long enough for HS512".getBytes(StandardCharsets.UTF_8));
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final byte[] expected = mac(algorithm, data);
+
+        // When
+        final byte[] first = signingHandler.sign(algorithm, data);
+        final byte[] other = otherHandler.sign(algorithm, data);
+        final byte[] second = signingHandler.sign(algorithm, data);
+
+        // Then
+        assertThat(first).isEqualTo(expected);
+        assertThat(other).isNotEqualTo(expected);
+        assertThat(second).isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void shouldShareHandlerBetweenThreads(final JwsAlgorithm algorithm) throws Exception {
+        // Given
+        final HmacSigningHandler signingHandler = new HmacSigningHandler(SECRET);
+        final List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final byte[] data = ("Message " + i).getBytes(StandardCharsets.UTF_8);
+            final byte[] expected = mac(algorithm, data);
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    for (int j = 0; j < 100; j++) {
+                        if (!signingHandler.verify(algorithm, data, expected)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        List<Future<Boolean>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        for (Future<Boolean> result : results) {
+            assertThat(result.get()).isTrue();
+        }
+    }
+
+    private static byte[] mac(JwsAlgorithm algorithm, byte[] data) throws Exception {
+        Mac mac = Mac.getInstance(algorithm.getAlgorithm());
+        mac.init(new SecretKeySpec(SECRET, algorithm.getAlgorithm()));
+        return mac.doFinal(data);
+    }
+
+    @DataProvider
+    public static Object[][] algorithms() {
+        return new Object[][] {
+                { JwsAlgorithm.HS256 },
+                { JwsAlgorithm.HS384 },
+                { JwsAlgorithm.HS512 }
+        };
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+
+package org.forgerock.json.jose.jws.handlers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class RSASigningHandlerTest {
+
+    private static final JwsAlgorithm ALGORITHM = JwsAlgorithm.RS256;
+
+    private KeyPair keyPair;
+
+    @BeforeClass
+    public void generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    public void shouldComputeTheSameSignatureOnEveryUse() throws Exception {
+        // Given
+        RSASigningHandler signingHandler = new RSASigningHandler(keyPair.getPrivate());
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        Signature signature = Signature.getInstance(ALGORITHM.getAlgorithm());
+        signature.initSign(keyPair.getPrivate());
+        signature.update(data);
+        final byte[] expected = signature.sign();
+
+        // When
+        final byte[] first = signingHandler.sign(ALGORITHM, data);
+        signingHandler.sign(ALGORITHM, "Another Message".getBytes(StandardCharsets.UTF_8));
+        final byte[] second = signingHandler.sign(ALGORITHM, data);
+
+        // Then
+        assertThat(first).isEqualTo(expected);
+        assertThat(second).isEqualTo(expected);
+    }
+
+    @Test
+    public void shouldReuseHandlersAfterFailedVerification() throws Exception {
+        // Given
+        RSASigningHandler signingHandler = new RSASigningHandler(keyPair.getPrivate());
+        RSASigningHandler verificationHandler = new RSASigningHandler(keyPair.getPublic());
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final byte[] tampered = "Sample Massage".getBytes(StandardCharsets.UTF_8);
+        final byte[] signature = signingHandler.sign(ALGORITHM, data);
+
+        // When
+        boolean invalid = verificationHandler.verify(ALGORITHM, tampered, signature);
+        boolean valid = verificationHandler.verify(ALGORITHM, data, signature);
+
+        // Then
+        assertThat(invalid).isFalse();
+        assertThat(valid).isTrue();
+    }
+
+    @Test
+    public void shouldReuseHandlerAfterForgedSignature() throws Exception {
+        // Given
+        RSASigningHandler signingHandler = new RSASigningHandler(keyPair.getPrivate());
+        RSASigningHandler verificationHandler = new RSASigningHandler(keyPair.getPublic());
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+        final byte[] signature = signingHandler.sign(ALGORITHM, data);
+
+        // When
+        boolean invalid = verificationHandler.verify(ALGORITHM, data, new byte[256]);
+        boolean valid = verificationHandler.verify(ALGORITHM, data, signature);
+
+        // Then
+        assertThat(invalid).isFalse();
+        assertThat(valid).isTrue();
+    }
+
+    @Test
+    public void shouldUseTheKeyOfEachHandlerOnTheSameThread() throws Exception {
+        // Given
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair otherKeyPair = generator.generateKeyPair();
+        RSASigningHandler signingHandler = new RSASigningHandler(keyPair.getPrivate());
+        RSASigningHandler otherSigningHandler = new RSASigningHandler(otherKeyPair.getPrivate());
+        RSASigningHandler verificationHandler = new RSASigningHandler(keyPair.getPublic());
+        RSASigningHandler otherVerificationHandler = new RSASigningHandler(otherKeyPair.getPublic());
+        final byte[] data = "Sample Message".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        final byte[] signature = signingHandler.sign(ALGORITHM, data);
+        final byte[] otherSignature = otherSigningHandler.sign(ALGORITHM, data);
+
+        // Then
+        assertThat(verificationHandler.verify(ALGORITHM, data, signature)).isTrue();
+        assertThat(otherVerificationHandler.verify(ALGORITHM, data, signature)).isFalse();
+        assertThat(otherVerificationHandler.verify(ALGORITHM, data, otherSignature)).isTrue();
+        assertThat(verificationHandler.verify(ALGORITHM, data, otherSignature)).isFalse();
+    }
+
+    @Test
+    public void shouldShareHandlersBetweenThreads() throws Exception {
+        // Given
+        final RSASigningHandler signingHandler = new RSASigningHandler(keyPair.getPrivate());
+        final RSASigningHandler verificationHandler = new RSASigningHandler(keyPair.getPublic());
+        final List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final byte[] data = ("Message " + i).getBytes(StandardCharsets.UTF_8);
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    for (int j = 0; j < 10; j++) {
+                        if (!verificationHandler.verify(ALGORITHM, data, signingHandler.sign(ALGORITHM, data))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        List<Future<Boolean>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        for (Future<Boolean> result : results) {
+            assertThat(result.get()).isTrue();
+        }
+    }
+}
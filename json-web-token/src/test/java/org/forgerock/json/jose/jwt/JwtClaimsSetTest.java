@@ -18,17 +18,25 @@ package org.forgerock.json.jose.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import org.forgerock.json.jose.exceptions.InvalidJwtException;
 import org.forgerock.json.jose.exceptions.JwtRuntimeException;
 import org.testng.annotations.Test;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("javadoc")
 public class JwtClaimsSetTest {
@@ -722,6 +730,159 @@ public class JwtClaimsSetTest {
         assertThat(claimsSet.getJwtId()).isNull();
     }
 
+    @Test
+    public void shouldParseClaims() {
+
+        //Given
+        String json = "{\"sub\":\"alice\",\"aud\":[\"a\",\"b\"],\"exp\":1373896932,"
+                + "\"custom\":{\"nested\":[1,{\"key\":\"value\"}]}}";
+
+        //When
+        JwtClaimsSet claimsSet = JwtClaimsSet.parse(json.getBytes(StandardCharsets.UTF_8));
+
+        //Then
+        assertThat(claimsSet.getSubject()).isEqualTo("alice");
+        assertThat(claimsSet.getAudience()).containsExactly("a", "b");
+        assertThat(claimsSet.getExpirationTime()).isEqualTo(new Date(1_373_896_932_000L));
+        assertThat(claimsSet.get("custom").get("nested").get(1).get("key").asString()).isEqualTo("value");
+        assertThat(claimsSet.keys()).containsExactly("sub", "aud", "exp", "custom");
+    }
+
+    @Test
+    public void shouldModifyParsedClaims() {
+
+        //Given
+        String json = "{\"sub\":\"alice\",\"custom\":[1]}";
+
+        //When
+        JwtClaimsSet claimsSet = JwtClaimsSet.parse(json.getBytes(StandardCharsets.UTF_8));
+        claimsSet.setSubject("bob");
+        claimsSet.put("custom", null);
+        claimsSet.addAudience("aud");
+
+        //Then
+        assertThat(claimsSet.getSubject()).isEqualTo("bob");
+        assertThat(claimsSet.isDefined("custom")).isFalse();
+        assertThat(claimsSet.getAudience()).containsExactly("aud");
+    }
+
+    @Test(expectedExceptions = InvalidJwtException.class)
+    public void shouldRejectParsedClaimsWithNestedDuplicateNames() {
+        JwtClaimsSet.parse("{\"custom\":{\"key\":1,\"key\":2}}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expectedExceptions = JwtRuntimeException.class)
+    public void shouldRejectParsedClaimsWithInvalidReservedClaim() {
+        JwtClaimsSet.parse("{\"exp\":\"tomorrow\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldParseTimesAsLongs() {
+
+        //Given
+        String json = "{\"exp\":1373896932,\"iat\":1373896000,\"nbf\":1373896000,\"custom\":1}";
+
+        //When
+        JwtClaimsSet claimsSet = JwtClaimsSet.parse(json.getBytes(StandardCharsets.UTF_8));
+
+        //Then
+        assertThat(claimsSet.get("exp").getObject()).isEqualTo(1_373_896_932L);
+        assertThat(claimsSet.get("iat").getObject()).isEqualTo(1_373_896_000L);
+        assertThat(claimsSet.get("nbf").getObject()).isEqualTo(1_373_896_000L);
+        assertThat(claimsSet.keys()).containsExactly("exp", "iat", "nbf", "custom");
+    }
+
+    @Test
+    public void shouldParseReservedClaimsWrittenInAnotherCase() {
+
+        //Given
+        String json = "{\"SUB\":\"alice\",\"Exp\":1373896932,\"Aud\":[\"a\",\"b\"],\"custom\":1}";
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("SUB", "alice");
+        claims.put("Exp", 1373896932);
+        claims.put("Aud", Arrays.asList("a", "b"));
+        claims.put("custom", 1);
+
+        //When
+        JwtClaimsSet claimsSet = JwtClaimsSet.parse(json.getBytes(StandardCharsets.UTF_8));
+
+        //Then
+        assertThat(claimsSet.getSubject()).isEqualTo("alice");
+        assertThat(claimsSet.getExpirationTime()).isEqualTo(new Date(1_373_896_932_000L));
+        assertThat(claimsSet.getAudience()).containsExactly("a", "b");
+        assertThat(claimsSet.keys()).containsOnly("sub", "exp", "aud", "custom");
+        assertThat(claimsSet.getAll()).isEqualTo(new JwtClaimsSet(claims).getAll());
+    }
+
+    @Test
+    public void shouldIterateOverParsedClaimsWhileTheyAreModified() {
+
+        //Given
+        JwtClaimsSet claimsSet = JwtClaimsSet.parse("{\"a\":[1],\"b\":{}}".getBytes(StandardCharsets.UTF_8));
+
+        //When
+        List<String> keys = new ArrayList<>();
+        for (String key : claimsSet.keys()) {
+            keys.add(key);
+            claimsSet.put(key + "2", 2);
+        }
+        for (Map.Entry<String, Object> entry : claimsSet.getAll().entrySet()) {
+            claimsSet.put(entry.getKey() + "3", 3);
+        }
+
+        //Then
+        assertThat(keys).containsExactly("a", "b");
+        assertThat(claimsSet.keys()).containsExactly("a", "b", "a2", "b2", "a3", "b3", "a23", "b23");
+    }
+
+    @Test
+    public void shouldReadParsedClaimsConcurrently() throws Exception {
+
+        //Given
+        StringBuilder json = new StringBuilder("{\"sub\":\"alice\"");
+        for (int i = 0; i < 50; i++) {
+            json.append(",\"claim").append(i).append("\":{\"nested\":[").append(i).append("]}");
+        }
+        final JwtClaimsSet claimsSet = JwtClaimsSet.parse(json.append('}').toString().getBytes(StandardCharsets.UTF_8));
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Boolean>> readers = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            final boolean iterate = thread % 2 == 0;
+            readers.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    start.await();
+                    if (iterate) {
+                        claimsSet.getAll().entrySet().size();
+                    }
+                    for (int i = 0; i < 50; i++) {
+                        if (claimsSet.get("claim" + i).get("nested").get(0).asInteger() != i) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //When
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (Callable<Boolean> reader : readers) {
+                results.add(executor.submit(reader));
+            }
+            start.countDown();
+
+            //Then
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private Long timeInSeconds(final Date date) {
         return date.getTime() / 1000L;
     }
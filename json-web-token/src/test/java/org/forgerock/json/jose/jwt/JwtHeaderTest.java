@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.jose.jwt;
@@ -230,4 +230,23 @@ public class JwtHeaderTest {
             assertThat(header.get("typ").asString()).isEqualTo(type.name().toUpperCase());
         }
     }
+
+    @Test
+    public void shouldKeepExplicitTypeWhichIsNotAJwtType() {
+        JwtHeader header = new JwsHeader();
+
+        header.setParameter("typ", "at+jwt");
+
+        assertThat(header.getTypeString()).isEqualTo("at+jwt");
+    }
+
+    @Test
+    public void shouldNormaliseTypeWhichIsAJwtType() {
+        JwtHeader header = new JwsHeader();
+
+        header.setParameter("typ", "jws");
+
+        assertThat(header.getType()).isEqualTo(JwtType.JWS);
+        assertThat(header.getTypeString()).isEqualTo("JWS");
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class DerUtilsTest {
+
+    @DataProvider
+    public Object[][] integers() {
+        return new Object[][] {
+            // value, DER encoding
+            { bytes(0x12, 0x34), bytes(0x02, 0x02, 0x12, 0x34) },
+            { bytes(0x80, 0x01), bytes(0x02, 0x03, 0x00, 0x80, 0x01) },
+            { bytes(0xFF), bytes(0x02, 0x02, 0x00, 0xFF) },
+            { bytes(0x00, 0x00, 0x12), bytes(0x02, 0x01, 0x12) },
+            { bytes(0x00, 0x00, 0x80), bytes(0x02, 0x02, 0x00, 0x80) },
+            { bytes(0x00, 0x7F, 0xFF), bytes(0x02, 0x02, 0x7F, 0xFF) },
+            { bytes(0x00, 0x00), bytes(0x02, 0x01, 0x00) },
+        };
+    }
+
+    @Test(dataProvider = "integers")
+    public void shouldWriteMinimalTwosComplementIntegers(byte[] value, byte[] expected) {
+        // given
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        // when
+        DerUtils.writeInteger(buffer, value);
+
+        // then
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position())).isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "integers")
+    public void shouldReadWrittenIntegersBackAtFixedWidth(byte[] value, byte[] encoded) {
+        // given
+        final byte[] output = new byte[value.length];
+
+        // when
+        DerUtils.readUnsignedInteger(ByteBuffer.wrap(encoded), output, 0, output.length);
+
+        // then
+        assertThat(output).isEqualTo(value);
+    }
+
+    @Test
+    public void shouldWriteLongIntegersWithLongFormLengths() {
+        // given
+        final byte[] value = new byte[132];
+        Arrays.fill(value, 2, value.length, (byte) 0x80);
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // when
+        DerUtils.writeInteger(buffer, value);
+
+        // then the two leading zeros are dropped, a sign byte is added and the length of 131 takes two bytes
+        final byte[] encoded = Arrays.copyOf(buffer.array(), buffer.position());
+        assertThat(encoded).hasSize(134);
+        assertThat(Arrays.copyOf(encoded, 5)).isEqualTo(bytes(0x02, 0x81, 0x83, 0x00, 0x80));
+        final byte[] output = new byte[value.length];
+        DerUtils.readUnsignedInteger(ByteBuffer.wrap(encoded), output, 0, output.length);
+        assertThat(output).isEqualTo(value);
+    }
+
+    @DataProvider
+    public Object[][] lengths() {
+        return new Object[][] {
+            { 0, bytes(0x00) },
+            { 127, bytes(0x7F) },
+            { 128, bytes(0x81, 0x80) },
+            { 255, bytes(0x81, 0xFF) },
+            { 256, bytes(0x82, 0x01, 0x00) },
+            { 65536, bytes(0x83, 0x01, 0x00, 0x00) },
+        };
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldWriteMinimalLengths(int length, byte[] expected) {
+        // given
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+
+        // when
+        DerUtils.writeLength(buffer, length);
+
+        // then
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position())).isEqualTo(expected);
+        assertThat(DerUtils.readLength(ByteBuffer.wrap(expected))).isEqualTo(length);
+    }
+
+    private static byte[] bytes(int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.PatchOperation.replace;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newPatchRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.forgerock.json.JsonPatch;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures patching a single field of a large resource held in a {@link MemoryBackend}, which only copies the
+ * objects and arrays along the patched path, and diffing the resulting revisions, which share their other sub-trees.
+ * The {@code deepCopy} benchmarks are the baseline: they do the same work on a deep copy of the resource, as
+ * {@code MemoryBackend} used to. Run it with the GC profiler to compare how much each patch allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MemoryBackendPatchBenchmark {
+
+    private static final JsonPointer PATCHED_FIELD = new JsonPointer("/attribute0/value");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The size in bytes of the resource serialized as JSON, which is made of as many attributes as needed, each of
+     * which is an object holding an array.
+     */
+    @Param({ "10240", "102400", "1048576" })
+    private int documentSize;
+
+    private final Context context = new RootContext();
+    private MemoryBackend backend;
+    private String id;
+    private JsonValue content;
+    private long counter;
+
+    @Setup
+    public void setUp() throws ResourceException {
+        backend = new MemoryBackend();
+        id = backend.createInstance(context, newCreateRequest("resources", resource(documentSize)))
+                .getOrThrowUninterruptibly().getId();
+        content = backend.readInstance(context, id, newReadRequest("resources/" + id))
+                .getOrThrowUninterruptibly().getContent();
+    }
+
+    @Benchmark
+    public Object patch() throws ResourceException {
+        return backend.patchInstance(context, id, newPatchRequest("resources/" + id,
+                replace(PATCHED_FIELD, counter++))).getOrThrowUninterruptibly();
+    }
+
+    @Benchmark
+    public Object deepCopyPatch() {
+        JsonValue newContent = content.copy();
+        newContent.put(PATCHED_FIELD, counter++);
+        return newContent;
+    }
+
+    @Benchmark
+    public JsonValue diff() throws ResourceException {
+        JsonValue before = backend.readInstance(context, id, newReadRequest("resources/" + id))
+                .getOrThrowUninterruptibly().getContent();
+        JsonValue after = backend.patchInstance(context, id, newPatchRequest("resources/" + id,
+                replace(PATCHED_FIELD, counter++))).getOrThrowUninterruptibly().getContent();
+        return JsonPatch.diff(before, after);
+    }
+
+    @Benchmark
+    public JsonValue deepCopyDiff() {
+        JsonValue newContent = content.copy();
+        newContent.put(PATCHED_FIELD, counter++);
+        return JsonPatch.diff(content, newContent);
+    }
+
+    private static JsonValue resource(int documentSize) throws ResourceException {
+        JsonValue resource = json(object(field("name", "resource")));
+        int size = serializedSize(resource.getObject());
+        for (int i = 0; size < documentSize; i++) {
+            JsonValue attribute = json(object(
+                    field("value", i),
+                    field("tags", array("tag1", "tag2", "tag3")),
+                    field("metadata", object(field("created", "2016-01-01T00:00:00Z"), field("source", "import")))));
+            resource.put("attribute" + i, attribute.getObject());
+            // the quoted name, the colon and the comma separating it from the previous field
+            size += serializedSize(attribute.getObject()) + ("attribute" + i).length() + 4;
+        }
+        return resource;
+    }
+
+    private static int serializedSize(Object value) throws ResourceException {
+        try {
+            return MAPPER.writeValueAsBytes(value).length;
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MemoryBackendPatchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -19,6 +19,7 @@ package org.forgerock.json.resource.http;
 import static org.forgerock.http.HttpApplication.LOGGER;
 import static org.forgerock.json.resource.Applications.simpleCrestApplication;
 import static org.forgerock.json.resource.Requests.newApiRequest;
+import static org.forgerock.json.resource.http.HttpUtils.CHARACTER_ENCODING;
 import static org.forgerock.json.resource.http.HttpUtils.CONTENT_TYPE_REGEX;
 import static org.forgerock.json.resource.http.HttpUtils.ETAG_ANY;
 import static org.forgerock.json.resource.http.HttpUtils.FIELDS_DELIMITER;
@@ -27,9 +28,11 @@ import static org.forgerock.json.resource.http.HttpUtils.HEADER_IF_MODIFIED_SINC
 import static org.forgerock.json.resource.http.HttpUtils.HEADER_IF_NONE_MATCH;
 import static org.forgerock.json.resource.http.HttpUtils.HEADER_IF_UNMODIFIED_SINCE;
 import static org.forgerock.json.resource.http.HttpUtils.MIME_TYPE_APPLICATION_JSON;
+import static org.forgerock.json.resource.http.HttpUtils.MIME_TYPE_APPLICATION_NDJSON;
 import static org.forgerock.json.resource.http.HttpUtils.MIME_TYPE_MULTIPART_FORM_DATA;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_ACTION;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_FIELDS;
+import static org.forgerock.json.resource.http.HttpUtils.PARAM_FORMAT;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_MIME_TYPE;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_PAGED_RESULTS_COOKIE;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_PAGED_RESULTS_OFFSET;
@@ -56,6 +59,7 @@ import static org.forgerock.json.resource.http.HttpUtils.getJsonPatchContent;
 import static org.forgerock.json.resource.http.HttpUtils.getMethod;
 import static org.forgerock.json.resource.http.HttpUtils.getParameter;
 import static org.forgerock.json.resource.http.HttpUtils.getRequestedResourceVersion;
+import static org.forgerock.json.resource.http.HttpUtils.isNdjsonRequested;
 import static org.forgerock.json.resource.http.HttpUtils.prepareResponse;
 import static org.forgerock.json.resource.http.HttpUtils.rejectIfMatch;
 import static org.forgerock.json.resource.http.HttpUtils.rejectIfNoneMatch;
@@ -375,6 +379,9 @@ final class HttpAdapter implements Handler, Describable<Swagger, org.forgerock.h
             // Additional pre-validation for queries.
             rejectIfNoneMatch(req);
 
+            // Results may be returned one per line instead of within a single JSON object.
+            final boolean ndjson = isNdjsonRequested(req);
+
             // Query against collection.
             final QueryRequest request = Requests.newQueryRequest(getResourcePath(context, req))
                     .setResourceVersion(requestedResourceVersion);
@@ -397,6 +404,9 @@ final class HttpAdapter implements Handler, Describable<Swagger, org.forgerock.h
                                     + "separated list of sort keys");
                         }
                     }
+                } else if (name.equalsIgnoreCase(PARAM_FORMAT)) {
+                    // Already validated.
+                    continue;
                 } else if (name.equalsIgnoreCase(PARAM_QUERY_ID)) {
                     request.setQueryId(asSingleValue(name, values));
                 } else if (name.equalsIgnoreCase(PARAM_QUERY_EXPRESSION)) {
@@ -456,6 +466,17 @@ final class HttpAdapter implements Handler, Describable<Swagger, org.forgerock.h
                         + PARAM_PAGED_RESULTS_COOKIE + " are mutually exclusive");
             }
 
+            if (ndjson && (request.getPageSize() > 0 || request.getPagedResultsCookie() != null
+                    || request.getPagedResultsOffset() > 0)) {
+                throw new BadRequestException("Paged results cannot be requested when query results are returned as "
+                        + MIME_TYPE_APPLICATION_NDJSON);
+            }
+
+            if (ndjson) {
+                // Only once the request is known to be valid, so that errors are returned as plain JSON.
+                resp.getHeaders().put(new ContentTypeHeader(MIME_TYPE_APPLICATION_NDJSON, CHARACTER_ENCODING, null));
+            }
+
             return doRequest(context, req, resp, request);
         } catch (final Exception e) {
             return fail(req, e);
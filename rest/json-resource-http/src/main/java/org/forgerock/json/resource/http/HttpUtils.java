@@ -19,6 +19,7 @@ package org.forgerock.json.resource.http;
 import static org.forgerock.http.protocol.Responses.newInternalServerError;
 import static org.forgerock.http.routing.Version.version;
 import static org.forgerock.json.resource.ActionRequest.ACTION_ID_CREATE;
+import static org.forgerock.json.resource.QueryResponse.FIELD_ERROR;
 import static org.forgerock.util.Utils.closeSilently;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
@@ -47,6 +48,7 @@ import javax.mail.internet.ParseException;
 
 import org.forgerock.http.header.AcceptApiVersionHeader;
 import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.protocol.Header;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
 import org.forgerock.http.routing.Version;
@@ -84,9 +86,11 @@ public final class HttpUtils {
     static final String ETAG_ANY = "*";
 
     static final String MIME_TYPE_APPLICATION_JSON = "application/json";
+    static final String MIME_TYPE_APPLICATION_NDJSON = "application/x-ndjson";
     static final String MIME_TYPE_MULTIPART_FORM_DATA = "multipart/form-data";
     static final String MIME_TYPE_TEXT_PLAIN = "text/plain";
 
+    static final String HEADER_ACCEPT = "Accept";
     static final String HEADER_CACHE_CONTROL = "Cache-Control";
     static final String HEADER_ETAG = "ETag";
     static final String HEADER_IF_MATCH = "If-Match";
@@ -124,6 +128,8 @@ public final class HttpUtils {
     public static final String PARAM_ACTION = param(ActionRequest.FIELD_ACTION);
     /** the HTTP request parameter to specify which fields to return. */
     public static final String PARAM_FIELDS = param(Request.FIELD_FIELDS);
+    /** the HTTP request parameter to request a certain format for query results. */
+    public static final String PARAM_FORMAT = "_format";
     /** the HTTP request parameter to request a certain mimetype for a filed. */
     public static final String PARAM_MIME_TYPE = param("mimeType");
     /** the HTTP request parameter to request a certain page size. */
@@ -162,6 +168,7 @@ public final class HttpUtils {
     /** The default version of the named protocol. */
     public static final Version DEFAULT_PROTOCOL_VERSION = PROTOCOL_VERSION_2_1;
     static final String FIELDS_DELIMITER = ",";
+    static final String FORMAT_NDJSON = "ndjson";
     static final String SORT_KEYS_DELIMITER = ",";
 
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
@@ -288,15 +295,24 @@ public final class HttpUtils {
     private static Promise<Response, NeverThrowsException> fail0(org.forgerock.http.protocol.Request req,
             org.forgerock.http.protocol.Response resp, Throwable t) {
         final ResourceException re = adapt(t);
+        // Once a response has been declared as newline delimited JSON, its error is returned as an error record.
+        final boolean ndjson = resp != null && isNdjsonResponse(resp);
         try {
             if (resp == null) {
                 resp = prepareResponse(req);
             } else {
                 resp = prepareResponse(req, resp);
             }
+            if (ndjson) {
+                resp.getHeaders().put(new ContentTypeHeader(MIME_TYPE_APPLICATION_NDJSON, CHARACTER_ENCODING, null));
+            }
             resp.setStatus(Status.valueOf(re.getCode()));
             final JsonGenerator writer = getJsonGenerator(req, resp);
-            writer.writeObject(re.toJsonValue().getObject());
+            if (ndjson) {
+                writeNdjsonError(writer, re);
+            } else {
+                writer.writeObject(re.toJsonValue().getObject());
+            }
             closeSilently(writer);
             return newResultPromise(resp);
         } catch (final IOException ignored) {
@@ -305,6 +321,24 @@ public final class HttpUtils {
         }
     }
 
+    /**
+     * Writes an error as a newline delimited JSON record, containing only the error field, and flushes it.
+     *
+     * @param writer
+     *            The JSON generator of a newline delimited JSON response.
+     * @param error
+     *            The error to write.
+     * @throws IOException
+     *             If the error could not be written.
+     */
+    static void writeNdjsonError(JsonGenerator writer, ResourceException error) throws IOException {
+        writer.writeStartObject();
+        writer.writeObjectField(FIELD_ERROR, error.toJsonValue().getObject());
+        writer.writeEndObject();
+        writer.writeRaw('\n');
+        writer.flush();
+    }
+
     /**
      * Determines which CREST operation (CRUDPAQ) of the incoming request.
      *
@@ -569,9 +603,11 @@ public final class HttpUtils {
                 JSON_MAPPER.getFactory().createGenerator(pipeStream.getIn());
         writer.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
-        // Enable pretty printer if requested.
+        // Enable pretty printer if requested, unless each value must be written on a single line.
         final List<String> values = getParameter(req, PARAM_PRETTY_PRINT);
-        if (values != null) {
+        if (isNdjsonResponse(resp)) {
+            writer.setRootValueSeparator(null);
+        } else if (values != null) {
             try {
                 if (asBooleanValue(PARAM_PRETTY_PRINT, values)) {
                     writer.useDefaultPrettyPrinter();
@@ -584,6 +620,86 @@ public final class HttpUtils {
         return writer;
     }
 
+    /**
+     * Returns {@code true} if the provided HTTP request asks for query results to be returned as newline delimited
+     * JSON, either using the {@code _format=ndjson} parameter or the {@code Accept} header. The {@code Accept}
+     * header selects newline delimited JSON when {@code application/x-ndjson} is acceptable, that is when its quality
+     * value is not zero, and is preferred at least as much as {@code application/json}.
+     *
+     * @param req
+     *            The HTTP request.
+     * @return {@code true} if newline delimited JSON was requested.
+     * @throws ResourceException
+     *             If the format parameter is not valid.
+     */
+    static boolean isNdjsonRequested(org.forgerock.http.protocol.Request req) throws ResourceException {
+        final List<String> values = getParameter(req, PARAM_FORMAT);
+        if (values != null) {
+            final String format = asSingleValue(PARAM_FORMAT, values);
+            if (!FORMAT_NDJSON.equalsIgnoreCase(format)) {
+                throw new BadRequestException("The value '" + format + "' for parameter '" + PARAM_FORMAT
+                        + "' is not a supported format");
+            }
+            return true;
+        }
+        final Header accept = req.getHeaders().get(HEADER_ACCEPT);
+        if (accept == null) {
+            return false;
+        }
+        float ndjsonQuality = 0f;
+        float jsonQuality = 0f;
+        for (final String value : accept.getValues()) {
+            for (final String mediaRange : value.split(",")) {
+                final String[] parts = mediaRange.split(";");
+                final String mediaType = parts[0].trim();
+                if (MIME_TYPE_APPLICATION_NDJSON.equalsIgnoreCase(mediaType)) {
+                    ndjsonQuality = Math.max(ndjsonQuality, getQuality(parts));
+                } else if (MIME_TYPE_APPLICATION_JSON.equalsIgnoreCase(mediaType)) {
+                    jsonQuality = Math.max(jsonQuality, getQuality(parts));
+                }
+            }
+        }
+        return ndjsonQuality > 0f && ndjsonQuality >= jsonQuality;
+    }
+
+    /**
+     * Returns the quality value of a media range split on its parameter separators, which is 1 if there is no
+     * {@code q} parameter, or 0 if it is not a valid quality value so that the media range is ignored.
+     */
+    private static float getQuality(final String[] mediaRangeParts) {
+        for (int i = 1; i < mediaRangeParts.length; i++) {
+            final String[] parameter = mediaRangeParts[i].split("=", 2);
+            if (parameter.length == 2 && "q".equalsIgnoreCase(parameter[0].trim())) {
+                try {
+                    final float quality = Float.parseFloat(parameter[1].trim());
+                    return quality >= 0f && quality <= 1f ? quality : 0f;
+                } catch (final NumberFormatException e) {
+                    return 0f;
+                }
+            }
+        }
+        return 1f;
+    }
+
+    /**
+     * Returns {@code true} if the provided HTTP response will contain newline delimited JSON.
+     *
+     * @param resp
+     *            The HTTP response.
+     * @return {@code true} if the response content type is {@code application/x-ndjson}.
+     */
+    static boolean isNdjsonResponse(Response resp) {
+        final String contentType = resp.getHeaders().getFirst(ContentTypeHeader.class);
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            return new ContentType(contentType).match(MIME_TYPE_APPLICATION_NDJSON);
+        } catch (final ParseException e) {
+            return false;
+        }
+    }
+
     /**
      * Returns the content of the provided HTTP request decoded as a JSON patch
      * object.
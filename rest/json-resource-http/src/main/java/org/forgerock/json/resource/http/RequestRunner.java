@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2012-2015 ForgeRock AS.
+ * Copyright 2012-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.resource.http;
@@ -233,6 +233,9 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
      */
     @Override
     public final Promise<Response, NeverThrowsException> visitQueryRequest(final Void p, final QueryRequest request) {
+        if (isNdjsonResponse(httpResponse)) {
+            return visitStreamingQueryRequest(request);
+        }
         final AtomicBoolean isFirstResult = new AtomicBoolean(true);
         final AtomicInteger resultCount = new AtomicInteger(0);
         return connection.queryAsync(context, request, new QueryResourceHandler() {
@@ -298,6 +301,72 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
         });
     }
 
+    /*
+     * Writes each query result on its own line as soon as it is received. There is no enclosing object, so the
+     * paging information of the query response is not returned. An error occurring after the first result has been
+     * written is returned as a final line containing only the error field.
+     */
+    private Promise<Response, NeverThrowsException> visitStreamingQueryRequest(final QueryRequest request) {
+        final AtomicBoolean isFirstResult = new AtomicBoolean(true);
+        return connection.queryAsync(context, request, new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                try {
+                    if (isFirstResult.compareAndSet(true, false)) {
+                        writeApiVersionHeaders(resource);
+                        writeAdvice();
+                    }
+                    writeResourceJsonContent(resource);
+                    writer.writeRaw('\n');
+                    // Hand each record over to the response entity as soon as it has been written.
+                    writer.flush();
+                    return true;
+                } catch (final Exception e) {
+                    handleError(adapt(e));
+                    return false;
+                }
+            }
+        }).thenOnResult(new ResultHandler<QueryResponse>() {
+            @Override
+            public void handleResult(QueryResponse result) {
+                if (isFirstResult.compareAndSet(true, false)) {
+                    writeApiVersionHeaders(result);
+                    writeAdvice();
+                }
+                onSuccess();
+            }
+        }).thenOnException(new ExceptionHandler<ResourceException>() {
+            @Override
+            public void handleException(ResourceException error) {
+                if (isFirstResult.get()) {
+                    onError(error);
+                } else {
+                    // Partial results - it's too late to set the status.
+                    try {
+                        writeNdjsonError(writer, error);
+                        onSuccess();
+                    } catch (final Exception e) {
+                        onError(e);
+                    }
+                }
+            }
+        }).thenAsync(new AsyncFunction<QueryResponse, Response, NeverThrowsException>() {
+            @Override
+            public Promise<Response, NeverThrowsException> apply(QueryResponse queryResponse) {
+                return newResultPromise(httpResponse);
+            }
+        }, new AsyncFunction<ResourceException, Response, NeverThrowsException>() {
+            @Override
+            public Promise<Response, NeverThrowsException> apply(ResourceException e) {
+                if (isFirstResult.get()) {
+                    return handleError(e);
+                }
+                // The error has already been written as the last record, after the results.
+                return newResultPromise(httpResponse);
+            }
+        });
+    }
+
     private void writeHeader(org.forgerock.json.resource.Response response, AtomicBoolean isFirstResult)
             throws IOException {
         if (isFirstResult.compareAndSet(true, false)) {
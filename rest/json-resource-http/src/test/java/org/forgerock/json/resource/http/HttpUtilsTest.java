@@ -495,6 +495,44 @@ public class HttpUtilsTest {
         return request;
     }
 
+    @Test
+    public void testNdjsonRequestedUsingFormatParameter() throws Exception {
+        Request request = newRequest();
+        request.setUri(URI.create("?" + PARAM_FORMAT + "=ndjson"));
+        assertThat(isNdjsonRequested(request)).isTrue();
+    }
+
+    @Test
+    public void testNdjsonRequestedUsingAcceptHeader() throws Exception {
+        Request request = newRequest();
+        request.getHeaders().put(HEADER_ACCEPT, "application/json;q=0.5, application/x-ndjson");
+        assertThat(isNdjsonRequested(request)).isTrue();
+        assertThat(isNdjsonRequested(newRequest())).isFalse();
+    }
+
+    @Test
+    public void testNdjsonNotRequestedWhenNotAcceptable() throws Exception {
+        Request request = newRequest();
+        request.getHeaders().put(HEADER_ACCEPT, "application/x-ndjson;q=0, application/json");
+        assertThat(isNdjsonRequested(request)).isFalse();
+    }
+
+    @Test
+    public void testNdjsonNotRequestedWhenJsonIsPreferred() throws Exception {
+        Request request = newRequest();
+        request.getHeaders().put(HEADER_ACCEPT, "application/x-ndjson; q=0.5, application/json; q=0.8");
+        assertThat(isNdjsonRequested(request)).isFalse();
+        request.getHeaders().put(HEADER_ACCEPT, "application/x-ndjson;q=0.9, application/json;q=0.8");
+        assertThat(isNdjsonRequested(request)).isTrue();
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testUnsupportedFormatParameterIsRejected() throws Exception {
+        Request request = newRequest();
+        request.setUri(URI.create("?" + PARAM_FORMAT + "=csv"));
+        isNdjsonRequested(request);
+    }
+
     private Request postRequestNoActionParamDefactoCreateUnsupportedVersion() {
         Request request = newRequest().setMethod(HttpUtils.METHOD_POST);
         request.getHeaders().add(new AcceptApiVersionHeader(version(2, 0), version(1)));
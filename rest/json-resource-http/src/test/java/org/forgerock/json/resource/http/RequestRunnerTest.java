@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.json.resource.http;
@@ -31,8 +31,10 @@ import java.io.IOException;
 import java.net.URI;
 
 import org.forgerock.services.context.Context;
+import org.forgerock.http.header.ContentTypeHeader;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
 import org.forgerock.json.resource.Connection;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
@@ -101,6 +103,41 @@ public class RequestRunnerTest {
         assertEquals(getResponseContent(response), "{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}");
     }
 
+    @Test
+    public void testHandleResourcesAsNdjsonInVisitQueryAsync() throws Exception {
+        Response httpResponse = new Response();
+        httpResponse.getHeaders().put(new ContentTypeHeader(HttpUtils.MIME_TYPE_APPLICATION_NDJSON, "UTF-8", null));
+        Response response = getAnonymousQueryResourceHandler(httpResponse, QUERY_RESULT,
+                newResourceResponse("id1", "rev", json(object(field("intField", 42)))),
+                newResourceResponse("id2", "rev", json(object(field("intField", 43)))));
+        assertEquals(getResponseContent(response), "{\"_id\":\"id1\",\"_rev\":\"rev\",\"intField\":42}\n"
+                + "{\"_id\":\"id2\",\"_rev\":\"rev\",\"intField\":43}\n");
+    }
+
+    @Test
+    public void testHandleErrorAsNdjsonInVisitQueryAsync() throws Exception {
+        Response response = getAnonymousQueryResourceHandler(newNdjsonResponse(), RESOURCE_EXCEPTION);
+        assertEquals(response.getStatus(), Status.NOT_FOUND);
+        assertEquals(response.getHeaders().getFirst(ContentTypeHeader.class),
+                HttpUtils.MIME_TYPE_APPLICATION_NDJSON + "; charset=UTF-8");
+        assertEquals(getResponseContent(response),
+                "{\"error\":{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}}\n");
+    }
+
+    @Test
+    public void testHandleResourceThenErrorAsNdjsonInVisitQueryAsync() throws Exception {
+        Response response = getAnonymousQueryResourceHandler(newNdjsonResponse(), RESOURCE_EXCEPTION,
+                newResourceResponse("id1", "rev", json(object(field("intField", 42)))));
+        assertEquals(getResponseContent(response), "{\"_id\":\"id1\",\"_rev\":\"rev\",\"intField\":42}\n"
+                + "{\"error\":{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}}\n");
+    }
+
+    private Response newNdjsonResponse() {
+        Response httpResponse = new Response();
+        httpResponse.getHeaders().put(new ContentTypeHeader(HttpUtils.MIME_TYPE_APPLICATION_NDJSON, "UTF-8", null));
+        return httpResponse;
+    }
+
     private String getResponseContent(Response response) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         response.getEntity().copyDecodedContentTo(outputStream);
@@ -109,10 +146,15 @@ public class RequestRunnerTest {
 
     private Response getAnonymousQueryResourceHandler(final Promise<QueryResponse, ResourceException> queryPromise,
             final ResourceResponse... resources) throws Exception {
+        return getAnonymousQueryResourceHandler(new Response(), queryPromise, resources);
+    }
+
+    private Response getAnonymousQueryResourceHandler(final Response httpResponse,
+            final Promise<QueryResponse, ResourceException> queryPromise,
+            final ResourceResponse... resources) throws Exception {
         // mock everything
         Context context = mock(Context.class);
         QueryRequest request = Requests.newQueryRequest("");
-        Response httpResponse = new Response();
         org.forgerock.http.protocol.Request httpRequest = newRequest();
         Connection connection = mock(Connection.class);
 
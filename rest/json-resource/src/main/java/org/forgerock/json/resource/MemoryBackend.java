@@ -24,11 +24,13 @@ import static org.forgerock.util.promise.Promises.newResultPromise;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -107,10 +109,13 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
-    private static final class ResourceComparator implements Comparator<ResourceResponse> {
+    /**
+     * Orders resources according to a list of sort keys. Resources lacking a sort key field are placed last.
+     */
+    static final class ResourceComparator implements Comparator<ResourceResponse> {
         private final List<SortKey> sortKeys;
 
-        private ResourceComparator(final List<SortKey> sortKeys) {
+        ResourceComparator(final List<SortKey> sortKeys) {
             this.sortKeys = sortKeys;
         }
 
@@ -499,9 +504,13 @@ public final class MemoryBackend implements CollectionResourceProvider {
             synchronized (writeLock) {
                 final ResourceResponse existingResource = getResourceForUpdate(id, rev);
                 final String newRev = getNextRevision(existingResource.getRevision());
-                final JsonValue newContent = existingResource.getContent().copy();
+                // Only copy the objects and arrays modified by the patch, the rest is shared with the existing resource.
+                final Set<Object> copied = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+                final JsonValue newContent = new JsonValue(copyContainer(existingResource.getContent().getObject(),
+                        copied));
                 for (final PatchOperation operation : request.getPatchOperations()) {
                     try {
+                        copyPath(newContent, operation.getField(), copied);
                         if (operation.isAdd()) {
                             newContent.putPermissive(operation.getField(), operation.getValue()
                                     .getObject());
@@ -728,6 +737,68 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
+    /*
+     * Replaces the objects and arrays along the provided path with copies, so that they can be modified without
+     * affecting the resource sharing them. Containers which have already been copied are not copied again.
+     */
+    private static void copyPath(final JsonValue content, final JsonPointer path, final Set<Object> copied) {
+        Object parent = content.getObject();
+        for (final String token : path) {
+            if (parent instanceof Map) {
+                @SuppressWarnings("unchecked")
+                final Map<String, Object> map = (Map<String, Object>) parent;
+                final Object child = copyContainer(map.get(token), copied);
+                if (child == null) {
+                    return;
+                }
+                map.put(token, child);
+                parent = child;
+            } else if (parent instanceof List) {
+                @SuppressWarnings("unchecked")
+                final List<Object> list = (List<Object>) parent;
+                final int index;
+                try {
+                    index = Integer.parseInt(token);
+                } catch (final NumberFormatException e) {
+                    return;
+                }
+                if (index < 0 || index >= list.size()) {
+                    return;
+                }
+                final Object child = copyContainer(list.get(index), copied);
+                if (child == null) {
+                    return;
+                }
+                list.set(index, child);
+                parent = child;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Returns a shallow copy of the provided object or array, the value itself if it has already been copied, or
+     * null if it is neither an object nor an array.
+     */
+    private static Object copyContainer(final Object value, final Set<Object> copied) {
+        if (copied.contains(value)) {
+            return value;
+        }
+        final Object copy;
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> map = (Map<String, Object>) value;
+            copy = new LinkedHashMap<>(map);
+        } else if (value instanceof List) {
+            copy = new ArrayList<>((List<?>) value);
+        } else {
+            return null;
+        }
+        copied.add(copy);
+        return copy;
+    }
+
     private String getNextRevision(final String rev) throws ResourceException {
         try {
             return String.valueOf(Integer.parseInt(rev) + 1);
@@ -0,0 +1,471 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.util.Reject.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.http.routing.Version;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A {@link Filter} which caches the {@link ResourceResponse} returned by read
+ * requests, keyed on the request's resource path, requested fields and
+ * requested resource API version, and on the authentication ID and
+ * authorization ID of the request's {@link SecurityContext}, if any.
+ * <p>
+ * A response is therefore only served from the cache to requests made on
+ * behalf of the same subject as the request which populated it, as resource
+ * providers may return different content, or no content at all, depending on
+ * who is asking. Requests without a {@code SecurityContext} share the same
+ * cached responses. Each resource is cached in at most
+ * {@value #MAX_VARIANTS_PER_RESOURCE} variants, combining the subjects, fields
+ * and versions, the least recently used of which is evicted first.
+ * <p>
+ * Cached responses are invalidated whenever a create, update, patch or delete
+ * request targeting the same resource passes through this filter, and whenever
+ * an action request targets the resource or one of its parents. Responses are
+ * also discarded once their time to live has elapsed, and the least recently
+ * used resources are evicted once the cache reaches its maximum size. Read
+ * requests containing additional parameters are never cached since they may
+ * influence the returned content.
+ * <p>
+ * The filter must see every modification made to the resources that it
+ * caches, so it should be placed in a {@link FilterChain} in front of the
+ * {@link Router} or request handler owning those resources. Caching may be
+ * enabled on a per-route basis by providing a {@link FilterCondition}, for
+ * example one created with {@link Filters#matchResourcePath(String)}: read
+ * requests which do not match the condition are forwarded without being
+ * cached, but modifications are always used for invalidation:
+ *
+ * <pre>
+ * Filter cache = new ReadCacheFilter(1000, Duration.duration("5 minutes"),
+ *         Filters.matchResourcePath("config/.*"));
+ * RequestHandler handler = new FilterChain(router, cache);
+ * </pre>
+ *
+ * Since cached responses carry the resource's revision, requests received over
+ * HTTP with a matching {@literal If-None-Match} header are answered with a
+ * {@literal 304 Not Modified} response without reaching the resource provider.
+ */
+public class ReadCacheFilter implements Filter {
+
+    /** A {@code FilterCondition} which allows every read request to be cached. */
+    private static final FilterCondition ALL_READS = new FilterCondition() {
+        @Override
+        public boolean matches(final Context context, final Request request) {
+            return true;
+        }
+    };
+
+    /** The maximum number of responses cached for a single resource. */
+    static final int MAX_VARIANTS_PER_RESOURCE = 32;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final FilterCondition condition;
+    private final TimeService timeService;
+
+    /** Cached responses indexed by resource path, in access order. Guarded by itself. */
+    private final Map<ResourcePath, Map<CacheKey, CacheEntry>> cache;
+
+    /**
+     * Incremented on every invalidation so that reads which were in progress while a resource was being modified
+     * do not populate the cache with stale content.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a new read cache filter which caches every read request.
+     *
+     * @param maxSize
+     *            The maximum number of resources to be cached, which must be positive.
+     * @param ttl
+     *            The maximum amount of time a response will be cached for, which may be
+     *            {@link Duration#UNLIMITED unlimited}.
+     */
+    public ReadCacheFilter(final int maxSize, final Duration ttl) {
+        this(maxSize, ttl, ALL_READS);
+    }
+
+    /**
+     * Creates a new read cache filter which only caches read requests matching the provided condition.
+     *
+     * @param maxSize
+     *            The maximum number of resources to be cached, which must be positive.
+     * @param ttl
+     *            The maximum amount of time a response will be cached for, which may be
+     *            {@link Duration#UNLIMITED unlimited}.
+     * @param condition
+     *            The condition which read requests must match in order to be cached.
+     */
+    public ReadCacheFilter(final int maxSize, final Duration ttl, final FilterCondition condition) {
+        this(maxSize, ttl, condition, TimeService.SYSTEM);
+    }
+
+    ReadCacheFilter(final int maxSize, final Duration ttl, final FilterCondition condition,
+            final TimeService timeService) {
+        Reject.ifTrue(maxSize <= 0, "The maximum cache size must be positive");
+        this.maxSize = maxSize;
+        this.ttlMillis = checkNotNull(ttl).isUnlimited() ? Long.MAX_VALUE : ttl.to(TimeUnit.MILLISECONDS);
+        this.condition = checkNotNull(condition);
+        this.timeService = checkNotNull(timeService);
+        this.cache = new LinkedHashMap<ResourcePath, Map<CacheKey, CacheEntry>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ResourcePath, Map<CacheKey, CacheEntry>> eldest) {
+                if (size() > ReadCacheFilter.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> filterAction(final Context context,
+            final ActionRequest request, final RequestHandler next) {
+        // Actions may have arbitrary side effects on the targeted resource and its children.
+        final ResourcePath path = request.getResourcePathObject();
+        invalidateTree(path);
+        return next.handleAction(context, request).thenOnResult(new ResultHandler<ActionResponse>() {
+            @Override
+            public void handleResult(final ActionResponse result) {
+                invalidateTree(path);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterCreate(final Context context,
+            final CreateRequest request, final RequestHandler next) {
+        final ResourcePath path = request.getResourcePathObject();
+        if (request.getNewResourceId() != null) {
+            invalidate(path.child(request.getNewResourceId()));
+        }
+        return next.handleCreate(context, request).thenOnResult(new ResultHandler<ResourceResponse>() {
+            @Override
+            public void handleResult(final ResourceResponse result) {
+                if (result.getId() != null) {
+                    invalidate(path.child(result.getId()));
+                }
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterDelete(final Context context,
+            final DeleteRequest request, final RequestHandler next) {
+        return invalidateAround(request.getResourcePathObject(), next.handleDelete(context, request));
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterPatch(final Context context,
+            final PatchRequest request, final RequestHandler next) {
+        return invalidateAround(request.getResourcePathObject(), next.handlePatch(context, request));
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> filterQuery(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler, final RequestHandler next) {
+        return next.handleQuery(context, request, handler);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterRead(final Context context,
+            final ReadRequest request, final RequestHandler next) {
+        if (!request.getAdditionalParameters().isEmpty() || !condition.matches(context, request)) {
+            return next.handleRead(context, request);
+        }
+        final ResourcePath path = request.getResourcePathObject();
+        final CacheKey key = new CacheKey(context, request.getFields(), request.getResourceVersion());
+        final CacheEntry cached = get(path, key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return copyOf(cached.response).asPromise();
+        }
+        misses.incrementAndGet();
+        final long readGeneration = generation.get();
+        return next.handleRead(context, request).thenOnResult(new ResultHandler<ResourceResponse>() {
+            @Override
+            public void handleResult(final ResourceResponse result) {
+                put(path, key, new CacheEntry(copyOf(result), expiryTime()), readGeneration);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterUpdate(final Context context,
+            final UpdateRequest request, final RequestHandler next) {
+        return invalidateAround(request.getResourcePathObject(), next.handleUpdate(context, request));
+    }
+
+    /**
+     * Removes all cached representations of the identified resource.
+     *
+     * @param path
+     *            The path of the resource.
+     */
+    public void invalidate(final ResourcePath path) {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            if (cache.remove(path) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached resources.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            invalidations.addAndGet(cache.size());
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of resources currently cached, including those which have expired but have not yet been
+     * removed.
+     *
+     * @return The number of cached resources.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns the number of read requests which have been served from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of cacheable read requests which have been forwarded to the next handler.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of resources, or variants of a resource, which have been removed from the cache because it
+     * was full.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of resources which have been removed from the cache because they were modified.
+     *
+     * @return The number of invalidations.
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    private Promise<ResourceResponse, ResourceException> invalidateAround(final ResourcePath path,
+            final Promise<ResourceResponse, ResourceException> promise) {
+        invalidate(path);
+        return promise.thenAlways(new Runnable() {
+            @Override
+            public void run() {
+                invalidate(path);
+            }
+        });
+    }
+
+    private void invalidateTree(final ResourcePath path) {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            final Iterator<ResourcePath> iterator = cache.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(path)) {
+                    iterator.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private CacheEntry get(final ResourcePath path, final CacheKey key) {
+        synchronized (cache) {
+            final Map<CacheKey, CacheEntry> entries = cache.get(path);
+            if (entries == null) {
+                return null;
+            }
+            final CacheEntry entry = entries.get(key);
+            if (entry != null && entry.expiryTime <= timeService.now()) {
+                entries.remove(key);
+                if (entries.isEmpty()) {
+                    cache.remove(path);
+                }
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void put(final ResourcePath path, final CacheKey key, final CacheEntry entry, final long readGeneration) {
+        synchronized (cache) {
+            // Checked while holding the lock so that invalidations cannot interleave with the update.
+            if (generation.get() != readGeneration) {
+                return;
+            }
+            Map<CacheKey, CacheEntry> entries = cache.get(path);
+            if (entries == null) {
+                entries = newVariants();
+                cache.put(path, entries);
+            }
+            entries.put(key, entry);
+        }
+    }
+
+    /** Returns a map of the variants of a resource, which evicts the least recently used variant when full. */
+    private Map<CacheKey, CacheEntry> newVariants() {
+        return new LinkedHashMap<CacheKey, CacheEntry>(2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > MAX_VARIANTS_PER_RESOURCE) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private long expiryTime() {
+        final long now = timeService.now();
+        return ttlMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlMillis;
+    }
+
+    /** Returns a copy of a response so that neither the cache nor its callers can modify each other's content. */
+    private static ResourceResponse copyOf(final ResourceResponse response) {
+        final ResourceResponse copy = newResourceResponse(response.getId(), response.getRevision(),
+                response.getContent().copy());
+        for (final JsonPointer field : response.getFields()) {
+            copy.addField(field);
+        }
+        if (response.getResourceApiVersion() != null) {
+            copy.setResourceApiVersion(response.getResourceApiVersion());
+        }
+        return copy;
+    }
+
+    /**
+     * The part of the cache key which varies between the representations of a single resource, including the
+     * subject on whose behalf it was read.
+     */
+    private static final class CacheKey {
+        private final String authenticationId;
+        private final Map<String, Object> authorization;
+        private final List<JsonPointer> fields;
+        private final Version resourceVersion;
+
+        private CacheKey(final Context context, final List<JsonPointer> fields, final Version resourceVersion) {
+            if (context.containsContext(SecurityContext.class)) {
+                final SecurityContext securityContext = context.asContext(SecurityContext.class);
+                this.authenticationId = securityContext.getAuthenticationId();
+                final Map<String, Object> authorization = securityContext.getAuthorization();
+                this.authorization = authorization != null
+                        ? new HashMap<>(authorization)
+                        : Collections.<String, Object>emptyMap();
+            } else {
+                this.authenticationId = null;
+                this.authorization = Collections.<String, Object>emptyMap();
+            }
+            this.fields = new ArrayList<>(fields);
+            this.resourceVersion = resourceVersion;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof CacheKey) {
+                final CacheKey that = (CacheKey) obj;
+                return equal(authenticationId, that.authenticationId)
+                        && authorization.equals(that.authorization)
+                        && fields.equals(that.fields)
+                        && equal(resourceVersion, that.resourceVersion);
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = authenticationId != null ? authenticationId.hashCode() : 0;
+            hash = hash * 31 + authorization.hashCode();
+            hash = hash * 31 + fields.hashCode();
+            return hash * 31 + (resourceVersion != null ? resourceVersion.hashCode() : 0);
+        }
+
+        private static boolean equal(final Object o1, final Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+
+    /** A cached response and the time at which it expires. */
+    private static final class CacheEntry {
+        private final ResourceResponse response;
+        private final long expiryTime;
+
+        private CacheEntry(final ResourceResponse response, final long expiryTime) {
+            this.response = response;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
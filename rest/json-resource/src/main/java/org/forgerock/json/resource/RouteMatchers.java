@@ -87,6 +87,18 @@ public final class RouteMatchers {
         return new RequestApiVersionRouteMatcher(resourceApiVersionMatcher(version));
     }
 
+    /**
+     * Returns {@code true} if the provided matcher was created by this class,
+     * and therefore only depends on the request's resource path, requested
+     * resource API version and default version behaviour.
+     *
+     * @param matcher The route matcher.
+     * @return {@code true} if the outcome of the route matcher can be cached.
+     */
+    static boolean isCacheable(RouteMatcher<Request> matcher) {
+        return matcher instanceof RequestUriRouteMatcher || matcher instanceof RequestApiVersionRouteMatcher;
+    }
+
     /**
      * A CREST specific {@code RouteMatcher} which extracts the requests
      * resource name from a {@code Request} and passes it as a
@@ -23,8 +23,11 @@ import static org.forgerock.json.resource.Resources.*;
 import static org.forgerock.json.resource.RouteMatchers.*;
 import static org.forgerock.util.promise.Promises.*;
 
+import java.util.Objects;
+
 import org.forgerock.api.models.ApiDescription;
 import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.DefaultVersionBehaviour;
 import org.forgerock.http.routing.RoutingMode;
 import org.forgerock.http.routing.UriRouterContext;
 import org.forgerock.http.routing.Version;
@@ -57,6 +60,10 @@ import org.forgerock.util.promise.Promise;
  * router.removeRoute(routeOne, routeTwo);
  * </pre>
  *
+ * <p>Repeated routing of the same resource paths can be avoided by enabling
+ * the route cache with {@link #setRouteCacheSize(int)}. Route resolutions are
+ * only cached while all routes were created using {@link RouteMatchers}.
+ *
  * @see AbstractRouter
  * @see RouteMatchers
  */
@@ -220,6 +227,24 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler, ApiD
         return routeMatcher;
     }
 
+    /**
+     * Returns a key comprising the request's resource path, requested resource API version and default version
+     * behaviour, which are the only inputs of the route matchers created using {@link RouteMatchers}.
+     */
+    @Override
+    protected Object getRouteCacheKey(Context context, Request request) {
+        DefaultVersionBehaviour behaviour = null;
+        if (context.containsContext(ApiVersionRouterContext.class)) {
+            behaviour = context.asContext(ApiVersionRouterContext.class).getDefaultVersionBehaviour();
+        }
+        return new RouteCacheKey(request.getResourcePathObject(), request.getResourceVersion(), behaviour);
+    }
+
+    @Override
+    protected boolean isCacheable(RouteMatcher<Request> matcher) {
+        return RouteMatchers.isCacheable(matcher);
+    }
+
     private Pair<Context, RequestHandler> getBestMatch(Context context, Request request)
             throws ResourceException {
         try {
@@ -363,6 +388,39 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler, ApiD
         return routerContext.getRemainingUri();
     }
 
+    /** The inputs used by the CREST route matchers when routing a request. */
+    private static final class RouteCacheKey {
+        private final ResourcePath resourcePath;
+        private final Version resourceVersion;
+        private final DefaultVersionBehaviour behaviour;
+
+        private RouteCacheKey(ResourcePath resourcePath, Version resourceVersion,
+                DefaultVersionBehaviour behaviour) {
+            this.resourcePath = resourcePath;
+            this.resourceVersion = resourceVersion;
+            this.behaviour = behaviour;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RouteCacheKey)) {
+                return false;
+            }
+            RouteCacheKey that = (RouteCacheKey) o;
+            return resourcePath.equals(that.resourcePath)
+                    && Objects.equals(resourceVersion, that.resourceVersion)
+                    && behaviour == that.behaviour;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourcePath, resourceVersion, behaviour);
+        }
+    }
+
     /**
      * Represents a URI template string that will be used to match and route
      * incoming requests.
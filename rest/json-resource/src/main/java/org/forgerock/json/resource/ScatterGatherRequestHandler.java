@@ -0,0 +1,711 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.Requests.copyOfActionRequest;
+import static org.forgerock.json.resource.Requests.copyOfQueryRequest;
+import static org.forgerock.json.resource.Requests.copyOfReadRequest;
+import static org.forgerock.json.resource.Responses.newActionResponse;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
+import static org.forgerock.util.Reject.checkNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Function;
+import org.forgerock.util.Reject;
+import org.forgerock.util.encode.Base64url;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.Promises;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.Duration;
+
+/**
+ * A {@link RequestHandler} which federates requests across a number of
+ * sharded request handlers.
+ * <p>
+ * Query requests are sent to every shard in parallel and the results are
+ * merged as they are streamed back: each shard's results are buffered in a
+ * bounded queue, and a k-way merge returns them to the client ordered by the
+ * query's {@link SortKey sort keys}. Each shard must therefore return its own
+ * results sorted using the same keys. The merge is driven by the shards'
+ * results: whichever shard delivers the result the merge was waiting for
+ * returns the next results to the client's handler, which is never called
+ * concurrently, so no thread waits for the shards on behalf of the query.
+ * Once the requested page size has been reached the remaining shard queries
+ * are abandoned. When paged results are
+ * requested the returned cookie is a composite of the position reached in
+ * each shard, so subsequent pages are only consistent if the shards' ordering
+ * is stable.
+ * <p>
+ * All other requests are routed using a {@link ShardSelector}. Read and
+ * action requests may be broadcast to all shards: reads return the first
+ * resource found, in shard order, and actions return a JSON array containing
+ * each shard's response. Create, update, patch and delete requests must be
+ * routed to a single shard.
+ * <p>
+ * Shard requests are dispatched using the provided {@link Executor}, which
+ * must be able to run a request on every shard concurrently since a shard
+ * query is blocked while its buffer is full. A query which has not completed
+ * within the configured shard timeout fails with a
+ * {@link ServiceUnavailableException}, so that a shard which never responds
+ * cannot hold the query forever.
+ */
+public class ScatterGatherRequestHandler implements RequestHandler {
+
+    /**
+     * Determines which shard a request should be routed to.
+     */
+    public interface ShardSelector {
+
+        /** The value returned when a request should be sent to all shards. */
+        int ALL_SHARDS = -1;
+
+        /**
+         * Returns the index of the shard to which the provided request should be routed.
+         *
+         * @param context
+         *            The request context.
+         * @param request
+         *            The request which is not a query request.
+         * @return The index of the shard in the list of shards, or {@link #ALL_SHARDS} if the request should be
+         *         sent to all shards.
+         */
+        int selectShard(Context context, Request request);
+    }
+
+    /** The default number of results which will be buffered for each shard. */
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+
+    /** The default maximum time a query waits for its shards' results. */
+    public static final Duration DEFAULT_SHARD_TIMEOUT = Duration.duration(30, TimeUnit.SECONDS);
+
+    /** The composite cookie marker for a shard which has no more results. */
+    private static final String EXHAUSTED = "x";
+
+    private static final Function<ResourceException, ResourceResponse, ResourceException> NOT_FOUND_AS_NULL =
+            new Function<ResourceException, ResourceResponse, ResourceException>() {
+                @Override
+                public ResourceResponse apply(final ResourceException e) throws ResourceException {
+                    if (e.getCode() == ResourceException.NOT_FOUND) {
+                        return null;
+                    }
+                    throw e;
+                }
+            };
+
+    private final List<RequestHandler> shards;
+    private final ShardSelector selector;
+    private final Executor executor;
+    private final int bufferSize;
+    private final long shardTimeoutNanos;
+
+    /**
+     * Creates a new scatter-gather request handler using the {@link #DEFAULT_BUFFER_SIZE default buffer size} and
+     * the {@link #DEFAULT_SHARD_TIMEOUT default shard timeout}.
+     *
+     * @param shards
+     *            The shards, which must not be empty.
+     * @param selector
+     *            The selector used for routing requests other than queries.
+     * @param executor
+     *            The executor used for dispatching requests to the shards.
+     */
+    public ScatterGatherRequestHandler(final List<RequestHandler> shards, final ShardSelector selector,
+            final Executor executor) {
+        this(shards, selector, executor, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new scatter-gather request handler using the {@link #DEFAULT_SHARD_TIMEOUT default shard timeout}.
+     *
+     * @param shards
+     *            The shards, which must not be empty.
+     * @param selector
+     *            The selector used for routing requests other than queries.
+     * @param executor
+     *            The executor used for dispatching requests to the shards.
+     * @param bufferSize
+     *            The maximum number of query results which will be buffered for each shard.
+     */
+    public ScatterGatherRequestHandler(final List<RequestHandler> shards, final ShardSelector selector,
+            final Executor executor, final int bufferSize) {
+        this(shards, selector, executor, bufferSize, DEFAULT_SHARD_TIMEOUT);
+    }
+
+    /**
+     * Creates a new scatter-gather request handler.
+     *
+     * @param shards
+     *            The shards, which must not be empty.
+     * @param selector
+     *            The selector used for routing requests other than queries.
+     * @param executor
+     *            The executor used for dispatching requests to the shards.
+     * @param bufferSize
+     *            The maximum number of query results which will be buffered for each shard.
+     * @param shardTimeout
+     *            The maximum time a query waits for its shards' results, which may be
+     *            {@link Duration#UNLIMITED unlimited}.
+     */
+    public ScatterGatherRequestHandler(final List<RequestHandler> shards, final ShardSelector selector,
+            final Executor executor, final int bufferSize, final Duration shardTimeout) {
+        Reject.ifTrue(checkNotNull(shards).isEmpty(), "At least one shard must be provided");
+        Reject.ifTrue(bufferSize <= 0, "The buffer size must be positive");
+        this.shards = new ArrayList<>(shards);
+        this.selector = checkNotNull(selector);
+        this.executor = checkNotNull(executor);
+        this.bufferSize = bufferSize;
+        this.shardTimeoutNanos = checkNotNull(shardTimeout).isUnlimited()
+                ? Long.MAX_VALUE
+                : shardTimeout.to(TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> handleAction(final Context context,
+            final ActionRequest request) {
+        final int shard = selector.selectShard(context, request);
+        if (shard != ShardSelector.ALL_SHARDS) {
+            try {
+                return getShard(shard, request).handleAction(context, request);
+            } catch (final ResourceException e) {
+                return e.asPromise();
+            }
+        }
+        final List<Promise<ActionResponse, ResourceException>> promises = new ArrayList<>(shards.size());
+        for (final RequestHandler handler : shards) {
+            promises.add(dispatch(handler, new ShardCall<ActionResponse>() {
+                @Override
+                Promise<ActionResponse, ResourceException> call(final RequestHandler shard) {
+                    return shard.handleAction(context, copyOfActionRequest(request));
+                }
+            }));
+        }
+        return Promises.when(promises).then(
+                new Function<List<ActionResponse>, ActionResponse, ResourceException>() {
+                    @Override
+                    public ActionResponse apply(final List<ActionResponse> responses) {
+                        final List<Object> merged = new ArrayList<>(responses.size());
+                        for (final ActionResponse response : responses) {
+                            merged.add(response.getJsonContent().getObject());
+                        }
+                        return newActionResponse(new JsonValue(merged));
+                    }
+                });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleCreate(final Context context,
+            final CreateRequest request) {
+        try {
+            return getSingleShard(context, request).handleCreate(context, request);
+        } catch (final ResourceException e) {
+            return e.asPromise();
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleDelete(final Context context,
+            final DeleteRequest request) {
+        try {
+            return getSingleShard(context, request).handleDelete(context, request);
+        } catch (final ResourceException e) {
+            return e.asPromise();
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handlePatch(final Context context,
+            final PatchRequest request) {
+        try {
+            return getSingleShard(context, request).handlePatch(context, request);
+        } catch (final ResourceException e) {
+            return e.asPromise();
+        }
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> handleQuery(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler) {
+        final int pageSize = request.getPageSize();
+        final String cookie = request.getPagedResultsCookie();
+        final int offset = pageSize > 0 ? request.getPagedResultsOffset() : 0;
+        if (cookie != null && offset > 0) {
+            return new BadRequestException("Cookies and offsets are mutually exclusive").asPromise();
+        }
+        final List<ShardCursor> cursors;
+        try {
+            cursors = cookie != null ? decodeCookie(cookie) : initialCursors();
+        } catch (final IllegalArgumentException e) {
+            return new BadRequestException("Invalid paged results cookie", e).asPromise();
+        }
+
+        // Each shard must supply enough results to fill the page on its own.
+        final int limit = pageSize > 0 ? offset + pageSize : Integer.MAX_VALUE;
+        final QueryMerge merge = new QueryMerge(handler, new MemoryBackend.ResourceComparator(request.getSortKeys()),
+                offset, limit, pageSize > 0);
+        merge.start(context, request, cursors);
+        return merge.promise;
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleRead(final Context context, final ReadRequest request) {
+        final int shard = selector.selectShard(context, request);
+        if (shard != ShardSelector.ALL_SHARDS) {
+            try {
+                return getShard(shard, request).handleRead(context, request);
+            } catch (final ResourceException e) {
+                return e.asPromise();
+            }
+        }
+        final List<Promise<ResourceResponse, ResourceException>> promises = new ArrayList<>(shards.size());
+        for (final RequestHandler handler : shards) {
+            promises.add(dispatch(handler, new ShardCall<ResourceResponse>() {
+                @Override
+                Promise<ResourceResponse, ResourceException> call(final RequestHandler shard) {
+                    return shard.handleRead(context, copyOfReadRequest(request));
+                }
+            }).thenCatch(NOT_FOUND_AS_NULL));
+        }
+        return Promises.when(promises).then(
+                new Function<List<ResourceResponse>, ResourceResponse, ResourceException>() {
+                    @Override
+                    public ResourceResponse apply(final List<ResourceResponse> responses) throws ResourceException {
+                        for (final ResourceResponse response : responses) {
+                            if (response != null) {
+                                return response;
+                            }
+                        }
+                        throw new NotFoundException("Resource '" + request.getResourcePath() + "' not found");
+                    }
+                });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleUpdate(final Context context,
+            final UpdateRequest request) {
+        try {
+            return getSingleShard(context, request).handleUpdate(context, request);
+        } catch (final ResourceException e) {
+            return e.asPromise();
+        }
+    }
+
+    private RequestHandler getSingleShard(final Context context, final Request request)
+            throws ResourceException {
+        final int shard = selector.selectShard(context, request);
+        if (shard == ShardSelector.ALL_SHARDS) {
+            throw new BadRequestException("The " + request.getRequestType() + " request for '"
+                    + request.getResourcePath() + "' cannot be routed to a single shard");
+        }
+        return getShard(shard, request);
+    }
+
+    private RequestHandler getShard(final int shard, final Request request) throws ResourceException {
+        if (shard < 0 || shard >= shards.size()) {
+            throw new InternalServerErrorException("Invalid shard " + shard + " selected for request '"
+                    + request.getResourcePath() + "'");
+        }
+        return shards.get(shard);
+    }
+
+    private <V> Promise<V, ResourceException> dispatch(final RequestHandler shard, final ShardCall<V> call) {
+        final PromiseImpl<V, ResourceException> promise = PromiseImpl.create();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        call.call(shard).thenOnResultOrException(promise, promise);
+                    } catch (final RuntimeException e) {
+                        promise.handleException(new InternalServerErrorException(e));
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            promise.handleException(new ServiceUnavailableException("Unable to dispatch request to shard", e));
+        }
+        return promise;
+    }
+
+    private List<ShardCursor> initialCursors() {
+        final List<ShardCursor> cursors = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            cursors.add(new ShardCursor(null, 0));
+        }
+        return cursors;
+    }
+
+    /*
+     * The composite cookie contains, for each shard, the cookie which was used for obtaining that shard's current
+     * page of results and the number of results from that page which have already been returned.
+     */
+    private String encodeCookie(final List<ShardQuery> queries) {
+        final StringBuilder builder = new StringBuilder();
+        boolean hasMoreResults = false;
+        for (int i = 0; i < queries.size(); i++) {
+            final ShardQuery query = queries.get(i);
+            ShardCursor next = query.cursor;
+            if (!next.isExhausted()) {
+                if (query.end != null && query.buffer.isEmpty()) {
+                    // All of the shard's results have been returned, so move on to its next page.
+                    final String shardCookie = query.end.getPagedResultsCookie();
+                    next = shardCookie != null ? new ShardCursor(shardCookie, 0) : ShardCursor.EXHAUSTED;
+                } else {
+                    next = new ShardCursor(next.cookie, next.skip + query.consumed);
+                }
+            }
+            hasMoreResults |= !next.isExhausted();
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(next);
+        }
+        return hasMoreResults ? Base64url.encode(builder.toString().getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    private List<ShardCursor> decodeCookie(final String cookie) {
+        final byte[] decoded = Base64url.decode(cookie);
+        if (decoded == null) {
+            throw new IllegalArgumentException("Cookie is not base64url encoded");
+        }
+        final String[] values = new String(decoded, StandardCharsets.UTF_8).split(",", -1);
+        if (values.length != shards.size()) {
+            throw new IllegalArgumentException("Cookie does not match the number of shards");
+        }
+        final List<ShardCursor> cursors = new ArrayList<>(values.length);
+        for (final String value : values) {
+            cursors.add(ShardCursor.valueOf(value));
+        }
+        return cursors;
+    }
+
+    /** An invocation of a request against a single shard. */
+    private abstract static class ShardCall<V> {
+        abstract Promise<V, ResourceException> call(RequestHandler shard);
+    }
+
+    /** The position reached in a shard's result set. */
+    private static final class ShardCursor {
+        private static final ShardCursor EXHAUSTED = new ShardCursor(null, -1);
+
+        private final String cookie;
+        private final int skip;
+
+        private ShardCursor(final String cookie, final int skip) {
+            this.cookie = cookie;
+            this.skip = skip;
+        }
+
+        private static ShardCursor valueOf(final String value) {
+            if (ScatterGatherRequestHandler.EXHAUSTED.equals(value)) {
+                return EXHAUSTED;
+            }
+            final int separator = value.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed shard cursor");
+            }
+            final int skip = Integer.parseInt(value.substring(0, separator));
+            if (skip < 0) {
+                throw new IllegalArgumentException("Malformed shard cursor");
+            }
+            final String encoded = value.substring(separator + 1);
+            if (encoded.isEmpty()) {
+                return new ShardCursor(null, skip);
+            }
+            final byte[] cookie = Base64url.decode(encoded);
+            if (cookie == null) {
+                throw new IllegalArgumentException("Malformed shard cursor");
+            }
+            return new ShardCursor(new String(cookie, StandardCharsets.UTF_8), skip);
+        }
+
+        private boolean isExhausted() {
+            return this == EXHAUSTED;
+        }
+
+        @Override
+        public String toString() {
+            if (isExhausted()) {
+                return ScatterGatherRequestHandler.EXHAUSTED;
+            }
+            return skip + ":" + (cookie != null ? Base64url.encode(cookie.getBytes(StandardCharsets.UTF_8)) : "");
+        }
+    }
+
+    /** Runs the shard timeouts of all the handlers on a single daemon thread, which is created when first needed. */
+    private static final class TimeoutScheduler {
+        private static final ScheduledExecutorService INSTANCE = newTimeoutScheduler();
+
+        private static ScheduledExecutorService newTimeoutScheduler() {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "ScatterGatherRequestHandler timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    /**
+     * The k-way merge of the results of a query sent to every shard. The results are merged whenever a shard
+     * delivers one, as long as every shard which may still return results has one buffered. All of the state of the
+     * merge and of its shard queries is guarded by the merge's monitor, which also serializes the calls to the
+     * client's handler. The promise is only completed once the monitor has been released.
+     */
+    private final class QueryMerge {
+        private final PromiseImpl<QueryResponse, ResourceException> promise = PromiseImpl.create();
+        private final QueryResourceHandler handler;
+        private final Comparator<ResourceResponse> comparator;
+        private final int offset;
+        private final int limit;
+        private final boolean paged;
+        private final List<ShardQuery> queries = new ArrayList<>(shards.size());
+        private int returned;
+        /** Whether the merge has completed, after which the shards' results are ignored. */
+        private boolean done;
+        private QueryResponse response;
+        private ResourceException failure;
+        private volatile ScheduledFuture<?> timeout;
+
+        private QueryMerge(final QueryResourceHandler handler, final Comparator<ResourceResponse> comparator,
+                final int offset, final int limit, final boolean paged) {
+            this.handler = handler;
+            this.comparator = comparator;
+            this.offset = offset;
+            this.limit = limit;
+            this.paged = paged;
+        }
+
+        private void start(final Context context, final QueryRequest request, final List<ShardCursor> cursors) {
+            for (final ShardCursor cursor : cursors) {
+                queries.add(new ShardQuery(this, cursor));
+            }
+            if (shardTimeoutNanos != Long.MAX_VALUE) {
+                timeout = TimeoutScheduler.INSTANCE.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        fail(new ServiceUnavailableException("Timed out waiting for shard results"));
+                        resolve();
+                    }
+                }, shardTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                final ShardQuery query = queries.get(i);
+                if (!query.cursor.isExhausted()) {
+                    query.start(shards.get(i), context, request, paged ? query.cursor.skip + limit : 0);
+                }
+            }
+            synchronized (this) {
+                advance();
+            }
+            resolve();
+        }
+
+        private synchronized boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Buffers a result of a shard, waiting while the shard's buffer is full, and merges the results which can
+         * be.
+         *
+         * @return {@code false} if the shard should not return any more results.
+         */
+        private synchronized boolean offer(final ShardQuery query, final ResourceResponse resource) {
+            while (!done && query.buffer.size() >= bufferSize) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (done) {
+                return false;
+            }
+            query.buffer.add(resource);
+            advance();
+            return !done;
+        }
+
+        /** Records that a shard has returned all of its results, and merges the results which can be. */
+        private synchronized void finish(final ShardQuery query, final QueryResponse result) {
+            query.end = result;
+            advance();
+        }
+
+        private synchronized void fail(final ResourceException exception) {
+            if (!done) {
+                done = true;
+                failure = exception;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Returns the smallest buffered result to the client for as long as every shard has either a buffered result
+         * or no more results, and completes the merge once the page is full or every result has been returned.
+         */
+        private void advance() {
+            try {
+                while (!done) {
+                    ShardQuery next = null;
+                    if (returned < limit) {
+                        for (final ShardQuery query : queries) {
+                            final ResourceResponse head = query.buffer.peek();
+                            if (head == null) {
+                                if (!query.isFinished()) {
+                                    // Wait for the shard's next result.
+                                    return;
+                                }
+                            } else if (next == null || comparator.compare(head, next.buffer.peek()) < 0) {
+                                next = query;
+                            }
+                        }
+                    }
+                    if (next == null) {
+                        complete();
+                        return;
+                    }
+                    final ResourceResponse resource = next.buffer.poll();
+                    next.consumed++;
+                    // The shard may be waiting for room in its buffer.
+                    notifyAll();
+                    if (returned++ >= offset && !handler.handleResource(resource)) {
+                        complete();
+                        return;
+                    }
+                }
+            } catch (final RuntimeException e) {
+                fail(new InternalServerErrorException(e));
+            }
+        }
+
+        private void complete() {
+            done = true;
+            response = paged ? newQueryResponse(encodeCookie(queries)) : newQueryResponse();
+            notifyAll();
+        }
+
+        /** Completes the promise if the merge is done, which must not be called while holding the monitor. */
+        private void resolve() {
+            final QueryResponse result;
+            final ResourceException exception;
+            synchronized (this) {
+                if (!done) {
+                    return;
+                }
+                result = response;
+                exception = failure;
+            }
+            final ScheduledFuture<?> scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            if (exception != null) {
+                promise.tryHandleException(exception);
+            } else {
+                promise.tryHandleResult(result);
+            }
+        }
+    }
+
+    /**
+     * A query against a single shard, whose results are buffered until they are consumed by the merge. The buffer,
+     * the shard's final {@code QueryResponse} and the number of results consumed are guarded by the merge.
+     */
+    private final class ShardQuery implements QueryResourceHandler {
+        private final QueryMerge merge;
+        private final ShardCursor cursor;
+        private final Queue<ResourceResponse> buffer = new ArrayDeque<>();
+        /** The shard's response, once it has returned all of its results. */
+        private QueryResponse end;
+        /** The number of results skipped by the shard's query, only accessed by the shard. */
+        private int skipped;
+        /** The number of results consumed by the merge. */
+        private int consumed;
+
+        private ShardQuery(final QueryMerge merge, final ShardCursor cursor) {
+            this.merge = merge;
+            this.cursor = cursor;
+        }
+
+        private void start(final RequestHandler shard, final Context context, final QueryRequest request,
+                final int shardPageSize) {
+            final QueryRequest shardRequest = copyOfQueryRequest(request)
+                    .setPageSize(shardPageSize)
+                    .setPagedResultsCookie(cursor.cookie)
+                    .setPagedResultsOffset(0)
+                    .setTotalPagedResultsPolicy(CountPolicy.NONE);
+            dispatch(shard, new ShardCall<QueryResponse>() {
+                @Override
+                Promise<QueryResponse, ResourceException> call(final RequestHandler shard) {
+                    return shard.handleQuery(context, shardRequest, ShardQuery.this);
+                }
+            }).thenOnResultOrException(new ResultHandler<QueryResponse>() {
+                @Override
+                public void handleResult(final QueryResponse result) {
+                    merge.finish(ShardQuery.this, result);
+                    merge.resolve();
+                }
+            }, new ExceptionHandler<ResourceException>() {
+                @Override
+                public void handleException(final ResourceException exception) {
+                    merge.fail(exception);
+                    merge.resolve();
+                }
+            });
+        }
+
+        @Override
+        public boolean handleResource(final ResourceResponse resource) {
+            if (skipped < cursor.skip) {
+                // Already returned as part of a previous page.
+                skipped++;
+                return !merge.isDone();
+            }
+            final boolean more = merge.offer(this, resource);
+            merge.resolve();
+            return more;
+        }
+
+        /** Returns whether the shard has returned all of its results, or has none left to return. */
+        private boolean isFinished() {
+            return end != null || cursor.isExhausted();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.forgerock.json.resource;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.resource.PatchOperation.*;
@@ -141,6 +142,51 @@ public final class MemoryBackendTest {
                 userBobWithIdAndRev(0, 1).getObject());
     }
 
+    @Test
+    public void testPatchInstanceCopiesOnlyPatchedPaths() throws Exception {
+        final MemoryBackend users = new MemoryBackend();
+        users.createInstance(ctx(), newCreateRequest("users", content(object(
+                field("name", "alice"),
+                field("address", object(field("city", "Bristol"), field("country", "UK"))),
+                field("preferences", object(field("updates", true))),
+                field("roles", array(object(field("_ref", "employee")), object(field("_ref", "manager"))))))))
+                .getOrThrowUninterruptibly();
+        final JsonValue before = users.readInstance(ctx(), "0", newReadRequest("users/0"))
+                .getOrThrowUninterruptibly().getContent();
+
+        final JsonValue after = users.patchInstance(ctx(), "0", newPatchRequest("users/0",
+                replace("/address/city", "London"), replace("/roles/1/_ref", "admin")))
+                .getOrThrowUninterruptibly().getContent();
+
+        // patched paths are copied, leaving the previous revision unchanged
+        assertThat(after.getObject()).isNotSameAs(before.getObject());
+        assertThat(after.get("address").getObject()).isNotSameAs(before.get("address").getObject());
+        assertThat(after.get("roles").getObject()).isNotSameAs(before.get("roles").getObject());
+        assertThat(after.get("roles").get(1).getObject()).isNotSameAs(before.get("roles").get(1).getObject());
+        assertThat(after.get("address").get("city").asString()).isEqualTo("London");
+        assertThat(before.get("address").get("city").asString()).isEqualTo("Bristol");
+        assertThat(before.get("roles").get(1).get("_ref").asString()).isEqualTo("manager");
+        // untouched sub-trees are shared
+        assertThat(after.get("preferences").getObject()).isSameAs(before.get("preferences").getObject());
+        assertThat(after.get("roles").get(0).getObject()).isSameAs(before.get("roles").get(0).getObject());
+    }
+
+    @Test
+    public void testPatchInstanceAddsNewPath() throws Exception {
+        final MemoryBackend users = new MemoryBackend();
+        users.createInstance(ctx(), newCreateRequest("users", userAlice())).getOrThrowUninterruptibly();
+        final JsonValue before = users.readInstance(ctx(), "0", newReadRequest("users/0"))
+                .getOrThrowUninterruptibly().getContent();
+
+        final JsonValue after = users.patchInstance(ctx(), "0", newPatchRequest("users/0",
+                add("/address", object(field("city", "Bristol"))), add("/address/country", "UK")))
+                .getOrThrowUninterruptibly().getContent();
+
+        assertThat(after.get("address").getObject())
+                .isEqualTo(object(field("city", "Bristol"), field("country", "UK")));
+        assertThat(before.isDefined("address")).isFalse();
+    }
+
     @Test
     public void testQueryCollection() throws Exception {
         final Connection connection = getConnectionWithAliceAndBob();
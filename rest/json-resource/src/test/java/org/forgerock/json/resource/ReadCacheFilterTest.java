@@ -0,0 +1,173 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public final class ReadCacheFilterTest {
+
+    private static final Context CONTEXT = new RootContext();
+
+    private RequestHandler next;
+    private TimeService time;
+
+    @BeforeMethod
+    public void setUp() {
+        next = mock(RequestHandler.class);
+        time = mock(TimeService.class);
+        when(next.handleRead(any(Context.class), any(ReadRequest.class)))
+                .thenReturn(newResourceResponse("id", "1", json(object(field("a", "b")))).asPromise());
+        when(next.handleUpdate(any(Context.class), any(UpdateRequest.class)))
+                .thenReturn(newResourceResponse("id", "2", json(object(field("a", "c")))).asPromise());
+    }
+
+    @Test
+    public void shouldServeRepeatedReadsFromCache() throws Exception {
+        final ReadCacheFilter filter = newFilter(10);
+
+        final ResourceResponse first = filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next)
+                .getOrThrow();
+        first.getContent().put("a", "modified");
+        final ResourceResponse second = filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next)
+                .getOrThrow();
+
+        assertThat(second.getRevision()).isEqualTo("1");
+        assertThat(second.getContent().get("a").asString()).isEqualTo("b");
+        verify(next, times(1)).handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(filter.getHitCount()).isEqualTo(1);
+        assertThat(filter.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCacheFieldsSeparately() throws Exception {
+        final ReadCacheFilter filter = newFilter(10);
+
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id").addField("a"), next).getOrThrow();
+
+        verify(next, times(2)).handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(filter.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldInvalidateOnUpdate() throws Exception {
+        final ReadCacheFilter filter = newFilter(10);
+
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+        filter.filterUpdate(CONTEXT, Requests.newUpdateRequest("users/id", json(object())), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+
+        verify(next, times(2)).handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(filter.getInvalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldExpireEntries() throws Exception {
+        final ReadCacheFilter filter = newFilter(10);
+
+        when(time.now()).thenReturn(0L);
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+        when(time.now()).thenReturn(60000L);
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+
+        verify(next, times(2)).handleRead(any(Context.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedResources() throws Exception {
+        final ReadCacheFilter filter = newFilter(2);
+
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/1"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/2"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/1"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/3"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/1"), next).getOrThrow();
+
+        assertThat(filter.size()).isEqualTo(2);
+        assertThat(filter.getEvictionCount()).isEqualTo(1);
+        assertThat(filter.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotCacheReadsWhichDoNotMatchCondition() throws Exception {
+        final ReadCacheFilter filter = new ReadCacheFilter(10, Duration.duration("1 minute"),
+                Filters.matchResourcePath("config/.*"), time);
+
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+
+        verify(next, times(2)).handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(filter.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotServeCachedResponsesToAnotherSubject() throws Exception {
+        final ReadCacheFilter filter = newFilter(10);
+
+        filter.filterRead(subject("alice"), Requests.newReadRequest("users/id"), next).getOrThrow();
+        filter.filterRead(subject("bob"), Requests.newReadRequest("users/id"), next).getOrThrow();
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id"), next).getOrThrow();
+        filter.filterRead(subject("alice"), Requests.newReadRequest("users/id"), next).getOrThrow();
+
+        verify(next, times(3)).handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(filter.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldLimitCachedVariantsOfAResource() throws Exception {
+        final ReadCacheFilter filter = newFilter(10);
+
+        for (int i = 0; i <= ReadCacheFilter.MAX_VARIANTS_PER_RESOURCE; i++) {
+            filter.filterRead(CONTEXT, Requests.newReadRequest("users/id").addField("field" + i), next)
+                    .getOrThrow();
+        }
+        filter.filterRead(CONTEXT, Requests.newReadRequest("users/id").addField("field0"), next).getOrThrow();
+
+        verify(next, times(ReadCacheFilter.MAX_VARIANTS_PER_RESOURCE + 2))
+                .handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(filter.getEvictionCount()).isEqualTo(2);
+    }
+
+    private static Context subject(final String authenticationId) {
+        return new SecurityContext(CONTEXT, authenticationId,
+                Collections.<String, Object>singletonMap(SecurityContext.AUTHZID_ID, authenticationId));
+    }
+
+    private ReadCacheFilter newFilter(final int maxSize) {
+        return new ReadCacheFilter(maxSize, Duration.duration("1 minute"), Filters.matchResourcePath(".*"), time);
+    }
+}
@@ -26,13 +26,16 @@ import static org.forgerock.util.test.assertj.AssertJPromiseAssert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.Collections;
 
 import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
 import org.forgerock.http.routing.UriRouterContext;
 import org.forgerock.util.promise.Promise;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
@@ -446,6 +449,48 @@ public class RouterTest {
         }
     }
 
+    @Test
+    public void shouldRouteRepeatedRequestsUsingRouteCache() {
+
+        //Given
+        RequestHandler usersHandler = mock(RequestHandler.class);
+        router.setRouteCacheSize(10);
+        router.addRoute(requestUriMatcher(STARTS_WITH, "users/{id}"), usersHandler);
+
+        //When
+        router.handleRead(new RootContext(), Requests.newReadRequest("users/demo"));
+        router.handleRead(new RootContext(), Requests.newReadRequest("users/demo"));
+
+        //Then
+        ArgumentCaptor<Context> contexts = ArgumentCaptor.forClass(Context.class);
+        verify(usersHandler, times(2)).handleRead(contexts.capture(), any(ReadRequest.class));
+        for (Context context : contexts.getAllValues()) {
+            assertThat(context.asContext(UriRouterContext.class).getUriTemplateVariables())
+                    .containsEntry("id", "demo");
+        }
+        assertThat(router.getRouteCacheHitCount()).isEqualTo(1);
+        assertThat(router.getRouteCacheMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldInvalidateRouteCacheWhenRoutesChange() {
+
+        //Given
+        RequestHandler usersHandler = mock(RequestHandler.class);
+        RequestHandler demoHandler = mock(RequestHandler.class);
+        router.setRouteCacheSize(10);
+        router.addRoute(requestUriMatcher(STARTS_WITH, "users/{id}"), usersHandler);
+        router.handleRead(new RootContext(), Requests.newReadRequest("users/demo"));
+
+        //When
+        router.addRoute(requestUriMatcher(EQUALS, "users/demo"), demoHandler);
+        router.handleRead(new RootContext(), Requests.newReadRequest("users/demo"));
+
+        //Then
+        verify(demoHandler).handleRead(any(Context.class), any(ReadRequest.class));
+        assertThat(router.getRouteCacheHitCount()).isEqualTo(0);
+    }
+
     private Context newRouterContext(Context parentContext, String remainingUri) {
         return new UriRouterContext(parentContext, "MATCHED_URI", remainingUri, Collections.<String, String>emptyMap());
     }
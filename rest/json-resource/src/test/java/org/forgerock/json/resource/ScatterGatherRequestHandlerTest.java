@@ -0,0 +1,187 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Resources.newInternalConnection;
+import static org.forgerock.json.resource.Router.uriTemplate;
+import static org.forgerock.json.resource.TestUtils.ctx;
+import static org.forgerock.util.time.Duration.duration;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public final class ScatterGatherRequestHandlerTest {
+
+    private static final ScatterGatherRequestHandler.ShardSelector BROADCAST =
+            new ScatterGatherRequestHandler.ShardSelector() {
+                @Override
+                public int selectShard(final Context context, final Request request) {
+                    return ALL_SHARDS;
+                }
+            };
+
+    private ExecutorService executor;
+    private Connection connection;
+
+    @BeforeClass
+    public void startExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterClass
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        final RequestHandler shard0 = newShard("a", "c", "e");
+        final RequestHandler shard1 = newShard("b", "d", "f");
+        connection = newInternalConnection(
+                new ScatterGatherRequestHandler(Arrays.asList(shard0, shard1), BROADCAST, executor, 1));
+    }
+
+    @Test
+    public void shouldMergeSortedResults() throws Exception {
+        final List<ResourceResponse> results = new ArrayList<>();
+
+        final QueryResponse response =
+                connection.query(ctx(), newQueryRequest("users").addSortKey("name"), results);
+
+        assertThat(names(results)).containsExactly("a", "b", "c", "d", "e", "f");
+        assertThat(response.getPagedResultsCookie()).isNull();
+    }
+
+    @Test
+    public void shouldPageThroughMergedResults() throws Exception {
+        final List<String> pages = new ArrayList<>();
+        String cookie = null;
+        do {
+            final List<ResourceResponse> results = new ArrayList<>();
+            final QueryResponse response = connection.query(ctx(),
+                    newQueryRequest("users").addSortKey("-name").setPageSize(4).setPagedResultsCookie(cookie),
+                    results);
+            pages.add(names(results).toString());
+            cookie = response.getPagedResultsCookie();
+        } while (cookie != null);
+
+        assertThat(pages).containsExactly("[f, e, d, c]", "[b, a]");
+    }
+
+    @Test
+    public void shouldApplyOffsetToMergedResults() throws Exception {
+        final List<ResourceResponse> results = new ArrayList<>();
+
+        connection.query(ctx(), newQueryRequest("users").addSortKey("name").setPageSize(2).setPagedResultsOffset(3),
+                results);
+
+        assertThat(names(results)).containsExactly("d", "e");
+    }
+
+    @Test
+    public void shouldReadFromAnyShard() throws Exception {
+        assertThat(connection.read(ctx(), newReadRequest("users/d")).getContent().get("name").asString())
+                .isEqualTo("d");
+    }
+
+    @Test(expectedExceptions = NotFoundException.class)
+    public void shouldFailReadWhenNoShardContainsResource() throws Exception {
+        connection.read(ctx(), newReadRequest("users/z"));
+    }
+
+    @Test(expectedExceptions = ServiceUnavailableException.class, timeOut = 10000)
+    public void shouldFailQueryWhenShardDoesNotRespond() throws Exception {
+        final RequestHandler silentShard = mock(RequestHandler.class);
+        when(silentShard.handleQuery(any(Context.class), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .thenReturn(PromiseImpl.<QueryResponse, ResourceException>create());
+        final Connection connection = newInternalConnection(new ScatterGatherRequestHandler(
+                Arrays.asList(newShard("a"), silentShard), BROADCAST, executor, 1, duration(100, MILLISECONDS)));
+
+        connection.query(ctx(), newQueryRequest("users").addSortKey("name"), new ArrayList<ResourceResponse>());
+    }
+
+    @Test(timeOut = 10000)
+    public void shouldNotWaitForShardsToRespond() throws Exception {
+        final PromiseImpl<QueryResponse, ResourceException> pending = PromiseImpl.create();
+        final RequestHandler slowShard = mock(RequestHandler.class);
+        when(slowShard.handleQuery(any(Context.class), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .thenReturn(pending);
+        final RequestHandler handler = new ScatterGatherRequestHandler(
+                Arrays.asList(newShard("a"), slowShard), BROADCAST, executor, 1);
+        final List<ResourceResponse> results = new ArrayList<>();
+
+        final Promise<QueryResponse, ResourceException> promise = handler.handleQuery(ctx(),
+                newQueryRequest("users").addSortKey("name"), new QueryResourceHandler() {
+                    @Override
+                    public boolean handleResource(final ResourceResponse resource) {
+                        results.add(resource);
+                        return true;
+                    }
+                });
+
+        assertThat(promise.isDone()).isFalse();
+        pending.handleResult(Responses.newQueryResponse());
+        promise.getOrThrow();
+        assertThat(names(results)).containsExactly("a");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void shouldRejectCreateWhichCannotBeRouted() throws Exception {
+        connection.create(ctx(), newCreateRequest("users", "z", json(object(field("name", "z")))));
+    }
+
+    private RequestHandler newShard(final String... names) throws Exception {
+        final Router router = new Router();
+        router.addRoute(uriTemplate("users"), new MemoryBackend());
+        final Connection shard = newInternalConnection(router);
+        for (final String name : names) {
+            shard.create(ctx(), newCreateRequest("users", name, json(object(field("name", name)))));
+        }
+        return router;
+    }
+
+    private List<String> names(final List<ResourceResponse> results) {
+        final List<String> names = new ArrayList<>();
+        for (final ResourceResponse result : results) {
+            names.add(result.getContent().get("name").asString());
+        }
+        return names;
+    }
+}
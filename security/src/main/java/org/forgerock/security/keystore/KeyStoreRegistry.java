@@ -0,0 +1,306 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.security.keystore;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Reject;
+import org.forgerock.util.crypto.Digests;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseCoalescer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A registry of the key stores used by a component, so that each key store file is read and its private keys are
+ * decrypted once, however many times the component uses it, and so that the key stores are reloaded when their files
+ * change.
+ * <p>
+ * Key stores are identified by their file, type and password: opening the same file with a different password gives a
+ * different {@link ManagedKeyStore}. The directories containing the key store files are watched with a
+ * {@link WatchService}, from a daemon thread which is started when the first file based key store is loaded, and which
+ * reloads a key store each time its file is modified or replaced. Key stores which are not file based, such as
+ * PKCS#11 key stores, are only loaded once, but can still be {@link ManagedKeyStore#reload() reloaded} explicitly.
+ * <p>
+ * Each registry belongs to the component which created it, which should {@link #close() close} it when it is no
+ * longer needed: closing the registry stops its thread and releases its key stores. The thread also stops by itself
+ * once the registry is no longer referenced, so components without a life cycle do not leak their key stores. The
+ * key stores returned by a registry must not be modified: components which write to a key store, or which need to be
+ * isolated from changes to the file, should keep using {@link KeyStoreBuilder}.
+ */
+public final class KeyStoreRegistry implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyStoreRegistry.class);
+
+    /** How often the watcher thread checks whether its registry is still referenced. */
+    private static final long WATCHER_POLL_SECONDS = 10L;
+
+    /** The identity of a key store in the registry. */
+    private static final class RegistryKey {
+        private final File file;
+        private final Path path;
+        private final KeyStoreType type;
+        private final String password;
+        private final byte[] passwordDigest;
+
+        private RegistryKey(final File file, final KeyStoreType type, final String password) {
+            this.file = file;
+            this.path = file != null ? file.toPath().normalize() : null;
+            this.type = type;
+            this.password = password;
+            this.passwordDigest = Digests.sha256(password);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof RegistryKey) {
+                final RegistryKey that = (RegistryKey) obj;
+                return (path == null ? that.path == null : path.equals(that.path))
+                        && type == that.type
+                        && Arrays.equals(passwordDigest, that.passwordDigest);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((path == null ? 0 : path.hashCode()) * 31 + type.hashCode()) * 31 + Arrays.hashCode(passwordDigest);
+        }
+    }
+
+    /**
+     * Reloads the key stores of a registry when their files change, until the registry is closed or is no longer
+     * referenced.
+     */
+    private static final class Watcher implements Runnable {
+        private final WeakReference<KeyStoreRegistry> registry;
+        private final WatchService watchService;
+
+        private Watcher(final KeyStoreRegistry registry, final WatchService watchService) {
+            this.registry = new WeakReference<>(registry);
+            this.watchService = watchService;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (processEvents(watchService.poll(WATCHER_POLL_SECONDS, TimeUnit.SECONDS))) {
+                    // Wait for the next events.
+                }
+                watchService.close();
+            } catch (ClosedWatchServiceException e) {
+                // The registry has been closed.
+            } catch (IOException e) {
+                logger.debug("Unable to close the keystore watch service", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Reloads the key stores which the events are about, if any. The registry is only referenced from this method,
+         * so that it can be garbage collected while the watcher waits for events.
+         *
+         * @return {@code false} if the registry is no longer referenced.
+         */
+        private boolean processEvents(final WatchKey watchKey) {
+            final KeyStoreRegistry current = registry.get();
+            if (current == null) {
+                return false;
+            } else if (watchKey != null) {
+                final Path directory = (Path) watchKey.watchable();
+                for (final WatchEvent<?> event : watchKey.pollEvents()) {
+                    current.reloadIfChanged(directory,
+                            event.kind() == OVERFLOW ? null : directory.resolve((Path) event.context()));
+                }
+                watchKey.reset();
+            }
+            return true;
+        }
+    }
+
+    private final ConcurrentMap<RegistryKey, ManagedKeyStore> keyStores = new ConcurrentHashMap<>();
+    private final PromiseCoalescer<RegistryKey, ManagedKeyStore, FileNotFoundException> loads =
+            new PromiseCoalescer<>();
+    private final boolean watchFiles;
+    /** Guards the fields below, which are only used when key stores are added to the registry or when it is closed. */
+    private final Object lock = new Object();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private WatchService watchService;
+    private boolean closed;
+
+    /**
+     * Creates a new registry, which watches the key store files and which should be {@link #close() closed} when no
+     * longer needed.
+     */
+    public KeyStoreRegistry() {
+        this(true);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param watchFiles Whether the key store files are watched, or are only checked for changes when
+     *                   {@link #reloadIfChanged(Path, Path)} is called.
+     */
+    KeyStoreRegistry(final boolean watchFiles) {
+        this.watchFiles = watchFiles;
+    }
+
+    /**
+     * Returns the key store read from the given file with the given password, loading it if it is not in the
+     * registry yet. The key store is loaded by the first thread which asks for it, while the other threads asking for
+     * it wait for it to be loaded, and loading a key store does not delay the threads asking for another one.
+     *
+     * @param keyStoreFile The name of the key store file, or {@code null} or an empty string if the key store is not
+     *                     file based.
+     * @param type The type of the key store.
+     * @param password The password of the key store.
+     * @return The managed key store.
+     * @throws FileNotFoundException If the key store file does not exist or cannot be read.
+     * @throws IllegalStateException If the key store cannot be loaded, or if the registry has been closed.
+     */
+    public ManagedKeyStore getKeyStore(final String keyStoreFile, final KeyStoreType type, final String password)
+            throws FileNotFoundException {
+        Reject.ifNull(type);
+        final File file = keyStoreFile == null || keyStoreFile.trim().isEmpty()
+                ? null
+                : new File(keyStoreFile).getAbsoluteFile();
+        final RegistryKey key = new RegistryKey(file, type, password);
+        final ManagedKeyStore keyStore = keyStores.get(key);
+        if (keyStore != null) {
+            return keyStore;
+        }
+        return loads.apply(key, new AsyncFunction<RegistryKey, ManagedKeyStore, FileNotFoundException>() {
+            @Override
+            public Promise<ManagedKeyStore, FileNotFoundException> apply(final RegistryKey key)
+                    throws FileNotFoundException {
+                return newResultPromise(load(key));
+            }
+        }).getOrThrowUninterruptibly();
+    }
+
+    private ManagedKeyStore load(final RegistryKey key) throws FileNotFoundException {
+        ManagedKeyStore keyStore = keyStores.get(key);
+        if (keyStore != null) {
+            // Loaded by another thread since this one looked for it.
+            return keyStore;
+        }
+        checkNotClosed();
+        keyStore = new ManagedKeyStore(key.file, key.type, key.password);
+        synchronized (lock) {
+            checkNotClosed();
+            keyStores.put(key, keyStore);
+            if (key.path != null && watchFiles) {
+                watch(key.path.getParent());
+            }
+        }
+        return keyStore;
+    }
+
+    private void checkNotClosed() {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The keystore registry has been closed");
+            }
+        }
+    }
+
+    /**
+     * Stops watching the key store files and removes all the key stores from the registry.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            keyStores.clear();
+            watchedDirectories.clear();
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    logger.debug("Unable to close the keystore watch service", e);
+                }
+                watchService = null;
+            }
+        }
+    }
+
+    /** Must be called while holding the {@code lock}. */
+    private void watch(final Path directory) {
+        if (directory == null || watchedDirectories.contains(directory)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                final WatchService newWatchService = FileSystems.getDefault().newWatchService();
+                final Thread watcher = new Thread(new Watcher(this, newWatchService), "KeyStoreRegistry watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+                watchService = newWatchService;
+            }
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            watchedDirectories.add(directory);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Unable to watch directory {}, the keystores it contains will not be reloaded when they change",
+                    directory, e);
+        }
+    }
+
+    /**
+     * Reloads the key stores read from the given file if it has changed, or from any file in the given directory if
+     * the file is {@code null}.
+     *
+     * @param directory The directory containing the changed file.
+     * @param file The changed file, or {@code null} if any file of the directory may have changed.
+     */
+    void reloadIfChanged(final Path directory, final Path file) {
+        for (final RegistryKey key : keyStores.keySet()) {
+            if (key.path != null && (file != null ? file.equals(key.path) : directory.equals(key.path.getParent()))) {
+                final ManagedKeyStore keyStore = keyStores.get(key);
+                if (keyStore != null && keyStore.reloadIfChanged()) {
+                    logger.debug("Reloaded keystore {} in {} ms", key.path,
+                            keyStore.getLastLoadDuration(TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+    }
+}
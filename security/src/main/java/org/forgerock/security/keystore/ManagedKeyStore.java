@@ -0,0 +1,334 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.security.keystore;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.Reject;
+import org.forgerock.util.crypto.Digests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A loaded key store, shared through a {@link KeyStoreRegistry}, which caches the certificates and the decrypted
+ * private keys read from it and which is reloaded when its file changes.
+ * <p>
+ * Each load produces a new immutable view of the key store, which replaces the previous one atomically, so readers
+ * never see a partially loaded key store and never wait for a reload. If a reload fails, for example because the
+ * file is still being written, the previous view remains in use. {@link Listener Listeners} are told about each
+ * successful reload, so that they can rebuild anything derived from the old keys.
+ */
+public final class ManagedKeyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManagedKeyStore.class);
+
+    /**
+     * Listens for the reloads of a managed key store.
+     */
+    public interface Listener {
+        /**
+         * Called after the key store has been reloaded, on the thread which reloaded it.
+         *
+         * @param keyStore The reloaded key store.
+         */
+        void keyStoreReloaded(ManagedKeyStore keyStore);
+    }
+
+    /** A decrypted private key, along with a digest of the password it was decrypted with. */
+    private static final class CachedPrivateKey {
+        private final byte[] passwordDigest;
+        private final PrivateKey privateKey;
+
+        private CachedPrivateKey(final byte[] passwordDigest, final PrivateKey privateKey) {
+            this.passwordDigest = passwordDigest;
+            this.privateKey = privateKey;
+        }
+    }
+
+    /** An immutable view of the key store as loaded at a given time, with the keys read from it so far. */
+    private static final class Snapshot {
+        private final KeyStoreManager keyStoreManager;
+        private final long lastModified;
+        private final long length;
+        private final ConcurrentMap<String, Certificate> certificates = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, CachedPrivateKey> privateKeys = new ConcurrentHashMap<>();
+
+        private Snapshot(final KeyStoreManager keyStoreManager, final long lastModified, final long length) {
+            this.keyStoreManager = keyStoreManager;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private final File file;
+    private final KeyStoreType type;
+    private final String password;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong failedLoadCount = new AtomicLong();
+    private final AtomicLong lastLoadNanos = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    ManagedKeyStore(final File file, final KeyStoreType type, final String password) throws FileNotFoundException {
+        this.file = file;
+        this.type = Reject.checkNotNull(type);
+        this.password = password;
+        this.snapshot = load();
+    }
+
+    /**
+     * Returns the file the key store is read from.
+     *
+     * @return The key store file, or {@code null} if the key store is not file based, such as a PKCS#11 key store.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns a manager for the key store as currently loaded. The manager is not affected by later reloads, and does
+     * not cache anything, so callers should prefer the methods of this class.
+     *
+     * @return The key store manager.
+     */
+    public KeyStoreManager getKeyStoreManager() {
+        return snapshot.keyStoreManager;
+    }
+
+    /**
+     * Returns the key store as currently loaded, which must not be modified.
+     *
+     * @return The key store.
+     */
+    public KeyStore getKeyStore() {
+        return snapshot.keyStoreManager.getKeyStore();
+    }
+
+    /**
+     * Gets the certificate with the given alias.
+     *
+     * @param certAlias The certificate alias.
+     * @return The certificate, or {@code null} if the alias is empty or there is no such certificate.
+     * @see KeyStoreManager#getCertificate(String)
+     */
+    public Certificate getCertificate(final String certAlias) {
+        if (certAlias == null || certAlias.isEmpty()) {
+            return null;
+        }
+        final Snapshot current = snapshot;
+        Certificate certificate = current.certificates.get(certAlias);
+        if (certificate == null) {
+            certificate = current.keyStoreManager.getCertificate(certAlias);
+            if (certificate != null) {
+                current.certificates.put(certAlias, certificate);
+            }
+        }
+        return certificate;
+    }
+
+    /**
+     * Gets the public key of the X.509 certificate with the given alias.
+     *
+     * @param keyAlias The public key alias.
+     * @return The public key, or {@code null} if the alias is empty.
+     * @throws KeystoreManagerException If there is no X.509 certificate with the given alias.
+     * @see KeyStoreManager#getPublicKey(String)
+     */
+    public PublicKey getPublicKey(final String keyAlias) {
+        if (keyAlias == null || keyAlias.isEmpty()) {
+            return null;
+        }
+        final Certificate certificate = getCertificate(keyAlias);
+        if (!(certificate instanceof X509Certificate)) {
+            throw new KeystoreManagerException("Certificate not a X509 Certificate for alias: " + keyAlias);
+        }
+        return certificate.getPublicKey();
+    }
+
+    /**
+     * Gets the private key with the given alias. The key is only decrypted the first time it is requested with a
+     * given password, or after the key store has been reloaded.
+     *
+     * @param keyAlias The private key alias.
+     * @param privateKeyPassword The private key password.
+     * @return The private key, or {@code null} if the alias is empty or there is no such key.
+     * @throws KeystoreManagerException If the private key cannot be decrypted.
+     * @see KeyStoreManager#getPrivateKey(String, String)
+     */
+    public PrivateKey getPrivateKey(final String keyAlias, final String privateKeyPassword) {
+        if (keyAlias == null || keyAlias.isEmpty()) {
+            return null;
+        }
+        final Snapshot current = snapshot;
+        final byte[] passwordDigest = Digests.sha256(privateKeyPassword);
+        final CachedPrivateKey cached = current.privateKeys.get(keyAlias);
+        if (cached != null && MessageDigest.isEqual(cached.passwordDigest, passwordDigest)) {
+            return cached.privateKey;
+        }
+        final PrivateKey privateKey = current.keyStoreManager.getPrivateKey(keyAlias, privateKeyPassword);
+        if (privateKey != null) {
+            current.privateKeys.put(keyAlias, new CachedPrivateKey(passwordDigest, privateKey));
+        }
+        return privateKey;
+    }
+
+    /**
+     * Registers a listener which is told each time the key store is reloaded.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(final Listener listener) {
+        listeners.add(Reject.checkNotNull(listener));
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reloads the key store now, whether or not its file has changed. If the key store cannot be loaded, it remains
+     * as it was.
+     *
+     * @throws FileNotFoundException If the key store file cannot be found.
+     * @throws IllegalStateException If the key store cannot be loaded.
+     */
+    public void reload() throws FileNotFoundException {
+        synchronized (this) {
+            snapshot = load();
+        }
+        notifyListeners();
+    }
+
+    /**
+     * Reloads the key store if its file has changed since it was last loaded. Failures are logged, and the key store
+     * remains as it was until the file changes again.
+     *
+     * @return {@code true} if the key store has been reloaded.
+     */
+    boolean reloadIfChanged() {
+        if (file == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (file.lastModified() == snapshot.lastModified && file.length() == snapshot.length) {
+                return false;
+            }
+            try {
+                snapshot = load();
+            } catch (FileNotFoundException | RuntimeException e) {
+                logger.warn("Unable to reload keystore {}, keeping the keys loaded previously", file, e);
+                return false;
+            }
+        }
+        notifyListeners();
+        return true;
+    }
+
+    private Snapshot load() throws FileNotFoundException {
+        final long start = System.nanoTime();
+        try {
+            // Take the size and modification time of the file before reading it, so that a change made while it is
+            // being read causes it to be read again.
+            final long lastModified = file != null ? file.lastModified() : 0L;
+            final long length = file != null ? file.length() : 0L;
+            final KeyStoreBuilder builder = new KeyStoreBuilder()
+                    .withKeyStoreType(type)
+                    .withPassword(password);
+            if (file != null) {
+                builder.withKeyStoreFile(file);
+            }
+            final Snapshot loaded = new Snapshot(new KeyStoreManager(builder.build()), lastModified, length);
+            loadCount.incrementAndGet();
+            return loaded;
+        } catch (FileNotFoundException | RuntimeException e) {
+            failedLoadCount.incrementAndGet();
+            throw e;
+        } finally {
+            final long duration = System.nanoTime() - start;
+            lastLoadNanos.set(duration);
+            totalLoadNanos.addAndGet(duration);
+        }
+    }
+
+    private void notifyListeners() {
+        for (final Listener listener : listeners) {
+            try {
+                listener.keyStoreReloaded(this);
+            } catch (RuntimeException e) {
+                logger.warn("Keystore listener failed after reloading keystore {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of times the key store has been loaded successfully, including the initial load.
+     *
+     * @return The number of successful loads.
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the number of times the key store could not be loaded.
+     *
+     * @return The number of failed loads.
+     */
+    public long getFailedLoadCount() {
+        return failedLoadCount.get();
+    }
+
+    /**
+     * Returns how long the last load of the key store took, whether it succeeded or not.
+     *
+     * @param unit The unit of the returned duration.
+     * @return The duration of the last load.
+     */
+    public long getLastLoadDuration(final TimeUnit unit) {
+        return unit.convert(lastLoadNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns how long all the loads of the key store took, whether they succeeded or not, from which the average
+     * load time can be worked out.
+     *
+     * @param unit The unit of the returned duration.
+     * @return The total duration of the loads.
+     */
+    public long getTotalLoadDuration(final TimeUnit unit) {
+        return unit.convert(totalLoadNanos.get(), TimeUnit.NANOSECONDS);
+    }
+}
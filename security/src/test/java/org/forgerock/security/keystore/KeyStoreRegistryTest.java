@@ -0,0 +1,184 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.security.keystore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class KeyStoreRegistryTest {
+    private static final String KEY_STORE_PASSWORD = "Passw0rd1";
+    private static final String KEY_ALIAS = "key";
+
+    private KeyStoreRegistry registry;
+    private File keyStoreFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        registry = new KeyStoreRegistry(false);
+        keyStoreFile = File.createTempFile("keystore", ".jks");
+        keyStoreFile.deleteOnExit();
+        copyKeyStore("/keystore.jks", keyStoreFile);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        registry.close();
+        keyStoreFile.delete();
+    }
+
+    @Test
+    public void shouldShareKeyStoresWithTheSameFileTypeAndPassword() throws Exception {
+        // given
+        final ManagedKeyStore keyStore = getKeyStore();
+
+        // when
+        final ManagedKeyStore sameKeyStore = getKeyStore();
+        final ManagedKeyStore otherKeyStore =
+                registry.getKeyStore(keyStoreFile.getPath(), KeyStoreType.JCEKS, KEY_STORE_PASSWORD);
+
+        // then
+        assertThat(sameKeyStore).isSameAs(keyStore);
+        assertThat(otherKeyStore).isNotSameAs(keyStore);
+        assertThat(keyStore.getLoadCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldDecryptPrivateKeyOnce() throws Exception {
+        // given
+        final ManagedKeyStore keyStore = getKeyStore();
+
+        // when
+        final PrivateKey key = keyStore.getPrivateKey(KEY_ALIAS, KEY_STORE_PASSWORD);
+
+        // then
+        assertThat(key).isNotNull();
+        assertThat(keyStore.getPrivateKey(KEY_ALIAS, KEY_STORE_PASSWORD)).isSameAs(key);
+        assertThat(keyStore.getPublicKey(KEY_ALIAS)).isNotNull();
+        assertThat(keyStore.getCertificate(KEY_ALIAS)).isSameAs(keyStore.getCertificate(KEY_ALIAS));
+    }
+
+    @Test(expectedExceptions = KeystoreManagerException.class)
+    public void shouldNotReturnCachedPrivateKeyForWrongPassword() throws Exception {
+        // given
+        final ManagedKeyStore keyStore = getKeyStore();
+        keyStore.getPrivateKey(KEY_ALIAS, KEY_STORE_PASSWORD);
+
+        // when
+        keyStore.getPrivateKey(KEY_ALIAS, "wrong");
+    }
+
+    @Test
+    public void shouldReloadAndNotifyListeners() throws Exception {
+        // given
+        final ManagedKeyStore keyStore = getKeyStore();
+        final PrivateKey key = keyStore.getPrivateKey(KEY_ALIAS, KEY_STORE_PASSWORD);
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        keyStore.addListener(new ManagedKeyStore.Listener() {
+            @Override
+            public void keyStoreReloaded(ManagedKeyStore keyStore) {
+                reloaded.countDown();
+            }
+        });
+
+        // when
+        keyStore.reload();
+
+        // then
+        assertThat(reloaded.getCount()).isEqualTo(0);
+        assertThat(keyStore.getLoadCount()).isEqualTo(2);
+        assertThat(keyStore.getPrivateKey(KEY_ALIAS, KEY_STORE_PASSWORD)).isNotSameAs(key).isEqualTo(key);
+    }
+
+    @Test
+    public void shouldReloadWhenFileChanges() throws Exception {
+        // given
+        final ManagedKeyStore keyStore = getKeyStore();
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        keyStore.addListener(new ManagedKeyStore.Listener() {
+            @Override
+            public void keyStoreReloaded(ManagedKeyStore keyStore) {
+                reloaded.countDown();
+            }
+        });
+
+        // when the file is truncated
+        Files.write(keyStoreFile.toPath(), Arrays.copyOf(Files.readAllBytes(keyStoreFile.toPath()), 100));
+        fileChanged();
+
+        // then the keys loaded previously remain in use
+        assertThat(keyStore.getFailedLoadCount()).isEqualTo(1);
+        assertThat(reloaded.getCount()).isEqualTo(1);
+        assertThat(keyStore.getPrivateKey(KEY_ALIAS, KEY_STORE_PASSWORD)).isNotNull();
+
+        // when the file is written again, with the same size, within the resolution of its modification time
+        copyKeyStore("/keystore.jks", keyStoreFile);
+        keyStoreFile.setLastModified(keyStoreFile.lastModified() + 2000L);
+        fileChanged();
+
+        // then
+        assertThat(reloaded.getCount()).isEqualTo(0);
+        assertThat(keyStore.getLoadCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotReloadWhenFileIsUnchanged() throws Exception {
+        // given
+        final ManagedKeyStore keyStore = getKeyStore();
+
+        // when
+        fileChanged();
+
+        // then
+        assertThat(keyStore.getLoadCount()).isEqualTo(1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldNotLoadKeyStoresOnceClosed() throws Exception {
+        // given
+        registry.close();
+
+        // when
+        getKeyStore();
+    }
+
+    private ManagedKeyStore getKeyStore() throws Exception {
+        return registry.getKeyStore(keyStoreFile.getPath(), KeyStoreType.JKS, KEY_STORE_PASSWORD);
+    }
+
+    /** Does what the watcher thread does when it is told that the key store file has changed. */
+    private void fileChanged() {
+        registry.reloadIfChanged(keyStoreFile.toPath().getParent(), keyStoreFile.toPath());
+    }
+
+    private void copyKeyStore(final String resource, final File target) throws Exception {
+        try (InputStream keyStore = getClass().getResourceAsStream(resource)) {
+            Files.copy(keyStore, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -84,6 +84,9 @@ public final class JsonPatch {
         final List<Object> result = new ArrayList<>();
         if (differentTypes(original, target)) { // different types cause a replace
             result.add(op("replace", original.getPointer(), target));
+        } else if (original.getObject() == target.getObject()) {
+            // same instance, typically a sub-tree shared between two versions of a document: nothing changed
+            return new JsonValue(result);
         } else if (original.isMap()) {
             for (String key : original.keys()) {
                 if (target.isDefined(key)) { // target also has the property
@@ -136,6 +139,9 @@ public final class JsonPatch {
         if (differentTypes(value, other)) {
             return false;
         }
+        if (value.getObject() == other.getObject()) {
+            return true;
+        }
         if (value.size() != other.size()) {
             return false;
         }
@@ -240,6 +240,17 @@ public class PerItemEvictionStrategyCache<K, V> {
         return cache.isEmpty();
     }
 
+    /**
+     * Returns whether a value is cached, or being computed, for the given key.
+     *
+     * @param key
+     *         the entry key
+     * @return {@literal true} if the cache contains a value for the key, {@literal false} otherwise.
+     */
+    public boolean containsKey(K key) {
+        return cache.containsKey(key);
+    }
+
     /**
      * Evict a cached value from the cache.
      *
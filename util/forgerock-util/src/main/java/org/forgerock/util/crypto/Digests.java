@@ -0,0 +1,59 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Message digests of the values, such as passwords and tokens, which are used as cache keys but should not be kept
+ * in memory themselves.
+ */
+public final class Digests {
+
+    private static final String SHA_256 = "SHA-256";
+
+    private Digests() {
+        // Utility class.
+    }
+
+    /**
+     * Returns a new SHA-256 message digest.
+     *
+     * @return A new SHA-256 message digest.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of the UTF-8 encoding of the given string.
+     *
+     * @param value The string to digest, or {@code null}, which has the same digest as the empty string.
+     * @return The 32 byte digest.
+     */
+    public static byte[] sha256(final String value) {
+        final MessageDigest digest = newSha256();
+        return value == null ? digest.digest() : digest.digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,619 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.encode;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.forgerock.util.Reject;
+
+/**
+ * A table driven BASE64 encoder and decoder supporting both the standard and the URL and filename safe alphabets
+ * defined in RFC 4648, with or without padding. Unlike {@link Base64url}, conversions are performed in a single pass
+ * directly between {@code byte[]}, {@code ByteBuffer} and {@code CharSequence} without any intermediate strings.
+ * <p>
+ * Encoding uses the alphabet and padding of the codec. Decoding accepts characters from both alphabets and optional
+ * padding, so that any codec can decode the output of any other. As with {@link Base64}, characters which are not
+ * part of either alphabet, such as line separators, are ignored and decoding stops at the first padding character.
+ * <p>
+ * Instances are immutable and thread safe.
+ */
+public final class Base64Codec {
+
+    private static final char[] STANDARD_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char[] URL_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final char PAD = '=';
+
+    /** Marks characters which should be ignored when decoding. */
+    private static final int IGNORED = -1;
+    /** Marks the padding character, which ends the encoded data. */
+    private static final int END = -2;
+    private static final int[] DECODE_TABLE = new int[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, IGNORED);
+        for (int i = 0; i < STANDARD_ALPHABET.length; i++) {
+            DECODE_TABLE[STANDARD_ALPHABET[i]] = i;
+            DECODE_TABLE[URL_ALPHABET[i]] = i;
+        }
+        DECODE_TABLE[PAD] = END;
+    }
+
+    private static final int STREAM_BUFFER_SIZE = 4_096;
+
+    // The codecs must be declared after the alphabets which they depend on.
+    /** Codec using the standard alphabet, with padding, as used by {@link Base64#encode(byte[])}. */
+    public static final Base64Codec BASE64 = new Base64Codec(false, true);
+
+    /** Codec using the URL and filename safe alphabet, without padding, as used by {@link Base64url}. */
+    public static final Base64Codec BASE64URL = new Base64Codec(true, false);
+
+    private final boolean urlSafe;
+    private final boolean padding;
+    private final char[] alphabet;
+    private final byte[] byteAlphabet;
+
+    private Base64Codec(final boolean urlSafe, final boolean padding) {
+        this.urlSafe = urlSafe;
+        this.padding = padding;
+        this.alphabet = urlSafe ? URL_ALPHABET : STANDARD_ALPHABET;
+        this.byteAlphabet = new byte[alphabet.length];
+        for (int i = 0; i < alphabet.length; i++) {
+            byteAlphabet[i] = (byte) alphabet[i];
+        }
+    }
+
+    /**
+     * Returns a codec using the same alphabet as this codec, which pads its output if requested.
+     *
+     * @param padding
+     *            {@code true} if encoded output should be padded to a multiple of four characters.
+     * @return A codec using the same alphabet as this codec and the requested padding.
+     */
+    public Base64Codec withPadding(final boolean padding) {
+        if (padding == this.padding) {
+            return this;
+        }
+        return urlSafe ? (padding ? new Base64Codec(true, true) : BASE64URL)
+                       : (padding ? BASE64 : new Base64Codec(false, false));
+    }
+
+    /**
+     * Returns the number of characters produced when encoding the given number of bytes.
+     *
+     * @param length
+     *            The number of bytes to encode.
+     * @return The number of characters of the encoded output.
+     */
+    public int encodedLength(final int length) {
+        Reject.ifTrue(length < 0, "Length must not be negative");
+        final long encodedLength = padding ? (length + 2L) / 3 * 4 : (length * 4L + 2) / 3;
+        Reject.ifTrue(encodedLength > Integer.MAX_VALUE, "Input is too large to be encoded");
+        return (int) encodedLength;
+    }
+
+    /**
+     * Encodes the given bytes.
+     *
+     * @param src
+     *            The bytes to encode.
+     * @return The encoded string.
+     */
+    public String encode(final byte[] src) {
+        return encode(src, 0, src.length);
+    }
+
+    /**
+     * Encodes a range of the given bytes.
+     *
+     * @param src
+     *            The array containing the bytes to encode.
+     * @param offset
+     *            The offset of the first byte to encode.
+     * @param length
+     *            The number of bytes to encode.
+     * @return The encoded string.
+     */
+    public String encode(final byte[] src, final int offset, final int length) {
+        checkRange(src.length, offset, length);
+        final char[] dst = new char[encodedLength(length)];
+        final int end = offset + length;
+        final int fullGroupsEnd = end - length % 3;
+        int s = offset;
+        int d = 0;
+        while (s < fullGroupsEnd) {
+            final int bits = (src[s++] & 0xff) << 16 | (src[s++] & 0xff) << 8 | (src[s++] & 0xff);
+            dst[d++] = alphabet[bits >>> 18];
+            dst[d++] = alphabet[bits >>> 12 & 0x3f];
+            dst[d++] = alphabet[bits >>> 6 & 0x3f];
+            dst[d++] = alphabet[bits & 0x3f];
+        }
+        if (s < end) {
+            final int first = src[s++] & 0xff;
+            final int bits = s < end ? first << 16 | (src[s] & 0xff) << 8 : first << 16;
+            dst[d++] = alphabet[bits >>> 18];
+            dst[d++] = alphabet[bits >>> 12 & 0x3f];
+            if (s < end) {
+                dst[d++] = alphabet[bits >>> 6 & 0x3f];
+            } else if (padding) {
+                dst[d++] = PAD;
+            }
+            if (padding) {
+                dst[d] = PAD;
+            }
+        }
+        return new String(dst);
+    }
+
+    /**
+     * Encodes the remaining bytes of the given buffer, leaving its position at its limit.
+     *
+     * @param src
+     *            The buffer containing the bytes to encode.
+     * @return The encoded string.
+     */
+    public String encode(final ByteBuffer src) {
+        if (src.hasArray()) {
+            final String encoded = encode(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+            return encoded;
+        }
+        final byte[] bytes = new byte[src.remaining()];
+        src.get(bytes);
+        return encode(bytes);
+    }
+
+    /**
+     * Encodes the given bytes into US-ASCII encoded bytes.
+     *
+     * @param src
+     *            The bytes to encode.
+     * @return The US-ASCII bytes of the encoded output.
+     */
+    public byte[] encodeToBytes(final byte[] src) {
+        final byte[] dst = new byte[encodedLength(src.length)];
+        encode(src, 0, src.length, dst, 0);
+        return dst;
+    }
+
+    /**
+     * Encodes the remaining bytes of the source buffer into the destination buffer as US-ASCII bytes, leaving the
+     * position of the source buffer at its limit.
+     *
+     * @param src
+     *            The buffer containing the bytes to encode.
+     * @param dst
+     *            The buffer to which the US-ASCII bytes of the encoded output will be written.
+     * @throws BufferOverflowException
+     *             If the destination buffer does not have enough space remaining for the encoded output.
+     */
+    public void encode(final ByteBuffer src, final ByteBuffer dst) {
+        final byte[] bytes;
+        final int offset;
+        if (src.hasArray()) {
+            bytes = src.array();
+            offset = src.arrayOffset() + src.position();
+        } else {
+            bytes = new byte[src.remaining()];
+            src.duplicate().get(bytes);
+            offset = 0;
+        }
+        final int length = src.remaining();
+        final int encodedLength = encodedLength(length);
+        if (dst.remaining() < encodedLength) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            encode(bytes, offset, length, dst.array(), dst.arrayOffset() + dst.position());
+        } else {
+            final byte[] encoded = new byte[encodedLength];
+            encode(bytes, offset, length, encoded, 0);
+            dst.duplicate().put(encoded);
+        }
+        dst.position(dst.position() + encodedLength);
+        src.position(src.limit());
+    }
+
+    /**
+     * Encodes the bytes of the given range into the destination array as US-ASCII bytes, returning the number of
+     * bytes written.
+     */
+    private int encode(final byte[] src, final int offset, final int length, final byte[] dst, final int dstOffset) {
+        final int end = offset + length;
+        final int fullGroupsEnd = end - length % 3;
+        int s = offset;
+        int d = dstOffset;
+        while (s < fullGroupsEnd) {
+            final int bits = (src[s++] & 0xff) << 16 | (src[s++] & 0xff) << 8 | (src[s++] & 0xff);
+            dst[d++] = byteAlphabet[bits >>> 18];
+            dst[d++] = byteAlphabet[bits >>> 12 & 0x3f];
+            dst[d++] = byteAlphabet[bits >>> 6 & 0x3f];
+            dst[d++] = byteAlphabet[bits & 0x3f];
+        }
+        if (s < end) {
+            final int first = src[s++] & 0xff;
+            final int bits = s < end ? first << 16 | (src[s] & 0xff) << 8 : first << 16;
+            dst[d++] = byteAlphabet[bits >>> 18];
+            dst[d++] = byteAlphabet[bits >>> 12 & 0x3f];
+            if (s < end) {
+                dst[d++] = byteAlphabet[bits >>> 6 & 0x3f];
+            } else if (padding) {
+                dst[d++] = PAD;
+            }
+            if (padding) {
+                dst[d++] = PAD;
+            }
+        }
+        return d - dstOffset;
+    }
+
+    /**
+     * Decodes the given characters.
+     *
+     * @param src
+     *            The encoded characters.
+     * @return The decoded bytes, or {@code null} if the encoded data is truncated.
+     */
+    public byte[] decode(final CharSequence src) {
+        final int length = src.length();
+        final byte[] dst = new byte[maxDecodedLength(length)];
+        int d = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = src.charAt(i);
+            final int value = c < DECODE_TABLE.length ? DECODE_TABLE[c] : IGNORED;
+            if (value < 0) {
+                if (value == END) {
+                    break;
+                }
+                continue;
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                dst[d++] = (byte) (bits >> 16);
+                dst[d++] = (byte) (bits >> 8);
+                dst[d++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        return finish(dst, d, bits, count);
+    }
+
+    /**
+     * Decodes the given US-ASCII encoded bytes.
+     *
+     * @param src
+     *            The US-ASCII bytes of the encoded data.
+     * @return The decoded bytes, or {@code null} if the encoded data is truncated.
+     */
+    public byte[] decode(final byte[] src) {
+        return decode(src, 0, src.length);
+    }
+
+    /**
+     * Decodes a range of the given US-ASCII encoded bytes.
+     *
+     * @param src
+     *            The array containing the US-ASCII bytes of the encoded data.
+     * @param offset
+     *            The offset of the first byte to decode.
+     * @param length
+     *            The number of bytes to decode.
+     * @return The decoded bytes, or {@code null} if the encoded data is truncated.
+     */
+    public byte[] decode(final byte[] src, final int offset, final int length) {
+        checkRange(src.length, offset, length);
+        final byte[] dst = new byte[maxDecodedLength(length)];
+        final int end = offset + length;
+        int d = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = offset; i < end; i++) {
+            final int value = src[i] >= 0 ? DECODE_TABLE[src[i]] : IGNORED;
+            if (value < 0) {
+                if (value == END) {
+                    break;
+                }
+                continue;
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                dst[d++] = (byte) (bits >> 16);
+                dst[d++] = (byte) (bits >> 8);
+                dst[d++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        return finish(dst, d, bits, count);
+    }
+
+    /**
+     * Decodes the remaining US-ASCII encoded bytes of the given buffer, leaving its position at its limit.
+     *
+     * @param src
+     *            The buffer containing the US-ASCII bytes of the encoded data.
+     * @return The decoded bytes, or {@code null} if the encoded data is truncated.
+     */
+    public byte[] decode(final ByteBuffer src) {
+        final byte[] decoded;
+        if (src.hasArray()) {
+            decoded = decode(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+        } else {
+            final byte[] bytes = new byte[src.remaining()];
+            src.get(bytes);
+            decoded = decode(bytes);
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns an output stream which encodes the bytes written to it and writes the US-ASCII bytes of the encoded
+     * output to the given stream. The encoded output is only complete once the returned stream has been closed,
+     * which also closes the given stream.
+     *
+     * @param out
+     *            The stream to which encoded output will be written.
+     * @return An output stream which encodes the bytes written to it.
+     */
+    public OutputStream newEncodingStream(final OutputStream out) {
+        return new EncodingOutputStream(Reject.checkNotNull(out));
+    }
+
+    /**
+     * Returns an input stream which decodes the US-ASCII encoded bytes read from the given stream.
+     *
+     * @param in
+     *            The stream from which encoded data will be read.
+     * @return An input stream returning the decoded bytes.
+     */
+    public InputStream newDecodingStream(final InputStream in) {
+        return new DecodingInputStream(Reject.checkNotNull(in));
+    }
+
+    /**
+     * Decoding never produces more than three bytes for every four characters, and exactly that for unpadded input
+     * containing no ignored characters.
+     */
+    private static int maxDecodedLength(final int length) {
+        return (int) (length * 3L / 4);
+    }
+
+    /**
+     * Writes the bytes encoded by a final partial group of characters and trims the output if some characters were
+     * padding or ignored.
+     */
+    private static byte[] finish(final byte[] dst, final int length, final int bits, final int count) {
+        int d = length;
+        switch (count) {
+        case 1:
+            // A single character cannot encode a whole byte.
+            return null;
+        case 2:
+            dst[d++] = (byte) (bits >> 4);
+            break;
+        case 3:
+            dst[d++] = (byte) (bits >> 10);
+            dst[d++] = (byte) (bits >> 2);
+            break;
+        default:
+            break;
+        }
+        return d == dst.length ? dst : Arrays.copyOf(dst, d);
+    }
+
+    private static void checkRange(final int arrayLength, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("Invalid range: offset=" + offset + ", length=" + length);
+        }
+    }
+
+    private final class EncodingOutputStream extends FilterOutputStream {
+        private final byte[] pending = new byte[3];
+        private final byte[] encoded = new byte[STREAM_BUFFER_SIZE / 3 * 4];
+        private int pendingCount;
+        private boolean closed;
+
+        EncodingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            pending[pendingCount++] = (byte) b;
+            if (pendingCount == 3) {
+                out.write(encoded, 0, encode(pending, 0, 3, encoded, 0));
+                pendingCount = 0;
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            checkRange(b.length, off, len);
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            int offset = off;
+            int remaining = len;
+            // Complete the group left over from the previous write.
+            while (pendingCount > 0 && pendingCount < 3 && remaining > 0) {
+                pending[pendingCount++] = b[offset++];
+                remaining--;
+            }
+            if (pendingCount == 3) {
+                out.write(encoded, 0, encode(pending, 0, 3, encoded, 0));
+                pendingCount = 0;
+            }
+            // Encode as many whole groups as possible, one buffer at a time.
+            while (remaining >= 3) {
+                final int chunk = Math.min(remaining - remaining % 3, STREAM_BUFFER_SIZE / 3 * 3);
+                out.write(encoded, 0, encode(b, offset, chunk, encoded, 0));
+                offset += chunk;
+                remaining -= chunk;
+            }
+            while (remaining > 0) {
+                pending[pendingCount++] = b[offset++];
+                remaining--;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    if (pendingCount > 0) {
+                        out.write(encoded, 0, encode(pending, 0, pendingCount, encoded, 0));
+                        pendingCount = 0;
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    private static final class DecodingInputStream extends FilterInputStream {
+        private final byte[] encoded = new byte[STREAM_BUFFER_SIZE];
+        private final byte[] decoded = new byte[STREAM_BUFFER_SIZE / 4 * 3 + 2];
+        private int position;
+        private int limit;
+        private int bits;
+        private int count;
+        private boolean endOfData;
+
+        DecodingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return decoded[position++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkRange(b.length, off, len);
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            final int n = Math.min(len, limit - position);
+            System.arraycopy(decoded, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && (position < limit || fill())) {
+                final int step = (int) Math.min(n - skipped, limit - position);
+                position += step;
+                skipped += step;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(final int readlimit) {
+            // Not supported.
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("Mark not supported");
+        }
+
+        /** Decodes the next block of input, returning {@code false} once all of the data has been read. */
+        private boolean fill() throws IOException {
+            position = 0;
+            limit = 0;
+            while (limit == 0 && !endOfData) {
+                final int n = in.read(encoded);
+                if (n < 0) {
+                    endOfData = true;
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    final int value = encoded[i] >= 0 ? DECODE_TABLE[encoded[i]] : IGNORED;
+                    if (value < 0) {
+                        if (value == END) {
+                            endOfData = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    bits = bits << 6 | value;
+                    if (++count == 4) {
+                        decoded[limit++] = (byte) (bits >> 16);
+                        decoded[limit++] = (byte) (bits >> 8);
+                        decoded[limit++] = (byte) bits;
+                        bits = 0;
+                        count = 0;
+                    }
+                }
+            }
+            if (endOfData) {
+                switch (count) {
+                case 1:
+                    throw new IOException("Truncated BASE64 encoded data");
+                case 2:
+                    decoded[limit++] = (byte) (bits >> 4);
+                    break;
+                case 3:
+                    decoded[limit++] = (byte) (bits >> 10);
+                    decoded[limit++] = (byte) (bits >> 2);
+                    break;
+                default:
+                    break;
+                }
+                count = 0;
+            }
+            return limit > 0;
+        }
+    }
+}
@@ -17,10 +17,10 @@
 package org.forgerock.util.encode;
 
 /**
- * Makes use of the very fast and memory efficient Base64 class to encode and
- * decode to and from BASE64 in full accordance with RFC 2045. And then replaces
- * + and / for - and _ respectively and removes the padding character = to be in
- * accordance with RFC 4648.
+ * Encodes and decodes to and from BASE64 using the URL and filename safe alphabet, without padding, in accordance
+ * with RFC 4648. Padded input is also accepted when decoding.
+ *
+ * @see Base64Codec#BASE64URL
  */
 public final class Base64url {
     /**
@@ -31,16 +31,7 @@ public final class Base64url {
      * @return The decoded byte[] array.
      */
     public static byte[] decode(final String content) {
-        final StringBuilder builder =
-                new StringBuilder(content.replaceAll("-", "+").replaceAll("_", "/"));
-        final int modulus = builder.length() % 4;
-        final int numberOfPaddingChars = 4 - modulus;
-        if (modulus != 0) {
-            for (int i = 0; i < numberOfPaddingChars; i++) {
-                builder.append('=');
-            }
-        }
-        return Base64.decode(builder.toString());
+        return Base64Codec.BASE64URL.decode(content);
     }
 
     /**
@@ -51,8 +42,7 @@ public final class Base64url {
      * @return The Base64url encoded byte array.
      */
     public static String encode(final byte[] content) {
-        return Base64.encode(content).replaceAll("\\+", "-").replaceAll("/", "_").replaceAll("=",
-                "");
+        return Base64Codec.BASE64URL.encode(content);
     }
 
     private Base64url() {
@@ -0,0 +1,111 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.promise;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Reject;
+
+/**
+ * Coalesces concurrent computations of the same key, so that the callers which ask for a key while it is being
+ * computed share the pending {@link Promise} instead of starting the computation again.
+ * <p>
+ * The results are not kept: as soon as a computation completes, its key is released and the next caller starts a new
+ * computation. The coalescer is therefore usually combined with a cache of the results, which the computation should
+ * fill before it completes, so that no caller can miss both the cache and the pending computation. A computation
+ * which throws an exception instead of returning a promise completes the shared promise with that exception; an
+ * {@link Error} is thrown to the caller which started the computation, and the other callers get an
+ * {@link IllegalStateException}.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the results of the computations.
+ * @param <E> The type of the exceptions thrown by the computations.
+ */
+public final class PromiseCoalescer<K, V, E extends Exception> {
+
+    private final ConcurrentMap<K, PromiseImpl<V, E>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the promise of the pending computation of the given key, or starts the computation by applying the given
+     * function to the key if there is none.
+     *
+     * @param key The key to compute.
+     * @param function The function computing the key, which is only called if the key is not being computed already.
+     * @return The promise of the result of the computation.
+     */
+    @SuppressWarnings("unchecked")
+    public Promise<V, E> apply(final K key, final AsyncFunction<? super K, V, E> function) {
+        Reject.ifNull(key, function);
+        final PromiseImpl<V, E> promise = PromiseImpl.create();
+        final PromiseImpl<V, E> existing = pending.putIfAbsent(key, promise);
+        if (existing != null) {
+            return existing;
+        }
+        final Promise<? extends V, ? extends E> computation;
+        try {
+            computation = function.apply(key);
+        } catch (RuntimeException e) {
+            pending.remove(key, promise);
+            promise.handleRuntimeException(e);
+            return promise;
+        } catch (Exception e) {
+            // The function can only throw its declared exception type.
+            pending.remove(key, promise);
+            promise.handleException((E) e);
+            return promise;
+        } catch (Error e) {
+            // Do not leave the callers sharing the computation waiting forever.
+            pending.remove(key, promise);
+            promise.handleRuntimeException(new IllegalStateException("Unable to compute " + key, e));
+            throw e;
+        }
+        computation
+                .thenOnResult(new ResultHandler<V>() {
+                    @Override
+                    public void handleResult(V result) {
+                        pending.remove(key, promise);
+                        promise.handleResult(result);
+                    }
+                })
+                .thenOnException(new ExceptionHandler<E>() {
+                    @Override
+                    public void handleException(E exception) {
+                        pending.remove(key, promise);
+                        promise.handleException(exception);
+                    }
+                })
+                .thenOnRuntimeException(new RuntimeExceptionHandler() {
+                    @Override
+                    public void handleRuntimeException(RuntimeException exception) {
+                        pending.remove(key, promise);
+                        promise.handleRuntimeException(exception);
+                    }
+                });
+        return promise;
+    }
+
+    /**
+     * Returns the number of keys being computed.
+     *
+     * @return The number of pending computations.
+     */
+    public int size() {
+        return pending.size();
+    }
+}
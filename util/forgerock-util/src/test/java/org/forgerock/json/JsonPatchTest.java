@@ -47,6 +47,25 @@ public class JsonPatchTest {
         assertThat(JsonPatch.isEqual(v1, v2)).isTrue();
     }
 
+    @Test
+    public void diffSharedSubTrees() {
+        v1 = json(object(
+                field("a", object(field("x", "1"), field("y", array("2", "3")))),
+                field("b", object(field("z", "4")))
+        ));
+        // a new version of v1 which shares its "a" sub-tree
+        v2 = json(object(
+                field("a", v1.get("a").getObject()),
+                field("b", object(field("z", "5")))
+        ));
+        diff = JsonPatch.diff(v1, v2);
+        assertThat(diff.size()).isEqualTo(1);
+        assertThat(diff.get(0).get("path").asString()).isEqualTo("/b/z");
+        assertThat(JsonPatch.isEqual(v1.get("a"), v2.get("a"))).isTrue();
+        assertThat(JsonPatch.isEqual(v1, v2)).isFalse();
+        assertThat(JsonPatch.diff(v1, v1).size()).isEqualTo(0);
+    }
+
     @Test
     public void addMapItem() {
         v1 = json(object(
@@ -72,11 +72,14 @@ public class PerItemEvictionStrategyCacheTest {
 
         assertThat(cache.isEmpty()).isFalse();
         assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.containsKey(42)).isTrue();
+        assertThat(cache.containsKey(43)).isFalse();
 
         cache.clear();
 
         assertThat(cache.isEmpty()).isTrue();
         assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.containsKey(42)).isFalse();
     }
 
     @Test
@@ -0,0 +1,37 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.crypto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.util.encode.Base64;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class DigestsTest {
+
+    @Test
+    public void shouldDigestUtf8EncodingWithSha256() {
+        assertThat(Base64.encode(Digests.sha256("abc")))
+                .isEqualTo("ungWv48Bz+pBQUDeXa4iI7ADYaOWF3qctBD/YfIAFa0=");
+    }
+
+    @Test
+    public void shouldDigestNullLikeTheEmptyString() {
+        assertThat(Digests.sha256(null)).isEqualTo(Digests.sha256(""));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.encode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class Base64CodecTest {
+
+    @DataProvider
+    public Object[][] lengths() {
+        return new Object[][] { { 0 }, { 1 }, { 2 }, { 3 }, { 4 }, { 5 }, { 32 }, { 1000 }, { 10_000 } };
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldEncodeLikeBase64(final int length) {
+        final byte[] content = randomBytes(length);
+
+        assertThat(Base64Codec.BASE64.encode(content)).isEqualTo(Base64.encode(content));
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldEncodeUrlSafeWithoutPadding(final int length) {
+        final byte[] content = randomBytes(length);
+        final String expected = Base64.encode(content).replace('+', '-').replace('/', '_').replace("=", "");
+
+        assertThat(Base64Codec.BASE64URL.encode(content)).isEqualTo(expected);
+        assertThat(new String(Base64Codec.BASE64URL.encodeToBytes(content), StandardCharsets.US_ASCII))
+                .isEqualTo(expected);
+        assertThat(Base64Codec.BASE64URL.encodedLength(length)).isEqualTo(expected.length());
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldDecodeAllVariants(final int length) {
+        final byte[] content = randomBytes(length);
+
+        assertThat(Base64Codec.BASE64URL.decode(Base64.encode(content))).isEqualTo(content);
+        assertThat(Base64Codec.BASE64.decode(Base64Codec.BASE64URL.encode(content))).isEqualTo(content);
+        assertThat(Base64Codec.BASE64.decode(Base64.encodeToByte(content, true))).isEqualTo(content);
+        assertThat(Base64Codec.BASE64URL.withPadding(true).decode(
+                ByteBuffer.wrap(Base64Codec.BASE64URL.withPadding(true).encodeToBytes(content)))).isEqualTo(content);
+    }
+
+    @Test
+    public void shouldReturnNullWhenDataIsTruncated() {
+        assertThat(Base64Codec.BASE64URL.decode("QUJDR")).isNull();
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldEncodeAndDecodeStreams(final int length) throws Exception {
+        final byte[] content = randomBytes(length);
+
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = Base64Codec.BASE64.newEncodingStream(encoded)) {
+            // Write in uneven pieces to exercise the partial groups.
+            for (int i = 0; i < length; i += 7) {
+                out.write(content, i, Math.min(7, length - i));
+            }
+        }
+        assertThat(new String(encoded.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo(Base64.encode(content));
+
+        final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream in = Base64Codec.BASE64.newDecodingStream(new ByteArrayInputStream(encoded.toByteArray()))) {
+            final byte[] buffer = new byte[100];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                decoded.write(buffer, 0, n);
+            }
+        }
+        assertThat(decoded.toByteArray()).isEqualTo(content);
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldEncodeSingleByteWrites(final int length) throws Exception {
+        final byte[] content = randomBytes(length);
+
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = Base64Codec.BASE64URL.newEncodingStream(encoded)) {
+            out.write(content, 0, Math.min(2, length));
+            for (int i = Math.min(2, length); i < length; i++) {
+                out.write(content[i]);
+            }
+        }
+        assertThat(new String(encoded.toByteArray(), StandardCharsets.US_ASCII))
+                .isEqualTo(Base64Codec.BASE64URL.encode(content));
+    }
+
+    private static byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
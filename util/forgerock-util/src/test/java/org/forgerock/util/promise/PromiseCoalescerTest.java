@@ -0,0 +1,151 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.util.promise;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.util.AsyncFunction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PromiseCoalescerTest {
+
+    private PromiseCoalescer<String, Integer, Exception> coalescer;
+    private PromiseImpl<Integer, Exception> computation;
+    private AtomicInteger calls;
+
+    @BeforeMethod
+    public void setUp() {
+        coalescer = new PromiseCoalescer<>();
+        computation = PromiseImpl.create();
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    public void shouldShareThePendingComputationOfAKey() throws Exception {
+        // given
+        final Promise<Integer, Exception> first = coalescer.apply("key", pendingComputation());
+
+        // when
+        final Promise<Integer, Exception> second = coalescer.apply("key", pendingComputation());
+        computation.handleResult(42);
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(first.get()).isEqualTo(42);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(coalescer.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldComputeTheKeyAgainOnceTheComputationHasCompleted() throws Exception {
+        // given
+        coalescer.apply("key", pendingComputation());
+        computation.handleException(new Exception("failed"));
+
+        // when
+        computation = PromiseImpl.create();
+        final Promise<Integer, Exception> promise = coalescer.apply("key", pendingComputation());
+        computation.handleResult(42);
+
+        // then
+        assertThat(promise.get()).isEqualTo(42);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotShareComputationsOfDifferentKeys() throws Exception {
+        // when
+        final Promise<Integer, Exception> first = coalescer.apply("key", pendingComputation());
+        final Promise<Integer, Exception> second = coalescer.apply("other", pendingComputation());
+
+        // then
+        assertThat(second).isNotSameAs(first);
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(coalescer.size()).isEqualTo(2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldCompletePromiseAndReleaseKeyWhenComputationThrows() throws Exception {
+        // when
+        final Promise<Integer, Exception> promise = coalescer.apply("key",
+                new AsyncFunction<String, Integer, Exception>() {
+                    @Override
+                    public Promise<Integer, Exception> apply(String key) {
+                        throw new IllegalArgumentException(key);
+                    }
+                });
+
+        // then
+        assertThat(promise.isDone()).isTrue();
+        assertThat(coalescer.size()).isEqualTo(0);
+        promise.getOrThrow();
+    }
+
+    @Test(expectedExceptions = Exception.class, expectedExceptionsMessageRegExp = "failed")
+    public void shouldCompletePromiseAndReleaseKeyWhenComputationThrowsCheckedException() throws Exception {
+        // when
+        final Promise<Integer, Exception> promise = coalescer.apply("key",
+                new AsyncFunction<String, Integer, Exception>() {
+                    @Override
+                    public Promise<Integer, Exception> apply(String key) throws Exception {
+                        throw new Exception("failed");
+                    }
+                });
+
+        // then
+        assertThat(promise.isDone()).isTrue();
+        assertThat(coalescer.size()).isEqualTo(0);
+        promise.getOrThrow();
+    }
+
+    @Test
+    public void shouldReleaseKeyWhenComputationThrowsError() throws Exception {
+        // given
+        final Error error = new AssertionError("failed");
+        Throwable thrown = null;
+
+        // when
+        try {
+            coalescer.apply("key", new AsyncFunction<String, Integer, Exception>() {
+                @Override
+                public Promise<Integer, Exception> apply(String key) {
+                    throw error;
+                }
+            });
+        } catch (Error e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).isSameAs(error);
+        assertThat(coalescer.size()).isEqualTo(0);
+    }
+
+    private AsyncFunction<String, Integer, Exception> pendingComputation() {
+        return new AsyncFunction<String, Integer, Exception>() {
+            @Override
+            public Promise<Integer, Exception> apply(String key) {
+                calls.incrementAndGet();
+                return computation;
+            }
+        };
+    }
+}